@@ -0,0 +1,132 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.benchmark;
+
+import piecework.common.ViewContext;
+import piecework.model.*;
+import piecework.security.concrete.PassthroughEncryptionService;
+import piecework.test.ExampleFactory;
+
+import java.util.*;
+
+/**
+ * Builds the model objects that the benchmarks work on from the ExampleFactory fixtures,
+ * with fixed sizes and ids so that results from different commits measure the same work.
+ *
+ * @author James Renfro
+ */
+public class BenchmarkFixtures {
+
+    public static final int INBOX_PAGE_SIZE = 50;
+    public static final int CANDIDATE_ASSIGNEES = 5;
+
+    public static ViewContext version1() {
+        return new ViewContext("https://localhost:8443", "/piecework/ui", "/piecework/api", "/piecework/public", "v1");
+    }
+
+    public static User user(int index) {
+        return new User.Builder()
+                .userId("user" + index)
+                .visibleId("user" + index)
+                .displayName("Benchmark User " + index)
+                .emailAddress("user" + index + "@example.org")
+                .build();
+    }
+
+    public static Map<String, User> userMap() {
+        Map<String, User> userMap = new HashMap<String, User>();
+        for (int i = 0; i <= CANDIDATE_ASSIGNEES; i++) {
+            User user = user(i);
+            userMap.put(user.getUserId(), user);
+        }
+        return userMap;
+    }
+
+    public static Task task(int index) {
+        Process process = ExampleFactory.exampleProcess();
+        Task.Builder builder = new Task.Builder()
+                .taskInstanceId("task" + index)
+                .taskDefinitionKey("Review")
+                .taskLabel("Review request " + index)
+                .processDefinitionKey(process.getProcessDefinitionKey())
+                .processInstanceId("instance" + index)
+                .startTime(new Date(1388534400000l + index * 60000l))
+                .assigneeId("user0")
+                .active();
+        for (int i = 1; i <= CANDIDATE_ASSIGNEES; i++) {
+            builder.candidateAssigneeId("user" + i);
+        }
+        return builder.build();
+    }
+
+    public static List<Task> tasks() {
+        List<Task> tasks = new ArrayList<Task>(INBOX_PAGE_SIZE);
+        for (int i = 0; i < INBOX_PAGE_SIZE; i++) {
+            tasks.add(task(i));
+        }
+        return tasks;
+    }
+
+    public static Map<String, Field> fieldMap() {
+        List<Field> fields = Arrays.asList(ExampleFactory.employeeNameField(), ExampleFactory.budgetNumberField(),
+                ExampleFactory.supervisorIdField(), ExampleFactory.actionTypeField(), ExampleFactory.locationField(),
+                ExampleFactory.descriptionField(), ExampleFactory.allowedField(), ExampleFactory.applicableField());
+        Map<String, Field> fieldMap = new LinkedHashMap<String, Field>();
+        for (Field field : fields) {
+            fieldMap.put(field.getName(), field);
+        }
+        return fieldMap;
+    }
+
+    /*
+     * An instance with a value for every example field, with the description stored
+     * as restricted (encrypted) data
+     */
+    public static ProcessInstance processInstance(Task task) throws Exception {
+        PassthroughEncryptionService encryptionService = new PassthroughEncryptionService();
+        Map<String, List<Value>> data = new HashMap<String, List<Value>>();
+        for (Field field : fieldMap().values()) {
+            String name = field.getName();
+            Value value = name.equals("description") ? encryptionService.encrypt("Restricted " + name) : new Value("Value of " + name);
+            data.put(name, Collections.singletonList(value));
+        }
+
+        ProcessInstance instance = ExampleFactory.exampleProcessInstance();
+        return new ProcessInstance.Builder(instance)
+                .processInstanceId(task.getProcessInstanceId())
+                .processInstanceLabel("Benchmark instance")
+                .data(data)
+                .task(task)
+                .build();
+    }
+
+    public static Form form(Task task, ProcessInstance instance) {
+        Container container = new Container.Builder()
+                .title("Benchmark form")
+                .fields(fieldMap().values())
+                .build();
+        return new Form.Builder()
+                .formInstanceId("form" + task.getTaskInstanceId())
+                .processDefinitionKey(instance.getProcessDefinitionKey())
+                .instance(instance, version1())
+                .layout("flow")
+                .container(container)
+                .task(task)
+                .data(instance.getData())
+                .build(version1());
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import piecework.Versions;
+import piecework.model.*;
+import piecework.security.DataFilterService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtering instance data down to the fields of a form, which runs on every form render.
+ * The assignee sees restricted values decrypted, anyone else sees them masked.
+ *
+ * @author James Renfro
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(2)
+public class DataFilterServiceBenchmark {
+
+    private DataFilterService dataFilterService;
+    private Map<String, Field> fieldMap;
+    private ProcessInstance instance;
+    private Task task;
+    private User assignee;
+    private User other;
+
+    @Setup
+    public void setup() throws Exception {
+        Versions versions = new Versions();
+        ReflectionTestUtils.setField(versions, "hostUri", "https://localhost:8443");
+        ReflectionTestUtils.setField(versions, "baseApplicationUri", "/piecework/ui");
+        ReflectionTestUtils.setField(versions, "baseServiceUri", "/piecework/api");
+        ReflectionTestUtils.setField(versions, "basePublicUri", "/piecework/public");
+
+        this.dataFilterService = new DataFilterService();
+        ReflectionTestUtils.setField(dataFilterService, "versions", versions);
+        dataFilterService.init();
+
+        this.fieldMap = BenchmarkFixtures.fieldMap();
+        this.task = BenchmarkFixtures.task(0);
+        this.instance = BenchmarkFixtures.processInstance(task);
+        this.assignee = BenchmarkFixtures.user(0);
+        this.other = BenchmarkFixtures.user(1);
+    }
+
+    @Benchmark
+    public Map<String, List<Value>> filterForAssignee() {
+        return dataFilterService.filter(fieldMap, instance, task, assignee, true, true);
+    }
+
+    @Benchmark
+    public Map<String, List<Value>> filterForCandidate() {
+        return dataFilterService.filter(fieldMap, instance, task, other, true, true);
+    }
+
+    @Benchmark
+    public Map<String, List<Value>> filterWithoutRestricted() {
+        return dataFilterService.filter(fieldMap, instance, task, assignee, false, true);
+    }
+
+}
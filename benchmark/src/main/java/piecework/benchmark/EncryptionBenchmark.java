@@ -0,0 +1,109 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.benchmark;
+
+import org.bouncycastle.crypto.BufferedBlockCipher;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.CBCBlockCipher;
+import org.bouncycastle.crypto.paddings.PKCS7Padding;
+import org.bouncycastle.crypto.paddings.PaddedBufferedBlockCipher;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.crypto.params.ParametersWithIV;
+import org.bouncycastle.util.encoders.Base64;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import piecework.model.Secret;
+import piecework.security.EncryptionKeyProvider;
+import piecework.security.EncryptionService;
+import piecework.security.concrete.config.EncryptionTestConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decrypting an instance with 500 restricted values. The baseline builds a new cipher and
+ * looks up the key for every secret, the way the example service used to work, while the
+ * service benchmarks decrypt one secret at a time and the whole instance in one batch.
+ *
+ * @author James Renfro
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(2)
+public class EncryptionBenchmark {
+
+    private static final int SECRETS = 500;
+
+    private AnnotationConfigApplicationContext context;
+    private EncryptionService encryptionService;
+    private EncryptionKeyProvider keyProvider;
+    private List<Secret> secrets;
+
+    @Setup
+    public void setup() throws Exception {
+        this.context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().setActiveProfiles("test");
+        context.register(EncryptionTestConfiguration.class);
+        context.refresh();
+
+        this.encryptionService = context.getBean(EncryptionService.class);
+        this.keyProvider = context.getBean(EncryptionKeyProvider.class);
+
+        List<String> plaintexts = new ArrayList<String>(SECRETS);
+        for (int i = 0; i < SECRETS; i++) {
+            plaintexts.add("Restricted value number " + i);
+        }
+        this.secrets = encryptionService.encrypt(plaintexts);
+    }
+
+    @TearDown
+    public void teardown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void decryptWithNewCipher(Blackhole blackhole) throws Exception {
+        for (Secret secret : secrets) {
+            BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESEngine()), new PKCS7Padding());
+            byte[] key = keyProvider.getDecryptionKey(secret.getName()).getEncoded();
+            cipher.init(false, new ParametersWithIV(new KeyParameter(key), Base64.decode(secret.getIv())));
+
+            byte[] hidden = Base64.decode(secret.getCiphertext());
+            byte[] temporary = new byte[cipher.getOutputSize(hidden.length)];
+            int bytesProcessed = cipher.processBytes(hidden, 0, hidden.length, temporary, 0);
+            bytesProcessed += cipher.doFinal(temporary, bytesProcessed);
+            blackhole.consume(new String(temporary, 0, bytesProcessed, "UTF-8"));
+        }
+    }
+
+    @Benchmark
+    public void decryptSingle(Blackhole blackhole) throws Exception {
+        for (Secret secret : secrets) {
+            blackhole.consume(encryptionService.decrypt(secret));
+        }
+    }
+
+    @Benchmark
+    public List<String> decryptBatch() throws Exception {
+        return encryptionService.decrypt(secrets);
+    }
+
+}
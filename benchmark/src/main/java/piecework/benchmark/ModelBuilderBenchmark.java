@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import piecework.common.ViewContext;
+import piecework.model.*;
+import piecework.security.Sanitizer;
+import piecework.security.concrete.PassthroughSanitizer;
+import piecework.task.TaskFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copy constructors of the model builders, which run for every task on an inbox page
+ * and every time a form is rendered.
+ *
+ * @author James Renfro
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(2)
+public class ModelBuilderBenchmark {
+
+    private Sanitizer sanitizer;
+    private ViewContext version;
+    private Map<String, User> userMap;
+    private List<Task> tasks;
+    private ProcessInstance instance;
+    private Form form;
+
+    @Setup
+    public void setup() throws Exception {
+        this.sanitizer = new PassthroughSanitizer();
+        this.version = BenchmarkFixtures.version1();
+        this.userMap = BenchmarkFixtures.userMap();
+        this.tasks = BenchmarkFixtures.tasks();
+        this.instance = BenchmarkFixtures.processInstance(tasks.get(0));
+        this.form = BenchmarkFixtures.form(tasks.get(0), instance);
+    }
+
+    /*
+     * One inbox page worth of tasks, as the task search decorates them
+     */
+    @Benchmark
+    public Task taskFactoryInboxPage() {
+        Task last = null;
+        for (Task task : tasks) {
+            last = TaskFactory.task(task, sanitizer, userMap, version);
+        }
+        return last;
+    }
+
+    @Benchmark
+    public Form formBuilderCopy() {
+        return new Form.Builder(form, sanitizer).build(version);
+    }
+
+    @Benchmark
+    public ProcessInstance processInstanceBuilderCopy() {
+        return new ProcessInstance.Builder(instance).build(version);
+    }
+
+}
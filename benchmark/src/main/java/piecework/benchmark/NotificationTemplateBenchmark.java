@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.benchmark;
+
+import com.github.mustachejava.DefaultMustacheFactory;
+import com.github.mustachejava.Mustache;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+import piecework.cache.GuavaCacheManager;
+import piecework.notification.EmailNotificationService;
+import piecework.service.CacheService;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering every notification on a task, for a deployment that has many of them. The
+ * baseline compiles each template every time, which is what each notification used to
+ * pay, while the service benchmark renders from the template cache.
+ *
+ * @author James Renfro
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(2)
+public class NotificationTemplateBenchmark {
+
+    private static final int NOTIFICATIONS_PER_TASK = 25;
+
+    private EmailNotificationService notificationService;
+    private List<String> templates;
+    private Map<String, Object> scope;
+
+    @Setup
+    public void setup() {
+        CacheService cacheService = new CacheService();
+        ReflectionTestUtils.setField(cacheService, "cacheManager", new GuavaCacheManager(null));
+        this.notificationService = new EmailNotificationService();
+        ReflectionTestUtils.setField(notificationService, "cacheService", cacheService);
+
+        this.templates = new ArrayList<String>(NOTIFICATIONS_PER_TASK);
+        for (int i = 0; i < NOTIFICATIONS_PER_TASK; i++) {
+            templates.add("Notification " + i + ": {{TASK_LABEL}} for {{PROCESS_INSTANCE_LABEL}} is assigned to {{ASSIGNEE}}. " +
+                    "{{#TASK_URL}}Open it at {{TASK_URL}}{{/TASK_URL}}");
+        }
+
+        this.scope = new HashMap<String, Object>();
+        scope.put("TASK_LABEL", "Review");
+        scope.put("PROCESS_INSTANCE_LABEL", "Request 1234");
+        scope.put("ASSIGNEE", "testuser");
+        scope.put("TASK_URL", "https://localhost/piecework/ui/form/demo?taskId=1234");
+    }
+
+    @Benchmark
+    public void compileEveryTime(Blackhole blackhole) {
+        for (String template : templates) {
+            Mustache mustache = new DefaultMustacheFactory().compile(new StringReader(template), "text");
+            StringWriter writer = new StringWriter();
+            mustache.execute(writer, scope);
+            blackhole.consume(writer.toString());
+        }
+    }
+
+    @Benchmark
+    public void renderFromCache(Blackhole blackhole) {
+        for (String template : templates) {
+            blackhole.consume(notificationService.render(template, "text", scope));
+        }
+    }
+
+}
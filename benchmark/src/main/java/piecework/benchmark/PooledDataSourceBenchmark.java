@@ -0,0 +1,112 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import piecework.engine.activiti.config.PooledDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One short query against an embedded H2 database from 16 threads at once. The baseline
+ * opens a new connection for every query, the way the engine datasource used to be
+ * configured, while the pooled benchmark borrows from the engine's pooled datasource with
+ * its validation query and prepared statement cache.
+ *
+ * @author James Renfro
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(2)
+@Threads(16)
+public class PooledDataSourceBenchmark {
+
+    private static final String URL = "jdbc:h2:mem:poolbenchmark;DB_CLOSE_DELAY=-1";
+    private static final int MAX_ACTIVE = 8;
+
+    private PooledDataSource pooledDataSource;
+    private DataSource unpooledDataSource;
+
+    @Setup
+    public void setup() throws Exception {
+        pooledDataSource = new PooledDataSource();
+        pooledDataSource.setDriverClassName("org.h2.Driver");
+        pooledDataSource.setUrl(URL);
+        pooledDataSource.setUsername("sa");
+        pooledDataSource.setPassword("");
+        pooledDataSource.setInitialSize(2);
+        pooledDataSource.setMinIdle(2);
+        pooledDataSource.setMaxIdle(MAX_ACTIVE);
+        pooledDataSource.setMaxActive(MAX_ACTIVE);
+        pooledDataSource.setMaxWait(10000);
+        pooledDataSource.setValidationQuery("SELECT 1");
+        pooledDataSource.setTestOnBorrow(true);
+        pooledDataSource.setJdbcInterceptors("ConnectionState;StatementFinalizer;StatementCache(prepared=true,callable=false,max=50)");
+
+        unpooledDataSource = new SimpleDriverDataSource(new org.h2.Driver(), URL, "sa", "");
+
+        Connection connection = pooledDataSource.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            statement.execute("CREATE TABLE IF NOT EXISTS ACT_TEST (ID_ VARCHAR(64) PRIMARY KEY, VALUE_ VARCHAR(255))");
+            statement.execute("MERGE INTO ACT_TEST VALUES ('1', 'one')");
+            statement.close();
+        } finally {
+            connection.close();
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        pooledDataSource.close();
+    }
+
+    @Benchmark
+    public String queryWithNewConnection() throws SQLException {
+        return query(unpooledDataSource);
+    }
+
+    @Benchmark
+    public String queryWithPooledConnection() throws SQLException {
+        return query(pooledDataSource);
+    }
+
+    private static String query(DataSource dataSource) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            PreparedStatement statement = connection.prepareStatement("SELECT VALUE_ FROM ACT_TEST WHERE ID_ = ?");
+            statement.setString(1, "1");
+            ResultSet resultSet = statement.executeQuery();
+            String value = resultSet.next() ? resultSet.getString(1) : null;
+            resultSet.close();
+            statement.close();
+            return value;
+        } finally {
+            connection.close();
+        }
+    }
+
+}
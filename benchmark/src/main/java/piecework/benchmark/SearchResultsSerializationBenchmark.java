@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import piecework.config.ProviderConfiguration;
+import piecework.model.SearchResults;
+import piecework.model.Task;
+import piecework.ui.CustomJaxbJsonProvider;
+
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayOutputStream;
+import java.lang.annotation.Annotation;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of an inbox page of tasks through the same provider, configured the
+ * same way, that the api uses.
+ *
+ * @author James Renfro
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(2)
+public class SearchResultsSerializationBenchmark {
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    private CustomJaxbJsonProvider provider;
+    private SearchResults searchResults;
+    private ByteArrayOutputStream outputStream;
+
+    @Setup
+    public void setup() {
+        this.provider = new ProviderConfiguration().customJaxbJsonProvider();
+
+        SearchResults.Builder builder = new SearchResults.Builder()
+                .resourceLabel("Tasks")
+                .firstResult(Integer.valueOf(0))
+                .maxResults(Integer.valueOf(BenchmarkFixtures.INBOX_PAGE_SIZE))
+                .total(Long.valueOf(BenchmarkFixtures.INBOX_PAGE_SIZE));
+        for (Task task : BenchmarkFixtures.tasks()) {
+            builder.item(task);
+        }
+        this.searchResults = builder.build();
+        this.outputStream = new ByteArrayOutputStream(64 * 1024);
+    }
+
+    @Benchmark
+    public int serializeInboxPage() throws Exception {
+        outputStream.reset();
+        provider.writeTo(searchResults, SearchResults.class, SearchResults.class, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE, null, outputStream);
+        return outputStream.size();
+    }
+
+}
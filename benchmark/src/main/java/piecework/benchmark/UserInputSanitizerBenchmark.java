@@ -0,0 +1,89 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.benchmark;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.openjdk.jmh.annotations.*;
+import org.owasp.validator.html.AntiSamy;
+import org.owasp.validator.html.Policy;
+import org.springframework.core.io.ClassPathResource;
+import piecework.security.concrete.UserInputSanitizer;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sanitizing a 200 field form submission. The baseline runs every key and value through
+ * its own AntiSamy scan, which is what each submission used to pay, while the sanitizer
+ * benchmark goes through the bulk path that only scans values that might hold markup.
+ *
+ * @author James Renfro
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(2)
+public class UserInputSanitizerBenchmark {
+
+    private static final int FIELDS = 200;
+
+    private Policy policy;
+    private UserInputSanitizer sanitizer;
+    private Map<String, List<String>> submission;
+
+    @Setup
+    public void setup() throws Exception {
+        ClassPathResource policyResource = new ClassPathResource("META-INF/piecework/antisamy-piecework-1.4.4.xml");
+        this.policy = Policy.getInstance(policyResource.getURL());
+        this.sanitizer = new UserInputSanitizer();
+        sanitizer.setAntisamyPolicy(policy);
+
+        // Mostly plain values, with the occasional rich text field as a real form would have
+        this.submission = new LinkedHashMap<String, List<String>>();
+        for (int i = 0; i < FIELDS; i++) {
+            String value;
+            if (i % 50 == 0)
+                value = "<p>Justification for item " + i + " with <strong>emphasis</strong></p>";
+            else if (i % 10 == 0)
+                value = "Free text answer number " + i + ", which runs on for a sentence or two.\nAnd another line.";
+            else
+                value = "value-" + i;
+            submission.put("field" + i, Collections.singletonList(value));
+        }
+    }
+
+    @Benchmark
+    public Map<String, List<String>> scanEveryEntry() throws Exception {
+        Map<String, List<String>> clean = new LinkedHashMap<String, List<String>>();
+        for (Map.Entry<String, List<String>> entry : submission.entrySet()) {
+            String key = StringEscapeUtils.unescapeXml(new AntiSamy().scan(entry.getKey(), policy).getCleanHTML());
+            List<String> values = new LinkedList<String>();
+            for (String value : entry.getValue()) {
+                values.add(StringEscapeUtils.unescapeXml(new AntiSamy().scan(value, policy).getCleanHTML()));
+            }
+            clean.put(key, values);
+        }
+        return clean;
+    }
+
+    @Benchmark
+    public Map<String, List<String>> sanitizeMap() {
+        return sanitizer.sanitize(submission);
+    }
+
+}
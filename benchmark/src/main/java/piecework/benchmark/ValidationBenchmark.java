@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import piecework.model.*;
+import piecework.model.Process;
+import piecework.security.DataFilterService;
+import piecework.service.TaskService;
+import piecework.submission.SubmissionTemplate;
+import piecework.submission.SubmissionTemplateFactory;
+import piecework.test.ExampleFactory;
+import piecework.validation.Validation;
+import piecework.validation.ValidationFactory;
+import piecework.validation.ValidationRule;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validating a valid and an invalid submission against the example fields, which is the
+ * path that every save and validate takes. The baseline builds the submission template,
+ * and so compiles every constraint and pattern, for each submission, while the validation
+ * benchmarks reuse a template that was built once, as the cached templates are.
+ *
+ * @author James Renfro
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(2)
+public class ValidationBenchmark {
+
+    private ValidationFactory validationFactory;
+    private SubmissionTemplateFactory submissionTemplateFactory;
+    private Process process;
+    private SubmissionTemplate template;
+    private Submission valid;
+    private Submission invalid;
+
+    @Setup
+    public void setup() throws Exception {
+        DataFilterService dataFilterService = new DataFilterService();
+        dataFilterService.init();
+
+        this.validationFactory = new ValidationFactory();
+        ReflectionTestUtils.setField(validationFactory, "dataFilterService", dataFilterService);
+        ReflectionTestUtils.setField(validationFactory, "taskService", new TaskService());
+
+        this.submissionTemplateFactory = new SubmissionTemplateFactory();
+        this.process = ExampleFactory.exampleProcess();
+        this.template = template();
+
+        this.valid = new Submission.Builder()
+                .formValue("employeeName", "John Test")
+                .formValue("budgetNumber", "100000")
+                .formValue("supervisorId", "abc12")
+                .formValue("action", "bonus")
+                .formValue("location", "in state")
+                .build();
+        this.invalid = new Submission.Builder()
+                .formValue("employeeName", "John Test")
+                .formValue("budgetNumber", "10000a")
+                .formValue("supervisorId", "ABC123")
+                .formValue("action", "fire")
+                .build();
+    }
+
+    @Benchmark
+    public Validation buildTemplateEveryTime() throws Exception {
+        return validationFactory.validation(process, null, null, template(), valid, false);
+    }
+
+    @Benchmark
+    public Validation validateValid() throws Exception {
+        return validationFactory.validation(process, null, null, template, valid, false);
+    }
+
+    @Benchmark
+    public Validation validateInvalid() throws Exception {
+        return validationFactory.validation(process, null, null, template, invalid, false);
+    }
+
+    private SubmissionTemplate template() throws Exception {
+        SubmissionTemplate.Builder builder = new SubmissionTemplate.Builder(process, process.getDeployment());
+        for (Field field : BenchmarkFixtures.fieldMap().values()) {
+            SubmissionTemplate fieldTemplate = submissionTemplateFactory.submissionTemplate(process, field, null);
+            for (Map.Entry<Field, List<ValidationRule>> entry : fieldTemplate.getFieldRuleMap().entrySet()) {
+                builder.rules(entry.getKey(), entry.getValue());
+                builder.field(entry.getKey());
+            }
+        }
+        return builder.build();
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.client;
+
+import org.HdrHistogram.AtomicHistogram;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects latencies in microseconds for each scenario into HdrHistograms, which can be
+ * recorded into from many threads at once, along with counts of failed flows and of flows
+ * that were skipped because there was nothing for them to act on. Skips are kept out of
+ * the histograms, since they never reach the server.
+ * Recording can be switched off so that warmup requests don't skew the results.
+ *
+ * @author James Renfro
+ */
+public class LatencyRecorder {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final double[] PERCENTILES = { 50.0, 90.0, 99.0, 99.9 };
+
+    private final Map<Scenario, AtomicHistogram> histograms;
+    private final Map<Scenario, AtomicLong> errors;
+    private final Map<Scenario, AtomicLong> skips;
+    private volatile boolean recording;
+    private volatile long startTime;
+    private volatile long stopTime;
+
+    public LatencyRecorder() {
+        this.histograms = new EnumMap<Scenario, AtomicHistogram>(Scenario.class);
+        this.errors = new EnumMap<Scenario, AtomicLong>(Scenario.class);
+        this.skips = new EnumMap<Scenario, AtomicLong>(Scenario.class);
+        for (Scenario scenario : Scenario.values()) {
+            histograms.put(scenario, new AtomicHistogram(HIGHEST_TRACKABLE_MICROS, 3));
+            errors.put(scenario, new AtomicLong());
+            skips.put(scenario, new AtomicLong());
+        }
+    }
+
+    public void start() {
+        this.startTime = System.nanoTime();
+        this.recording = true;
+    }
+
+    public void stop() {
+        this.recording = false;
+        this.stopTime = System.nanoTime();
+    }
+
+    public void success(Scenario scenario, long nanos) {
+        if (recording)
+            histograms.get(scenario).recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_TRACKABLE_MICROS));
+    }
+
+    public void failure(Scenario scenario) {
+        if (recording)
+            errors.get(scenario).incrementAndGet();
+    }
+
+    public void skipped(Scenario scenario) {
+        if (recording)
+            skips.get(scenario).incrementAndGet();
+    }
+
+    public void report(PrintStream out) {
+        double seconds = (stopTime - startTime) / 1000000000d;
+        out.println(String.format("%-10s %9s %9s %9s %8s %10s %10s %10s %10s %10s", "scenario", "count", "errors", "skipped", "req/s", "mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms"));
+        for (Scenario scenario : Scenario.values()) {
+            AtomicHistogram histogram = histograms.get(scenario);
+            long count = histogram.getTotalCount();
+            long errorCount = errors.get(scenario).get();
+            long skipCount = skips.get(scenario).get();
+            if (count == 0 && errorCount == 0 && skipCount == 0)
+                continue;
+
+            StringBuilder line = new StringBuilder(String.format("%-10s %9d %9d %9d %8.1f %10.2f", scenario.getLabel(), count, errorCount, skipCount,
+                    seconds > 0 ? count / seconds : 0d, histogram.getMean() / 1000d));
+            for (double percentile : PERCENTILES) {
+                line.append(String.format(" %10.2f", histogram.getValueAtPercentile(percentile) / 1000d));
+            }
+            out.println(line.toString());
+        }
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpEntity;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLContexts;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.apache.log4j.Logger;
+import piecework.security.SecuritySettings;
+
+import javax.net.ssl.SSLContext;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thin wrapper around a pooled http client that authenticates with the piecework
+ * client certificate, plus the state that scenarios share with one another -- the
+ * ids of instances that earlier requests created or found, and of those that have had
+ * a file attached.
+ *
+ * @author James Renfro
+ */
+public class LoadClient implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(LoadClient.class);
+    private static final int MAX_REMEMBERED = 1000;
+
+    private final CloseableHttpClient client;
+    private final ObjectMapper objectMapper;
+    private final LoadSettings settings;
+    private final ConcurrentLinkedQueue<String> processInstanceIds;
+    private final AtomicInteger processInstanceIdCount;
+    private final ConcurrentLinkedQueue<String> attachedProcessInstanceIds;
+    private final AtomicInteger attachedProcessInstanceIdCount;
+    private final byte[] attachment;
+    private final Random random;
+
+    public LoadClient(KeyStore keystore, SecuritySettings securitySettings, LoadSettings settings) throws Exception {
+        RegistryBuilder<ConnectionSocketFactory> registryBuilder = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory());
+        if (keystore != null) {
+            SSLContext sslContext = SSLContexts.custom()
+                    .loadKeyMaterial(keystore, securitySettings.getKeystorePassword())
+                    .loadTrustMaterial(keystore)
+                    .build();
+            registryBuilder.register("https", new SSLConnectionSocketFactory(sslContext, SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER));
+        }
+        Registry<ConnectionSocketFactory> registry = registryBuilder.build();
+
+        // One connection per worker, so the pool itself never becomes the bottleneck
+        PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager(registry);
+        cm.setMaxTotal(settings.getConcurrency());
+        cm.setDefaultMaxPerRoute(settings.getConcurrency());
+
+        this.client = HttpClients.custom().setConnectionManager(cm).build();
+        this.objectMapper = new ObjectMapper();
+        this.settings = settings;
+        this.processInstanceIds = new ConcurrentLinkedQueue<String>();
+        this.processInstanceIdCount = new AtomicInteger();
+        this.attachedProcessInstanceIds = new ConcurrentLinkedQueue<String>();
+        this.attachedProcessInstanceIdCount = new AtomicInteger();
+        this.random = new Random();
+        this.attachment = new byte[Math.max(settings.getAttachmentSize(), 1)];
+        for (int i = 0; i < attachment.length; i++) {
+            attachment[i] = (byte) ('a' + random.nextInt(26));
+        }
+    }
+
+    public JsonNode getJson(String path) throws IOException {
+        return execute(new HttpGet(url(path)));
+    }
+
+    public JsonNode postForm(String path, Map<String, String> values) throws IOException {
+        List<NameValuePair> parameters = new ArrayList<NameValuePair>(values.size());
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            parameters.add(new BasicNameValuePair(entry.getKey(), entry.getValue()));
+        }
+        HttpPost post = new HttpPost(url(path));
+        post.setHeader("Accept", "application/json");
+        post.setEntity(new UrlEncodedFormEntity(parameters, "UTF-8"));
+        return execute(post);
+    }
+
+    public JsonNode postJson(String path, String json) throws IOException {
+        HttpPost post = new HttpPost(url(path));
+        post.setHeader("Accept", "application/json");
+        post.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+        return execute(post);
+    }
+
+    /*
+     * Uploads the generated attachment as a multipart file, the way a browser would
+     */
+    public JsonNode postFile(String path, String fieldName, String fileName) throws IOException {
+        HttpPost post = new HttpPost(url(path));
+        post.setHeader("Accept", "application/json");
+        post.setEntity(MultipartEntityBuilder.create()
+                .addBinaryBody(fieldName, attachment, ContentType.TEXT_PLAIN, fileName)
+                .build());
+        return execute(post);
+    }
+
+    /*
+     * Reads the whole body and throws it away, returning the number of bytes
+     */
+    public long download(String path) throws IOException {
+        CloseableHttpResponse response = client.execute(new HttpGet(url(path)));
+        try {
+            checkStatus(response.getStatusLine().getStatusCode(), path);
+            HttpEntity entity = response.getEntity();
+            if (entity == null)
+                return 0;
+            InputStream inputStream = entity.getContent();
+            byte[] buffer = new byte[8192];
+            long total = 0;
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                total += n;
+            }
+            return total;
+        } finally {
+            response.close();
+        }
+    }
+
+    public boolean isAvailable() {
+        try {
+            CloseableHttpResponse response = client.execute(new HttpGet(url("/task.json")));
+            try {
+                EntityUtils.consume(response.getEntity());
+                return response.getStatusLine().getStatusCode() < 500;
+            } finally {
+                response.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public void rememberProcessInstanceId(String processInstanceId) {
+        remember(processInstanceIds, processInstanceIdCount, processInstanceId);
+    }
+
+    public String nextProcessInstanceId() {
+        return next(processInstanceIds);
+    }
+
+    public void rememberAttachedProcessInstanceId(String processInstanceId) {
+        remember(attachedProcessInstanceIds, attachedProcessInstanceIdCount, processInstanceId);
+    }
+
+    public String nextAttachedProcessInstanceId() {
+        return next(attachedProcessInstanceIds);
+    }
+
+    public String randomKeyword() {
+        String[] keywords = settings.getKeywords();
+        return keywords.length > 0 ? keywords[random.nextInt(keywords.length)] : "";
+    }
+
+    public LoadSettings getSettings() {
+        return settings;
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+
+    private JsonNode execute(HttpUriRequest request) throws IOException {
+        if (request.getFirstHeader("Accept") == null)
+            request.setHeader("Accept", "application/json");
+        CloseableHttpResponse response = client.execute(request);
+        try {
+            checkStatus(response.getStatusLine().getStatusCode(), request.getURI().toString());
+            HttpEntity entity = response.getEntity();
+            if (entity == null)
+                return null;
+            String body = EntityUtils.toString(entity, "UTF-8");
+            return body.length() > 0 ? objectMapper.readTree(body) : null;
+        } finally {
+            response.close();
+        }
+    }
+
+    private static void remember(ConcurrentLinkedQueue<String> ids, AtomicInteger count, String id) {
+        if (id == null)
+            return;
+        ids.offer(id);
+        if (count.incrementAndGet() > MAX_REMEMBERED && ids.poll() != null)
+            count.decrementAndGet();
+    }
+
+    /*
+     * Hands back one of the remembered ids, putting it back at the end of the queue so
+     * that ids are reused in rotation
+     */
+    private static String next(ConcurrentLinkedQueue<String> ids) {
+        String id = ids.poll();
+        if (id != null)
+            ids.offer(id);
+        return id;
+    }
+
+    private String url(String path) {
+        if (path.startsWith("http://") || path.startsWith("https://"))
+            return path;
+        return settings.getBaseUrl() + path;
+    }
+
+    private static void checkStatus(int statusCode, String location) throws IOException {
+        if (statusCode >= 400) {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Received " + statusCode + " from " + location);
+            throw new IOException("Unexpected status " + statusCode + " from " + location);
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.client;
+
+import org.apache.commons.lang.StringUtils;
+import org.springframework.core.env.Environment;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Settings for a load test run, read from the same properties files as the rest of
+ * piecework (and overridable with system properties), for example
+ *
+ * load.base.url = https://localhost:8443/piecework/api/v1
+ * load.concurrency = 20
+ * load.arrival.rate = 50
+ * load.scenarios = create:2,submit:2,complete:1,search:4,upload:1,download:1
+ * load.attachment.size = 65536
+ *
+ * An arrival rate of zero runs a closed model where each worker starts its next
+ * request as soon as the last one finishes; a positive rate runs an open model that
+ * starts that many requests per second no matter how long they take.
+ *
+ * Downloads only go to instances that an upload has attached a file to, so a mix with
+ * downloads but no uploads reports every download as skipped.
+ *
+ * @author James Renfro
+ */
+public class LoadSettings {
+
+    private final String baseUrl;
+    private final String processDefinitionKey;
+    private final int concurrency;
+    private final int arrivalRate;
+    private final int durationSeconds;
+    private final int warmupSeconds;
+    private final int startupTimeoutSeconds;
+    private final Map<Scenario, Integer> scenarioWeights;
+    private final Map<String, String> formValues;
+    private final String[] keywords;
+    private final String attachmentField;
+    private final int attachmentSize;
+
+    public LoadSettings(Environment environment) {
+        this.baseUrl = StringUtils.removeEnd(environment.getProperty("load.base.url", "https://localhost:8443/piecework/api/v1"), "/");
+        this.processDefinitionKey = environment.getProperty("load.process.definition.key", "Demonstration");
+        this.concurrency = environment.getProperty("load.concurrency", Integer.class, Integer.valueOf(10)).intValue();
+        this.arrivalRate = environment.getProperty("load.arrival.rate", Integer.class, Integer.valueOf(0)).intValue();
+        this.durationSeconds = environment.getProperty("load.duration.seconds", Integer.class, Integer.valueOf(60)).intValue();
+        this.warmupSeconds = environment.getProperty("load.warmup.seconds", Integer.class, Integer.valueOf(10)).intValue();
+        this.startupTimeoutSeconds = environment.getProperty("load.startup.timeout.seconds", Integer.class, Integer.valueOf(300)).intValue();
+        this.scenarioWeights = Collections.unmodifiableMap(scenarioWeights(environment.getProperty("load.scenarios", "create:2,submit:2,complete:1,search:4,upload:1,download:1")));
+        this.formValues = Collections.unmodifiableMap(pairs(environment.getProperty("load.form.values", "employeeName:Load Test,budgetNumber:123456")));
+        this.keywords = StringUtils.split(environment.getProperty("load.search.keywords", "test,load,demo"), ',');
+        this.attachmentField = environment.getProperty("load.attachment.field", "attachment");
+        this.attachmentSize = environment.getProperty("load.attachment.size", Integer.class, Integer.valueOf(65536)).intValue();
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public String getProcessDefinitionKey() {
+        return processDefinitionKey;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getArrivalRate() {
+        return arrivalRate;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getStartupTimeoutSeconds() {
+        return startupTimeoutSeconds;
+    }
+
+    public Map<Scenario, Integer> getScenarioWeights() {
+        return scenarioWeights;
+    }
+
+    public Map<String, String> getFormValues() {
+        return formValues;
+    }
+
+    public String[] getKeywords() {
+        return keywords;
+    }
+
+    public String getAttachmentField() {
+        return attachmentField;
+    }
+
+    public int getAttachmentSize() {
+        return attachmentSize;
+    }
+
+    private static Map<Scenario, Integer> scenarioWeights(String property) {
+        Map<Scenario, Integer> map = new LinkedHashMap<Scenario, Integer>();
+        for (Map.Entry<String, String> entry : pairs(property).entrySet()) {
+            Scenario scenario = Scenario.fromName(entry.getKey());
+            if (scenario == null)
+                throw new IllegalArgumentException("Unknown load scenario " + entry.getKey());
+            int weight = StringUtils.isNotEmpty(entry.getValue()) ? Integer.parseInt(entry.getValue()) : 1;
+            if (weight > 0)
+                map.put(scenario, Integer.valueOf(weight));
+        }
+        if (map.isEmpty())
+            throw new IllegalArgumentException("At least one load scenario must have a positive weight");
+        return map;
+    }
+
+    private static Map<String, String> pairs(String property) {
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        if (StringUtils.isNotEmpty(property)) {
+            for (String pair : StringUtils.split(property, ',')) {
+                String key = StringUtils.trim(StringUtils.substringBefore(pair, ":"));
+                String value = pair.indexOf(':') != -1 ? StringUtils.trim(StringUtils.substringAfter(pair, ":")) : null;
+                if (StringUtils.isNotEmpty(key))
+                    map.put(key, value);
+            }
+        }
+        return map;
+    }
+
+}
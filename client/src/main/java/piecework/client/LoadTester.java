@@ -15,59 +15,159 @@
  */
 package piecework.client;
 
-
-import org.apache.http.HttpRequest;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.conn.ClientConnectionManager;
-import org.apache.http.conn.scheme.PlainSocketFactory;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.scheme.SchemeRegistry;
-import org.apache.http.conn.ssl.SSLSocketFactory;
-import org.apache.http.conn.ssl.X509HostnameVerifier;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.BasicClientConnectionManager;
-import org.apache.http.impl.conn.PoolingClientConnectionManager;
-import org.springframework.context.ApplicationContext;
+import org.apache.log4j.Logger;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.core.env.StandardEnvironment;
-import piecework.config.*;
 import piecework.security.KeyManagerCabinet;
 import piecework.security.SecuritySettings;
 
-import java.io.InputStream;
-import java.security.KeyStore;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.*;
 
 /**
+ * Drives a mix of user flows against a running piecework server and reports latency
+ * percentiles for each. The simplest target is the demo server started with embedded
+ * mongo and ldap, as described in the README:
+ *
+ * mvn org.apache.tomcat.maven:tomcat7-maven-plugin:2.1:run -Dspring.profiles.active=embedded-ldap,embedded-mongo,data
+ *
+ * Then, from the client module, run the tester with mvn exec:java, passing the profile
+ * and any load.* settings (see LoadSettings) as system properties. The tester waits for
+ * the server to come up, runs a warmup period that isn't recorded, and then measures
+ * for the configured duration.
+ *
  * @author James Renfro
  */
 public class LoadTester {
 
-    private final HttpClient client;
+    private static final Logger LOG = Logger.getLogger(LoadTester.class);
 
-    public LoadTester(KeyStore keystore, SecuritySettings securitySettings) {
-        ClientConnectionManager cm;
+    private final LoadClient client;
+    private final LoadSettings settings;
+    private final LatencyRecorder recorder;
+    private final Scenario[] scenarios;
+    private final int[] cumulativeWeights;
+    private final Random random;
+    private volatile boolean running;
+
+    public LoadTester(LoadClient client, LoadSettings settings) {
+        this.client = client;
+        this.settings = settings;
+        this.recorder = new LatencyRecorder();
+        this.random = new Random();
+
+        Map<Scenario, Integer> weights = settings.getScenarioWeights();
+        this.scenarios = new Scenario[weights.size()];
+        this.cumulativeWeights = new int[weights.size()];
+        int index = 0;
+        int total = 0;
+        for (Map.Entry<Scenario, Integer> entry : weights.entrySet()) {
+            total += entry.getValue().intValue();
+            scenarios[index] = entry.getKey();
+            cumulativeWeights[index] = total;
+            index++;
+        }
+    }
+
+    public void awaitServer() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(settings.getStartupTimeoutSeconds());
+        while (!client.isAvailable()) {
+            if (System.currentTimeMillis() > deadline)
+                throw new IllegalStateException("Server at " + settings.getBaseUrl() + " did not become available");
+            LOG.info("Waiting for server at " + settings.getBaseUrl());
+            Thread.sleep(5000);
+        }
+    }
+
+    public LatencyRecorder run() throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(settings.getConcurrency());
+        ScheduledExecutorService scheduler = settings.getArrivalRate() > 0 ? Executors.newSingleThreadScheduledExecutor() : null;
+        running = true;
         try {
-            SSLSocketFactory sslSocketFactory = new SSLSocketFactory(keystore, new String(securitySettings.getKeystorePassword()));
-            X509HostnameVerifier hostnameVerifier = SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER;
-            sslSocketFactory.setHostnameVerifier(hostnameVerifier);
+            if (scheduler != null)
+                scheduleArrivals(scheduler, workers);
+            else
+                startWorkers(workers);
 
-            SchemeRegistry schemeRegistry = new SchemeRegistry();
-            schemeRegistry.register(
-                    new Scheme("https", 8443, sslSocketFactory));
+            LOG.info("Warming up for " + settings.getWarmupSeconds() + " seconds");
+            Thread.sleep(TimeUnit.SECONDS.toMillis(settings.getWarmupSeconds()));
 
-            cm = new PoolingClientConnectionManager(schemeRegistry);
+            LOG.info("Measuring for " + settings.getDurationSeconds() + " seconds");
+            recorder.start();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(settings.getDurationSeconds()));
+            recorder.stop();
+        } finally {
+            running = false;
+            if (scheduler != null)
+                scheduler.shutdownNow();
+            workers.shutdownNow();
+            workers.awaitTermination(30, TimeUnit.SECONDS);
+        }
+        return recorder;
+    }
+
+    /*
+     * Closed model -- each worker starts its next flow as soon as the last one finishes
+     */
+    private void startWorkers(ExecutorService workers) {
+        for (int i = 0; i < settings.getConcurrency(); i++) {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    while (running) {
+                        execute(nextScenario(), System.nanoTime());
+                    }
+                }
+            });
+        }
+    }
+
+    /*
+     * Open model -- flows start at a fixed rate, and the time spent waiting for a free
+     * worker counts toward latency, so a slow server can't hide behind a backed up queue
+     */
+    private void scheduleArrivals(ScheduledExecutorService scheduler, final ExecutorService workers) {
+        long period = TimeUnit.SECONDS.toNanos(1) / settings.getArrivalRate();
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                final Scenario scenario = nextScenario();
+                final long scheduled = System.nanoTime();
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        execute(scenario, scheduled);
+                    }
+                });
+            }
+        }, 0, Math.max(period, 1), TimeUnit.NANOSECONDS);
+    }
+
+    private void execute(Scenario scenario, long start) {
+        try {
+            if (scenario.run(client))
+                recorder.success(scenario, System.nanoTime() - start);
+            else
+                recorder.skipped(scenario);
         } catch (Exception e) {
-            cm = new BasicClientConnectionManager();
+            recorder.failure(scenario);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Scenario " + scenario.getLabel() + " failed", e);
         }
-        this.client = new DefaultHttpClient(cm);
     }
 
-    public void retrieveAllTasks() throws Exception {
-        HttpGet get = new HttpGet("https://localhost:8443/piecework/api/v1/task.json");
-        HttpResponse response = client.execute(get);
-        System.out.println(response.getStatusLine());
+    private Scenario nextScenario() {
+        int total = cumulativeWeights[cumulativeWeights.length - 1];
+        int value;
+        synchronized (random) {
+            value = random.nextInt(total);
+        }
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i])
+                return scenarios[i];
+        }
+        return scenarios[scenarios.length - 1];
     }
 
     public static final void main(String[] args) throws Exception {
@@ -82,9 +182,18 @@ public class LoadTester {
 
         KeyManagerCabinet cabinet = ctx.getBean(KeyManagerCabinet.class);
         SecuritySettings securitySettings = ctx.getBean(SecuritySettings.class);
+        LoadSettings settings = new LoadSettings(environment);
 
-        LoadTester loadTester = new LoadTester(cabinet.getKeystore(), securitySettings);
-        loadTester.retrieveAllTasks();
+        LoadClient client = new LoadClient(cabinet.getKeystore(), securitySettings, settings);
+        try {
+            LoadTester loadTester = new LoadTester(client, settings);
+            loadTester.awaitServer();
+            LatencyRecorder recorder = loadTester.run();
+            recorder.report(System.out);
+        } finally {
+            client.close();
+            ctx.close();
+        }
     }
 
 }
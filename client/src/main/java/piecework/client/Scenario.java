@@ -0,0 +1,149 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.net.URLEncoder;
+
+/**
+ * The user flows that the load tester drives. Each one is a short sequence of
+ * requests against the v1 api, timed as a whole. A flow returns false when there's
+ * nothing for it to act on yet -- no task to complete, or no instance with an
+ * attachment to download -- so the skip isn't mistaken for a fast success.
+ *
+ * @author James Renfro
+ */
+public enum Scenario {
+
+    CREATE_INSTANCE("create") {
+        @Override
+        public boolean run(LoadClient client) throws Exception {
+            String key = client.getSettings().getProcessDefinitionKey();
+            JsonNode instance = client.postForm("/instance/" + key, client.getSettings().getFormValues());
+            client.rememberProcessInstanceId(text(instance, "processInstanceId"));
+            return true;
+        }
+    },
+    SUBMIT_FORM("submit") {
+        @Override
+        public boolean run(LoadClient client) throws Exception {
+            String key = client.getSettings().getProcessDefinitionKey();
+            JsonNode form = client.getJson("/form/" + key + ".json");
+            String action = text(form, "action");
+            if (action == null)
+                throw new IllegalStateException("Form for " + key + " has no action to submit to");
+            JsonNode result = client.postForm(action, client.getSettings().getFormValues());
+            client.rememberProcessInstanceId(text(result, "processInstanceId"));
+            return true;
+        }
+    },
+    COMPLETE_TASK("complete") {
+        @Override
+        public boolean run(LoadClient client) throws Exception {
+            String key = client.getSettings().getProcessDefinitionKey();
+            JsonNode results = client.getJson("/task.json?processDefinitionKey=" + encode(key));
+            JsonNode items = results != null ? results.path("list") : null;
+            if (items == null || items.size() == 0)
+                return false;
+
+            JsonNode task = items.get(0);
+            String taskId = text(task, "taskInstanceId");
+            if (taskId == null)
+                return false;
+
+            client.postJson("/task/" + key + "/" + taskId + "/complete", "{}");
+            return true;
+        }
+    },
+    SEARCH("search") {
+        @Override
+        public boolean run(LoadClient client) throws Exception {
+            String key = client.getSettings().getProcessDefinitionKey();
+            JsonNode results = client.getJson("/instance.json?processDefinitionKey=" + encode(key) + "&keyword=" + encode(client.randomKeyword()));
+            JsonNode items = results != null ? results.path("list") : null;
+            if (items != null && items.size() > 0)
+                client.rememberProcessInstanceId(text(items.get(0), "processInstanceId"));
+            return true;
+        }
+    },
+    UPLOAD_ATTACHMENT("upload") {
+        @Override
+        public boolean run(LoadClient client) throws Exception {
+            String key = client.getSettings().getProcessDefinitionKey();
+            String processInstanceId = client.nextProcessInstanceId();
+            if (processInstanceId == null)
+                return false;
+
+            client.postFile("/instance/" + key + "/" + processInstanceId + "/attachment", client.getSettings().getAttachmentField(), "load-test.txt");
+            client.rememberAttachedProcessInstanceId(processInstanceId);
+            return true;
+        }
+    },
+    DOWNLOAD_ATTACHMENT("download") {
+        @Override
+        public boolean run(LoadClient client) throws Exception {
+            String key = client.getSettings().getProcessDefinitionKey();
+            String processInstanceId = client.nextAttachedProcessInstanceId();
+            if (processInstanceId == null)
+                return false;
+
+            JsonNode results = client.getJson("/instance/" + key + "/" + processInstanceId + "/attachment.json");
+            JsonNode items = results != null ? results.path("list") : null;
+            if (items == null || items.size() == 0)
+                throw new IllegalStateException("Instance " + processInstanceId + " has no attachments after one was uploaded");
+
+            String link = text(items.get(0), "link");
+            if (link == null)
+                throw new IllegalStateException("Attachment of instance " + processInstanceId + " has no link");
+
+            client.download(link);
+            return true;
+        }
+    };
+
+    private final String label;
+
+    private Scenario(String label) {
+        this.label = label;
+    }
+
+    public abstract boolean run(LoadClient client) throws Exception;
+
+    public String getLabel() {
+        return label;
+    }
+
+    public static Scenario fromName(String name) {
+        for (Scenario scenario : values()) {
+            if (scenario.label.equalsIgnoreCase(name) || scenario.name().equalsIgnoreCase(name))
+                return scenario;
+        }
+        return null;
+    }
+
+    private static String text(JsonNode node, String fieldName) {
+        if (node == null)
+            return null;
+        JsonNode field = node.get(fieldName);
+        return field != null && !field.isNull() ? field.asText() : null;
+    }
+
+    private static String encode(String value) throws Exception {
+        return URLEncoder.encode(value, "UTF-8");
+    }
+
+}
@@ -21,6 +21,8 @@ import org.springframework.security.core.GrantedAuthority;
 import piecework.util.ManyMap;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author James Renfro
@@ -30,6 +32,11 @@ public class AccessAuthority implements GrantedAuthority {
     private final Map<String, List<ResourceAuthority>> resourceAuthorityMap;
     private final Set<String> groupIds;
 
+    // Process definition keys by role, worked out once since every search asks for them
+    private final Map<String, Set<String>> processDefinitionKeyMap;
+    private final Set<String> allProcessDefinitionKeys;
+    private final ConcurrentMap<Set<String>, Set<String>> processDefinitionKeysByRoleSet;
+
     protected AccessAuthority() {
         this(new Builder());
     }
@@ -37,6 +44,22 @@ public class AccessAuthority implements GrantedAuthority {
     private AccessAuthority(Builder builder) {
         this.resourceAuthorityMap = Collections.unmodifiableMap(builder.resourceAuthorityMap);
         this.groupIds = Collections.unmodifiableSet(builder.groupIds);
+
+        Map<String, Set<String>> processDefinitionKeyMap = new HashMap<String, Set<String>>();
+        Set<String> allProcessDefinitionKeys = new HashSet<String>();
+        for (Map.Entry<String, List<ResourceAuthority>> entry : resourceAuthorityMap.entrySet()) {
+            Set<String> processDefinitionKeys = new HashSet<String>();
+            for (ResourceAuthority resourceAuthority : entry.getValue()) {
+                Set<String> resourceAuthorityProcessDefinitionKeys = resourceAuthority.getProcessDefinitionKeys();
+                if (resourceAuthorityProcessDefinitionKeys != null && !resourceAuthorityProcessDefinitionKeys.isEmpty())
+                    processDefinitionKeys.addAll(resourceAuthorityProcessDefinitionKeys);
+            }
+            processDefinitionKeyMap.put(entry.getKey(), Collections.unmodifiableSet(processDefinitionKeys));
+            allProcessDefinitionKeys.addAll(processDefinitionKeys);
+        }
+        this.processDefinitionKeyMap = Collections.unmodifiableMap(processDefinitionKeyMap);
+        this.allProcessDefinitionKeys = Collections.unmodifiableSet(allProcessDefinitionKeys);
+        this.processDefinitionKeysByRoleSet = new ConcurrentHashMap<Set<String>, Set<String>>();
     }
 
     public boolean isAuthorized(String roleAllowed, String processDefinitionKeyAllowed) {
@@ -51,6 +74,10 @@ public class AccessAuthority implements GrantedAuthority {
         return false;
     }
 
+    public Set<String> getGroupIds() {
+        return groupIds;
+    }
+
     public boolean hasGroup(Set<String> allowedGroupIds) {
         return Sets.intersection(groupIds, allowedGroupIds).size() >= 1;
     }
@@ -68,21 +95,34 @@ public class AccessAuthority implements GrantedAuthority {
         return false;
     }
 
+    /*
+     * The returned set is shared, so callers must not modify it
+     */
     public Set<String> getProcessDefinitionKeys(Set<String> allowedRoleSet) {
-        Set<String> processDefinitionKeys = new HashSet<String>();
-        if (!resourceAuthorityMap.isEmpty()) {
-            Set<ResourceAuthority> resourceAuthorities = matchedResourceAuthorities(allowedRoleSet);
-            // Iterate through all of the matching resource authorities and add their process definition keys
-            for (ResourceAuthority resourceAuthority : resourceAuthorities) {
-                Set<String> resourceAuthorityProcessDefinitionKeys = resourceAuthority.getProcessDefinitionKeys();
-                if (resourceAuthorityProcessDefinitionKeys != null && !resourceAuthorityProcessDefinitionKeys.isEmpty())
-                    processDefinitionKeys.addAll(resourceAuthorityProcessDefinitionKeys);
-            }
+        if (resourceAuthorityMap.isEmpty())
+            return Collections.emptySet();
+
+        if (allowedRoleSet == null)
+            return allProcessDefinitionKeys;
 
-            return processDefinitionKeys;
+        if (allowedRoleSet.size() == 1) {
+            Set<String> processDefinitionKeys = processDefinitionKeyMap.get(allowedRoleSet.iterator().next());
+            return processDefinitionKeys != null ? processDefinitionKeys : Collections.<String>emptySet();
         }
 
-        return Collections.emptySet();
+        Set<String> processDefinitionKeys = processDefinitionKeysByRoleSet.get(allowedRoleSet);
+        if (processDefinitionKeys == null) {
+            Set<String> union = new HashSet<String>();
+            for (String allowedRole : allowedRoleSet) {
+                Set<String> roleProcessDefinitionKeys = processDefinitionKeyMap.get(allowedRole);
+                if (roleProcessDefinitionKeys != null)
+                    union.addAll(roleProcessDefinitionKeys);
+            }
+            processDefinitionKeys = Collections.unmodifiableSet(union);
+            // Copy the key, since the caller is free to change the set it passed in
+            processDefinitionKeysByRoleSet.putIfAbsent(new HashSet<String>(allowedRoleSet), processDefinitionKeys);
+        }
+        return processDefinitionKeys;
     }
 
     @Override
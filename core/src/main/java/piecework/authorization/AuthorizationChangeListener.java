@@ -0,0 +1,65 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.authorization;
+
+import com.mongodb.DBObject;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.stereotype.Service;
+import piecework.model.Authorization;
+
+/**
+ * Invalidates the access authorities cached by the role mapper whenever an authorization
+ * document is saved or deleted through the repository or template on this node. This only
+ * makes such changes visible sooner -- changes made directly in the database, which is
+ * how authorizations are usually maintained, are not seen here at all, so the expiry of
+ * the authorization cache (cache.authorization.expire.after.write) is what bounds how long
+ * a stale authorization can be used.
+ *
+ * @author James Renfro
+ */
+@Service
+public class AuthorizationChangeListener extends AbstractMongoEventListener<Authorization> {
+
+    private static final Logger LOG = Logger.getLogger(AuthorizationChangeListener.class);
+
+    @Autowired(required = false)
+    AuthorizationRoleMapper authorizationRoleMapper;
+
+    @Override
+    public void onAfterSave(Authorization authorization, DBObject dbo) {
+        if (authorizationRoleMapper == null)
+            return;
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Authorization " + authorization.getAuthorizationId() + " changed, invalidating cached access authorities");
+
+        authorizationRoleMapper.invalidate();
+    }
+
+    @Override
+    public void onAfterDelete(DBObject dbo) {
+        if (authorizationRoleMapper == null)
+            return;
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Authorizations deleted, invalidating cached access authorities");
+
+        authorizationRoleMapper.invalidate();
+    }
+
+}
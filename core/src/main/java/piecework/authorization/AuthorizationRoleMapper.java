@@ -15,17 +15,34 @@
  */
 package piecework.authorization;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
+import org.springframework.cache.Cache;
+import piecework.enumeration.CacheName;
 import piecework.model.Authorization;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.mapping.GrantedAuthoritiesMapper;
 import piecework.persistence.AuthorizationRepository;
+import piecework.service.CacheService;
 
 /**
+ * Maps the groups a user belongs to onto the resource authorities stored for those groups.
+ * Since this runs on every authentication, and with pre-authentication that means every
+ * request, the resulting access authority is cached under the sorted set of group ids.
+ *
+ * Cached authorities expire after cache.authorization.expire.after.write seconds, and that
+ * expiry is the only guarantee of freshness, since authorizations are usually changed
+ * directly in the database. Changes saved or deleted through this application also clear
+ * the cache here and, when cache invalidation is enabled, on the other nodes. Each cache
+ * key carries a version that is bumped on those changes, so on the node that made the
+ * change an authority loaded while it was being saved can't be cached under a current key.
+ * The version is local to each node, so other nodes only get the clear.
+ *
  * @author James Renfro
  */
 public class AuthorizationRoleMapper implements GrantedAuthoritiesMapper {
@@ -35,6 +52,11 @@ public class AuthorizationRoleMapper implements GrantedAuthoritiesMapper {
     @Autowired
     AuthorizationRepository repository;
 
+    @Autowired(required = false)
+    CacheService cacheService;
+
+    private final AtomicLong version = new AtomicLong();
+
 	@Override
 	public Collection<? extends GrantedAuthority> mapAuthorities(Collection<? extends GrantedAuthority> authorities) {
 		
@@ -43,40 +65,81 @@ public class AuthorizationRoleMapper implements GrantedAuthoritiesMapper {
             if (LOG.isDebugEnabled())
                 start = System.currentTimeMillis();
 
-            AccessAuthority.Builder builder = new AccessAuthority.Builder();
-
-			Set<String> authorizationIds = new HashSet<String>();
+			Set<String> authorizationIds = new TreeSet<String>();
             for (GrantedAuthority authority : authorities) {
                 if (authority instanceof SuperUserAccessAuthority) {
                     return Collections.singletonList((SuperUserAccessAuthority)authority);
                 } else {
 				    String authorizationId = authority.getAuthority();
-                    authorizationIds.add(authorizationId);
-                    builder.groupId(authorizationId);
+                    if (authorizationId != null)
+                        authorizationIds.add(authorizationId);
                 }
 			}
 
-            Iterable<Authorization> authorizations = repository.findAll(authorizationIds);
-            if (authorizations != null) {
-                for (Authorization authorization : authorizations) {
-                    if (authorization != null) {
-                        List<ResourceAuthority> resourceAuthorities = authorization.getAuthorities();
-                        if (resourceAuthorities != null && !resourceAuthorities.isEmpty()) {
-                            for (ResourceAuthority resourceAuthority : resourceAuthorities) {
-                                builder.resourceAuthority(resourceAuthority);
-                            }
-                        }
-                    }
-                }
-            }
+            String cacheKey = cacheKey(authorizationIds);
+            AccessAuthority accessAuthority = cached(cacheKey);
+            if (accessAuthority == null) {
+                accessAuthority = load(authorizationIds);
+                if (cacheService != null)
+                    cacheService.put(CacheName.AUTHORIZATION, cacheKey, accessAuthority);
 
-            if (LOG.isDebugEnabled())
-                LOG.debug("Mapped authorization roles in " + (System.currentTimeMillis() - start) + " ms");
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Mapped authorization roles in " + (System.currentTimeMillis() - start) + " ms");
+            }
 
-			return Collections.singletonList(builder.build());
+			return Collections.singletonList(accessAuthority);
 		}
 		
 		return null;
 	}
 
+    /*
+     * Called whenever an authorization document is saved or deleted through this application.
+     * Clearing the cache is broadcast to the other nodes, but only this node bumps its version.
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        if (cacheService != null)
+            cacheService.clear(CacheName.AUTHORIZATION);
+    }
+
+    private AccessAuthority cached(String cacheKey) {
+        if (cacheService == null)
+            return null;
+
+        Cache.ValueWrapper wrapper = cacheService.get(CacheName.AUTHORIZATION, cacheKey);
+        if (wrapper != null && wrapper.get() instanceof AccessAuthority)
+            return AccessAuthority.class.cast(wrapper.get());
+
+        return null;
+    }
+
+    private String cacheKey(Set<String> authorizationIds) {
+        // The ids are already sorted, so the same groups in any order produce the same key
+        return version.get() + ":" + StringUtils.join(authorizationIds, '|');
+    }
+
+    private AccessAuthority load(Set<String> authorizationIds) {
+        AccessAuthority.Builder builder = new AccessAuthority.Builder();
+        for (String authorizationId : authorizationIds) {
+            builder.groupId(authorizationId);
+        }
+
+        Iterable<Authorization> authorizations = repository.findAll(authorizationIds);
+        if (authorizations != null) {
+            for (Authorization authorization : authorizations) {
+                if (authorization != null) {
+                    List<ResourceAuthority> resourceAuthorities = authorization.getAuthorities();
+                    if (resourceAuthorities != null && !resourceAuthorities.isEmpty()) {
+                        for (ResourceAuthority resourceAuthority : resourceAuthorities) {
+                            builder.resourceAuthority(resourceAuthority);
+                        }
+                    }
+                }
+            }
+        }
+
+        return builder.build();
+    }
+
 }
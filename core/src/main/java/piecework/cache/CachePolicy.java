@@ -0,0 +1,135 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.cache;
+
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.springframework.core.env.Environment;
+import piecework.enumeration.CacheEvictionPolicy;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size, expiration and eviction settings for a single named cache. Each value
+ * is read from properties of the form cache.[name].max.size, falling back to
+ * cache.default.max.size and finally to the hard-coded defaults below, so
+ * a deployment only has to override the caches it cares about. Cache names are
+ * lower-cased, so the IDENTITY cache is configured with cache.identity.*
+ *
+ * @author James Renfro
+ */
+public class CachePolicy {
+
+    private static final Logger LOG = Logger.getLogger(CachePolicy.class);
+
+    private static final String PREFIX = "cache.";
+    private static final String DEFAULT = "default";
+
+    private static final long DEFAULT_MAX_SIZE = 1000l;
+    private static final long DEFAULT_EXPIRE_AFTER_WRITE = 3600l;
+    private static final long DEFAULT_EXPIRE_AFTER_ACCESS = 0l;
+
+    private final String name;
+    private final long maxSize;
+    private final long expireAfterWriteSeconds;
+    private final long expireAfterAccessSeconds;
+    private final CacheEvictionPolicy evictionPolicy;
+
+    public CachePolicy(String name, long maxSize, long expireAfterWriteSeconds, long expireAfterAccessSeconds, CacheEvictionPolicy evictionPolicy) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.expireAfterWriteSeconds = expireAfterWriteSeconds;
+        this.expireAfterAccessSeconds = expireAfterAccessSeconds;
+        this.evictionPolicy = evictionPolicy != null ? evictionPolicy : CacheEvictionPolicy.LRU;
+    }
+
+    public static CachePolicy fromEnvironment(String name, Environment environment) {
+        String key = name.toLowerCase();
+        long maxSize = longProperty(environment, key, "max.size", DEFAULT_MAX_SIZE);
+        long expireAfterWrite = longProperty(environment, key, "expire.after.write", DEFAULT_EXPIRE_AFTER_WRITE);
+        long expireAfterAccess = longProperty(environment, key, "expire.after.access", DEFAULT_EXPIRE_AFTER_ACCESS);
+        String eviction = stringProperty(environment, key, "eviction");
+        CacheEvictionPolicy evictionPolicy = StringUtils.isNotEmpty(eviction) ? parseEvictionPolicy(eviction.trim()) : CacheEvictionPolicy.LRU;
+        return new CachePolicy(name, maxSize, expireAfterWrite, expireAfterAccess, evictionPolicy);
+    }
+
+    /*
+     * A value of zero or less for any of the numeric settings turns that limit off
+     */
+    public CacheBuilder<Object, Object> builder() {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+
+        if (evictionPolicy != CacheEvictionPolicy.NONE && maxSize > 0)
+            builder.maximumSize(maxSize);
+        if (expireAfterWriteSeconds > 0)
+            builder.expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS);
+        if (expireAfterAccessSeconds > 0)
+            builder.expireAfterAccess(expireAfterAccessSeconds, TimeUnit.SECONDS);
+        if (evictionPolicy == CacheEvictionPolicy.SOFT)
+            builder.softValues();
+
+        return builder;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public long getExpireAfterWriteSeconds() {
+        return expireAfterWriteSeconds;
+    }
+
+    public long getExpireAfterAccessSeconds() {
+        return expireAfterAccessSeconds;
+    }
+
+    public CacheEvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    /*
+     * A mistyped eviction setting shouldn't stop the application from starting, so it falls back to LRU
+     */
+    private static CacheEvictionPolicy parseEvictionPolicy(String value) {
+        for (CacheEvictionPolicy evictionPolicy : CacheEvictionPolicy.values()) {
+            if (evictionPolicy.name().equalsIgnoreCase(value))
+                return evictionPolicy;
+        }
+        LOG.warn("Ignoring unknown cache eviction policy " + value + ", expected one of " + Arrays.toString(CacheEvictionPolicy.values()));
+        return CacheEvictionPolicy.LRU;
+    }
+
+    private static long longProperty(Environment environment, String name, String suffix, long defaultValue) {
+        if (environment == null)
+            return defaultValue;
+        Long fallback = environment.getProperty(PREFIX + DEFAULT + "." + suffix, Long.class, Long.valueOf(defaultValue));
+        return environment.getProperty(PREFIX + name + "." + suffix, Long.class, fallback).longValue();
+    }
+
+    private static String stringProperty(Environment environment, String name, String suffix) {
+        if (environment == null)
+            return null;
+        String fallback = environment.getProperty(PREFIX + DEFAULT + "." + suffix);
+        return environment.getProperty(PREFIX + name + "." + suffix, fallback);
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.cache;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Snapshot of the hit, miss and eviction counts for a single cache
+ *
+ * @author James Renfro
+ */
+public class CacheStatistics {
+
+    private final String cacheName;
+    private final long size;
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+
+    public CacheStatistics(String cacheName, long size, long hitCount, long missCount, long evictionCount) {
+        this.cacheName = cacheName;
+        this.size = size;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+    }
+
+    public CacheStatistics(String cacheName, long size, CacheStats stats) {
+        this(cacheName, size, stats.hitCount(), stats.missCount(), stats.evictionCount());
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public double getHitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return cacheName + " [size=" + size + ", hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+    }
+
+}
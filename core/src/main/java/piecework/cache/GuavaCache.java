@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.io.Serializable;
+
+/**
+ * Adapts a Guava cache to the Spring cache abstraction, so that the bounds and
+ * expiration described by a {@link CachePolicy} apply to anything that goes
+ * through the {@link org.springframework.cache.CacheManager}. Guava does not
+ * permit null values, so nulls are stored as a marker object and unwrapped on
+ * the way out.
+ *
+ * @author James Renfro
+ */
+public class GuavaCache implements Cache {
+
+    private static final Object NULL_HOLDER = new NullHolder();
+
+    private final String name;
+    private final com.google.common.cache.Cache<Object, Object> cache;
+
+    public GuavaCache(String name, com.google.common.cache.Cache<Object, Object> cache) {
+        this.name = name;
+        this.cache = cache;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public com.google.common.cache.Cache<Object, Object> getNativeCache() {
+        return cache;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        Object value = cache.getIfPresent(key);
+        if (value == null)
+            return null;
+        return new SimpleValueWrapper(value == NULL_HOLDER ? null : value);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        cache.put(key, value != null ? value : NULL_HOLDER);
+    }
+
+    @Override
+    public void evict(Object key) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    private static class NullHolder implements Serializable {
+        private static final long serialVersionUID = 1l;
+    }
+
+}
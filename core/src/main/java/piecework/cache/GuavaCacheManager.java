@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.env.Environment;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Replacement for the ConcurrentMapCacheManager that builds a bounded Guava cache
+ * for each name it is asked for. The settings for each cache are looked up from the
+ * environment the first time the cache is requested, so new cache names pick up
+ * the default policy without any additional configuration.
+ *
+ * @author James Renfro
+ */
+public class GuavaCacheManager implements CacheManager {
+
+    private final ConcurrentMap<String, Cache> cacheMap = new ConcurrentHashMap<String, Cache>();
+    private final ConcurrentMap<String, CachePolicy> policyMap = new ConcurrentHashMap<String, CachePolicy>();
+    private final Environment environment;
+
+    public GuavaCacheManager(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = cacheMap.get(name);
+        if (cache == null) {
+            CachePolicy policy = getPolicy(name);
+            cache = new GuavaCache(name, policy.builder().build());
+            Cache existing = cacheMap.putIfAbsent(name, cache);
+            if (existing != null)
+                cache = existing;
+        }
+        return cache;
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(cacheMap.keySet());
+    }
+
+    public CachePolicy getPolicy(String name) {
+        CachePolicy policy = policyMap.get(name);
+        if (policy == null) {
+            policy = CachePolicy.fromEnvironment(name, environment);
+            CachePolicy existing = policyMap.putIfAbsent(name, policy);
+            if (existing != null)
+                policy = existing;
+        }
+        return policy;
+    }
+
+}
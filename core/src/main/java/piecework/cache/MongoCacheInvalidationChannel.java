@@ -0,0 +1,221 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.cache;
+
+import com.mongodb.*;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+import piecework.enumeration.CacheName;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Keeps the local caches on each node in a cluster coherent by broadcasting
+ * evictions through a capped Mongo collection. Every node writes an event
+ * to the collection when it evicts an entry, and every node tails the same
+ * collection on a background thread, evicting the matching entry from its own
+ * caches when it sees an event that came from some other node.
+ *
+ * Since the collection is capped it never needs to be cleaned up, and since it
+ * lives in the same database as everything else no new infrastructure is
+ * required. Turned on with cache.invalidation.enabled = true
+ *
+ * @author James Renfro
+ */
+@Service
+public class MongoCacheInvalidationChannel {
+
+    private static final Logger LOG = Logger.getLogger(MongoCacheInvalidationChannel.class);
+    private static final String COLLECTION_NAME = "cache.invalidation";
+    private static final String NODE = "node";
+    private static final String CACHE = "cache";
+    private static final String KEY = "key";
+    private static final String TIMESTAMP = "timestamp";
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    Environment environment;
+
+    @Autowired
+    MongoTemplate mongoOperations;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private volatile boolean running;
+    private boolean enabled;
+    private long retryInterval;
+    private DBCollection collection;
+    private Thread listener;
+
+    @PostConstruct
+    public void init() {
+        this.enabled = environment.getProperty("cache.invalidation.enabled", Boolean.class, Boolean.FALSE);
+        if (!enabled)
+            return;
+
+        Integer collectionSize = environment.getProperty("cache.invalidation.collection.size", Integer.class, Integer.valueOf(1048576));
+        this.retryInterval = environment.getProperty("cache.invalidation.retry.interval", Long.class, Long.valueOf(1000l));
+
+        try {
+            if (!mongoOperations.collectionExists(COLLECTION_NAME))
+                mongoOperations.createCollection(COLLECTION_NAME, new CollectionOptions(collectionSize, null, Boolean.TRUE));
+        } catch (Exception e) {
+            // Another node may have created the collection at the same moment
+            LOG.info("Unable to create capped collection for cache invalidation, assuming it already exists", e);
+        }
+        this.collection = mongoOperations.getCollection(COLLECTION_NAME);
+
+        // Only events that are written after this node starts are of any interest
+        this.running = true;
+        this.listener = new Thread(new Tailer(newestId()), "cache-invalidation-" + nodeId);
+        this.listener.setDaemon(true);
+        this.listener.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        this.running = false;
+        if (listener != null)
+            listener.interrupt();
+    }
+
+    /*
+     * Tells every other node to evict the entry stored under this key -- a null key
+     * clears the entire cache
+     */
+    public void broadcast(CacheName cacheName, String key) {
+        if (!enabled || collection == null)
+            return;
+
+        BasicDBObject event = new BasicDBObject(NODE, nodeId)
+                .append(CACHE, cacheName.name())
+                .append(KEY, key)
+                .append(TIMESTAMP, new Date());
+        try {
+            collection.insert(event, WriteConcern.NORMAL);
+        } catch (MongoException e) {
+            // Failing to broadcast should never fail the operation that triggered the eviction
+            LOG.error("Unable to broadcast cache eviction for " + cacheName + " " + key, e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private Object newestId() {
+        DBCursor cursor = collection.find().sort(new BasicDBObject("$natural", -1)).limit(1);
+        try {
+            return cursor.hasNext() ? cursor.next().get("_id") : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    void receive(DBObject event) {
+        Object origin = event.get(NODE);
+        if (origin == null || nodeId.equals(origin))
+            return;
+
+        Object cacheName = event.get(CACHE);
+        Object key = event.get(KEY);
+        if (cacheName == null)
+            return;
+
+        Cache cache = cacheManager.getCache(cacheName.toString());
+        if (cache == null)
+            return;
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Evicting " + key + " from " + cacheName + " on behalf of node " + origin);
+
+        if (key == null)
+            cache.clear();
+        else
+            cache.evict(key.toString());
+    }
+
+    private class Tailer implements Runnable {
+
+        // Ids are generated by whichever node wrote the event, so they say nothing about
+        // the order events reached the server and are only ever compared for equality
+        private Object lastId;
+
+        private Tailer(Object lastId) {
+            this.lastId = lastId;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                DBCursor cursor = null;
+                try {
+                    // A tailable cursor on a capped collection stays open waiting for new documents,
+                    // but it will die if the collection is empty, so it gets reopened. Capped collections
+                    // return documents in the order the server wrote them, so each reopened cursor skips
+                    // forward past the last event seen -- unless that event has already been overwritten,
+                    // in which case everything left is replayed, since evicting twice is harmless
+                    boolean caughtUp = lastId == null || collection.findOne(new BasicDBObject("_id", lastId)) == null;
+                    cursor = collection.find()
+                            .sort(new BasicDBObject("$natural", 1))
+                            .addOption(Bytes.QUERYOPTION_TAILABLE)
+                            .addOption(Bytes.QUERYOPTION_AWAITDATA);
+
+                    while (running && cursor.hasNext()) {
+                        DBObject event = cursor.next();
+                        Object id = event.get("_id");
+                        if (!caughtUp) {
+                            caughtUp = id != null && id.equals(lastId);
+                            continue;
+                        }
+                        lastId = id;
+                        receive(event);
+                    }
+                } catch (MongoException e) {
+                    LOG.warn("Cache invalidation cursor failed, will reopen", e);
+                } catch (RuntimeException e) {
+                    LOG.error("Unexpected error processing cache invalidation", e);
+                } finally {
+                    if (cursor != null)
+                        cursor.close();
+                }
+
+                if (running) {
+                    try {
+                        Thread.sleep(retryInterval);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -33,8 +33,10 @@ import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableMBeanExport;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.env.Environment;
+import org.springframework.jmx.support.RegistrationPolicy;
 import org.springframework.ldap.authentication.DefaultValuesAuthenticationSourceDecorator;
 import org.springframework.ldap.core.AuthenticationSource;
 import org.springframework.ldap.core.support.DirContextAuthenticationStrategy;
@@ -80,6 +82,7 @@ import java.util.*;
  * @author James Renfro
  */
 @Configuration
+@EnableMBeanExport(registration = RegistrationPolicy.IGNORE_EXISTING)
 @Import({PropertiesConfiguration.class, CacheConfiguration.class, IdentityConfiguration.class, WebSecurityConfiguration.class, ProviderConfiguration.class})
 public class ApplicationConfiguration {
 
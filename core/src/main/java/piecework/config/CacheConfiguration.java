@@ -15,12 +15,14 @@
  */
 package piecework.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import piecework.cache.GuavaCacheManager;
 import piecework.service.CacheService;
 
 /**
@@ -30,9 +32,12 @@ import piecework.service.CacheService;
 @EnableCaching(proxyTargetClass=true)
 public class CacheConfiguration {
 
+    @Autowired
+    Environment environment;
+
     @Bean
     public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager();
+        return new GuavaCacheManager(environment);
     }
 
     @Bean
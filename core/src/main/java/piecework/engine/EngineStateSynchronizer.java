@@ -27,16 +27,13 @@ import piecework.persistence.ProcessInstanceRepository;
 import piecework.service.ProcessService;
 import piecework.service.TaskService;
 import piecework.task.TaskFactory;
-import piecework.service.NotificationService;
+import piecework.notification.NotificationOutbox;
+import piecework.notification.NotificationScopeFactory;
 import piecework.Versions;
-import piecework.common.ViewContext;
 
 import java.util.Map;
-import java.util.HashMap;
 import java.util.Collection;
-import java.util.List;
 import java.util.ArrayList;
-import java.util.Set;
 
 /**
  * @author James Renfro
@@ -65,7 +62,7 @@ public class EngineStateSynchronizer {
     Versions versions;
 
     @Autowired
-    NotificationService notificationService;
+    NotificationOutbox notificationOutbox;
 
     public void onProcessInstanceEvent(StateChangeType type, String processInstanceId, EngineContext context) {
         ProcessInstance instance = null;
@@ -155,64 +152,6 @@ public class EngineStateSynchronizer {
         }
     }
 
-    // scope is a key-value pairs used for template substitution
-    private Map<String, Object> createScope(StateChangeType type, Process process, ProcessInstance instance, Task task) {
-        // set up scope
-        Map<String, Object> scope = new HashMap<String, Object>();
-        scope.put("PIECEWORK_PROCESS_INSTANCE_LABEL", instance.getProcessInstanceLabel());
-        scope.put("TASK_ID", task.getTaskInstanceId());
-        scope.put("TASK_KEY", task.getTaskDefinitionKey());
-        scope.put("TASK_LABEL", task.getTaskLabel());
-
-        // task URL
-        ViewContext viewContext = versions.getVersion1();
-        String taskUrl = viewContext.getApplicationUri(ProcessInstance.Constants.ROOT_ELEMENT_NAME, task.getProcessDefinitionKey(), task.getTaskInstanceId());
-        scope.put("TASK_URL", taskUrl);
-
-        // add instance data into scope
-        Map<String, List<Value>> data = instance.getData();
-        if (data != null && !data.isEmpty()) {
-            for (Map.Entry<String, List<Value>> entry : data.entrySet()) {
-                String key = entry.getKey();
-                List<Value> values = entry.getValue();
-                if (values != null && !values.isEmpty() ) {
-                    if ( values.size() == 1 ) {
-                        scope.put(key, values.get(0));  // flattern it
-                    } else {
-                        scope.put(key, values);
-                    }
-                }   
-            }   
-        }   
-
-
-        // put assignee IDs into scope
-        String assigneeId = task.getAssigneeId();
-        if ( assigneeId == null || assigneeId.isEmpty() ) {
-            Set<String> strs = task.getCandidateAssigneeIds();
-          
-            if ( strs != null && ! strs.isEmpty() ) {
-                StringBuilder str = new StringBuilder();
-                for (String s : strs ) {
-                    if ( str.length() > 0 ) {
-                        str.append(",");
-                    }
-                    str.append(s);
-                }
-
-                assigneeId = str.toString();
-            }
-        } 
-
-        if ( assigneeId == null || assigneeId.isEmpty() ) {
-            return null; // we don't send notifications if there is no assignee
-        } else {
-            scope.put("ASSIGNEE", assigneeId);
-        }
-
-        return scope;
-    }
-
     private void doTaskNotification(StateChangeType type, Process process, ProcessInstance instance, Task task, EngineContext engineContext) {
 
         // sanity check
@@ -243,14 +182,13 @@ public class EngineStateSynchronizer {
             return;
         }
         
-        Map<String, Object> scope = createScope(type, process, instance, task);
-
-        if ( scope == null || scope.isEmpty() ) {
+        // we don't send notifications if there is no assignee
+        if ( NotificationScopeFactory.assignee(task) == null ) {
             return;
         }
-        
-        // send out notifications
-        notificationService.send(notifications, scope, type);
+
+        // queue notifications to be sent outside of the engine transaction
+        notificationOutbox.enqueue(notifications, instance, task, type);
     }
 
 }
@@ -34,6 +34,7 @@ import piecework.process.ProcessInstanceSearchCriteria;
 import piecework.security.concrete.PassthroughSanitizer;
 import piecework.task.TaskCriteria;
 import piecework.task.TaskResults;
+import piecework.util.KeywordTokenizer;
 import piecework.validation.Validation;
 
 /**
@@ -138,14 +139,26 @@ public class ProcessEngineConcreteFacade implements ProcessEngineFacade {
         return null;
     }
 
+    /*
+     * Each engine pages its own tasks, which is only the right page when a single engine answers
+     * and every task it returns is kept. With a keyword, which is matched against the instances
+     * afterwards, or with more than one engine, the engines are asked for every matching task
+     * instead, and the page and total are worked out here from what's left
+     */
     @Override
     public TaskResults findTasks(TaskCriteria ... criterias) throws ProcessEngineException {
         String keyword = null;
         TaskResults.Builder builder = null;
         Set<String> allowedProcessDefinitionKeys = new HashSet<String>();
         Set<String> engineProcessInstanceIds = new HashSet<String>();
-
-        if (criterias != null && criterias.length > 0) {
+        TaskCriteria first = criterias != null && criterias.length > 0 ? criterias[0] : null;
+        List<String> terms = Collections.emptyList();
+        boolean isPagedHere = false;
+
+        if (first != null) {
+            // Collect the criteria for each engine first, so every engine is asked only once and
+            // can merge all of them into a single query
+            Map<String, List<TaskCriteria>> engineCriteriaMap = new LinkedHashMap<String, List<TaskCriteria>>();
             for (TaskCriteria criteria : criterias) {
                 if (StringUtils.isNotEmpty(criteria.getKeyword()))
                     keyword = criteria.getKeyword();
@@ -158,23 +171,44 @@ public class ProcessEngineConcreteFacade implements ProcessEngineFacade {
                         if (deployment.getEngine() == null || engineSet.contains(deployment.getEngine()))
                             continue;
                         engineSet.add(deployment.getEngine());
-                        ProcessEngineProxy proxy = registry.retrieve(ProcessEngineProxy.class, deployment.getEngine());
-
-                        TaskResults localResults = proxy.findTasks(criteria);
-                        if (localResults == null)
-                            continue;
 
-                        engineProcessInstanceIds.addAll(localResults.getEngineProcessInstanceIds());
-
-                        if (builder == null)
-                            builder = new TaskResults.Builder(localResults);
-                        else {
-                            builder.tasks(localResults.getTasks());
-                            builder.addToTotal(localResults.getTotal());
+                        List<TaskCriteria> engineCriterias = engineCriteriaMap.get(deployment.getEngine());
+                        if (engineCriterias == null) {
+                            engineCriterias = new ArrayList<TaskCriteria>();
+                            engineCriteriaMap.put(deployment.getEngine(), engineCriterias);
                         }
+                        engineCriterias.add(criteria);
                     }
                 }
             }
+
+            // Search text with no usable terms (only punctuation, say) doesn't filter anything, same as for instance searches
+            if (StringUtils.isNotEmpty(keyword))
+                terms = KeywordTokenizer.terms(keyword);
+            isPagedHere = !terms.isEmpty() || engineCriteriaMap.size() > 1;
+
+            for (Map.Entry<String, List<TaskCriteria>> entry : engineCriteriaMap.entrySet()) {
+                ProcessEngineProxy proxy = registry.retrieve(ProcessEngineProxy.class, entry.getKey());
+                List<TaskCriteria> engineCriterias = entry.getValue();
+                TaskCriteria[] engineCriteriaArray = new TaskCriteria[engineCriterias.size()];
+                for (int i = 0; i < engineCriteriaArray.length; i++) {
+                    TaskCriteria criteria = engineCriterias.get(i);
+                    engineCriteriaArray[i] = isPagedHere ? new TaskCriteria.Builder(criteria).firstResult(null).maxResults(null).build() : criteria;
+                }
+
+                TaskResults localResults = proxy.findTasks(engineCriteriaArray);
+                if (localResults == null)
+                    continue;
+
+                engineProcessInstanceIds.addAll(localResults.getEngineProcessInstanceIds());
+
+                if (builder == null)
+                    builder = new TaskResults.Builder(localResults);
+                else {
+                    builder.tasks(localResults.getTasks());
+                    builder.addToTotal(localResults.getTotal());
+                }
+            }
         } else {
             builder = new TaskResults.Builder();
         }
@@ -185,17 +219,17 @@ public class ProcessEngineConcreteFacade implements ProcessEngineFacade {
 
         TaskResults.Builder resultsBuilder = new TaskResults.Builder();
 
-        List<Task> taskInstances = builder != null ? builder.build().getTasks() : null;
+        TaskResults engineResults = builder != null ? builder.build() : null;
+        List<Task> taskInstances = engineResults != null ? engineResults.getTasks() : null;
         List<Task> tasks;
-        int count = 0;
 
         if (taskInstances != null && !taskInstances.isEmpty()) {
             tasks = new ArrayList<Task>(taskInstances.size());
 
             List<ProcessInstance> processInstances;
 
-            if (StringUtils.isNotEmpty(keyword))
-                processInstances = processInstanceRepository.findByProcessDefinitionKeyInAndEngineProcessInstanceIdInAndKeyword(allowedProcessDefinitionKeys, engineProcessInstanceIds, keyword);
+            if (!terms.isEmpty())
+                processInstances = processInstanceRepository.findByProcessDefinitionKeyInAndEngineProcessInstanceIdInAndKeywords(allowedProcessDefinitionKeys, engineProcessInstanceIds, terms);
             else
                 processInstances = processInstanceRepository.findByProcessDefinitionKeyInAndEngineProcessInstanceIdIn(allowedProcessDefinitionKeys, engineProcessInstanceIds);
 
@@ -222,7 +256,6 @@ public class ProcessEngineConcreteFacade implements ProcessEngineFacade {
                             .processInstanceAlias(instance.getAlias())
                             .processInstanceLabel(instance.getProcessInstanceLabel())
                             .build());
-                    count++;
                 }
             }
         } else {
@@ -233,10 +266,22 @@ public class ProcessEngineConcreteFacade implements ProcessEngineFacade {
             LOG.debug("Searching for process instances took " + (System.currentTimeMillis() - time) + " ms");
         }
 
-        resultsBuilder.firstResult(1);
-        resultsBuilder.maxResults(count);
-        resultsBuilder.total(count);
-        resultsBuilder.tasks(tasks);
+        if (isPagedHere) {
+            int firstResult = first.getFirstResult() != null ? Math.max(first.getFirstResult().intValue(), 0) : 0;
+            int maxResults = first.getMaxResults() != null && first.getMaxResults().intValue() > 0 ? first.getMaxResults().intValue() : tasks.size();
+            int fromIndex = Math.min(firstResult, tasks.size());
+            int toIndex = (int) Math.min((long) fromIndex + maxResults, tasks.size());
+            resultsBuilder.firstResult(firstResult);
+            resultsBuilder.maxResults(maxResults);
+            resultsBuilder.total(tasks.size());
+            resultsBuilder.tasks(tasks.subList(fromIndex, toIndex));
+        } else {
+            // The engine has already paged and counted, and filtering can only drop tasks whose instance is gone
+            resultsBuilder.firstResult(engineResults != null ? engineResults.getFirstResult() : 0);
+            resultsBuilder.maxResults(engineResults != null ? engineResults.getMaxResults() : 0);
+            resultsBuilder.total(engineResults != null ? engineResults.getTotal() - (taskInstances.size() - tasks.size()) : 0);
+            resultsBuilder.tasks(tasks);
+        }
 
         return resultsBuilder.build();
     }
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.enumeration;
+
+/**
+ * LRU evicts the least recently used entries once a cache reaches its maximum size,
+ * SOFT does the same but also lets the garbage collector reclaim values under memory
+ * pressure, and NONE leaves the cache unbounded (expiration still applies).
+ *
+ * @author James Renfro
+ */
+public enum CacheEvictionPolicy {
+    LRU, SOFT, NONE
+}
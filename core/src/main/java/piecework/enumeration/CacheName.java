@@ -19,5 +19,5 @@ package piecework.enumeration;
  * @author James Renfro
  */
 public enum CacheName {
-    GROUP, PROCESS, PROCESS_BASIC, PROCESS_DEPLOYMENT, SCRIPT, STYLESHEET, MULTI_USER, IDENTITY
+    AUTHORIZATION, GROUP, PROCESS, PROCESS_BASIC, PROCESS_DEPLOYMENT, SCRIPT, STYLESHEET, MULTI_USER, IDENTITY, MISSING_IDENTITY, NOTIFICATION_TEMPLATE, SUBMISSION_TEMPLATE
 }
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.enumeration;
+
+/**
+ * PREFIX looks keywords up as exact matches against the terms and prefixes stored in each
+ * instance's keywords array, which works against any version of Mongo. TEXT uses a Mongo
+ * text index instead (Mongo 2.6 or later) and orders results by relevance whenever the
+ * search doesn't ask for some other ordering.
+ *
+ * @author James Renfro
+ */
+public enum KeywordSearchMode {
+    PREFIX, TEXT
+}
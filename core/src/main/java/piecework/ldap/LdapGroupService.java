@@ -31,6 +31,8 @@ import piecework.service.CacheService;
 import piecework.service.IdentityService;
 import piecework.service.GroupService;
 
+import java.util.*;
+
 
 /**
  * @author Jiefeng Shen
@@ -66,18 +68,41 @@ public class LdapGroupService implements GroupService {
      * @return         a Group object if found, null otherwise.
      */
     public Group getGroupById(String groupId) {
-        if (LOG.isDebugEnabled())
-            LOG.debug("Looking in cache for group by groupId " + groupId);
-
         // sanity check
         if ( groupId == null || groupId.isEmpty() ) {
             return null;
         }
 
+        GroupEntry entry = getGroupEntry(groupId);
+        if ( entry == null ) {
+            return null;
+        }
+
+        // member details are cached by the identity service, not along with the group
+        Map<String, User> users = findMembers(entry.memberIds);
+        Group.Builder builder = new Group.Builder(entry.group);
+        for ( String userId : entry.memberIds ) {
+            User user = users.get(userId);
+            if ( user != null ) {
+                builder.member(user);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * returns the group attributes and the ids of its members, from the cache if possible.
+     * @param  groupId an Id or a name that unqiuely identifies a ldap group.
+     * @return         the group without member details, or null if not found.
+     */
+    private GroupEntry getGroupEntry(String groupId) {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Looking in cache for group by groupId " + groupId);
+
         Cache.ValueWrapper wrapper = cacheService.get(CacheName.GROUP, groupId);
 
         if (wrapper != null)
-            return (Group) wrapper.get();
+            return (GroupEntry) wrapper.get();
 
         if (LOG.isDebugEnabled())
             LOG.debug("Retrieving group from ldap server by groupId " + groupId);
@@ -105,23 +130,51 @@ public class LdapGroupService implements GroupService {
 
             String prefix = ldapSettings.getLdapGroupUseridPrefix();
             prefix = prefix == null ? "" : prefix; // set prefix to "" for easier use later.
-            for ( String m : members ) {
-                if ( prefix == null || prefix.isEmpty() || m.startsWith(prefix) ) {
-                    String userId = m.substring(prefix.length());
-                    User user = identityService.getUser(userId);
-                    if ( user != null ) {
-                        builder.member(user);
+            List<String> memberIds = new ArrayList<String>();
+            if ( members != null ) {
+                for ( String m : members ) {
+                    if ( prefix.isEmpty() || m.startsWith(prefix) ) {
+                        memberIds.add(m.substring(prefix.length()));
                     }
                 }
             }
-    
-            Group group = builder.build();
-            cacheService.put(CacheName.GROUP, groupId, group);
-            return group;
+
+            GroupEntry entry = new GroupEntry(builder.build(), memberIds);
+            cacheService.put(CacheName.GROUP, groupId, entry);
+            return entry;
         } catch (UsernameNotFoundException e) {
             // log an error message and continue
             LOG.warn("group " + groupId + " not found");
         }   
         return null;
     }
+
+    /**
+     * looks up all group members with a single call to the identity service, which skips
+     * cached and known-missing users and chunks the rest into bulk ldap queries.
+     * @param  memberIds  the ids of the group members
+     * @return            a map of users by id
+     */
+    private Map<String, User> findMembers(List<String> memberIds) {
+        if ( memberIds.isEmpty() ) {
+            return new HashMap<String, User>();
+        }
+
+        Map<String, User> users = identityService.findUsers(new LinkedHashSet<String>(memberIds));
+        return users != null ? users : new HashMap<String, User>();
+    }
+
+    /**
+     * what's kept in the group cache -- the group attributes and the ids of its members,
+     * so member details can expire and be refreshed independently of the group.
+     */
+    private static final class GroupEntry {
+        private final Group group;
+        private final List<String> memberIds;
+
+        private GroupEntry(Group group, List<String> memberIds) {
+            this.group = group;
+            this.memberIds = Collections.unmodifiableList(memberIds);
+        }
+    }
 }
@@ -37,8 +37,11 @@ import piecework.model.User;
 import piecework.service.CacheService;
 import piecework.service.IdentityService;
 
+import javax.annotation.PreDestroy;
 import javax.naming.directory.SearchControls;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author James Renfro
@@ -55,6 +58,7 @@ public class LdapIdentityService implements IdentityService {
     private final LdapAuthoritiesPopulator authoritiesPopulator;
     private final CustomLdapUserDetailsMapper userDetailsMapper;
     private final UserDetailsService userDetailsService;
+    private final ExecutorService executor;
 
 //    public LdapIdentityService() {
 //        this.personLdapContextSource = null;
@@ -75,31 +79,108 @@ public class LdapIdentityService implements IdentityService {
         this.userSearch = userSearch;
         this.authoritiesPopulator = authoritiesPopulator;
         this.ldapSettings = ldapSettings;
+        this.executor = executor(ldapSettings.getLdapBatchParallelism());
     }
 
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    /*
+     * Users already in the identity cache, or already known not to exist, are never sent to the
+     * ldap server. The rest are looked up in chunks of ldap.batch.size ids, one OR-filter query per
+     * chunk, and the chunks are run in parallel when there's more than one.
+     */
     @Override
     public Map<String, User> findUsers(Set<String> ids) {
         long start = 0l;
         if (LOG.isDebugEnabled())
             start = System.currentTimeMillis();
         Map<String, User> map = new HashMap<String, User>();
-        if (ids != null && !ids.isEmpty()) {
-            String internalId = ldapSettings.getLdapPersonAttributeIdInternal();
-            OrFilter filter = new OrFilter();
-            for (String id : ids) {
-                filter.or(new EqualsFilter(internalId, id));
+        if (ids == null || ids.isEmpty())
+            return map;
+
+        List<String> missing = new ArrayList<String>();
+        for (String id : ids) {
+            if (id == null)
+                continue;
+            Cache.ValueWrapper wrapper = cacheService.get(CacheName.IDENTITY, id);
+            if (wrapper != null && wrapper.get() != null) {
+                map.put(id, new User.Builder((UserDetails) wrapper.get()).build());
+                continue;
+            }
+            if (cacheService.get(CacheName.MISSING_IDENTITY, id) != null)
+                continue;
+            missing.add(id);
+        }
+
+        if (!missing.isEmpty()) {
+            int batchSize = ldapSettings.getLdapBatchSize() > 0 ? ldapSettings.getLdapBatchSize() : missing.size();
+            List<List<String>> chunks = new ArrayList<List<String>>();
+            for (int i=0;i<missing.size();i+=batchSize) {
+                chunks.add(missing.subList(i, Math.min(i + batchSize, missing.size())));
             }
-            List<User> users = findMany(filter, -1);
-            if (users != null) {
-                for (User user : users) {
-                    if (user != null)
-                        map.put(user.getUserId(), user);
+
+            if (chunks.size() == 1 || executor == null) {
+                for (List<String> chunk : chunks) {
+                    map.putAll(findChunk(chunk));
+                }
+            } else {
+                List<Future<Map<String, User>>> futures = new ArrayList<Future<Map<String, User>>>(chunks.size());
+                for (final List<String> chunk : chunks) {
+                    futures.add(executor.submit(new Callable<Map<String, User>>() {
+                        @Override
+                        public Map<String, User> call() throws Exception {
+                            return findChunk(chunk);
+                        }
+                    }));
+                }
+                for (Future<Map<String, User>> future : futures) {
+                    try {
+                        map.putAll(future.get());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        LOG.warn("Interrupted while retrieving users", e);
+                        break;
+                    } catch (ExecutionException e) {
+                        LOG.error("Unable to retrieve users", e.getCause());
+                    }
                 }
             }
         }
 
         if (LOG.isDebugEnabled())
-            LOG.debug("Retrieving users for " + ids.size() + " took " + (System.currentTimeMillis() - start) + " ms");
+            LOG.debug("Retrieving users for " + ids.size() + " ids, " + missing.size() + " not cached, took " + (System.currentTimeMillis() - start) + " ms");
+        return map;
+    }
+
+    /*
+     * Looks up a single chunk of ids, caching each user that's found by id, and remembering the
+     * ones that aren't found in a cache of their own so they're not looked for again until the
+     * cache entry expires
+     */
+    private Map<String, User> findChunk(List<String> ids) {
+        String internalId = ldapSettings.getLdapPersonAttributeIdInternal();
+        OrFilter filter = new OrFilter();
+        for (String id : ids) {
+            filter.or(new EqualsFilter(internalId, id));
+        }
+
+        Map<String, User> map = new HashMap<String, User>();
+        List<User> users = search(filter, -1);
+        if (users == null)
+            return map;
+
+        for (User user : users) {
+            if (user != null)
+                map.put(user.getUserId(), user);
+        }
+        for (String id : ids) {
+            if (!map.containsKey(id))
+                cacheService.put(CacheName.MISSING_IDENTITY, id, Boolean.TRUE);
+        }
         return map;
     }
 
@@ -127,12 +208,36 @@ public class LdapIdentityService implements IdentityService {
         }
     }
 
+    private static ExecutorService executor(int parallelism) {
+        if (parallelism <= 1)
+            return null;
+
+        return Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ldap-identity-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
     private List<User> findMany(Filter filter, long countLimit) {
         String encoded = filter.encode();
         Cache.ValueWrapper wrapper = cacheService.get(CacheName.MULTI_USER, encoded);
         if (wrapper != null)
             return (List<User>) wrapper.get();
 
+        List<User> users = search(filter, countLimit);
+        if (users != null)
+            cacheService.put(CacheName.MULTI_USER, encoded, users);
+        return users;
+    }
+
+    List<User> search(Filter filter, long countLimit) {
+        String encoded = filter.encode();
         String ldapPersonSearchBase = ldapSettings.getLdapPersonSearchBase();
         SpringSecurityLdapTemplate template = new SpringSecurityLdapTemplate(personLdapContextSource);
 
@@ -153,7 +258,6 @@ public class LdapIdentityService implements IdentityService {
                     cacheService.put(CacheName.IDENTITY, user.getUserId(), identityDetails);
                 }
             }
-            cacheService.put(CacheName.MULTI_USER, encoded, users);
             return users;
         } catch (SizeLimitExceededException e) {
             return null;
@@ -51,6 +51,8 @@ public class LdapSettings {
     private final String ldapPersonSearchFilter;
     private final String ldapDefaultUser;
     private final char[] ldapDefaultPassword;
+    private final int ldapBatchSize;
+    private final int ldapBatchParallelism;
     private final SearchControls searchControls;
 
     public LdapSettings(Environment environment) {
@@ -76,6 +78,8 @@ public class LdapSettings {
         this.ldapGroupBase = environment.getProperty("ldap.group.base");
         this.ldapDefaultUser = environment.getProperty("ldap.authentication.user");
         this.ldapDefaultPassword = environment.getProperty("ldap.authentication.password") != null ? environment.getProperty("ldap.authentication.password").toCharArray() : null;
+        this.ldapBatchSize = environment.getProperty("ldap.batch.size", Integer.class, Integer.valueOf(100));
+        this.ldapBatchParallelism = environment.getProperty("ldap.batch.parallelism", Integer.class, Integer.valueOf(4));
         this.searchControls = new SearchControls();
         this.searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
         this.searchControls.setTimeLimit(10000);
@@ -171,6 +175,14 @@ public class LdapSettings {
         return ldapDefaultPassword;
     }
 
+    public int getLdapBatchSize() {
+        return ldapBatchSize;
+    }
+
+    public int getLdapBatchParallelism() {
+        return ldapBatchParallelism;
+    }
+
     public SearchControls getSearchControls() {
         return searchControls;
     }
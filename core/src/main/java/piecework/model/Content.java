@@ -42,6 +42,7 @@ public class Content implements Serializable, Streamable {
     private final InputStream inputStream;
     private final Resource resource;
     private final String md5;
+    private final String sha256;
     private final Date lastModified;
     private final Long length;
 
@@ -57,6 +58,7 @@ public class Content implements Serializable, Streamable {
         this.inputStream = builder.inputStream;
         this.resource = builder.resource;
         this.md5 = builder.md5;
+        this.sha256 = builder.sha256;
         this.lastModified = builder.lastModified;
         this.length = builder.length;
     }
@@ -103,6 +105,10 @@ public class Content implements Serializable, Streamable {
         return md5;
     }
 
+    public String getSha256() {
+        return sha256;
+    }
+
     public Date getLastModified() {
         return lastModified;
     }
@@ -120,6 +126,7 @@ public class Content implements Serializable, Streamable {
         private InputStream inputStream;
         private Resource resource;
         private String md5;
+        private String sha256;
         private Date lastModified;
         private Long length;
 
@@ -135,6 +142,7 @@ public class Content implements Serializable, Streamable {
             this.inputStream = content.inputStream;
             this.resource = content.resource;
             this.md5 = content.md5;
+            this.sha256 = content.sha256;
             this.lastModified = content.lastModified;
             this.length = content.length;
         }
@@ -178,6 +186,11 @@ public class Content implements Serializable, Streamable {
             return this;
         }
 
+        public Builder sha256(String sha256) {
+            this.sha256 = sha256;
+            return this;
+        }
+
         public Builder lastModified(Date lastModified) {
             this.lastModified = lastModified;
             return this;
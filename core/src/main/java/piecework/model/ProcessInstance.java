@@ -32,6 +32,7 @@ import piecework.enumeration.OperationType;
 import piecework.model.bind.FormNameMessageMapAdapter;
 import piecework.model.bind.FormNameValueEntryMapAdapter;
 import piecework.common.ViewContext;
+import piecework.util.KeywordTokenizer;
 import piecework.util.ManyMap;
 
 /**
@@ -111,6 +112,11 @@ public class ProcessInstance implements Serializable {
     @JsonIgnore
     private final Set<String> keywords;
 
+    // Which version of the tokenizer produced the keywords, so older instances can be found and re-tokenized
+    @XmlTransient
+    @JsonIgnore
+    private final Integer keywordsVersion;
+
     @XmlTransient
     @JsonIgnore
     private final List<Operation> operations;
@@ -119,6 +125,11 @@ public class ProcessInstance implements Serializable {
     @JsonIgnore
     private final Map<String, Task> tasks;
 
+    // The keys of the task map, stored separately since map keys can't be indexed
+    @XmlTransient
+    @JsonIgnore
+    private final Set<String> taskIds;
+
     @XmlTransient
     @JsonIgnore
     private final List<String> submissionIds;
@@ -137,10 +148,15 @@ public class ProcessInstance implements Serializable {
     private final boolean isDeleted;
 
     private ProcessInstance() {
-        this(new ProcessInstance.Builder(), new ViewContext());
+        // Left empty when read from the database, so that instances stored without a version show up as such
+        this(new ProcessInstance.Builder(), new ViewContext(), null);
     }
 
     private ProcessInstance(Builder builder, ViewContext context) {
+        this(builder, context, Integer.valueOf(KeywordTokenizer.VERSION));
+    }
+
+    private ProcessInstance(Builder builder, ViewContext context, Integer keywordsVersion) {
         this.processInstanceId = builder.processInstanceId;
         this.engineProcessInstanceId = builder.engineProcessInstanceId;
         this.deploymentId = builder.deploymentId;
@@ -154,7 +170,9 @@ public class ProcessInstance implements Serializable {
         this.previousApplicationStatus = builder.previousApplicationStatus;
         this.attachmentIds = Collections.unmodifiableSet(builder.attachmentIds);
         this.keywords = builder.keywords;
+        this.keywordsVersion = keywordsVersion;
         this.tasks = Collections.unmodifiableMap(builder.tasks);
+        this.taskIds = Collections.unmodifiableSet(new HashSet<String>(builder.tasks.keySet()));
         this.activityMap = builder.activityMap != null ? Collections.unmodifiableMap(builder.activityMap) : null;
 
         if (context != null) {
@@ -291,11 +309,21 @@ public class ProcessInstance implements Serializable {
         return tasks.get(id);
     }
 
+    @JsonIgnore
+    public Set<String> getTaskIds() {
+        return taskIds;
+    }
+
     @JsonIgnore
     public Set<String> getKeywords() {
         return keywords;
     }
 
+    @JsonIgnore
+    public Integer getKeywordsVersion() {
+        return keywordsVersion;
+    }
+
     @JsonIgnore
     public ManyMap<String, Attachment> getAttachmentMap() {
         ManyMap<String, Attachment> map = new ManyMap<String, Attachment>();
@@ -402,10 +430,19 @@ public class ProcessInstance implements Serializable {
             else
                 this.attachmentIds = new HashSet<String>();
 
-            if (instance.keywords != null && !instance.keywords.isEmpty())
-                this.keywords = new HashSet<String>(instance.keywords);
-            else
+            if (instance.keywords != null && !instance.keywords.isEmpty()) {
+                // Instances stored before keywords were tokenized hold whole lower-cased values
+                if (instance.keywordsVersion != null && instance.keywordsVersion.intValue() == KeywordTokenizer.VERSION) {
+                    this.keywords = new HashSet<String>(instance.keywords);
+                } else {
+                    this.keywords = new HashSet<String>();
+                    for (String keyword : instance.keywords) {
+                        KeywordTokenizer.tokenize(keyword, this.keywords);
+                    }
+                }
+            } else {
                 this.keywords = new HashSet<String>();
+            }
 
             if (instance.data != null && !instance.data.isEmpty())
 				this.data = new ManyMap<String, Value>(instance.data);
@@ -446,13 +483,13 @@ public class ProcessInstance implements Serializable {
             }
 
             if (StringUtils.isNotEmpty(this.processInstanceLabel))
-                this.keywords.add(this.processInstanceLabel.toLowerCase());
+                KeywordTokenizer.tokenize(this.processInstanceLabel, this.keywords);
             if (StringUtils.isNotEmpty(this.alias))
-                this.keywords.add(this.alias.toLowerCase());
+                KeywordTokenizer.tokenize(this.alias, this.keywords);
             if (StringUtils.isNotEmpty(this.engineProcessInstanceId))
-                this.keywords.add(this.engineProcessInstanceId);
+                KeywordTokenizer.tokenize(this.engineProcessInstanceId, this.keywords);
             if (StringUtils.isNotEmpty(this.alias))
-                this.keywords.add(this.alias.toLowerCase());
+                KeywordTokenizer.tokenize(this.alias, this.keywords);
         }
 
         public ProcessInstance build() {
@@ -466,14 +503,14 @@ public class ProcessInstance implements Serializable {
         public Builder processInstanceId(String processInstanceId) {
             this.processInstanceId = processInstanceId;
             if (StringUtils.isNotEmpty(this.processInstanceId))
-                this.keywords.add(this.processInstanceId);
+                KeywordTokenizer.tokenize(this.processInstanceId, this.keywords);
             return this;
         }
 
         public Builder engineProcessInstanceId(String engineProcessInstanceId) {
             this.engineProcessInstanceId = engineProcessInstanceId;
             if (StringUtils.isNotEmpty(this.engineProcessInstanceId))
-                this.keywords.add(this.engineProcessInstanceId);
+                KeywordTokenizer.tokenize(this.engineProcessInstanceId, this.keywords);
             return this;
         }
 
@@ -485,7 +522,7 @@ public class ProcessInstance implements Serializable {
         public Builder alias(String alias) {
             this.alias = alias;
             if (StringUtils.isNotEmpty(this.alias))
-                this.keywords.add(this.alias.toLowerCase());
+                KeywordTokenizer.tokenize(this.alias, this.keywords);
             return this;
         }
 
@@ -502,7 +539,7 @@ public class ProcessInstance implements Serializable {
         public Builder processInstanceLabel(String processInstanceLabel) {
             this.processInstanceLabel = processInstanceLabel;
             if (StringUtils.isNotEmpty(this.processInstanceLabel))
-                this.keywords.add(this.processInstanceLabel.toLowerCase());
+                KeywordTokenizer.tokenize(this.processInstanceLabel, this.keywords);
             return this;
         }
 
@@ -570,10 +607,10 @@ public class ProcessInstance implements Serializable {
                         if (value instanceof File) {
                             File file = File.class.cast(value);
                             if (StringUtils.isNotEmpty(file.getName()))
-                                this.keywords.add(file.getName().toLowerCase());
+                                KeywordTokenizer.tokenize(file.getName(), this.keywords);
                         } else {
                             if (StringUtils.isNotEmpty(value.getValue()))
-                                this.keywords.add(value.getValue().toLowerCase());
+                                KeywordTokenizer.tokenize(value.getValue(), this.keywords);
                         }
                     }
                 }
@@ -588,7 +625,7 @@ public class ProcessInstance implements Serializable {
                 for (String value : values) {
                     list.add(new Value(value));
                     if (StringUtils.isNotEmpty(value))
-                        this.keywords.add(value.toLowerCase());
+                        KeywordTokenizer.tokenize(value, this.keywords);
                 }
                 this.data.put(key, list);
             }
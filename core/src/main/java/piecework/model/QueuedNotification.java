@@ -0,0 +1,211 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+import piecework.enumeration.StateChangeType;
+
+import java.util.Date;
+
+/**
+ * A notification waiting in the outbox to be sent, along with the bookkeeping needed to
+ * retry it if delivery fails. Only the instance and task it's about are stored, never the
+ * scope it gets expanded with, since that holds instance data -- the scope is rebuilt from
+ * the instance when the notification is sent.
+ *
+ * @author James Renfro
+ */
+@Document(collection = QueuedNotification.Constants.ROOT_ELEMENT_NAME)
+@CompoundIndexes({
+    @CompoundIndex(name="outbox_status", def="{'status': 1, 'nextAttemptTime': 1}")
+})
+public class QueuedNotification {
+
+    @Id
+    private final String queuedNotificationId;
+
+    private final Notification notification;
+
+    private final String processDefinitionKey;
+
+    private final String processInstanceId;
+
+    private final String taskId;
+
+    private final StateChangeType type;
+
+    private final String status;
+
+    private final int attempts;
+
+    private final Date createdTime;
+
+    private final Date nextAttemptTime;
+
+    private final String lastError;
+
+    private QueuedNotification() {
+        this(new Builder());
+    }
+
+    private QueuedNotification(Builder builder) {
+        this.queuedNotificationId = builder.queuedNotificationId;
+        this.notification = builder.notification;
+        this.processDefinitionKey = builder.processDefinitionKey;
+        this.processInstanceId = builder.processInstanceId;
+        this.taskId = builder.taskId;
+        this.type = builder.type;
+        this.status = builder.status;
+        this.attempts = builder.attempts;
+        this.createdTime = builder.createdTime;
+        this.nextAttemptTime = builder.nextAttemptTime;
+        this.lastError = builder.lastError;
+    }
+
+    public String getQueuedNotificationId() {
+        return queuedNotificationId;
+    }
+
+    public Notification getNotification() {
+        return notification;
+    }
+
+    public String getProcessDefinitionKey() {
+        return processDefinitionKey;
+    }
+
+    public String getProcessInstanceId() {
+        return processInstanceId;
+    }
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public StateChangeType getType() {
+        return type;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public Date getCreatedTime() {
+        return createdTime;
+    }
+
+    public Date getNextAttemptTime() {
+        return nextAttemptTime;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public final static class Builder {
+
+        private String queuedNotificationId;
+        private Notification notification;
+        private String processDefinitionKey;
+        private String processInstanceId;
+        private String taskId;
+        private StateChangeType type;
+        private String status;
+        private int attempts;
+        private Date createdTime;
+        private Date nextAttemptTime;
+        private String lastError;
+
+        public Builder() {
+            super();
+            this.status = Constants.PENDING;
+        }
+
+        public QueuedNotification build() {
+            return new QueuedNotification(this);
+        }
+
+        public Builder queuedNotificationId(String queuedNotificationId) {
+            this.queuedNotificationId = queuedNotificationId;
+            return this;
+        }
+
+        public Builder notification(Notification notification) {
+            this.notification = notification;
+            return this;
+        }
+
+        public Builder processDefinitionKey(String processDefinitionKey) {
+            this.processDefinitionKey = processDefinitionKey;
+            return this;
+        }
+
+        public Builder processInstanceId(String processInstanceId) {
+            this.processInstanceId = processInstanceId;
+            return this;
+        }
+
+        public Builder taskId(String taskId) {
+            this.taskId = taskId;
+            return this;
+        }
+
+        public Builder type(StateChangeType type) {
+            this.type = type;
+            return this;
+        }
+
+        public Builder status(String status) {
+            this.status = status;
+            return this;
+        }
+
+        public Builder attempts(int attempts) {
+            this.attempts = attempts;
+            return this;
+        }
+
+        public Builder createdTime(Date createdTime) {
+            this.createdTime = createdTime;
+            return this;
+        }
+
+        public Builder nextAttemptTime(Date nextAttemptTime) {
+            this.nextAttemptTime = nextAttemptTime;
+            return this;
+        }
+
+        public Builder lastError(String lastError) {
+            this.lastError = lastError;
+            return this;
+        }
+    }
+
+    public static class Constants {
+        public static final String ROOT_ELEMENT_NAME = "notification.outbox";
+        public static final String PENDING = "pending";
+        public static final String SENDING = "sending";
+        public static final String FAILED = "failed";
+    }
+
+}
@@ -36,6 +36,9 @@ public class SearchResults implements Serializable {
     @XmlElement
 	private final Long total;
 
+    @XmlElement
+    private final String continuation;
+
     @XmlTransient
     @JsonIgnore
     private final Integer page;
@@ -90,6 +93,7 @@ public class SearchResults implements Serializable {
 		this.firstResult = builder.firstResult;
 		this.maxResults = builder.maxResults;
 		this.total = builder.total;
+        this.continuation = builder.continuation;
 		this.moreResults = builder.moreResults;
 		this.incomplete = builder.incomplete;
 		this.page = firstResult != null && maxResults != null && maxResults.intValue() > 0 ? firstResult.intValue() / maxResults.intValue() + 1 : 1;
@@ -110,6 +114,14 @@ public class SearchResults implements Serializable {
 		return total;
 	}
 
+    /*
+     * Opaque token that can be passed back as the continuation query parameter to retrieve
+     * the next page of results without skipping -- null when there are no more results
+     */
+    public String getContinuation() {
+        return continuation;
+    }
+
 	public Integer getPage() {
 		return page;
 	}
@@ -184,6 +196,7 @@ public class SearchResults implements Serializable {
 		private Integer firstResult;
 		private Integer maxResults;
 		private Long total;
+		private String continuation;
 		private Integer page;
 		private Boolean moreResults;
 		private Boolean incomplete;
@@ -288,6 +301,11 @@ public class SearchResults implements Serializable {
 			return this;
 		}
 		
+        public Builder continuation(String continuation) {
+            this.continuation = continuation;
+            return this;
+        }
+
 		public Builder page(Integer page) {
 			this.page = page;
 			return this;
@@ -47,6 +47,9 @@ public class Secret extends Value {
     @XmlTransient
     private final byte[] iv;
 
+    @XmlTransient
+    private final Integer length;
+
     private Secret() {
         this(new Builder());
     }
@@ -57,6 +60,7 @@ public class Secret extends Value {
         this.date = builder.date;
         this.ciphertext = builder.ciphertext;
         this.iv = builder.iv;
+        this.length = builder.length;
     }
 
     @JsonIgnore
@@ -84,12 +88,23 @@ public class Secret extends Value {
         return iv;
     }
 
+    /*
+     * Number of characters in the plaintext, recorded at encryption time so that
+     * masked values can be displayed without decrypting. Null for secrets stored
+     * before this was tracked.
+     */
+    @JsonIgnore
+    public Integer getLength() {
+        return length;
+    }
+
     public final static class Builder {
         private String id;
         private String name;
         private Date date;
         private byte[] ciphertext;
         private byte[] iv;
+        private Integer length;
 
         public Secret build() {
             return new Secret(this);
@@ -119,6 +134,11 @@ public class Secret extends Value {
             this.iv = iv;
             return this;
         }
+
+        public Builder length(Integer length) {
+            this.length = length;
+            return this;
+        }
     }
 
     public static class Constants {
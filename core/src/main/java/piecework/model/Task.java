@@ -21,6 +21,8 @@ import com.google.common.collect.ComparisonChain;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import piecework.Constants;
 import piecework.authorization.AccessAuthority;
@@ -38,6 +40,13 @@ import java.util.*;
 @XmlAccessorType(XmlAccessType.NONE)
 @XmlType(name = Task.Constants.TYPE_NAME)
 @JsonIgnoreProperties(ignoreUnknown = true)
+@Document(collection = Task.Constants.ROOT_ELEMENT_NAME)
+@CompoundIndexes({
+    @CompoundIndex(name = "task_assignee", def = "{ 'assigneeId': 1, 'taskStatus': 1, 'startTime': -1 }"),
+    @CompoundIndex(name = "task_candidate", def = "{ 'candidateAssigneeIds': 1, 'taskStatus': 1, 'startTime': -1 }"),
+    @CompoundIndex(name = "task_process", def = "{ 'processDefinitionKey': 1, 'taskStatus': 1, 'startTime': -1 }"),
+    @CompoundIndex(name = "task_instance", def = "{ 'processInstanceId': 1 }")
+})
 public class Task implements Serializable, Comparable<Task> {
 
     private static final long serialVersionUID = 8102389797252020510L;
@@ -21,11 +21,18 @@ import java.util.ArrayList;
 import java.util.Map;
 import java.io.StringReader;
 import java.io.StringWriter;
+import javax.annotation.PostConstruct;
+import java.util.Properties;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
 import org.apache.log4j.Logger;
 import org.apache.commons.mail.EmailException;
 import org.apache.commons.mail.SimpleEmail;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
 import org.springframework.stereotype.Service;
 import org.springframework.core.env.Environment;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -40,7 +47,9 @@ import piecework.service.IdentityService;
 import piecework.model.Group;
 import piecework.service.GroupService;
 import piecework.Constants;
+import piecework.enumeration.CacheName;
 import piecework.enumeration.StateChangeType;
+import piecework.service.CacheService;
 
 /**
  * send out email notifications
@@ -59,27 +68,72 @@ public class EmailNotificationService implements NotificationService {
     @Autowired
     GroupService groupService;	// get group members
 
+    @Autowired
+    CacheService cacheService;  // compiled templates, keyed by their source
+
+    private final MustacheFactory mustacheFactory = new DefaultMustacheFactory();
+
+    private String mailServerHost;
+    private int mailServerPort;
+    private String mailFromAddress;
+    private String mailFromLabel;
+    private Session mailSession;
+
+    /**
+     * read the mail server settings once, rather than on every notification, and set up
+     * the mail session they describe.
+     */
+    @PostConstruct
+    public void init() {
+        mailServerHost = environment.getProperty("mail.server.host");
+        mailServerPort = environment.getProperty("mail.server.port", Integer.class, 25);
+        mailFromAddress = environment.getProperty("mail.from.address");
+        mailFromLabel = environment.getProperty("mail.from.label");
+
+        Properties properties = new Properties();
+        if ( mailServerHost != null ) {
+            properties.setProperty("mail.smtp.host", mailServerHost);
+        }
+        properties.setProperty("mail.smtp.port", String.valueOf(mailServerPort));
+        mailSession = Session.getInstance(properties);
+    }
+
     /** 
      * expand any macros in notifications and send the notification to recipients.
      * @param  notification notification to send.
      * @param  scope      a map of key-value pairs to be used for macro expansion.
      */  
     public void send(Notification notification, Map<String, Object> scope, StateChangeType type) {
+        try {
+            MimeMessage message = prepare(notification, scope, type);
+            if ( message != null ) {
+                Transport.send(message);
+            }
+        } catch (EmailException e) {
+            LOG.error("Unable to build email for notification " + (notification != null ? notification.getNotificationId() : null), e);
+        } catch (MessagingException e) {
+            LOG.error("Unable to send email for notification " + (notification != null ? notification.getNotificationId() : null), e);
+        }
+    }
+
+    /**
+     * expand any macros in a notification and build the email message for it, without sending it,
+     * so that callers can send many messages over a single connection to the mail server.
+     * @param  notification notification to build a message for.
+     * @param  scope      a map of key-value pairs to be used for macro expansion.
+     * @return            the message, or null if the notification is not for this event or has no recipients
+     */
+    public MimeMessage prepare(Notification notification, Map<String, Object> scope, StateChangeType type) throws EmailException {
         // sanity check
         if ( notification == null ) {
-            return;
+            return null;
         }
 
         String event = notification.get(Notification.Constants.EVENT);
         if ( event != null && ! event.equals(type.name()) ) {
-            return;  // notfication not for this event/state change
+            return null;  // notfication not for this event/state change
         }
 
-        String mailServerHost = environment.getProperty("mail.server.host");
-        int mailServerPort = environment.getProperty("mail.server.port", Integer.class, 25);
-        String mailFromAddress = environment.getProperty("mail.from.address");
-        String mailFromLabel = environment.getProperty("mail.from.label");
-
         // get sender email
         String senderEmail = notification.getSenderEmail();
         if ( senderEmail == null || senderEmail.isEmpty() ) {
@@ -93,15 +147,10 @@ public class EmailNotificationService implements NotificationService {
         }
 
         // recipients
-        String recipientStr = notification.getRecipients();
-        MustacheFactory mf = new DefaultMustacheFactory();
-        StringWriter writer = new StringWriter();
-        Mustache mustache = mf.compile(new StringReader(recipientStr), "recipient");
-        mustache.execute(writer, scope);
-        recipientStr = writer.toString();
+        String recipientStr = render(notification.getRecipients(), "recipient", scope);
         List<User> recipients = getUsers(recipientStr);
         if ( recipients == null || recipients.isEmpty() ) {
-            return; // recipients are required
+            return null; // recipients are required
         }
 
         // bcc 
@@ -109,55 +158,81 @@ public class EmailNotificationService implements NotificationService {
         List<User> bcc = getUsers(bccStr);
 
         // get subject
-        String subject = notification.getSubject();
-        mf = new DefaultMustacheFactory();
-        writer = new StringWriter();
-        mustache = mf.compile(new StringReader(subject), "subject");
-        mustache.execute(writer, scope);
-        subject = writer.toString();
+        String subject = render(notification.getSubject(), "subject", scope);
 
         // get body
-        String body = notification.getText();
-        writer = new StringWriter();
-        mustache = mf.compile(new StringReader(body), "text");
-        mustache.execute(writer, scope);
-        body = writer.toString();
+        String body = render(notification.getText(), "text", scope);
 
-        try {
-            SimpleEmail email = new SimpleEmail();
-            email.setHostName(mailServerHost);
-            email.setSmtpPort(mailServerPort);
+        SimpleEmail email = new SimpleEmail();
+        email.setMailSession(mailSession);
+
+        for (User u : recipients) {
+            String emailAddr = u.getEmailAddress();
+            if ( emailAddr != null && ! emailAddr.isEmpty() ) {
+                email.addTo(emailAddr, u.getDisplayName());
+            }
+        }
+        List<InternetAddress> toList = email.getToAddresses();
+        if ( toList == null || toList.isEmpty() ) {
+            LOG.error("No email addresses were found for " + recipientStr + ". No emails were sent.");
+            return null; // no recipients
+        }
 
-            for (User u : recipients) {
+        if ( bcc != null && ! bcc.isEmpty() ) {
+            for (User u : bcc) {
                 String emailAddr = u.getEmailAddress();
                 if ( emailAddr != null && ! emailAddr.isEmpty() ) {
-                    email.addTo(emailAddr, u.getDisplayName());
+                    email.addBcc(emailAddr, u.getDisplayName());
                 }
             }
-            List<InternetAddress> toList = email.getToAddresses();
-            if ( toList == null || toList.isEmpty() ) {
-                LOG.error("No email addresses were found for " + recipientStr + ". No emails were sent.");
-                return; // no recipients
-            }
+        }
+        email.setFrom(senderEmail, senderName);
+        email.setSubject(subject);
+        email.setMsg(body);
+        email.buildMimeMessage();
 
-            if ( bcc != null && ! bcc.isEmpty() ) {
-                for (User u : bcc) {
-                    String emailAddr = u.getEmailAddress();
-                    if ( emailAddr != null && ! emailAddr.isEmpty() ) {
-                        email.addBcc(emailAddr, u.getDisplayName());
-                    }
-                }
-            }
-            email.setFrom(senderEmail, senderName);
-            email.setSubject(subject);
-            email.setMsg(body);
+        LOG.debug("Subject: " + email.getSubject());
+        LOG.debug(email.getMimeMessage());
+        return email.getMimeMessage();
+    }
 
-            LOG.debug("Subject: " + email.getSubject());
-            LOG.debug(email.getMimeMessage());
-            email.send();
-        } catch (EmailException e) {
-            LOG.error("Unable to send email with subject " + subject);
+    /**
+     * open a connection to the mail server that can be used to send many messages.
+     * The caller is responsible for closing it.
+     * @return  a connected transport
+     */
+    public Transport connect() throws MessagingException {
+        Transport transport = mailSession.getTransport("smtp");
+        transport.connect();
+        return transport;
+    }
+
+    /**
+     * expand the macros in a template. Compiled templates are cached by their source, so each
+     * template in a deployment is only compiled once, and a new deployment version that changes
+     * a template simply gets a new entry.
+     * @param  template  the template source
+     * @param  name      the name of the template, used in error messages
+     * @param  scope     a map of key-value pairs to be used for macro expansion.
+     * @return           the expanded template, or null if there is no template
+     */
+    public String render(String template, String name, Map<String, Object> scope) {
+        if ( template == null ) {
+            return null;
         }
+
+        Mustache mustache = null;
+        Cache.ValueWrapper wrapper = cacheService.get(CacheName.NOTIFICATION_TEMPLATE, template);
+        if ( wrapper != null ) {
+            mustache = Mustache.class.cast(wrapper.get());
+        } else {
+            mustache = mustacheFactory.compile(new StringReader(template), name);
+            cacheService.put(CacheName.NOTIFICATION_TEMPLATE, template, mustache);
+        }
+
+        StringWriter writer = new StringWriter();
+        mustache.execute(writer, scope);
+        return writer.toString();
     }
 
     /** 
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.notification;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import piecework.enumeration.StateChangeType;
+import piecework.model.Notification;
+import piecework.model.ProcessInstance;
+import piecework.model.QueuedNotification;
+import piecework.model.Task;
+import piecework.persistence.QueuedNotificationRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable outbox for email notifications. Task listeners only write the notifications, and
+ * the instance and task they're about, to Mongo, which keeps mail server delivery, and the
+ * identity and group lookups needed to expand recipients, out of the engine transaction. A
+ * small pool of workers then claims batches of notifications, rebuilds their scope from the
+ * instance, sends each batch over a single connection to the mail server, and reschedules
+ * any that fail with exponential backoff until they run out of attempts. Sent notifications
+ * are removed right away, and failed ones are kept for notification.outbox.failed.retention
+ * milliseconds after they were queued, so there's time to look into what went wrong.
+ *
+ * Since notifications are claimed through the database, workers on every node in a cluster
+ * can share the same outbox. Turned off with notification.outbox.enabled = false, in which
+ * case notifications are sent synchronously as before.
+ *
+ * @author James Renfro
+ */
+@Service
+public class NotificationOutbox {
+
+    private static final Logger LOG = Logger.getLogger(NotificationOutbox.class);
+    private static final long MAX_RETRY_INTERVAL = 60l * 60l * 1000l;
+    private static final long PURGE_INTERVAL = 60l * 60l * 1000l;
+
+    @Autowired
+    Environment environment;
+
+    @Autowired
+    EmailNotificationService notificationService;
+
+    @Autowired
+    NotificationScopeFactory scopeFactory;
+
+    @Autowired
+    QueuedNotificationRepository queuedNotificationRepository;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private boolean enabled;
+    private int batchSize;
+    private int maxAttempts;
+    private long retryInterval;
+    private long leaseInterval;
+    private long failedRetention;
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        this.enabled = environment.getProperty("notification.outbox.enabled", Boolean.class, Boolean.TRUE);
+        if (!enabled)
+            return;
+
+        int workers = environment.getProperty("notification.outbox.workers", Integer.class, Integer.valueOf(2));
+        long pollInterval = environment.getProperty("notification.outbox.poll.interval", Long.class, Long.valueOf(5000l));
+        this.batchSize = environment.getProperty("notification.outbox.batch.size", Integer.class, Integer.valueOf(25));
+        this.maxAttempts = environment.getProperty("notification.outbox.max.attempts", Integer.class, Integer.valueOf(8));
+        this.retryInterval = environment.getProperty("notification.outbox.retry.interval", Long.class, Long.valueOf(30000l));
+        this.leaseInterval = environment.getProperty("notification.outbox.lease.interval", Long.class, Long.valueOf(300000l));
+        this.failedRetention = environment.getProperty("notification.outbox.failed.retention", Long.class, Long.valueOf(7l * 24l * 60l * 60l * 1000l));
+
+        this.executor = Executors.newScheduledThreadPool(workers, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "notification-outbox-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        for (int i=0;i<workers;i++) {
+            executor.scheduleWithFixedDelay(new Worker(), pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+        }
+        executor.scheduleWithFixedDelay(new Purger(), 0, PURGE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    /*
+     * Called from the engine, so this should do as little as possible -- only notifications that
+     * apply to this event are stored, and a worker is woken up to send them right away
+     */
+    public void enqueue(Collection<Notification> notifications, ProcessInstance instance, Task task, StateChangeType type) {
+        if (notifications == null || notifications.isEmpty())
+            return;
+
+        if (!enabled) {
+            Map<String, Object> scope = scopeFactory.scope(instance, task);
+            if (scope != null)
+                notificationService.send(notifications, scope, type);
+            return;
+        }
+
+        Date now = new Date();
+        List<QueuedNotification> queuedNotifications = new ArrayList<QueuedNotification>(notifications.size());
+        for (Notification notification : notifications) {
+            if (notification == null)
+                continue;
+            String event = notification.get(Notification.Constants.EVENT);
+            if (event != null && !event.equals(type.name()))
+                continue;
+
+            queuedNotifications.add(new QueuedNotification.Builder()
+                    .notification(notification)
+                    .processDefinitionKey(instance.getProcessDefinitionKey())
+                    .processInstanceId(instance.getProcessInstanceId())
+                    .taskId(task.getTaskInstanceId())
+                    .type(type)
+                    .createdTime(now)
+                    .nextAttemptTime(now)
+                    .build());
+        }
+
+        if (queuedNotifications.isEmpty())
+            return;
+
+        queuedNotificationRepository.save(queuedNotifications);
+        executor.execute(new Worker());
+    }
+
+    /*
+     * Claims and sends batches until the outbox has nothing left that's due
+     */
+    int dispatch() {
+        int total = 0;
+        List<QueuedNotification> batch;
+        do {
+            Date leaseExpiration = new Date(System.currentTimeMillis() + leaseInterval);
+            batch = queuedNotificationRepository.claim(batchSize, leaseExpiration);
+            if (!batch.isEmpty())
+                send(batch);
+            total += batch.size();
+        } while (batch.size() == batchSize);
+        return total;
+    }
+
+    public NotificationOutboxStatistics getStatistics() {
+        long pending = queuedNotificationRepository.count(QueuedNotification.Constants.PENDING);
+        long sending = queuedNotificationRepository.count(QueuedNotification.Constants.SENDING);
+        long failedInOutbox = queuedNotificationRepository.count(QueuedNotification.Constants.FAILED);
+        return new NotificationOutboxStatistics(pending, sending, failedInOutbox, sent.get(), retried.get(), failed.get());
+    }
+
+    /*
+     * Removes failed notifications once they've been kept long enough
+     */
+    void purge() {
+        Date createdBefore = new Date(System.currentTimeMillis() - failedRetention);
+        queuedNotificationRepository.purge(QueuedNotification.Constants.FAILED, createdBefore);
+    }
+
+    private void send(List<QueuedNotification> batch) {
+        Transport transport = null;
+        MessagingException connectionError = null;
+        // Notifications about the same task share the same scope
+        Map<String, Map<String, Object>> scopes = new HashMap<String, Map<String, Object>>();
+        try {
+            for (QueuedNotification queuedNotification : batch) {
+                // Once the mail server can't be reached, don't keep trying for the rest of the batch
+                if (connectionError != null) {
+                    retry(queuedNotification, connectionError);
+                    continue;
+                }
+                try {
+                    String scopeKey = queuedNotification.getProcessInstanceId() + ":" + queuedNotification.getTaskId();
+                    if (!scopes.containsKey(scopeKey))
+                        scopes.put(scopeKey, scopeFactory.scope(queuedNotification.getProcessDefinitionKey(), queuedNotification.getProcessInstanceId(), queuedNotification.getTaskId()));
+                    Map<String, Object> scope = scopes.get(scopeKey);
+                    if (scope == null) {
+                        // The instance or task is gone, or nobody is assigned to it any more
+                        LOG.info("Dropping notification " + queuedNotification.getQueuedNotificationId() + " since there is nothing left to notify about");
+                        queuedNotificationRepository.delete(queuedNotification.getQueuedNotificationId());
+                        continue;
+                    }
+                    MimeMessage message = notificationService.prepare(queuedNotification.getNotification(), scope, queuedNotification.getType());
+                    if (message != null) {
+                        // Only connect once there's something to send
+                        if (transport == null || !transport.isConnected()) {
+                            close(transport);
+                            transport = null;
+                            try {
+                                transport = notificationService.connect();
+                            } catch (MessagingException e) {
+                                LOG.warn("Unable to connect to mail server", e);
+                                connectionError = e;
+                                retry(queuedNotification, e);
+                                continue;
+                            }
+                        }
+                        transport.sendMessage(message, message.getAllRecipients());
+                        sent.incrementAndGet();
+                    }
+                    queuedNotificationRepository.delete(queuedNotification.getQueuedNotificationId());
+                } catch (Exception e) {
+                    LOG.warn("Unable to send notification " + queuedNotification.getQueuedNotificationId(), e);
+                    retry(queuedNotification, e);
+                }
+            }
+        } finally {
+            close(transport);
+        }
+    }
+
+    private void retry(QueuedNotification queuedNotification, Exception e) {
+        int attempts = queuedNotification.getAttempts() + 1;
+        String error = e.getMessage();
+        if (attempts >= maxAttempts) {
+            LOG.error("Giving up on notification " + queuedNotification.getQueuedNotificationId() + " after " + attempts + " attempts");
+            failed.incrementAndGet();
+            queuedNotificationRepository.release(queuedNotification.getQueuedNotificationId(), QueuedNotification.Constants.FAILED, attempts, null, error);
+        } else {
+            retried.incrementAndGet();
+            Date nextAttemptTime = new Date(System.currentTimeMillis() + backoff(attempts));
+            queuedNotificationRepository.release(queuedNotification.getQueuedNotificationId(), QueuedNotification.Constants.PENDING, attempts, nextAttemptTime, error);
+        }
+    }
+
+    long backoff(int attempts) {
+        long interval = retryInterval;
+        for (int i=1;i<attempts && interval < MAX_RETRY_INTERVAL;i++) {
+            interval *= 2;
+        }
+        return Math.min(interval, MAX_RETRY_INTERVAL);
+    }
+
+    private static void close(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                LOG.warn("Unable to close connection to mail server", e);
+            }
+        }
+    }
+
+    private class Purger implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                purge();
+            } catch (Exception e) {
+                LOG.error("Unable to purge failed notifications from outbox", e);
+            }
+        }
+
+    }
+
+    private class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                int count = dispatch();
+                if (count > 0 && LOG.isDebugEnabled())
+                    LOG.debug("Dispatched " + count + " notifications from outbox");
+            } catch (Exception e) {
+                // Never let an exception escape, or the scheduled executor will stop running this worker
+                LOG.error("Unable to dispatch notifications from outbox", e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.notification;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+/**
+ * Publishes the queue depth and delivery counts of the notification outbox over JMX, as
+ * piecework:type=NotificationOutbox. Each read of a depth counts the outbox by status, so
+ * it reflects every node, while the delivery counts are only for this node.
+ *
+ * @author James Renfro
+ */
+@Service
+@ManagedResource(objectName = "piecework:type=NotificationOutbox", description = "Notification outbox queue depth and delivery counts")
+public class NotificationOutboxMonitor {
+
+    @Autowired
+    NotificationOutbox notificationOutbox;
+
+    @ManagedAttribute(description = "Notifications waiting to be sent or being sent")
+    public long getQueueDepth() {
+        return notificationOutbox.getStatistics().getQueueDepth();
+    }
+
+    @ManagedAttribute(description = "Notifications waiting to be sent")
+    public long getPending() {
+        return notificationOutbox.getStatistics().getPending();
+    }
+
+    @ManagedAttribute(description = "Notifications claimed by a worker")
+    public long getSending() {
+        return notificationOutbox.getStatistics().getSending();
+    }
+
+    @ManagedAttribute(description = "Notifications that ran out of attempts and are kept for review")
+    public long getFailedInOutbox() {
+        return notificationOutbox.getStatistics().getFailedInOutbox();
+    }
+
+    @ManagedAttribute(description = "Notifications sent by this node")
+    public long getSentCount() {
+        return notificationOutbox.getStatistics().getSentCount();
+    }
+
+    @ManagedAttribute(description = "Notifications rescheduled by this node after a failure")
+    public long getRetryCount() {
+        return notificationOutbox.getStatistics().getRetryCount();
+    }
+
+    @ManagedAttribute(description = "Notifications that ran out of attempts on this node")
+    public long getFailureCount() {
+        return notificationOutbox.getStatistics().getFailureCount();
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.notification;
+
+/**
+ * Queue depth and delivery counts for the notification outbox. The depths are read from the
+ * database, so they cover every node, while the counts are only for this node since it started.
+ *
+ * @author James Renfro
+ */
+public class NotificationOutboxStatistics {
+
+    private final long pending;
+    private final long sending;
+    private final long failedInOutbox;
+    private final long sentCount;
+    private final long retryCount;
+    private final long failureCount;
+
+    public NotificationOutboxStatistics(long pending, long sending, long failedInOutbox, long sentCount, long retryCount, long failureCount) {
+        this.pending = pending;
+        this.sending = sending;
+        this.failedInOutbox = failedInOutbox;
+        this.sentCount = sentCount;
+        this.retryCount = retryCount;
+        this.failureCount = failureCount;
+    }
+
+    public long getQueueDepth() {
+        return pending + sending;
+    }
+
+    public long getPending() {
+        return pending;
+    }
+
+    public long getSending() {
+        return sending;
+    }
+
+    public long getFailedInOutbox() {
+        return failedInOutbox;
+    }
+
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    public long getRetryCount() {
+        return retryCount;
+    }
+
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.notification;
+
+import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import piecework.Versions;
+import piecework.common.ViewContext;
+import piecework.exception.StatusCodeError;
+import piecework.model.*;
+import piecework.model.Process;
+import piecework.service.ProcessInstanceService;
+import piecework.service.ProcessService;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the scope that notification templates are expanded with. The outbox only stores
+ * which instance and task a notification is about, since the scope holds instance data,
+ * and rebuilds the scope from the instance when the notification is actually sent.
+ *
+ * @author James Renfro
+ */
+@Service
+public class NotificationScopeFactory {
+
+    @Autowired
+    ProcessService processService;
+
+    @Autowired
+    ProcessInstanceService processInstanceService;
+
+    @Autowired
+    Versions versions;
+
+    /*
+     * Looks up the instance and task again, returning null if either one is gone
+     */
+    public Map<String, Object> scope(String processDefinitionKey, String processInstanceId, String taskId) throws StatusCodeError {
+        if (StringUtils.isEmpty(processDefinitionKey) || StringUtils.isEmpty(processInstanceId) || StringUtils.isEmpty(taskId))
+            return null;
+
+        Process process = processService.read(processDefinitionKey);
+        if (process == null)
+            return null;
+
+        ProcessInstance instance = processInstanceService.read(process, processInstanceId, true);
+        if (instance == null || instance.getTasks() == null)
+            return null;
+
+        for (Task task : instance.getTasks()) {
+            if (taskId.equals(task.getTaskInstanceId()))
+                return scope(instance, task);
+        }
+        return null;
+    }
+
+    // scope is a key-value pairs used for template substitution
+    public Map<String, Object> scope(ProcessInstance instance, Task task) {
+        String assigneeId = assignee(task);
+        if ( assigneeId == null ) {
+            return null; // we don't send notifications if there is no assignee
+        }
+
+        // set up scope
+        Map<String, Object> scope = new HashMap<String, Object>();
+        scope.put("PIECEWORK_PROCESS_INSTANCE_LABEL", instance.getProcessInstanceLabel());
+        scope.put("TASK_ID", task.getTaskInstanceId());
+        scope.put("TASK_KEY", task.getTaskDefinitionKey());
+        scope.put("TASK_LABEL", task.getTaskLabel());
+
+        // task URL
+        ViewContext viewContext = versions.getVersion1();
+        String taskUrl = viewContext.getApplicationUri(ProcessInstance.Constants.ROOT_ELEMENT_NAME, task.getProcessDefinitionKey(), task.getTaskInstanceId());
+        scope.put("TASK_URL", taskUrl);
+
+        // add instance data into scope
+        Map<String, List<Value>> data = instance.getData();
+        if (data != null && !data.isEmpty()) {
+            for (Map.Entry<String, List<Value>> entry : data.entrySet()) {
+                String key = entry.getKey();
+                List<Value> values = entry.getValue();
+                if (values != null && !values.isEmpty() ) {
+                    if ( values.size() == 1 ) {
+                        scope.put(key, values.get(0));  // flattern it
+                    } else {
+                        scope.put(key, values);
+                    }
+                }
+            }
+        }
+
+        scope.put("ASSIGNEE", assigneeId);
+        return scope;
+    }
+
+    /*
+     * The assignee, or else a comma separated list of candidate assignees, or null if there's nobody
+     */
+    public static String assignee(Task task) {
+        String assigneeId = task.getAssigneeId();
+        if ( assigneeId == null || assigneeId.isEmpty() ) {
+            Set<String> strs = task.getCandidateAssigneeIds();
+
+            if ( strs != null && ! strs.isEmpty() ) {
+                StringBuilder str = new StringBuilder();
+                for (String s : strs ) {
+                    if ( str.length() > 0 ) {
+                        str.append(",");
+                    }
+                    str.append(s);
+                }
+
+                assigneeId = str.toString();
+            }
+        }
+
+        return assigneeId == null || assigneeId.isEmpty() ? null : assigneeId;
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.persistence;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Describes a single index that the index manager makes sure exists at startup. Keys
+ * are kept in the order they are added, since that order is what determines which
+ * queries a compound index can serve.
+ *
+ * @author James Renfro
+ */
+public class IndexDefinition {
+
+    private final String collectionName;
+    private final String name;
+    private final Map<String, Object> keys;
+    private final Map<String, Integer> weights;
+    private final boolean sparse;
+    private final boolean unique;
+
+    private IndexDefinition(Builder builder) {
+        this.collectionName = builder.collectionName;
+        this.name = builder.name;
+        this.keys = Collections.unmodifiableMap(builder.keys);
+        this.weights = Collections.unmodifiableMap(builder.weights);
+        this.sparse = builder.sparse;
+        this.unique = builder.unique;
+    }
+
+    public DBObject getKeysObject() {
+        BasicDBObject keysObject = new BasicDBObject();
+        for (Map.Entry<String, Object> entry : keys.entrySet()) {
+            keysObject.append(entry.getKey(), entry.getValue());
+        }
+        return keysObject;
+    }
+
+    /*
+     * Indexes are always built in the background so that a node starting up against
+     * a large existing database doesn't lock the collection while it builds
+     */
+    public DBObject getOptionsObject() {
+        BasicDBObject options = new BasicDBObject("name", name).append("background", Boolean.TRUE);
+        if (sparse)
+            options.append("sparse", Boolean.TRUE);
+        if (unique)
+            options.append("unique", Boolean.TRUE);
+        if (!weights.isEmpty())
+            options.append("weights", new BasicDBObject(weights));
+        return options;
+    }
+
+    public String getCollectionName() {
+        return collectionName;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, Object> getKeys() {
+        return keys;
+    }
+
+    public Map<String, Integer> getWeights() {
+        return weights;
+    }
+
+    public boolean isSparse() {
+        return sparse;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    @Override
+    public String toString() {
+        return collectionName + "." + name + " " + keys;
+    }
+
+    public final static class Builder {
+
+        private final String collectionName;
+        private final String name;
+        private final Map<String, Object> keys;
+        private final Map<String, Integer> weights;
+        private boolean sparse;
+        private boolean unique;
+
+        public Builder(String collectionName, String name) {
+            this.collectionName = collectionName;
+            this.name = name;
+            this.keys = new LinkedHashMap<String, Object>();
+            this.weights = new LinkedHashMap<String, Integer>();
+        }
+
+        public IndexDefinition build() {
+            return new IndexDefinition(this);
+        }
+
+        public Builder ascending(String key) {
+            this.keys.put(key, Integer.valueOf(1));
+            return this;
+        }
+
+        public Builder descending(String key) {
+            this.keys.put(key, Integer.valueOf(-1));
+            return this;
+        }
+
+        /*
+         * A text index field, optionally weighted relative to the other text fields
+         */
+        public Builder text(String key, int weight) {
+            this.keys.put(key, "text");
+            this.weights.put(key, Integer.valueOf(weight));
+            return this;
+        }
+
+        public Builder sparse() {
+            this.sparse = true;
+            return this;
+        }
+
+        public Builder unique() {
+            this.unique = true;
+            return this;
+        }
+
+    }
+
+}
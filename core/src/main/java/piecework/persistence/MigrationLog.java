@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.persistence;
+
+import com.mongodb.BasicDBObject;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records which one-time data migrations have finished, with one marker document per
+ * migration in the migration collection. A migration only gets its marker once it has
+ * run all the way through, so a node that dies partway leaves no marker and the next
+ * startup runs the migration again. Because each migration has to be safe to repeat, the
+ * only cost of that is time.
+ *
+ * Once a node has seen a marker it remembers it, so after a migration finishes, checking
+ * for it costs nothing.
+ *
+ * @author James Renfro
+ */
+@Service
+public class MigrationLog {
+
+    private static final Logger LOG = Logger.getLogger(MigrationLog.class);
+    private static final String COLLECTION_NAME = "migration";
+
+    @Autowired
+    MongoTemplate mongoOperations;
+
+    private final Set<String> completed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    public boolean isComplete(String name) {
+        if (completed.contains(name))
+            return true;
+
+        if (mongoOperations.getCollection(COLLECTION_NAME).findOne(new BasicDBObject("_id", name)) == null)
+            return false;
+
+        completed.add(name);
+        return true;
+    }
+
+    public void complete(String name, long count) {
+        BasicDBObject marker = new BasicDBObject("_id", name)
+                .append("completed", new Date())
+                .append("count", Long.valueOf(count));
+        mongoOperations.getCollection(COLLECTION_NAME).save(marker);
+        completed.add(name);
+        LOG.info("Completed migration " + name);
+    }
+
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.persistence;
+
+import com.mongodb.*;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+import piecework.enumeration.KeywordSearchMode;
+import piecework.model.ProcessInstance;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes sure the indexes that the repositories' query shapes depend on exist when a node
+ * starts up. The definitions live here, in one place, rather than scattered across
+ * annotations on the models, so that it's easy to see which query each index is for.
+ * Can be turned off with mongo.indexes.ensure = false for deployments where a DBA
+ * manages indexes by hand.
+ *
+ * In debug mode (debug.mode = true) the Mongo profiler is also switched on for the
+ * database, and every so often the profile collection is read back and any query that
+ * was slow, scanned far more documents than it returned, or had to sort in memory is
+ * logged as a warning, which is usually the first sign of a missing index. Turned off
+ * with debug.mongo.profile = false
+ *
+ * @author James Renfro
+ */
+@Service
+public class MongoIndexManager {
+
+    private static final Logger LOG = Logger.getLogger(MongoIndexManager.class);
+    private static final String PROFILE_COLLECTION_NAME = "system.profile";
+
+    private static final List<IndexDefinition> DEFINITIONS;
+    private static final IndexDefinition TEXT_DEFINITION;
+
+    static {
+        String instance = ProcessInstance.Constants.ROOT_ELEMENT_NAME;
+        List<IndexDefinition> definitions = new ArrayList<IndexDefinition>();
+
+        // Default instance search -- process, status, newest first, tie-broken on id for continuation tokens
+        definitions.add(new IndexDefinition.Builder(instance, "instance_search")
+                .ascending("processDefinitionKey").ascending("processStatus").descending("startTime").descending("_id").build());
+        // The same search across every process a user oversees -- a $in on the process can't be walked
+        // in start time order through instance_search before Mongo 2.6, so this one leads with status
+        // and checks the process from the index key instead
+        definitions.add(new IndexDefinition.Builder(instance, "instance_search_status")
+                .ascending("processStatus").descending("startTime").descending("_id").ascending("processDefinitionKey").build());
+        // Searches for completed instances ordered by end time
+        definitions.add(new IndexDefinition.Builder(instance, "instance_completed")
+                .ascending("processDefinitionKey").ascending("processStatus").descending("endTime").build());
+        // Every engine event looks up the instance by the engine's id
+        definitions.add(new IndexDefinition.Builder(instance, "instance_engine")
+                .ascending("processDefinitionKey").ascending("engineProcessInstanceId").build());
+        // Business key (alias) searches
+        definitions.add(new IndexDefinition.Builder(instance, "instance_alias")
+                .ascending("processDefinitionKey").ascending("alias").build());
+        // Instances started by a particular user
+        definitions.add(new IndexDefinition.Builder(instance, "instance_initiator")
+                .ascending("processDefinitionKey").ascending("initiatorId").descending("startTime").build());
+        // Multikey index on the task ids, which every task form GET and POST looks up by
+        definitions.add(new IndexDefinition.Builder(instance, "instance_task")
+                .ascending("taskIds").ascending("processDefinitionKey").build());
+        // Multikey index on the tokenized keywords, which keyword searches look up with $all
+        definitions.add(new IndexDefinition.Builder(instance, "instance_keywords")
+                .ascending("keywords").build());
+
+        DEFINITIONS = Collections.unmodifiableList(definitions);
+
+        // Only when search.keyword.mode = text -- labels count for more than anything else in the keywords
+        TEXT_DEFINITION = new IndexDefinition.Builder(instance, "instance_text")
+                .text("processInstanceLabel", 10).text("keywords", 1).build();
+    }
+
+    @Autowired
+    Environment environment;
+
+    @Autowired
+    MongoTemplate mongoOperations;
+
+    private ScheduledExecutorService executor;
+    private boolean profiling;
+    private long slowMs = 100l;
+    private long scanRatio = 10l;
+    private long minScanned = 100l;
+    private Date lastReported;
+
+    @PostConstruct
+    public void init() {
+        Boolean ensure = environment.getProperty("mongo.indexes.ensure", Boolean.class, Boolean.TRUE);
+        if (ensure.booleanValue())
+            ensureIndexes();
+
+        Boolean isDebugMode = environment.getProperty("debug.mode", Boolean.class, Boolean.FALSE);
+        Boolean isDebugProfile = environment.getProperty("debug.mongo.profile", Boolean.class, Boolean.TRUE);
+        if (isDebugMode.booleanValue() && isDebugProfile.booleanValue())
+            startProfiling();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null)
+            executor.shutdownNow();
+        if (profiling) {
+            try {
+                mongoOperations.getDb().command(new BasicDBObject("profile", Integer.valueOf(0)));
+            } catch (MongoException e) {
+                LOG.warn("Unable to turn off the Mongo profiler", e);
+            }
+            profiling = false;
+        }
+    }
+
+    public List<IndexDefinition> getDefinitions() {
+        String keywordSearchMode = environment != null ? environment.getProperty("search.keyword.mode") : null;
+        if (keywordSearchMode == null || !keywordSearchMode.trim().equalsIgnoreCase(KeywordSearchMode.TEXT.name()))
+            return DEFINITIONS;
+
+        List<IndexDefinition> definitions = new ArrayList<IndexDefinition>(DEFINITIONS);
+        definitions.add(TEXT_DEFINITION);
+        return definitions;
+    }
+
+    public void ensureIndexes() {
+        long start = System.currentTimeMillis();
+        int count = 0;
+        List<IndexDefinition> definitions = getDefinitions();
+        for (IndexDefinition definition : definitions) {
+            try {
+                DBCollection collection = mongoOperations.getCollection(definition.getCollectionName());
+                collection.ensureIndex(definition.getKeysObject(), definition.getOptionsObject());
+                count++;
+            } catch (MongoException e) {
+                // Most likely an index on the same keys already exists under another name
+                LOG.error("Unable to ensure index " + definition, e);
+            }
+        }
+        LOG.info("Ensured " + count + " of " + definitions.size() + " indexes in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /*
+     * Reads everything the profiler has recorded since the last report and logs anything
+     * that looks like it's missing an index
+     */
+    public void report() {
+        DBCollection profile = mongoOperations.getDb().getCollection(PROFILE_COLLECTION_NAME);
+        DBObject query = lastReported != null ? new BasicDBObject("ts", new BasicDBObject("$gt", lastReported)) : new BasicDBObject();
+        DBCursor cursor = profile.find(query).sort(new BasicDBObject("$natural", 1));
+        try {
+            while (cursor.hasNext()) {
+                DBObject entry = cursor.next();
+                Object ts = entry.get("ts");
+                if (ts instanceof Date)
+                    lastReported = Date.class.cast(ts);
+
+                String reason = suspicion(entry);
+                if (reason != null)
+                    LOG.warn(reason + " on " + entry.get("ns") + " (" + entry.get("millis") + " ms, scanned " + entry.get("nscanned") + ", returned " + entry.get("nreturned") + "): " + entry.get("query"));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /*
+     * Returns why the profiled operation looks like it needs an index, or null if it doesn't
+     */
+    String suspicion(DBObject entry) {
+        Object ns = entry.get("ns");
+        // The profiler's own collection and the tailed invalidation collection are just noise
+        if (ns == null || ns.toString().contains(".system.") || ns.toString().endsWith(".cache.invalidation"))
+            return null;
+
+        long millis = longValue(entry.get("millis"));
+        long scanned = longValue(entry.get("nscanned"));
+        long returned = longValue(entry.get("nreturned"));
+
+        if (scanned >= minScanned && scanned > scanRatio * Math.max(returned, 1l))
+            return "Unindexed query";
+        if (Boolean.TRUE.equals(entry.get("scanAndOrder")))
+            return "In-memory sort";
+        if (millis >= slowMs)
+            return "Slow query";
+
+        return null;
+    }
+
+    private void startProfiling() {
+        this.slowMs = environment.getProperty("debug.mongo.profile.slow.ms", Long.class, Long.valueOf(100l));
+        this.scanRatio = environment.getProperty("debug.mongo.profile.scan.ratio", Long.class, Long.valueOf(10l));
+        this.minScanned = environment.getProperty("debug.mongo.profile.min.scanned", Long.class, Long.valueOf(100l));
+        long interval = environment.getProperty("debug.mongo.profile.interval", Long.class, Long.valueOf(10000l));
+
+        try {
+            // Level 2 records every operation, which is what makes it possible to spot full scans that happen to be fast
+            mongoOperations.getDb().command(new BasicDBObject("profile", Integer.valueOf(2)).append("slowms", Long.valueOf(slowMs)));
+            this.profiling = true;
+            this.lastReported = new Date();
+        } catch (MongoException e) {
+            LOG.warn("Unable to turn on the Mongo profiler", e);
+            return;
+        }
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "mongo-profile-reporter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    report();
+                } catch (RuntimeException e) {
+                    LOG.warn("Unable to read the Mongo profiler output", e);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        LOG.info("Mongo profiler is on, reporting queries slower than " + slowMs + " ms or scanning more than " + scanRatio + " documents per result");
+    }
+
+    private static long longValue(Object value) {
+        if (value instanceof Number)
+            return Number.class.cast(value).longValue();
+        return 0l;
+    }
+
+}
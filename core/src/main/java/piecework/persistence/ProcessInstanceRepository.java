@@ -34,18 +34,22 @@ public interface ProcessInstanceRepository extends MongoRepository<ProcessInstan
     @Query(value="{ 'processDefinitionKey' : ?0, 'engineProcessInstanceId' : ?1 }")
     ProcessInstance findByProcessDefinitionKeyAndEngineProcessInstanceId(String processDefinitionKey, String engineProcessInstanceId);
 
-    List<ProcessInstance> findByKeywordsRegex(String keyword);
+    /*
+     * The keyword queries take terms from KeywordTokenizer.terms, all of which have to match
+     */
+    @Query(value="{ 'keywords' : { $all: ?0 } }")
+    List<ProcessInstance> findByKeywords(Iterable<String> terms);
 
     @Query(value="{ 'processInstanceId' : { $in: ?0 } }")
     List<ProcessInstance> findByProcessInstanceIdIn(Iterable<String> processInstanceIds);
 
-    @Query(value="{ 'processInstanceId' : { $in: ?0 }, 'keywords' : { $regex: ?1 } }")
-    List<ProcessInstance> findByProcessInstanceIdInAndKeywordsRegex(Iterable<String> processInstanceIds, String keyword);
+    @Query(value="{ 'processInstanceId' : { $in: ?0 }, 'keywords' : { $all: ?1 } }")
+    List<ProcessInstance> findByProcessInstanceIdInAndKeywords(Iterable<String> processInstanceIds, Iterable<String> terms);
 
     @Query(value="{ 'processDefinitionKey' : { $in: ?0 }, 'engineProcessInstanceId' : { $in: ?1 } }", fields="{ 'processDefinitionKey': 1, 'processInstanceId':1, 'engineProcessInstanceId': 1, 'alias':1, 'processInstanceLabel':1 }")
     List<ProcessInstance> findByProcessDefinitionKeyInAndEngineProcessInstanceIdIn(Iterable<String> processDefinitionKeys, Iterable<String> engineProcessInstanceIds);
 
-    @Query(value="{ 'processDefinitionKey' : { $in: ?0 }, 'engineProcessInstanceId' : { $in: ?1 }, 'keywords' : { $regex: ?2 }  }", fields="{ 'processDefinitionKey': 1, 'processInstanceId':1, 'engineProcessInstanceId': 1, 'alias':1, 'processInstanceLabel':1 }")
-    List<ProcessInstance> findByProcessDefinitionKeyInAndEngineProcessInstanceIdInAndKeyword(Iterable<String> processDefinitionKeys, Iterable<String> engineProcessInstanceIds, String keyword);
+    @Query(value="{ 'processDefinitionKey' : { $in: ?0 }, 'engineProcessInstanceId' : { $in: ?1 }, 'keywords' : { $all: ?2 }  }", fields="{ 'processDefinitionKey': 1, 'processInstanceId':1, 'engineProcessInstanceId': 1, 'alias':1, 'processInstanceLabel':1 }")
+    List<ProcessInstance> findByProcessDefinitionKeyInAndEngineProcessInstanceIdInAndKeywords(Iterable<String> processDefinitionKeys, Iterable<String> engineProcessInstanceIds, Iterable<String> terms);
 
 }
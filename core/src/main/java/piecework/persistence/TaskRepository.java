@@ -5,13 +5,14 @@ import org.springframework.data.mongodb.repository.Query;
 import piecework.model.ProcessInstance;
 import piecework.model.Submission;
 import piecework.model.Task;
+import piecework.persistence.custom.TaskRepositoryCustom;
 
 import java.util.List;
 
 /**
  * @author James Renfro
  */
-public interface TaskRepository extends MongoRepository<Task, String> {
+public interface TaskRepository extends MongoRepository<Task, String>, TaskRepositoryCustom {
 
     @Query(value="{ 'processDefinitionKey' : { $in: ?0 } }")
     List<Task> findByProcessDefinitionKeyIn(Iterable<String> processDefinitionKeys);
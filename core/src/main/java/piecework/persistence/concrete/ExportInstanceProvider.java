@@ -20,25 +20,39 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Field;
 import org.springframework.data.mongodb.core.query.Query;
 import piecework.model.*;
 import piecework.model.Process;
 import piecework.persistence.IteratingDataProvider;
+import piecework.persistence.ProcessInstanceCallback;
 import piecework.persistence.ProcessInstanceRepository;
 import piecework.process.ProcessInstanceQueryBuilder;
 import piecework.process.ProcessInstanceSearchCriteria;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.*;
 
 /**
+ * Provides the rows of a CSV export of the instances that match some search criteria,
+ * with one column per field that has a header or label. Rows can either be paged through
+ * with next(), or streamed straight off of a single database cursor with write(), which
+ * only reads the exported fields and keeps memory use flat no matter how many instances
+ * are exported.
+ *
  * @author James Renfro
  */
 public class ExportInstanceProvider implements IteratingDataProvider<String> {
 
     private static final int PAGE_SIZE = 200;
+    private static final String SEPARATOR = ",";
+    private static final String VALUE_SEPARATOR = ", ";
+    private static final String LINE_SEPARATOR = "\r\n";
 
     private final Map<String, String> headerMap;
     private final String[] headerKeys;
+    private final ProcessInstanceSearchCriteria criteria;
     private final Query query;
     private final ProcessInstanceRepository repository;
     private final Sort sort;
@@ -48,6 +62,7 @@ public class ExportInstanceProvider implements IteratingDataProvider<String> {
 
     public ExportInstanceProvider(Process process, ProcessInstanceSearchCriteria criteria, ProcessInstanceRepository repository, Sort sort) {
         this.headerMap = new LinkedHashMap<String, String>();
+        this.criteria = criteria;
         this.query = new ProcessInstanceQueryBuilder(criteria).build();
         this.repository = repository;
         this.request = new PageRequest(0, PAGE_SIZE, sort);
@@ -58,9 +73,9 @@ public class ExportInstanceProvider implements IteratingDataProvider<String> {
         if (deployment != null) {
             Collection<Activity> activities = deployment.getActivityMap().values();
             for (Activity activity : activities) {
-                Set<Field> fields = activity.getFields();
+                Set<piecework.model.Field> fields = activity.getFields();
                 if (fields != null) {
-                    for (Field field : fields) {
+                    for (piecework.model.Field field : fields) {
                         if (field.isRestricted())
                             continue;
 
@@ -72,9 +87,9 @@ public class ExportInstanceProvider implements IteratingDataProvider<String> {
                             continue;
 
                         if (StringUtils.isNotEmpty(fieldHeader))
-                            headerMap.put(fieldName, "\"" + fieldHeader + "\"");
+                            headerMap.put(fieldName, fieldHeader);
                         else if (StringUtils.isNotEmpty(fieldLabel))
-                            headerMap.put(fieldName, "\"" + fieldLabel+ "\"");
+                            headerMap.put(fieldName, fieldLabel);
                     }
                 }
             }
@@ -86,7 +101,14 @@ public class ExportInstanceProvider implements IteratingDataProvider<String> {
 
     @Override
     public String getHeader() {
-        return StringUtils.join(headerMap.values(), ", ");
+        StringBuilder builder = new StringBuilder();
+        Iterator<String> iterator = headerMap.values().iterator();
+        while (iterator.hasNext()) {
+            escape(builder, iterator.next());
+            if (iterator.hasNext())
+                builder.append(SEPARATOR);
+        }
+        return builder.toString();
     }
 
     @Override
@@ -99,10 +121,11 @@ public class ExportInstanceProvider implements IteratingDataProvider<String> {
 
         if (page.hasContent()) {
             List<ProcessInstance> instances = page.getContent();
+            StringBuilder builder = new StringBuilder();
             for (ProcessInstance instance : instances) {
-                String row = convert(instance);
-                if (row != null)
-                    rows.add(row);
+                builder.setLength(0);
+                convert(builder, instance);
+                rows.add(builder.toString());
             }
         }
 
@@ -119,31 +142,86 @@ public class ExportInstanceProvider implements IteratingDataProvider<String> {
         this.request = new PageRequest(0, PAGE_SIZE, sort);
     }
 
-    private String convert(ProcessInstance instance) {
-        StringBuilder builder = new StringBuilder();
+    /*
+     * Writes the header and then every matching instance to the writer, one row per line. Only
+     * the exported fields are retrieved from the database, and each row is written as soon as it's
+     * read off of the cursor, so the caller should pass a buffered writer.
+     */
+    public void write(final Writer writer) throws IOException {
+        writer.write(getHeader());
+        writer.write(LINE_SEPARATOR);
+
+        if (headerKeys == null)
+            return;
+
+        Query query = new ProcessInstanceQueryBuilder(criteria).build();
+        if (sort != null)
+            query.with(sort);
+        Field fields = query.fields();
+        for (String headerKey : headerKeys) {
+            fields.include("data." + headerKey);
+        }
+
+        final StringBuilder builder = new StringBuilder();
+        repository.findByQuery(query, new ProcessInstanceCallback() {
+            @Override
+            public void process(ProcessInstance instance) throws IOException {
+                builder.setLength(0);
+                convert(builder, instance);
+                builder.append(LINE_SEPARATOR);
+                writer.append(builder);
+            }
+        });
+    }
+
+    /*
+     * Every cell is quoted, with any embedded quotes doubled, so values can safely contain commas,
+     * quotes and line breaks
+     */
+    static void escape(StringBuilder builder, String text) {
+        builder.append('"');
+        if (text != null) {
+            int length = text.length();
+            for (int i=0;i<length;i++) {
+                char c = text.charAt(i);
+                if (c == '"')
+                    builder.append('"');
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+
+    private void convert(StringBuilder builder, ProcessInstance instance) {
         Map<String, List<Value>> data = instance.getData();
         if (headerKeys != null) {
             int length = headerKeys.length - 1;
             for (int i=0;i<=length;i++) {
-                List<Value> values = data.get(headerKeys[i]);
-                builder.append("\"");
+                List<Value> values = data != null ? data.get(headerKeys[i]) : null;
+                String text = null;
                 if (values != null && !values.isEmpty()) {
-                    int lastValue = values.size() - 1;
-                    for (int j=0;j<=lastValue;j++) {
-                        Value value = values.get(j);
-                        String text = value.toString();
-                        if (text != null)
-                            builder.append(text);
-                        if (j != lastValue)
-                            builder.append(", ");
+                    if (values.size() == 1) {
+                        Value value = values.get(0);
+                        text = value != null ? value.toString() : null;
+                    } else {
+                        StringBuilder valueBuilder = new StringBuilder();
+                        int lastValue = values.size() - 1;
+                        for (int j=0;j<=lastValue;j++) {
+                            Value value = values.get(j);
+                            String valueText = value != null ? value.toString() : null;
+                            if (valueText != null)
+                                valueBuilder.append(valueText);
+                            if (j != lastValue)
+                                valueBuilder.append(VALUE_SEPARATOR);
+                        }
+                        text = valueBuilder.toString();
                     }
                 }
-                builder.append("\"");
+                escape(builder, text);
                 if (i != length)
-                    builder.append(", ");
+                    builder.append(SEPARATOR);
             }
         }
-        return builder.toString();
     }
 
 }
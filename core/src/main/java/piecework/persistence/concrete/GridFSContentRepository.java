@@ -16,9 +16,12 @@
 package piecework.persistence.concrete;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
 import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import com.mongodb.gridfs.GridFS;
 import com.mongodb.gridfs.GridFSDBFile;
-import com.mongodb.gridfs.GridFSFile;
+import com.mongodb.gridfs.GridFSInputFile;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -32,7 +35,9 @@ import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.env.Environment;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.data.mongodb.MongoDbFactory;
 import org.springframework.data.mongodb.gridfs.GridFsCriteria;
 import org.springframework.data.mongodb.gridfs.GridFsOperations;
 import org.springframework.data.mongodb.gridfs.GridFsResource;
@@ -40,6 +45,7 @@ import org.springframework.stereotype.Service;
 import piecework.enumeration.Scheme;
 import piecework.persistence.ContentRepository;
 import piecework.model.Content;
+import piecework.util.DigestingInputStream;
 import piecework.util.PathUtility;
 
 import javax.annotation.PostConstruct;
@@ -66,15 +72,45 @@ public class GridFSContentRepository implements ContentRepository {
     @Autowired
     GridFsOperations gridFsOperations;
 
+    @Autowired
+    MongoDbFactory mongoDbFactory;
+
+    @Autowired
+    Environment environment;
+
     private CloseableHttpClient client;
+    private GridFS gridFS;
+    private int chunkSize;
 
     @PostConstruct
     public void init() {
+        this.chunkSize = environment.getProperty("mongo.gridfs.chunk.size", Integer.class, Integer.valueOf((int) GridFS.DEFAULT_CHUNKSIZE)).intValue();
         PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager();
         cm.setMaxTotal(100);
         this.client = HttpClients.custom().setConnectionManager(cm).build();
     }
 
+    private synchronized GridFS gridFS() {
+        if (gridFS == null) {
+            String bucket = environment.getProperty("mongo.gridfs.bucket");
+            DB db = mongoDbFactory.getDb();
+            gridFS = StringUtils.isNotEmpty(bucket) ? new GridFS(db, bucket) : new GridFS(db);
+        }
+        return gridFS;
+    }
+
+    /*
+     * Cleans up any chunks that were written before the upload failed -- for example
+     * because it went over the maximum size
+     */
+    private void removeChunks(GridFSInputFile file) {
+        try {
+            gridFS().getDB().getCollection(gridFS().getBucketName() + ".chunks").remove(new BasicDBObject("files_id", file.getId()));
+        } catch (MongoException e) {
+            LOG.error("Unable to remove chunks for failed upload " + file.getFilename(), e);
+        }
+    }
+
     @PreDestroy
     public void destroy() {
         if (this.client != null) {
@@ -135,14 +171,36 @@ public class GridFSContentRepository implements ContentRepository {
         BasicDBObject metadata = new BasicDBObject();
         metadata.put("originalFilename", content.getName());
 
-        GridFSFile file = gridFsOperations.store(content.getInputStream(), content.getLocation(), content.getContentType(), metadata);
+        // Chunks are written to GridFS as they are read from the stream, and the digests
+        // are computed along the way, so the content never has to be held in memory or
+        // spooled to disk first
+        DigestingInputStream inputStream = new DigestingInputStream(content.getInputStream());
+        GridFSInputFile file = gridFS().createFile(inputStream, content.getLocation(), true);
+        file.setContentType(content.getContentType());
+        try {
+            file.saveChunks(chunkSize);
+        } catch (IOException e) {
+            removeChunks(file);
+            throw e;
+        } catch (MongoException e) {
+            removeChunks(file);
+            throw e;
+        }
+
+        String md5 = inputStream.getMd5();
+        String sha256 = inputStream.getSha256();
+        metadata.put("sha256", sha256);
+        file.setMetaData(metadata);
+        file.save();
+
         String contentId = file.getId().toString();
 
         return new Content.Builder(content)
                 .contentId(contentId)
-                .length(file.getLength())
+                .length(Long.valueOf(inputStream.getLength()))
                 .lastModified(file.getUploadDate())
-                .md5(file.getMD5())
+                .md5(md5)
+                .sha256(sha256)
                 .build();
     }
 
@@ -153,6 +211,7 @@ public class GridFSContentRepository implements ContentRepository {
         String fileId = file.getId().toString();
         DBObject metadata = file.getMetaData();
         String originalFileName = metadata != null ? String.class.cast(metadata.get("originalFilename")) : null;
+        String sha256 = metadata != null ? String.class.cast(metadata.get("sha256")) : null;
 
         return new Content.Builder()
                 .contentId(fileId)
@@ -163,6 +222,7 @@ public class GridFSContentRepository implements ContentRepository {
                 .lastModified(file.getUploadDate())
                 .length(Long.valueOf(file.getLength()))
                 .md5(file.getMD5())
+                .sha256(sha256)
                 .build();
     }
 
@@ -15,11 +15,15 @@
  */
 package piecework.persistence.concrete;
 
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
 import com.mongodb.WriteResult;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -27,17 +31,25 @@ import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.convert.MongoConverter;
 import org.springframework.data.mongodb.core.convert.MongoTypeMapper;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.data.repository.NoRepositoryBean;
 import org.springframework.stereotype.Service;
 import piecework.Constants;
+import piecework.enumeration.KeywordSearchMode;
 import piecework.model.*;
+import piecework.persistence.ProcessInstanceCallback;
+import piecework.persistence.TaskRepository;
 import piecework.persistence.custom.ProcessInstanceRepositoryCustom;
+import piecework.process.ContinuationToken;
 import piecework.process.ProcessInstanceQueryBuilder;
 import piecework.process.ProcessInstanceSearchCriteria;
+import piecework.util.KeywordTokenizer;
 
+import java.io.IOException;
 import java.util.*;
 
 import static org.springframework.data.mongodb.core.query.Criteria.where;
@@ -52,15 +64,25 @@ public class ProcessInstanceRepositoryCustomImpl implements ProcessInstanceRepos
     private static final Logger LOG = Logger.getLogger(ProcessInstanceRepositoryCustomImpl.class);
 
     private static final FindAndModifyOptions OPTIONS = new FindAndModifyOptions().returnNew(true);
+    private static final int CURSOR_BATCH_SIZE = 500;
 
     @Autowired
     MongoTemplate mongoOperations;
 
+    @Autowired
+    TaskRepository taskRepository;
+
+    @Autowired(required = false)
+    Environment environment;
+
     @Override
     public Page<ProcessInstance> findByCriteria(ProcessInstanceSearchCriteria criteria, Pageable pageable) {
         // Otherwise, look up all instances that match the query
-        Query query = new ProcessInstanceQueryBuilder(criteria).build();
-        query.skip(pageable.getOffset());
+        Query query = new ProcessInstanceQueryBuilder(criteria, keywordSearchMode()).build();
+        ContinuationToken continuationToken = criteria.getContinuationToken();
+        // When there is a continuation token the query seeks directly to the next page
+        if (continuationToken == null)
+            query.skip(pageable.getOffset());
         query.limit(pageable.getPageSize());
 
         org.springframework.data.mongodb.core.query.Field field = query.fields();
@@ -69,7 +91,11 @@ public class ProcessInstanceRepositoryCustomImpl implements ProcessInstanceRepos
         if (! criteria.isIncludeVariables())
             field.exclude("data");
 
-        return findByQuery(query, pageable);
+        if (continuationToken == null && criteria.getCountMode() == ProcessInstanceSearchCriteria.CountMode.EXACT)
+            return findByQuery(query, pageable);
+
+        int position = continuationToken != null ? continuationToken.getPosition() : pageable.getOffset();
+        return findByQuery(query, pageable, position, criteria.getCountMode());
     }
 
     @Override
@@ -95,10 +121,100 @@ public class ProcessInstanceRepositoryCustomImpl implements ProcessInstanceRepos
         return page;
     }
 
+    /*
+     * Reads every instance that matches the query off of a single cursor, ignoring skip and limit,
+     * and hands each one to the callback as soon as it's converted, so only one batch is ever in memory
+     */
+    @Override
+    public void findByQuery(Query query, ProcessInstanceCallback callback) throws IOException {
+        long start = 0;
+        if (LOG.isDebugEnabled())
+            start = System.currentTimeMillis();
+
+        MongoConverter converter = mongoOperations.getConverter();
+        MongoPersistentEntity<?> entity = converter.getMappingContext().getPersistentEntity(ProcessInstance.class);
+        QueryMapper queryMapper = new QueryMapper(converter);
+        DBObject queryObject = queryMapper.getMappedObject(query.getQueryObject(), entity);
+        DBObject fieldsObject = query.getFieldsObject();
+        DBObject sortObject = query.getSortObject();
+
+        DBCollection collection = mongoOperations.getCollection(mongoOperations.getCollectionName(ProcessInstance.class));
+        DBCursor cursor = collection.find(queryObject, fieldsObject).batchSize(CURSOR_BATCH_SIZE);
+        if (sortObject != null)
+            cursor.sort(queryMapper.getMappedObject(sortObject, entity));
+
+        int count = 0;
+        try {
+            while (cursor.hasNext()) {
+                ProcessInstance instance = converter.read(ProcessInstance.class, cursor.next());
+                callback.process(instance);
+                count++;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Streamed " + count + " instances by query in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /*
+     * Like findByQuery, but avoids the full count unless it's explicitly requested. The position is
+     * the number of instances that come before this page, and in estimate mode the total is only
+     * known to be at least one more than what has been seen so far whenever the page is full.
+     */
+    private Page<ProcessInstance> findByQuery(Query query, Pageable request, int position, ProcessInstanceSearchCriteria.CountMode countMode) {
+        long start = 0;
+        if (LOG.isDebugEnabled())
+            start = System.currentTimeMillis();
+
+        List<ProcessInstance> processInstances = mongoOperations.find(query, ProcessInstance.class);
+        boolean isFull = processInstances.size() == query.getLimit();
+
+        long total = position + processInstances.size();
+        switch (countMode) {
+            case EXACT:
+                // The count for a seek query only includes what comes after the token
+                if (isFull)
+                    total = position + mongoOperations.count(query, ProcessInstance.class);
+                break;
+            case ESTIMATE:
+                if (isFull)
+                    total++;
+                break;
+            case NONE:
+                break;
+        }
+
+        Page<ProcessInstance> page = new PageImpl<ProcessInstance>(processInstances, request, total);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Retrieved instances by criteria from position " + position + " in " + (System.currentTimeMillis() - start) + " ms");
+
+        return page;
+    }
+
     @Override
     public ProcessInstance findByTaskId(String processDefinitionKey, String taskId) {
-        Query query = new Query(where("tasks." + taskId).exists(true).and("processDefinitionKey").is(processDefinitionKey));
-        return mongoOperations.findOne(query, ProcessInstance.class);
+        Query query = new Query(where("taskIds").is(taskId).and("processDefinitionKey").is(processDefinitionKey));
+        ProcessInstance instance = mongoOperations.findOne(query, ProcessInstance.class);
+        if (instance != null)
+            return instance;
+
+        // The task may have been written by a node that doesn't maintain taskIds, or before the
+        // backfill reached its instance, so look in the task map itself and list it for next time
+        query = new Query(where("tasks." + taskId).exists(true).and("processDefinitionKey").is(processDefinitionKey));
+        instance = mongoOperations.findOne(query, ProcessInstance.class);
+        if (instance != null) {
+            List<String> taskIds = new ArrayList<String>();
+            for (Task task : instance.getTasks()) {
+                taskIds.add(task.getTaskInstanceId());
+            }
+            Update update = new Update();
+            includeTaskIds(update, taskIds);
+            mongoOperations.updateFirst(new Query(where("_id").is(instance.getProcessInstanceId())), update, ProcessInstance.class);
+            LOG.info("Repaired the task ids of process instance " + instance.getProcessInstanceId() + ", which was missing task " + taskId);
+        }
+        return instance;
     }
 
     @Override
@@ -131,10 +247,13 @@ public class ProcessInstanceRepositoryCustomImpl implements ProcessInstanceRepos
         if (processStatus != null)
             update.set("processStatus", processStatus);
 
-        if (tasks != null) {
+        if (tasks != null && !tasks.isEmpty()) {
+            List<String> taskIds = new ArrayList<String>(tasks.size());
             for (Task task : tasks) {
                 update.set("tasks." + task.getTaskInstanceId(), task);
+                taskIds.add(task.getTaskInstanceId());
             }
+            includeTaskIds(update, taskIds);
         }
 
         update.push("operations", operation);
@@ -142,7 +261,11 @@ public class ProcessInstanceRepositoryCustomImpl implements ProcessInstanceRepos
         FindAndModifyOptions options = new FindAndModifyOptions();
         options.returnNew(true);
 
-        return mongoOperations.findAndModify(query, update, options, ProcessInstance.class);
+        ProcessInstance stored = mongoOperations.findAndModify(query, update, options, ProcessInstance.class);
+        // Keep the task collection in step with the tasks embedded in the instance
+        if (stored != null)
+            taskRepository.index(id, tasks);
+        return stored;
     }
 
     @Override
@@ -152,9 +275,12 @@ public class ProcessInstanceRepositoryCustomImpl implements ProcessInstanceRepos
 
         Update update = new Update();
         update.set("tasks." + task.getTaskInstanceId(), task);
+        includeTaskIds(update, Collections.singletonList(task.getTaskInstanceId()));
         FindAndModifyOptions options = new FindAndModifyOptions();
         options.returnNew(true);
         ProcessInstance stored = mongoOperations.findAndModify(query, update, options, ProcessInstance.class);
+        if (stored != null)
+            taskRepository.index(id, Collections.singleton(task));
 
         return true;
     }
@@ -171,6 +297,17 @@ public class ProcessInstanceRepositoryCustomImpl implements ProcessInstanceRepos
                 ProcessInstance.class);
     }
 
+    /*
+     * Every write to the task map also has to add the task's id to the indexed taskIds array,
+     * which is what findByTaskId actually queries
+     */
+    private static void includeTaskIds(Update update, List<String> taskIds) {
+        if (taskIds.size() == 1)
+            update.addToSet("taskIds", taskIds.get(0));
+        else
+            update.addToSet("taskIds", new BasicDBObject("$each", taskIds));
+    }
+
     private ProcessInstance updateEfficiently(String id, String label, Map<String, List<Value>> data, Map<String, List<Message>> messages, List<Attachment> attachments, Submission submission, String applicationStatusExplanation) {
         Query query = new Query(where("_id").is(id));
         Update update = new Update();
@@ -183,6 +320,7 @@ public class ProcessInstanceRepositoryCustomImpl implements ProcessInstanceRepos
         include(update, label);
         include(update, submission);
         includeMessages(update, messages);
+        includeKeywords(update, label, data);
 
         return mongoOperations.findAndModify(query, update, OPTIONS, ProcessInstance.class);
     }
@@ -272,6 +410,29 @@ public class ProcessInstanceRepositoryCustomImpl implements ProcessInstanceRepos
         }
     }
 
+    /*
+     * Keeps keyword search in step with the label and data, the same way the instance builder does
+     */
+    private static void includeKeywords(Update update, String label, Map<String, List<Value>> data) {
+        Set<String> keywords = new HashSet<String>();
+        if (StringUtils.isNotEmpty(label))
+            KeywordTokenizer.tokenize(label, keywords);
+        if (data != null) {
+            for (List<Value> values : data.values()) {
+                if (values == null)
+                    continue;
+                for (Value value : values) {
+                    if (value instanceof File)
+                        KeywordTokenizer.tokenize(File.class.cast(value).getName(), keywords);
+                    else if (value != null)
+                        KeywordTokenizer.tokenize(value.getValue(), keywords);
+                }
+            }
+        }
+        if (!keywords.isEmpty())
+            update.addToSet("keywords", new BasicDBObject("$each", new ArrayList<String>(keywords)));
+    }
+
     private static void include(Update update, String label) {
         if (StringUtils.isNotEmpty(label))
             update.set("processInstanceLabel", label);
@@ -282,4 +443,17 @@ public class ProcessInstanceRepositoryCustomImpl implements ProcessInstanceRepos
             update.push("submissions", submission.getSubmissionId());
     }
 
+    private KeywordSearchMode keywordSearchMode() {
+        String mode = environment != null ? environment.getProperty("search.keyword.mode") : null;
+        if (StringUtils.isBlank(mode))
+            return KeywordSearchMode.PREFIX;
+
+        try {
+            return KeywordSearchMode.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Unknown keyword search mode " + mode + ", using prefix search");
+            return KeywordSearchMode.PREFIX;
+        }
+    }
+
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.persistence.concrete;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.stereotype.Service;
+import piecework.model.QueuedNotification;
+import piecework.persistence.custom.QueuedNotificationRepositoryCustom;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Notifications are claimed one at a time with findAndModify, so any number of workers
+ * on any number of nodes can drain the outbox without sending the same notification twice.
+ * A claimed notification is marked as sending until its lease expires, after which it
+ * can be claimed again, so notifications held by a node that dies are not lost.
+ *
+ * @author James Renfro
+ */
+@Service
+@NoRepositoryBean
+public class QueuedNotificationRepositoryCustomImpl implements QueuedNotificationRepositoryCustom {
+
+    private static final FindAndModifyOptions OPTIONS = new FindAndModifyOptions().returnNew(true);
+
+    @Autowired
+    MongoTemplate mongoOperations;
+
+    @Override
+    public List<QueuedNotification> claim(int maxResults, Date leaseExpiration) {
+        Date now = new Date();
+        // A notification that is still marked as sending once its lease is up belongs to a worker that went away
+        Query query = new Query(where("status").in(QueuedNotification.Constants.PENDING, QueuedNotification.Constants.SENDING)
+                .and("nextAttemptTime").lte(now));
+        query.with(new Sort(Sort.Direction.ASC, "nextAttemptTime"));
+
+        Update update = new Update()
+                .set("status", QueuedNotification.Constants.SENDING)
+                .set("nextAttemptTime", leaseExpiration);
+
+        List<QueuedNotification> claimed = new ArrayList<QueuedNotification>(maxResults);
+        while (claimed.size() < maxResults) {
+            QueuedNotification queuedNotification = mongoOperations.findAndModify(query, update, OPTIONS, QueuedNotification.class);
+            if (queuedNotification == null)
+                break;
+            claimed.add(queuedNotification);
+        }
+        return claimed;
+    }
+
+    @Override
+    public long count(String status) {
+        return mongoOperations.count(new Query(where("status").is(status)), QueuedNotification.class);
+    }
+
+    @Override
+    public void release(String queuedNotificationId, String status, int attempts, Date nextAttemptTime, String lastError) {
+        Update update = new Update()
+                .set("status", status)
+                .set("attempts", attempts)
+                .set("nextAttemptTime", nextAttemptTime)
+                .set("lastError", lastError);
+        mongoOperations.updateFirst(new Query(where("_id").is(queuedNotificationId)), update, QueuedNotification.class);
+    }
+
+    @Override
+    public void purge(String status, Date createdBefore) {
+        mongoOperations.remove(new Query(where("status").is(status).and("createdTime").lt(createdBefore)), QueuedNotification.class);
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.persistence.concrete;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.stereotype.Service;
+import piecework.model.Task;
+import piecework.persistence.custom.TaskRepositoryCustom;
+import piecework.security.concrete.PassthroughSanitizer;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The task collection is a denormalized copy of the tasks embedded in each process instance,
+ * one document per task, so that inbox queries can be filtered, sorted, paged and counted
+ * by the database rather than in memory.
+ *
+ * @author James Renfro
+ */
+@Service
+@NoRepositoryBean
+public class TaskRepositoryCustomImpl implements TaskRepositoryCustom {
+
+    private static final Logger LOG = Logger.getLogger(TaskRepositoryCustomImpl.class);
+
+    @Autowired
+    MongoTemplate mongoOperations;
+
+    @Override
+    public Page<Task> findByQuery(Query query) {
+        long start = 0;
+        if (LOG.isDebugEnabled())
+            start = System.currentTimeMillis();
+
+        List<Task> tasks = mongoOperations.find(query, Task.class);
+
+        long total;
+        // We only need to look up a total if we're not on the first page or the page is full
+        if (query.getSkip() > 0 || tasks.size() == query.getLimit())
+            total = mongoOperations.count(query, Task.class);
+        else
+            total = tasks.size();
+
+        Page<Task> page = new PageImpl<Task>(tasks, null, total);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Retrieved tasks by query in " + (System.currentTimeMillis() - start) + " ms");
+
+        return page;
+    }
+
+    @Override
+    public void index(String processInstanceId, Collection<Task> tasks) {
+        if (tasks == null || tasks.isEmpty())
+            return;
+
+        PassthroughSanitizer passthroughSanitizer = new PassthroughSanitizer();
+        for (Task task : tasks) {
+            if (task == null || task.getTaskInstanceId() == null)
+                continue;
+            // Older tasks were not always stored with a reference back to their instance
+            Task indexed = task.getProcessInstanceId() != null ? task : new Task.Builder(task, passthroughSanitizer).processInstanceId(processInstanceId).build();
+            mongoOperations.save(indexed);
+        }
+    }
+
+}
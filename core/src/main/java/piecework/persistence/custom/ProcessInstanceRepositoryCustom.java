@@ -6,8 +6,10 @@ import org.springframework.data.mongodb.core.query.Query;
 import piecework.common.ViewContext;
 import piecework.model.*;
 import piecework.model.Process;
+import piecework.persistence.ProcessInstanceCallback;
 import piecework.process.ProcessInstanceSearchCriteria;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -21,6 +23,8 @@ public interface ProcessInstanceRepositoryCustom {
 
     Page<ProcessInstance> findByQuery(Query query, Pageable pageable);
 
+    void findByQuery(Query query, ProcessInstanceCallback callback) throws IOException;
+
     ProcessInstance findByTaskId(String processDefinitionKey, String taskId);
 
     ProcessInstance update(String id, String label, Map<String, List<Value>> data, Map<String, List<Message>> messages, List<Attachment> attachments, Submission submission, String applicationStatusExplanation);
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.process;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.springframework.data.domain.Page;
+import piecework.model.ProcessInstance;
+
+import javax.xml.bind.DatatypeConverter;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Opaque marker for the position of the last process instance on a page of
+ * results, built from its start time and id, so that the next page can be
+ * retrieved by seeking directly to it instead of skipping over every instance
+ * that came before. The position is carried along so that a total can still
+ * be estimated without running a count.
+ *
+ * @author James Renfro
+ */
+public class ContinuationToken {
+
+    private static final Logger LOG = Logger.getLogger(ContinuationToken.class);
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String SEPARATOR = ":";
+
+    private final Date startTime;
+    private final String processInstanceId;
+    private final int position;
+
+    public ContinuationToken(Date startTime, String processInstanceId, int position) {
+        this.startTime = startTime;
+        this.processInstanceId = processInstanceId;
+        this.position = position;
+    }
+
+    public static ContinuationToken after(ProcessInstance instance, int position) {
+        if (instance == null || instance.getStartTime() == null || StringUtils.isEmpty(instance.getProcessInstanceId()))
+            return null;
+        return new ContinuationToken(instance.getStartTime(), instance.getProcessInstanceId(), position);
+    }
+
+    /*
+     * A full page means there may be more instances, so this hands back an encoded token that
+     * points just past the last one on the page -- otherwise null
+     */
+    public static String next(ProcessInstanceSearchCriteria criteria, Page<ProcessInstance> page) {
+        if (!criteria.isContinuable() || !page.hasContent() || page.getNumberOfElements() < page.getSize())
+            return null;
+
+        ContinuationToken previous = criteria.getContinuationToken();
+        int position = previous != null ? previous.getPosition() : page.getNumber() * page.getSize();
+        List<ProcessInstance> instances = page.getContent();
+        ContinuationToken next = after(instances.get(instances.size() - 1), position + instances.size());
+        return next != null ? next.encode() : null;
+    }
+
+    /*
+     * Returns null for anything that was not produced by encode, rather than throwing, since
+     * the token arrives as a query parameter and may have been tampered with
+     */
+    public static ContinuationToken decode(String encoded) {
+        if (StringUtils.isEmpty(encoded))
+            return null;
+
+        try {
+            String unsafe = encoded.replace('-', '+').replace('_', '/').replace(',', '=');
+            String decoded = new String(DatatypeConverter.parseBase64Binary(unsafe), UTF8);
+            String[] tokens = decoded.split(SEPARATOR, 3);
+            if (tokens.length != 3)
+                return null;
+
+            long startTime = Long.parseLong(tokens[0]);
+            int position = Integer.parseInt(tokens[1]);
+            String processInstanceId = tokens[2];
+            if (StringUtils.isEmpty(processInstanceId) || position < 0)
+                return null;
+
+            return new ContinuationToken(new Date(startTime), processInstanceId, position);
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to decode continuation token " + encoded, e);
+        }
+        return null;
+    }
+
+    public String encode() {
+        String decoded = startTime.getTime() + SEPARATOR + position + SEPARATOR + processInstanceId;
+        String original = DatatypeConverter.printBase64Binary(decoded.getBytes(UTF8));
+        return original.replace('+', '-').replace('/', '_').replace('=', ',');
+    }
+
+    public Date getStartTime() {
+        return startTime;
+    }
+
+    public String getProcessInstanceId() {
+        return processInstanceId;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+}
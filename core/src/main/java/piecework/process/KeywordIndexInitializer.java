@@ -0,0 +1,145 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.process;
+
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.DocumentCallbackHandler;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import piecework.model.ProcessInstance;
+import piecework.persistence.MigrationLog;
+import piecework.util.KeywordTokenizer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Re-tokenizes the keywords of any process instance that was stored by an older version
+ * of the keyword tokenizer -- originally, whole lower-cased values that could only be found
+ * with a regex. Since those values were lower-cased but otherwise intact, tokenizing them
+ * again gives the same terms a fresh instance would have. Runs on a background thread
+ * so a large collection doesn't hold up startup, and only touches instances that are out
+ * of date -- until it reaches them, they just don't turn up in prefix searches. Once a
+ * pass finishes it's recorded in the migration log under the current tokenizer version,
+ * so later startups skip the scan entirely until the version is bumped again. Can be
+ * turned off with search.keyword.backfill = false
+ *
+ * @author James Renfro
+ */
+@Service
+public class KeywordIndexInitializer {
+
+    private static final Logger LOG = Logger.getLogger(KeywordIndexInitializer.class);
+
+    public static final String KEYWORDS_MIGRATION = "keywords.v" + KeywordTokenizer.VERSION;
+
+    @Autowired
+    Environment environment;
+
+    @Autowired
+    MigrationLog migrationLog;
+
+    @Autowired
+    MongoTemplate mongoOperations;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "keyword-backfill");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    backfill();
+                } catch (RuntimeException e) {
+                    LOG.error("Unable to re-tokenize keywords", e);
+                }
+            }
+        });
+        this.executor.shutdown();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    void backfill() {
+        Boolean backfill = environment.getProperty("search.keyword.backfill", Boolean.class, Boolean.TRUE);
+        if (!backfill.booleanValue() || migrationLog.isComplete(KEYWORDS_MIGRATION))
+            return;
+
+        try {
+            long start = System.currentTimeMillis();
+            Query query = new Query(where("keywordsVersion").ne(Integer.valueOf(KeywordTokenizer.VERSION)));
+            query.fields().include("keywords");
+
+            final String collectionName = mongoOperations.getCollectionName(ProcessInstance.class);
+            final int[] count = new int[1];
+            mongoOperations.executeQuery(query, collectionName, new DocumentCallbackHandler() {
+                @Override
+                public void processDocument(DBObject dbObject) throws MongoException, DataAccessException {
+                    Set<String> keywords = new HashSet<String>();
+                    Object stored = dbObject.get("keywords");
+                    if (stored instanceof Iterable) {
+                        for (Object keyword : Iterable.class.cast(stored)) {
+                            if (keyword != null)
+                                KeywordTokenizer.tokenize(keyword.toString(), keywords);
+                        }
+                    }
+
+                    mongoOperations.updateFirst(new Query(where("_id").is(dbObject.get("_id"))),
+                            new Update().set("keywords", new ArrayList<String>(keywords))
+                                    .set("keywordsVersion", Integer.valueOf(KeywordTokenizer.VERSION)),
+                            collectionName);
+                    count[0]++;
+                }
+            });
+
+            if (count[0] > 0)
+                LOG.info("Re-tokenized keywords for " + count[0] + " process instances in " + (System.currentTimeMillis() - start) + " ms");
+
+            migrationLog.complete(KEYWORDS_MIGRATION, count[0]);
+        } catch (DataAccessException e) {
+            LOG.error("Unable to re-tokenize keywords", e);
+        }
+    }
+
+}
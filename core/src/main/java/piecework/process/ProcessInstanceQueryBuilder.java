@@ -18,12 +18,18 @@ package piecework.process;
 
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 
+import com.mongodb.BasicDBObject;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import piecework.Constants;
+import piecework.enumeration.KeywordSearchMode;
+import piecework.util.KeywordTokenizer;
+
+import java.util.List;
 
 /**
  * @author James Renfro
@@ -31,13 +37,27 @@ import piecework.Constants;
 public class ProcessInstanceQueryBuilder {
 
     private final ProcessInstanceSearchCriteria searchCriteria;
+    private final KeywordSearchMode keywordSearchMode;
 
     public ProcessInstanceQueryBuilder(final ProcessInstanceSearchCriteria searchCriteria) {
+        this(searchCriteria, KeywordSearchMode.PREFIX);
+    }
+
+    public ProcessInstanceQueryBuilder(final ProcessInstanceSearchCriteria searchCriteria, final KeywordSearchMode keywordSearchMode) {
         this.searchCriteria = searchCriteria;
+        this.keywordSearchMode = keywordSearchMode != null ? keywordSearchMode : KeywordSearchMode.PREFIX;
     }
 
+    /*
+     * A text search ordered by relevance comes back ranked by text score, which can't be
+     * seeked by start time, so it pages by skipping instead (the criteria drop continuation
+     * tokens for any ordering but start time). Anywhere else relevance falls back to the
+     * default start time ordering
+     */
     public Query build() {
-        Query query = new Query();
+        boolean isTextSearch = keywordSearchMode == KeywordSearchMode.TEXT && !searchCriteria.getKeywords().isEmpty();
+        boolean isRanked = isTextSearch && searchCriteria.getOrderBy() == ProcessInstanceSearchCriteria.OrderBy.RELEVANCE;
+        Query query = isRanked ? new RelevanceQuery() : new Query();
 
         query.addCriteria(where("processDefinitionKey").in(searchCriteria.getProcessDefinitionKeys()));
 
@@ -80,23 +100,37 @@ public class ProcessInstanceQueryBuilder {
             query.addCriteria(where("endTime").gt(searchCriteria.getCompletedAfter()));
 
         if (!searchCriteria.getKeywords().isEmpty()) {
-            for (String keyword : searchCriteria.getKeywords())
-                query.addCriteria(where("keywords").regex(keyword.toLowerCase()));
+            // Every keyword has to match, in either mode
+            if (isTextSearch) {
+                query.addCriteria(where("$text").is(new BasicDBObject("$search", phrases(searchCriteria.getKeywords()))));
+            } else {
+                List<String> terms = KeywordTokenizer.terms(searchCriteria.getKeywords());
+                if (!terms.isEmpty())
+                    query.addCriteria(where("keywords").all(terms));
+            }
         }
 
+        ContinuationToken continuationToken = searchCriteria.getContinuationToken();
+        if (continuationToken != null)
+            query.addCriteria(seek(continuationToken, searchCriteria.getOrderBy() == ProcessInstanceSearchCriteria.OrderBy.START_TIME_ASC));
+
         if (searchCriteria.getMaxResults() != null)
             query.limit(searchCriteria.getMaxResults());
 
-        if (searchCriteria.getFirstResult() != null)
+        // Seeking past the continuation token replaces skipping
+        if (searchCriteria.getFirstResult() != null && continuationToken == null)
             query.skip(searchCriteria.getFirstResult());
 
+        // Start time orderings are tie-broken on _id so that the continuation token
+        // identifies a unique position in the results
         if (searchCriteria.getOrderBy() != null) {
             switch (searchCriteria.getOrderBy()) {
                 case START_TIME_ASC:
-                    query.with(new Sort(Sort.Direction.ASC, "startTime"));
+                    query.with(new Sort(Sort.Direction.ASC, "startTime", "_id"));
                     break;
                 case START_TIME_DESC:
-                    query.with(new Sort(Sort.Direction.DESC, "startTime"));
+                case RELEVANCE:
+                    query.with(new Sort(Sort.Direction.DESC, "startTime", "_id"));
                     break;
                 case END_TIME_ASC:
                     query.with(new Sort(Sort.Direction.ASC, "endTime"));
@@ -106,10 +140,38 @@ public class ProcessInstanceQueryBuilder {
                     break;
             }
         } else {
-            query.with(new Sort(Sort.Direction.DESC, "startTime"));
+            query.with(new Sort(Sort.Direction.DESC, "startTime", "_id"));
         }
 
         return query;
     }
 
+    /*
+     * Mongo ORs the words in a text search together, unless each one is quoted as a phrase
+     */
+    private static String phrases(List<String> keywords) {
+        StringBuilder builder = new StringBuilder();
+        for (String keyword : keywords) {
+            String phrase = StringUtils.remove(keyword, '"').trim();
+            if (phrase.length() == 0)
+                continue;
+            if (builder.length() > 0)
+                builder.append(' ');
+            builder.append('"').append(phrase).append('"');
+        }
+        return builder.toString();
+    }
+
+    /*
+     * Everything strictly after the (startTime, _id) pair in the token, in the direction of the sort
+     */
+    private static Criteria seek(ContinuationToken continuationToken, boolean ascending) {
+        if (ascending)
+            return new Criteria().orOperator(where("startTime").gt(continuationToken.getStartTime()),
+                    where("startTime").is(continuationToken.getStartTime()).and("_id").gt(continuationToken.getProcessInstanceId()));
+
+        return new Criteria().orOperator(where("startTime").lt(continuationToken.getStartTime()),
+                where("startTime").is(continuationToken.getStartTime()).and("_id").lt(continuationToken.getProcessInstanceId()));
+    }
+
 }
@@ -31,7 +31,8 @@ import java.util.*;
 public class ProcessInstanceSearchCriteria {
     private static final Logger LOG = Logger.getLogger(ProcessInstanceSearchCriteria.class);
 
-    public enum OrderBy { START_TIME_ASC, START_TIME_DESC, END_TIME_ASC, END_TIME_DESC };
+    public enum OrderBy { START_TIME_ASC, START_TIME_DESC, END_TIME_ASC, END_TIME_DESC, RELEVANCE };
+    public enum CountMode { EXACT, ESTIMATE, NONE };
 
     private final Set<String> processDefinitionKeys;
     private final Set<String> engines;
@@ -61,6 +62,8 @@ public class ProcessInstanceSearchCriteria {
     private final Map<String, List<String>> contentParameters;
     private final Map<String, List<String>> sanitizedParameters;
     private final OrderBy orderBy;
+    private final ContinuationToken continuationToken;
+    private final CountMode countMode;
 
     private ProcessInstanceSearchCriteria() {
         this(new Builder());
@@ -90,6 +93,8 @@ public class ProcessInstanceSearchCriteria {
         this.completedAfter = builder.completedAfter;
         this.initiatedBy = builder.initiatedBy;
         this.orderBy = builder.orderBy;
+        this.continuationToken = isOrderedByStartTime(builder.orderBy) ? builder.continuationToken : null;
+        this.countMode = builder.countMode != null ? builder.countMode : (this.continuationToken != null ? CountMode.ESTIMATE : CountMode.EXACT);
         this.firstResult = builder.firstResult;
         this.maxResults = builder.maxResults;
         this.contentParameters = Collections.unmodifiableMap(builder.contentParameters);
@@ -209,6 +214,22 @@ public class ProcessInstanceSearchCriteria {
         return includeVariables;
     }
 
+    /*
+     * Only available when results are ordered by start time, since that's what the token
+     * is built from -- for any other ordering paging falls back to firstResult
+     */
+    public ContinuationToken getContinuationToken() {
+        return continuationToken;
+    }
+
+    public CountMode getCountMode() {
+        return countMode;
+    }
+
+    public boolean isContinuable() {
+        return isOrderedByStartTime(orderBy);
+    }
+
     public Sort getSort() {
         Sort.Direction direction = Sort.Direction.DESC;
         String sortProperty = "startTime";
@@ -233,6 +254,10 @@ public class ProcessInstanceSearchCriteria {
         return new Sort(direction, sortProperty);
     }
 
+    private static boolean isOrderedByStartTime(OrderBy orderBy) {
+        return orderBy == null || orderBy == OrderBy.START_TIME_ASC || orderBy == OrderBy.START_TIME_DESC;
+    }
+
     public final static class Builder {
         private Set<String> limitToProcessDefinitionKeys;
         private Set<String> processDefinitionKeys;
@@ -263,6 +288,8 @@ public class ProcessInstanceSearchCriteria {
         private ManyMap<String, String> contentParameters;
         private ManyMap<String, String> sanitizedParameters;
         private boolean includeVariables;
+        private ContinuationToken continuationToken;
+        private CountMode countMode;
 
         public Builder() {
             this(null, null);
@@ -337,6 +364,10 @@ public class ProcessInstanceSearchCriteria {
                                     this.maxResults = Integer.valueOf(value);
                                 else if (key.equals("firstResult"))
                                     this.firstResult = Integer.valueOf(value);
+                                else if (key.equals("continuation"))
+                                    this.continuationToken = ContinuationToken.decode(value);
+                                else if (key.equals("count"))
+                                    this.countMode = parseCountMode(value);
                                 else if (key.equals("keyword"))
                                     this.keywords.add(value);
                                 else if (key.equals("verbose")) {
@@ -364,6 +395,18 @@ public class ProcessInstanceSearchCriteria {
             return new ProcessInstanceSearchCriteria(this);
         }
 
+        /*
+         * A mistyped count mode shouldn't fail the whole search, so it falls back to the default
+         */
+        private static CountMode parseCountMode(String value) {
+            for (CountMode countMode : CountMode.values()) {
+                if (countMode.name().equalsIgnoreCase(value))
+                    return countMode;
+            }
+            LOG.warn("Ignoring unknown count mode " + value + ", expected one of " + Arrays.toString(CountMode.values()));
+            return null;
+        }
+
         public Builder processDefinitionKey(String processDefinitionKey) {
             if (this.limitToProcessDefinitionKeys.isEmpty() || this.limitToProcessDefinitionKeys.contains(processDefinitionKey)) {
                 if (this.processDefinitionKeys == null)
@@ -494,6 +537,16 @@ public class ProcessInstanceSearchCriteria {
             return this;
         }
 
+        public Builder continuationToken(ContinuationToken continuationToken) {
+            this.continuationToken = continuationToken;
+            return this;
+        }
+
+        public Builder countMode(CountMode countMode) {
+            this.countMode = countMode;
+            return this;
+        }
+
     }
 
 }
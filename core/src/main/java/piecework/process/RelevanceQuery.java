@@ -0,0 +1,48 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.process;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.springframework.data.mongodb.core.query.Query;
+
+/**
+ * A query that ranks its results by Mongo text search score, which the Query API has no
+ * way to express, so the score is added to whatever fields were asked for and replaces
+ * the sort.
+ *
+ * @author James Renfro
+ */
+public class RelevanceQuery extends Query {
+
+    public static final String SCORE = "score";
+
+    private static final DBObject TEXT_SCORE = new BasicDBObject("$meta", "textScore");
+
+    @Override
+    public DBObject getFieldsObject() {
+        DBObject fields = super.getFieldsObject();
+        BasicDBObject fieldsObject = fields != null ? new BasicDBObject(fields.toMap()) : new BasicDBObject();
+        fieldsObject.put(SCORE, TEXT_SCORE);
+        return fieldsObject;
+    }
+
+    @Override
+    public DBObject getSortObject() {
+        return new BasicDBObject(SCORE, TEXT_SCORE);
+    }
+
+}
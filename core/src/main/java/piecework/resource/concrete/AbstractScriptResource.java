@@ -34,6 +34,8 @@ import piecework.persistence.ContentRepository;
 import piecework.security.Sanitizer;
 import piecework.security.SecuritySettings;
 import piecework.service.*;
+import piecework.ui.StaticBundle;
+import piecework.ui.StaticBundleStore;
 import piecework.ui.streaming.ResourceStreamingOutput;
 
 import javax.ws.rs.core.*;
@@ -48,6 +50,7 @@ import java.util.List;
 public abstract class AbstractScriptResource {
 
     private static final Logger LOG = Logger.getLogger(AbstractScriptResource.class);
+    private static final int ONE_YEAR_IN_SECONDS = 365 * 24 * 60 * 60;
 
     @Autowired
     ContentRepository contentRepository;
@@ -55,6 +58,9 @@ public abstract class AbstractScriptResource {
     @Autowired
     DeploymentService deploymentService;
 
+    @Autowired
+    StaticBundleStore bundleStore;
+
     @Autowired
     protected FormFactory formFactory;
 
@@ -95,12 +101,12 @@ public abstract class AbstractScriptResource {
         }
     }
 
-    protected Response processScript(Form form) throws StatusCodeError {
+    protected Response processScript(Form form, MessageContext context) throws StatusCodeError {
         try {
             FormDisposition formDisposition = form.getDisposition();
             Resource pageResource = userInterfaceService.getCustomPage(form);
             Resource scriptResource = userInterfaceService.getScriptResource(pageResource, formDisposition.getBase(), form.isAnonymous());
-            return response(scriptResource, "text/javascript");
+            return response(scriptResource, "text/javascript", context);
         } catch (IOException ioe) {
             LOG.error("Caught io exception", ioe);
             throw new NotFoundError();
@@ -110,12 +116,12 @@ public abstract class AbstractScriptResource {
         }
     }
 
-    protected Response processStylesheet(Form form) throws StatusCodeError {
+    protected Response processStylesheet(Form form, MessageContext context) throws StatusCodeError {
         try {
             FormDisposition formDisposition = form.getDisposition();
             Resource pageResource = userInterfaceService.getCustomPage(form);
             Resource stylesheetResource = userInterfaceService.getStylesheetResource(pageResource, formDisposition.getBase(), isAnonymous());
-            return response(stylesheetResource, "text/css");
+            return response(stylesheetResource, "text/css", context);
         } catch (IOException ioe) {
             LOG.error("Caught io exception", ioe);
             throw new NotFoundError();
@@ -222,6 +228,45 @@ public abstract class AbstractScriptResource {
                 .build();
     }
 
+    /*
+     * Bundles are served with a strong etag derived from their content, so browsers can revalidate
+     * them cheaply, and pre-compressed when the client accepts gzip. Only a request that names the
+     * bundle hash in its v parameter is allowed to cache it for a year, since that url is guaranteed
+     * to change whenever the content does.
+     */
+    protected Response response(Resource resource, String mediaType, MessageContext context) throws NotFoundError {
+        if (!(resource instanceof StaticBundle) || context == null)
+            return response(resource, mediaType);
+
+        StaticBundle bundle = StaticBundle.class.cast(resource);
+        EntityTag entityTag = new EntityTag(bundle.getHash());
+        HttpHeaders headers = context.getHttpHeaders();
+        String version = context.getUriInfo() != null ? context.getUriInfo().getQueryParameters().getFirst("v") : null;
+
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setMaxAge(bundle.getHash().equals(version) ? ONE_YEAR_IN_SECONDS : (int)bundleStore.getMaxAge());
+        cacheControl.setPrivate(!isAnonymous());
+
+        String ifNoneMatch = headers != null ? headers.getRequestHeaders().getFirst(HttpHeaders.IF_NONE_MATCH) : null;
+        if (ifNoneMatch != null && (ifNoneMatch.contains(entityTag.toString()) || ifNoneMatch.trim().equals("*")))
+            return Response.notModified(entityTag).cacheControl(cacheControl).build();
+
+        Response.ResponseBuilder builder;
+        String acceptEncoding = headers != null ? headers.getRequestHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING) : null;
+        if (acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip")) {
+            builder = Response.ok(bundle.getGzipped(), mediaType).header("Content-Encoding", "gzip");
+        } else {
+            builder = Response.ok(new ResourceStreamingOutput(resource), mediaType);
+        }
+
+        return builder
+                .header("Vary", "Accept-Encoding")
+                .tag(entityTag)
+                .cacheControl(cacheControl)
+                .lastModified(lastModified(resource))
+                .build();
+    }
+
     private static Date lastModified(Resource resource) {
         DateTime lastModified;
         try {
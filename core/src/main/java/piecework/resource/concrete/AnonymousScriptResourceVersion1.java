@@ -51,13 +51,13 @@ public class AnonymousScriptResourceVersion1 extends AbstractScriptResource impl
     @Override
     public Response readScript(final String rawProcessDefinitionKey, final MessageContext context) throws StatusCodeError {
         Form form = getForm(rawProcessDefinitionKey, context);
-        return processScript(form);
+        return processScript(form, context);
     }
 
     @Override
     public Response readStylesheet(final String rawProcessDefinitionKey, final MessageContext context) throws StatusCodeError {
         Form form = getForm(rawProcessDefinitionKey, context);
-        return processStylesheet(form);
+        return processStylesheet(form, context);
     }
 
     private Form getForm(final String rawProcessDefinitionKey, final MessageContext context) throws NotFoundError {
@@ -249,8 +249,13 @@ public class ProcessInstanceResourceVersion1 implements ProcessInstanceResource
         if (mediaTypes != null && mediaTypes.contains(new MediaType("text", "csv"))) {
             String fileName = "export.csv";
             ExportInstanceProvider provider = processInstanceService.exportProvider(rawQueryParameters, principal);
-            ExportStreamingOutput exportStreamingOutput = new ExportStreamingOutput(provider);
-            return Response.ok(exportStreamingOutput, "text/csv").header("Content-Disposition", "attachment; filename=" + fileName).build();
+            String acceptEncoding = context.getHttpHeaders().getRequestHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING);
+            boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+            ExportStreamingOutput exportStreamingOutput = new ExportStreamingOutput(provider, gzip);
+            ResponseBuilder responseBuilder = Response.ok(exportStreamingOutput, "text/csv").header("Content-Disposition", "attachment; filename=" + fileName);
+            if (gzip)
+                responseBuilder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return responseBuilder.build();
         } else {
             SearchResults results = processInstanceService.search(rawQueryParameters, principal);
             return Response.ok(results).build();
@@ -77,11 +77,11 @@ public class ScriptResourceVersion1 extends AbstractScriptResource implements Sc
         String templateName = formTemplateService.getTemplateName(scriptId, isAnonymous());
         if (templateName == null) {
             Form form = getForm(scriptId, principal, context);
-            return processScript(form);
+            return processScript(form, context);
         }
 
         Resource scriptResource = userInterfaceService.getScriptResource(templateName, null, isAnonymous());
-        return response(scriptResource, "text/javascript");
+        return response(scriptResource, "text/javascript", context);
     }
 
     @Override
@@ -91,11 +91,11 @@ public class ScriptResourceVersion1 extends AbstractScriptResource implements Sc
         String templateName = formTemplateService.getTemplateName(stylesheetId, isAnonymous());
         if (templateName == null) {
             Form form = getForm(stylesheetId, principal, context);
-            return processStylesheet(form);
+            return processStylesheet(form, context);
         }
 
         Resource stylesheetResource = userInterfaceService.getStylesheetResource(templateName, null, isAnonymous());
-        return response(stylesheetResource, "text/css");
+        return response(stylesheetResource, "text/css", context);
     }
 
     @Override
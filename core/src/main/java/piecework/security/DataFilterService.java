@@ -155,38 +155,57 @@ public class DataFilterService {
         return map;
     }
 
+    /*
+     * Returns a view of the data that decrypts each field on first read, so callers
+     * that only look at a subset of fields don't pay to decrypt the rest
+     */
+    public ManyMap<String, Value> lazyDecrypt(Map<String, List<Value>> original) {
+        return new DecryptingManyMap(original, encryptionService);
+    }
+
     public List<Value> encrypt(List<? extends Value> values) throws UnsupportedEncodingException, GeneralSecurityException, InvalidCipherTextException {
         if (values.isEmpty())
             return Collections.emptyList();
 
-        List<Value> list = new ArrayList<Value>(values.size());
+        List<String> plaintexts = new ArrayList<String>(values.size());
         for (Value value : values) {
-            if (value instanceof Value) {
-                String plaintext = value != null ? value.getValue() : null;
-                if (StringUtils.isNotEmpty(plaintext)) {
-                    list.add(encryptionService.encrypt(plaintext));
-                }
-            } else {
-                list.add(value);
-            }
+            String plaintext = value != null ? value.getValue() : null;
+            if (StringUtils.isNotEmpty(plaintext))
+                plaintexts.add(plaintext);
         }
 
-        return list;
+        return new ArrayList<Value>(encryptionService.encrypt(plaintexts));
     }
 
     private List<Value> decrypt(List<? extends Value> values) throws UnsupportedEncodingException, GeneralSecurityException, InvalidCipherTextException {
+        return decrypt(encryptionService, values);
+    }
+
+    /*
+     * Returns a new, modifiable list with the secrets replaced by their plaintext, shared with
+     * DecryptingManyMap so both decrypt each field's secrets in one batch
+     */
+    static List<Value> decrypt(EncryptionService encryptionService, List<? extends Value> values) throws UnsupportedEncodingException, GeneralSecurityException, InvalidCipherTextException {
         if (values.isEmpty())
-            return Collections.emptyList();
+            return new ArrayList<Value>();
+
+        List<Secret> secrets = new ArrayList<Secret>();
+        for (Value value : values) {
+            if (value instanceof Secret)
+                secrets.add(Secret.class.cast(value));
+        }
+
+        if (secrets.isEmpty())
+            return new ArrayList<Value>(values);
 
+        // Decrypt all the secrets for this field in one call, then put them back in place
+        Iterator<String> plaintexts = encryptionService.decrypt(secrets).iterator();
         List<Value> list = new ArrayList<Value>(values.size());
         for (Value value : values) {
-            if (value instanceof Secret) {
-                Secret secret = Secret.class.cast(value);
-                String plaintext = encryptionService.decrypt(secret);
-                list.add(new Value(plaintext));
-            } else {
+            if (value instanceof Secret)
+                list.add(new Value(plaintexts.next()));
+            else
                 list.add(value);
-            }
         }
 
         return list;
@@ -218,8 +237,11 @@ public class DataFilterService {
         for (Value value : values) {
             if (value instanceof Secret) {
                 Secret secret = Secret.class.cast(value);
-                String plaintext = encryptionService.decrypt(secret);
-                list.add(new Value(Strings.repeat("*", plaintext.length())));
+                // Older secrets don't record their length, so fall back to decrypting them
+                Integer length = secret.getLength();
+                if (length == null)
+                    length = Integer.valueOf(encryptionService.decrypt(secret).length());
+                list.add(new Value(Strings.repeat("*", length.intValue())));
             } else {
                 list.add(value);
             }
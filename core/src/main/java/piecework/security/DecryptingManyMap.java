@@ -0,0 +1,215 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.security;
+
+import org.apache.log4j.Logger;
+import piecework.model.Value;
+import piecework.util.ManyMap;
+
+import java.util.*;
+
+/**
+ * Read-only view over submission or instance data that decrypts the values of a
+ * key the first time that key is read, and keeps the result for the lifetime of the
+ * view. Callers that only touch a handful of fields -- validation rules, for example --
+ * pay for AES on those fields alone instead of on every restricted value in the map.
+ *
+ * Operations that need the whole map (size, iteration, equality, searching by value,
+ * printing) decrypt whatever has not yet been read. Instances are meant to be scoped
+ * to a single request.
+ *
+ * @author James Renfro
+ */
+public class DecryptingManyMap extends ManyMap<String, Value> {
+
+    private static final long serialVersionUID = 5046286385302873364L;
+    private static final Logger LOG = Logger.getLogger(DecryptingManyMap.class);
+
+    private final transient Map<String, List<Value>> original;
+    private final transient EncryptionService encryptionService;
+    private final transient Set<String> resolved;
+
+    public DecryptingManyMap(Map<String, List<Value>> original, EncryptionService encryptionService) {
+        super();
+        this.original = original != null ? original : Collections.<String, List<Value>>emptyMap();
+        this.encryptionService = encryptionService;
+        this.resolved = new HashSet<String>();
+    }
+
+    @Override
+    public synchronized List<Value> get(Object key) {
+        resolve(key);
+        return super.get(key);
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        resolve(key);
+        return super.containsKey(key);
+    }
+
+    /*
+     * Keys that have been read, put or removed shadow the original data, so the map is only
+     * empty when none are left here and every original key has been shadowed
+     */
+    @Override
+    public synchronized boolean isEmpty() {
+        if (!super.isEmpty())
+            return false;
+        for (Map.Entry<String, List<Value>> entry : original.entrySet()) {
+            if (entry.getValue() != null && !resolved.contains(entry.getKey()))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized int size() {
+        resolveAll();
+        return super.size();
+    }
+
+    @Override
+    public synchronized List<Value> put(String key, List<Value> value) {
+        resolved.add(key);
+        return super.put(key, value);
+    }
+
+    @Override
+    public synchronized List<Value> remove(Object key) {
+        if (key instanceof String)
+            resolved.add((String) key);
+        return super.remove(key);
+    }
+
+    @Override
+    public synchronized Enumeration<String> keys() {
+        resolveAll();
+        return super.keys();
+    }
+
+    @Override
+    public synchronized Enumeration<List<Value>> elements() {
+        resolveAll();
+        return super.elements();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        resolveAll();
+        return super.keySet();
+    }
+
+    @Override
+    public Set<Map.Entry<String, List<Value>>> entrySet() {
+        resolveAll();
+        return super.entrySet();
+    }
+
+    @Override
+    public Collection<List<Value>> values() {
+        resolveAll();
+        return super.values();
+    }
+
+    @Override
+    public synchronized boolean contains(Object value) {
+        resolveAll();
+        return super.contains(value);
+    }
+
+    @Override
+    public synchronized boolean containsValue(Object value) {
+        resolveAll();
+        return super.containsValue(value);
+    }
+
+    @Override
+    public synchronized void clear() {
+        resolved.addAll(original.keySet());
+        super.clear();
+    }
+
+    @Override
+    public synchronized boolean equals(Object o) {
+        resolveAll();
+        return super.equals(o);
+    }
+
+    @Override
+    public synchronized int hashCode() {
+        resolveAll();
+        return super.hashCode();
+    }
+
+    @Override
+    public synchronized String toString() {
+        resolveAll();
+        return super.toString();
+    }
+
+    /*
+     * A copy doesn't share the original data or the record of which keys have been
+     * read, so it is a plain map with every value decrypted
+     */
+    @Override
+    public synchronized Object clone() {
+        resolveAll();
+        return new ManyMap<String, Value>(this);
+    }
+
+    /*
+     * Number of keys whose values have been decrypted (or attempted) so far
+     */
+    public synchronized int getResolvedCount() {
+        return resolved.size();
+    }
+
+    private synchronized void resolveAll() {
+        for (String key : original.keySet()) {
+            resolve(key);
+        }
+    }
+
+    private void resolve(Object key) {
+        if (!(key instanceof String))
+            return;
+
+        String name = String.class.cast(key);
+        if (resolved.contains(name))
+            return;
+
+        resolved.add(name);
+        List<Value> values = original.get(name);
+        if (values == null)
+            return;
+
+        try {
+            super.put(name, DataFilterService.decrypt(encryptionService, values));
+        } catch (Exception e) {
+            LOG.error("Could not decrypt messages for " + name, e);
+        }
+    }
+
+    /*
+     * Serializes as a plain map with every value decrypted, since the original data
+     * and encryption service aren't serialized with it
+     */
+    private Object writeReplace() {
+        return clone();
+    }
+
+}
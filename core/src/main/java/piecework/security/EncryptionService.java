@@ -37,5 +37,15 @@ public interface EncryptionService {
 
     String decrypt(Secret secret) throws InvalidCipherTextException, GeneralSecurityException, UnsupportedEncodingException;
 
+    /*
+     * Encrypts each of the texts in order, returning one secret per text
+     */
+    List<Secret> encrypt(List<String> texts) throws InvalidCipherTextException, UnsupportedEncodingException, GeneralSecurityException;
+
+    /*
+     * Decrypts each of the secrets in order, returning one plaintext per secret
+     */
+    List<String> decrypt(List<Secret> secrets) throws InvalidCipherTextException, GeneralSecurityException, UnsupportedEncodingException;
+
     String generateKey(int n) throws NoSuchAlgorithmException, InvalidKeySpecException, UnsupportedEncodingException, NoSuchProviderException;
 }
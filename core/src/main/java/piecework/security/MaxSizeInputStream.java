@@ -15,19 +15,20 @@
  */
 package piecework.security;
 
-
-
-import org.apache.commons.compress.utils.CountingInputStream;
 import piecework.exception.MaxSizeExceededException;
 
-import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
 /**
+ * Fails with a MaxSizeExceededException as soon as more than maxBytes have been read
+ * from the wrapped stream. Streams are consumed by a single thread, so there is no
+ * locking, and the end-of-stream marker (-1) is not counted toward the total.
+ *
  * @author James Renfro
  */
-public class MaxSizeInputStream extends BufferedInputStream {
+public class MaxSizeInputStream extends FilterInputStream {
 
     private final long maxBytes;
     private long size;
@@ -37,24 +38,57 @@ public class MaxSizeInputStream extends BufferedInputStream {
         this.maxBytes = maxBytes;
     }
 
-    public synchronized int read() throws IOException {
-        int bytesRead = super.read();
-        size += bytesRead;
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1)
+            count(1);
 
-        if (size > maxBytes)
-            throw new MaxSizeExceededException(maxBytes);
+        return b;
+    }
+
+    @Override
+    public int read(byte b[], int off, int len) throws IOException {
+        int bytesRead = super.read(b, off, len);
+        if (bytesRead > 0)
+            count(bytesRead);
 
         return bytesRead;
     }
 
-    public synchronized int read(byte b[], int off, int len) throws IOException {
-        int bytesRead = super.read(b, off, len);
-        size += bytesRead;
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        if (skipped > 0)
+            count(skipped);
+
+        return skipped;
+    }
 
+    @Override
+    public boolean markSupported() {
+        // Resetting would make the count meaningless
+        return false;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("Mark and reset are not supported");
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    private void count(long bytes) throws MaxSizeExceededException {
+        size += bytes;
         if (size > maxBytes)
             throw new MaxSizeExceededException(maxBytes);
-
-        return bytesRead;
     }
 
 }
@@ -15,11 +15,19 @@
  */
 package piecework.security;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * @author James Renfro
  */
 public interface Sanitizer {
 
 	String sanitize(String tainted);
+
+	/*
+	 * Sanitizes both keys and values, dropping any that come back null
+	 */
+	Map<String, List<String>> sanitize(Map<String, List<String>> tainted);
 	
 }
@@ -35,13 +35,37 @@ import java.util.List;
 import java.util.Map;
 
 /**
+ * Provides batch operations in terms of the single value ones, so implementations
+ * only need to override them when they can do better than a loop.
+ *
  * @author James Renfro
  */
 public abstract class BaseEncryptionService implements EncryptionService {
 
     private static final Logger LOG = Logger.getLogger(BaseEncryptionService.class);
 
+    @Override
+    public List<Secret> encrypt(List<String> texts) throws InvalidCipherTextException, UnsupportedEncodingException, GeneralSecurityException {
+        if (texts == null || texts.isEmpty())
+            return Collections.emptyList();
+
+        List<Secret> secrets = new ArrayList<Secret>(texts.size());
+        for (String text : texts) {
+            secrets.add(encrypt(text));
+        }
+        return secrets;
+    }
 
+    @Override
+    public List<String> decrypt(List<Secret> secrets) throws InvalidCipherTextException, GeneralSecurityException, UnsupportedEncodingException {
+        if (secrets == null || secrets.isEmpty())
+            return Collections.emptyList();
 
+        List<String> texts = new ArrayList<String>(secrets.size());
+        for (Secret secret : secrets) {
+            texts.add(decrypt(secret));
+        }
+        return texts;
+    }
 
 }
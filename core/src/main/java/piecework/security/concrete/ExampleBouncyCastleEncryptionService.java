@@ -35,6 +35,7 @@ import piecework.security.EncryptionKeyProvider;
 import piecework.security.SecretKeyRing;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
@@ -46,7 +47,14 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * This implementation is provided purely for the purposes of demonstration and is
@@ -67,74 +75,80 @@ public class ExampleBouncyCastleEncryptionService extends BaseEncryptionService
     @Autowired
     UuidGenerator uuidGenerator;
 
-    private SecureRandom random;
+    private String pseudoRandomGenerator;
+    private byte[] seed;
+
+    // Key parameters by key name, so repeated calls don't go back to the key provider
+    private final ConcurrentMap<String, KeyParameter> keyParameterMap = new ConcurrentHashMap<String, KeyParameter>();
+
+    // Ciphers and random number generators are not thread-safe, so each operation borrows
+    // one from a bounded pool and re-initializes it rather than building a new one. Unlike
+    // thread locals, the pools belong to this bean, so nothing is left attached to container
+    // threads when the application is undeployed.
+    private BlockingQueue<BufferedBlockCipher> ciphers;
+    private BlockingQueue<SecureRandom> randoms;
 
     @PostConstruct
     public void init() throws GeneralSecurityException, UnsupportedEncodingException {
-        String encryptionPseudoRandomGenerator = environment.getProperty("encryption.pseudorandom.generator");
-        if (StringUtils.isNotEmpty(encryptionPseudoRandomGenerator))
-            this.random = SecureRandom.getInstance(encryptionPseudoRandomGenerator);
-        else
-            this.random = new SecureRandom();
+        this.pseudoRandomGenerator = environment.getProperty("encryption.pseudorandom.generator");
 
         String seed = environment.getProperty("encryption.key.seed");
         if (StringUtils.isNotEmpty(seed))
-            this.random.setSeed(Base64.decode(seed.getBytes("UTF-8")));
+            this.seed = Base64.decode(seed.getBytes("UTF-8"));
+
+        int poolSize = environment.getProperty("encryption.pool.size", Integer.class, Integer.valueOf(32));
+        this.ciphers = new ArrayBlockingQueue<BufferedBlockCipher>(poolSize);
+        this.randoms = new ArrayBlockingQueue<SecureRandom>(poolSize);
+
+        // Fail fast if the pseudo random generator is misconfigured
+        randoms.offer(secureRandom());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        ciphers.clear();
+        randoms.clear();
     }
 
     @Override
     public Secret encrypt(String text) throws InvalidCipherTextException, UnsupportedEncodingException, GeneralSecurityException {
-        BufferedBlockCipher cipher = cipher();
-
         SecretKeyRing secretKeyRing = keyProvider.getEncryptionKeyRing(null, null);
+        return encrypt(text, secretKeyRing);
+    }
 
-        byte[] key = secretKeyRing.getSecretKey().getEncoded();
-        byte[] iv = new byte[cipher.getBlockSize()];
-
-        // Generate a random initialization vector for this encryption
-        random.nextBytes(iv);
-
-        cipher.init(true, new ParametersWithIV(new KeyParameter(key), iv));
-
-        byte[] clear = text.getBytes("UTF-8");
-        int outputSize = cipher.getOutputSize(clear.length);
-        byte[] hidden = new byte[outputSize];
-        int bytesProcessed = cipher.processBytes(clear, 0, clear.length, hidden, 0);
-        bytesProcessed += cipher.doFinal(hidden, bytesProcessed);
-
-        if (bytesProcessed != hidden.length)
-            throw new GeneralSecurityException("Unable to correctly encrypt input data");
+    @Override
+    public List<Secret> encrypt(List<String> texts) throws InvalidCipherTextException, UnsupportedEncodingException, GeneralSecurityException {
+        if (texts == null || texts.isEmpty())
+            return Collections.emptyList();
 
-        return new Secret.Builder()
-                .id(uuidGenerator.getNextId())
-                .name(secretKeyRing.getKeyName())
-                .date(new Date())
-                .ciphertext(Base64.encode(hidden))
-                .iv(Base64.encode(iv)).build();
+        // All of the texts in a single batch are encrypted with the same key
+        SecretKeyRing secretKeyRing = keyProvider.getEncryptionKeyRing(null, null);
+        List<Secret> secrets = new ArrayList<Secret>(texts.size());
+        for (String text : texts) {
+            secrets.add(encrypt(text, secretKeyRing));
+        }
+        return secrets;
     }
 
     @Override
     public String decrypt(Secret secret) throws InvalidCipherTextException, GeneralSecurityException, UnsupportedEncodingException {
-        SecretKey secretKey = keyProvider.getDecryptionKey(secret.getName());
-
         BufferedBlockCipher cipher = cipher();
-        byte[] key = secretKey.getEncoded();
-        byte[] iv = Base64.decode(secret.getIv());
-        cipher.init(false, new ParametersWithIV(new KeyParameter(key), iv));
-
-        byte[] hidden = Base64.decode(secret.getCiphertext());
-        byte[] temporary;
-
-        int outputLength = cipher.getOutputSize(hidden.length);
-        temporary = new byte[outputLength];
-        int bytesProcessed = cipher.processBytes(hidden, 0, hidden.length, temporary, 0);
-        bytesProcessed += cipher.doFinal(temporary, bytesProcessed);
-
-        byte[] clear = new byte[bytesProcessed];
-
-        System.arraycopy(temporary, 0, clear, 0, bytesProcessed);
-
-        return new String(clear, "UTF-8");
+        try {
+            byte[] iv = Base64.decode(secret.getIv());
+            cipher.init(false, new ParametersWithIV(decryptionKey(secret.getName()), iv));
+
+            byte[] hidden = Base64.decode(secret.getCiphertext());
+            byte[] temporary;
+
+            int outputLength = cipher.getOutputSize(hidden.length);
+            temporary = new byte[outputLength];
+            int bytesProcessed = cipher.processBytes(hidden, 0, hidden.length, temporary, 0);
+            bytesProcessed += cipher.doFinal(temporary, bytesProcessed);
+
+            return new String(temporary, 0, bytesProcessed, "UTF-8");
+        } finally {
+            ciphers.offer(cipher);
+        }
     }
 
     @Override
@@ -146,10 +160,88 @@ public class ExampleBouncyCastleEncryptionService extends BaseEncryptionService
         return new String(Base64.encode(secretKey.getEncoded()), "UTF-8");
     }
 
+    private Secret encrypt(String text, SecretKeyRing secretKeyRing) throws InvalidCipherTextException, UnsupportedEncodingException, GeneralSecurityException {
+        BufferedBlockCipher cipher = cipher();
+        SecureRandom random = randoms.poll();
+        try {
+            if (random == null)
+                random = secureRandom();
+
+            byte[] iv = new byte[cipher.getBlockSize()];
+
+            // Generate a random initialization vector for this encryption
+            random.nextBytes(iv);
+
+            cipher.init(true, new ParametersWithIV(encryptionKey(secretKeyRing), iv));
+
+            byte[] clear = text.getBytes("UTF-8");
+            int outputSize = cipher.getOutputSize(clear.length);
+            byte[] hidden = new byte[outputSize];
+            int bytesProcessed = cipher.processBytes(clear, 0, clear.length, hidden, 0);
+            bytesProcessed += cipher.doFinal(hidden, bytesProcessed);
+
+            if (bytesProcessed != hidden.length)
+                throw new GeneralSecurityException("Unable to correctly encrypt input data");
+
+            return new Secret.Builder()
+                    .id(uuidGenerator.getNextId())
+                    .name(secretKeyRing.getKeyName())
+                    .date(new Date())
+                    .ciphertext(Base64.encode(hidden))
+                    .iv(Base64.encode(iv))
+                    .length(text.length()).build();
+        } finally {
+            ciphers.offer(cipher);
+            if (random != null)
+                randoms.offer(random);
+        }
+    }
+
+    /*
+     * A cipher from the pool, or a new one when every pooled cipher is in use. Callers offer it
+     * back when they're done, and it's simply dropped if the pool is already full.
+     */
     private BufferedBlockCipher cipher() {
-        BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESEngine()), new PKCS7Padding());
-        cipher.reset();
+        BufferedBlockCipher cipher = ciphers.poll();
+        if (cipher == null)
+            cipher = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESEngine()), new PKCS7Padding());
         return cipher;
     }
 
+    private KeyParameter encryptionKey(SecretKeyRing secretKeyRing) {
+        String keyName = secretKeyRing.getKeyName();
+        if (keyName == null)
+            return new KeyParameter(secretKeyRing.getSecretKey().getEncoded());
+
+        KeyParameter keyParameter = keyParameterMap.get(keyName);
+        if (keyParameter == null) {
+            keyParameter = new KeyParameter(secretKeyRing.getSecretKey().getEncoded());
+            keyParameterMap.putIfAbsent(keyName, keyParameter);
+        }
+        return keyParameter;
+    }
+
+    private KeyParameter decryptionKey(String keyName) throws GeneralSecurityException {
+        if (keyName == null)
+            return new KeyParameter(keyProvider.getDecryptionKey(null).getEncoded());
+
+        KeyParameter keyParameter = keyParameterMap.get(keyName);
+        if (keyParameter == null) {
+            SecretKey secretKey = keyProvider.getDecryptionKey(keyName);
+            keyParameter = new KeyParameter(secretKey.getEncoded());
+            keyParameterMap.putIfAbsent(keyName, keyParameter);
+        }
+        return keyParameter;
+    }
+
+    private SecureRandom secureRandom() throws NoSuchAlgorithmException {
+        SecureRandom random = StringUtils.isNotEmpty(pseudoRandomGenerator) ? SecureRandom.getInstance(pseudoRandomGenerator) : new SecureRandom();
+        if (seed != null) {
+            random.setSeed(seed);
+            // Supplement the shared seed so that no two pooled generators produce the same sequence of IVs
+            random.setSeed(System.identityHashCode(random) ^ System.nanoTime());
+        }
+        return random;
+    }
+
 }
@@ -30,7 +30,7 @@ public class PassthroughEncryptionService extends BaseEncryptionService {
 
     @Override
     public Secret encrypt(String text) throws InvalidCipherTextException, UnsupportedEncodingException, GeneralSecurityException {
-        return new Secret.Builder().ciphertext(text.getBytes("UTF-8")).build();
+        return new Secret.Builder().ciphertext(text.getBytes("UTF-8")).length(text.length()).build();
     }
 
     @Override
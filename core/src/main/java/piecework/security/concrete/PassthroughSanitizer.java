@@ -17,6 +17,9 @@ package piecework.security.concrete;
 
 import piecework.security.Sanitizer;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * This class is used in cases where the data has already been sanitized
  * and stored.
@@ -30,4 +33,9 @@ public class PassthroughSanitizer implements Sanitizer {
 		return tainted;
 	}
 
+	@Override
+	public Map<String, List<String>> sanitize(Map<String, List<String>> tainted) {
+		return tainted;
+	}
+
 }
@@ -15,6 +15,7 @@
  */
 package piecework.security.concrete;
 
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -31,41 +32,39 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import piecework.security.Sanitizer;
-import piecework.util.ManyMap;
 
 /**
+ * Strips potential scripting from user input with AntiSamy. Since the vast majority of
+ * input -- ids, keys, query parameters, ordinary form values -- contains no markup at all,
+ * each string is first checked for characters that could start markup or an entity, and
+ * strings without any are returned as they are without paying for a DOM scan.
+ *
  * @author James Renfro
  */
 @Service
 public class UserInputSanitizer implements Sanitizer {
 
 	private static final Logger LOG = org.apache.log4j.Logger.getLogger(UserInputSanitizer.class);
-	
+
+	// AntiSamy's own default when the policy doesn't say
+	private static final int DEFAULT_MAX_INPUT_SIZE = 100000;
+
 	@Autowired
 	Policy antisamyPolicy;
-		
+
+	private volatile int maxInputSize = -1;
+
 	/**
 	 * Ensure that the passed string is stripped of any potential scripting
 	 */
 	public String sanitize(String tainted) {
-		AntiSamy as = new AntiSamy();
-		
-		if (tainted != null) {
-			try {
-				CleanResults cr = as.scan(tainted, antisamyPolicy);
-				String clean = cr.getCleanHTML();
-				logErrors(cr);
-				if (clean != null) {
-					return StringEscapeUtils.unescapeXml(clean);
-				}
-			} catch (ScanException se) {
-				LOG.error("Caught a scan exception", se);
-			} catch (PolicyException pe) {
-				LOG.error("Caught a scan exception", pe);
-			}
-		}
-		
-		return null;
+		if (tainted == null)
+			return null;
+
+		if (isMarkupFree(tainted))
+			return tainted;
+
+		return scan(new AntiSamy(), tainted);
 	}
 
 	/**
@@ -74,45 +73,114 @@ public class UserInputSanitizer implements Sanitizer {
 	public Map<String, List<String>> sanitize(final Map<String, List<String>> tainted) {
 		if (tainted == null)
 			return null;
-		
-		ManyMap<String, String> clean = new ManyMap<String, String>();
-		
-		AntiSamy as = new AntiSamy();
-		
+
+		// Keep the order that the fields were submitted in
+		Map<String, List<String>> clean = new LinkedHashMap<String, List<String>>(tainted.size());
+
+		// Only created if some entry actually needs to be scanned, and then reused for the rest
+		AntiSamy as = null;
+
 		for (Entry<String, List<String>> taintedEntry : tainted.entrySet()) {
-			try {
-				CleanResults cr = as.scan(taintedEntry.getKey(), antisamyPolicy);
-				String key = cr.getCleanHTML();
-				logErrors(cr);
-				List<String> values = new LinkedList<String>();
-				List<String> taintedValues = taintedEntry.getValue();
-				if (taintedValues != null) {
-					for (String taintedValue : taintedValues) {
-						cr = as.scan(taintedValue, antisamyPolicy);
-						logErrors(cr);
-						String value = cr.getCleanHTML();
-						if (value != null) {
-							String unescapedValue = StringEscapeUtils.unescapeXml(value);
-							values.add(unescapedValue);
-						}
+			String taintedKey = taintedEntry.getKey();
+			if (taintedKey == null)
+				continue;
+
+			String key = taintedKey;
+			if (!isMarkupFree(taintedKey)) {
+				if (as == null)
+					as = new AntiSamy();
+				key = scan(as, taintedKey);
+				if (key == null)
+					continue;
+			}
+
+			// Two keys can sanitize to the same name, in which case the values of the second are
+			// added to those of the first rather than replacing them
+			List<String> values = clean.get(key);
+			if (values == null) {
+				values = new LinkedList<String>();
+				clean.put(key, values);
+			}
+			List<String> taintedValues = taintedEntry.getValue();
+			if (taintedValues != null) {
+				for (String taintedValue : taintedValues) {
+					if (taintedValue == null)
+						continue;
+
+					String value = taintedValue;
+					if (!isMarkupFree(taintedValue)) {
+						if (as == null)
+							as = new AntiSamy();
+						value = scan(as, taintedValue);
 					}
+					if (value != null)
+						values.add(value);
 				}
-				clean.put(key, values);
-			} catch (ScanException se) {
-				LOG.error("Caught a scan exception", se);
-			} catch (PolicyException pe) {
-				LOG.error("Caught a scan exception", pe);
 			}
 		}
 
 		return clean;
 	}
-	
+
+	/*
+	 * True if the string contains nothing that could open a tag or an entity, and no control
+	 * characters other than whitespace. Strings too long for the policy still go to AntiSamy
+	 * so that they are rejected the same way they always have been.
+	 */
+	boolean isMarkupFree(String text) {
+		int length = text.length();
+		if (length > maxInputSize())
+			return false;
+
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c == '<' || c == '>' || c == '&')
+				return false;
+			if (c < 0x20 && c != '\t' && c != '\n' && c != '\r')
+				return false;
+			if (c == 0x7f)
+				return false;
+		}
+		return true;
+	}
+
+	private String scan(AntiSamy as, String tainted) {
+		try {
+			CleanResults cr = as.scan(tainted, antisamyPolicy);
+			String clean = cr.getCleanHTML();
+			logErrors(cr);
+			if (clean != null)
+				return StringEscapeUtils.unescapeXml(clean);
+		} catch (ScanException se) {
+			LOG.error("Caught a scan exception", se);
+		} catch (PolicyException pe) {
+			LOG.error("Caught a scan exception", pe);
+		}
+		return null;
+	}
+
+	private int maxInputSize() {
+		int size = maxInputSize;
+		if (size < 0) {
+			size = DEFAULT_MAX_INPUT_SIZE;
+			String directive = antisamyPolicy != null ? antisamyPolicy.getDirective("maxInputSize") : null;
+			if (directive != null) {
+				try {
+					size = Integer.parseInt(directive.trim());
+				} catch (NumberFormatException e) {
+					LOG.warn("Ignoring invalid maxInputSize directive " + directive);
+				}
+			}
+			maxInputSize = size;
+		}
+		return size;
+	}
+
 	private void logErrors(CleanResults cr) {
 		if (cr.getNumberOfErrors() > 0) {
 			StringBuilder builder = new StringBuilder();
-			builder.append("Received suspicious user input:\n");			
-		
+			builder.append("Received suspicious user input:\n");
+
 			@SuppressWarnings("unchecked")
 			List<String> errorMessages = cr.getErrorMessages();
 			if (errorMessages != null) {
@@ -126,5 +194,6 @@ public class UserInputSanitizer implements Sanitizer {
 
     public void setAntisamyPolicy(Policy antisamyPolicy) {
         this.antisamyPolicy = antisamyPolicy;
+        this.maxInputSize = -1;
     }
 }
@@ -19,11 +19,23 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
+import piecework.cache.CacheStatistics;
+import piecework.cache.MongoCacheInvalidationChannel;
 import piecework.enumeration.CacheName;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * This is just a way to keep track of the different caches available
  * in the system. It delegates everything to the Spring cache abstraction.
+ * When the underlying caches are Guava caches it can also report hit, miss
+ * and eviction counts for each of them.
+ *
+ * Evictions are broadcast to the other nodes in the cluster through the
+ * invalidation channel when one is available, so callers that modify a
+ * cached object should evict it here rather than simply overwriting the
+ * local copy.
  *
  * @author James Renfro
  */
@@ -33,6 +45,9 @@ public class CacheService {
     @Autowired
     CacheManager cacheManager;
 
+    @Autowired(required = false)
+    MongoCacheInvalidationChannel invalidationChannel;
+
     public Cache.ValueWrapper get(CacheName cacheName, String key) {
         Cache cache = cacheManager.getCache(cacheName.name());
         return cache.get(key);
@@ -46,6 +61,35 @@ public class CacheService {
     public void evict(CacheName cacheName, String key) {
         Cache cache = cacheManager.getCache(cacheName.name());
         cache.evict(key);
+        if (invalidationChannel != null)
+            invalidationChannel.broadcast(cacheName, key);
+    }
+
+    public void clear(CacheName cacheName) {
+        Cache cache = cacheManager.getCache(cacheName.name());
+        cache.clear();
+        if (invalidationChannel != null)
+            invalidationChannel.broadcast(cacheName, null);
+    }
+
+    public CacheStatistics getStatistics(CacheName cacheName) {
+        Cache cache = cacheManager.getCache(cacheName.name());
+        Object nativeCache = cache.getNativeCache();
+        if (nativeCache instanceof com.google.common.cache.Cache) {
+            com.google.common.cache.Cache<?, ?> guavaCache = com.google.common.cache.Cache.class.cast(nativeCache);
+            return new CacheStatistics(cacheName.name(), guavaCache.size(), guavaCache.stats());
+        }
+        return null;
+    }
+
+    public List<CacheStatistics> getStatistics() {
+        List<CacheStatistics> statistics = new ArrayList<CacheStatistics>();
+        for (CacheName cacheName : CacheName.values()) {
+            CacheStatistics cacheStatistics = getStatistics(cacheName);
+            if (cacheStatistics != null)
+                statistics.add(cacheStatistics);
+        }
+        return statistics;
     }
 
 }
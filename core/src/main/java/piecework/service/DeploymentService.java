@@ -347,6 +347,9 @@ public class DeploymentService {
     }
 
     private void cache(ProcessDeployment deployment) {
+        // Evict first so that any other nodes drop their copy of the deployment
+        cacheService.evict(CacheName.PROCESS_DEPLOYMENT, deployment.getDeploymentId());
+        cacheService.evict(CacheName.SUBMISSION_TEMPLATE, deployment.getDeploymentId());
         cacheService.put(CacheName.PROCESS_DEPLOYMENT, deployment.getDeploymentId(), deployment);
     }
 
@@ -32,6 +32,7 @@ import piecework.model.SearchResults;
 
 import javax.annotation.PostConstruct;
 import java.io.File;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -103,6 +104,10 @@ public class FormTemplateService {
         return resource;
     }
 
+    public Set<String> getTemplateIds() {
+        return Collections.unmodifiableSet(ACCEPTABLE_TEMPLATE_NAME_MAP.keySet());
+    }
+
     public String getTemplateName(String id, boolean anonymous) throws NotFoundError {
         if (StringUtils.isNotEmpty(id)) {
             Class<?> type = ACCEPTABLE_TEMPLATE_NAME_MAP.get(id);
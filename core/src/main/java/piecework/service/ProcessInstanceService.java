@@ -28,6 +28,7 @@ import piecework.authorization.AuthorizationRole;
 import piecework.command.*;
 import piecework.enumeration.ActionType;
 import piecework.persistence.concrete.ExportInstanceProvider;
+import piecework.process.ContinuationToken;
 import piecework.process.ProcessInstanceSearchCriteria;
 import piecework.model.SearchResults;
 import piecework.common.ViewContext;
@@ -322,6 +323,7 @@ public class ProcessInstanceService {
             }
 
             resultsBuilder.page(page, pageable);
+            resultsBuilder.continuation(ContinuationToken.next(executionCriteria, page));
         }
         return resultsBuilder.build();
     }
@@ -262,14 +262,18 @@ public class ProcessService {
         Process process = read(rawProcessDefinitionKey);
         String deploymentId = sanitizer.sanitize(rawDeploymentId);
 
-        return commandFactory.deployment(process, deploymentId, resource).execute();
+        ProcessDeployment deployment = commandFactory.deployment(process, deploymentId, resource).execute();
+        evict(process, deploymentId);
+        return deployment;
     }
 
     public ProcessDeployment publishDeployment(String rawProcessDefinitionKey, String rawDeploymentId) throws PieceworkException {
         Process process = read(rawProcessDefinitionKey);
         String deploymentId = sanitizer.sanitize(rawDeploymentId);
 
-        return commandFactory.publication(process, deploymentId).execute();
+        ProcessDeployment deployment = commandFactory.publication(process, deploymentId).execute();
+        evict(process, deploymentId);
+        return deployment;
     }
 
     public Process read(String rawProcessDefinitionKey) throws StatusCodeError {
@@ -371,8 +375,21 @@ public class ProcessService {
         return "v1";
     }
 
+    /*
+     * Deployment and publication commands modify both the process and the deployment, so
+     * the process, deployment and submission template caches need to be cleared, here and on every other node
+     */
+    private void evict(Process process, String deploymentId) {
+        cacheService.evict(CacheName.PROCESS, process.getProcessDefinitionKey());
+        cacheService.evict(CacheName.PROCESS_BASIC, process.getProcessDefinitionKey());
+        cacheService.evict(CacheName.PROCESS_DEPLOYMENT, deploymentId);
+        cacheService.evict(CacheName.SUBMISSION_TEMPLATE, deploymentId);
+    }
+
     private Process persist(Process process) {
         Process stored = processRepository.save(process);
+        cacheService.evict(CacheName.PROCESS_BASIC, process.getProcessDefinitionKey());
+        cacheService.evict(CacheName.PROCESS, process.getProcessDefinitionKey());
         cacheService.put(CacheName.PROCESS, process.getProcessDefinitionKey(), stored);
         return stored;
     }
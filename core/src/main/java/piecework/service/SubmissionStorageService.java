@@ -108,6 +108,8 @@ public class SubmissionStorageService {
                         LOG.error("Failed to store file to mongo", mongoException);
                         throw new InternalServerError();
                     }
+                } catch (MaxSizeExceededException sizeExceededException) {
+                    throw new BadRequestError(Constants.ExceptionCodes.attachment_is_too_large, Long.valueOf(sizeExceededException.getMaxSize()));
                 } catch (IOException ioe) {
                     LOG.error(ioe);
                     throw new InternalServerError();
@@ -22,6 +22,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import piecework.Command;
 import piecework.Constants;
@@ -35,13 +36,16 @@ import piecework.model.*;
 import piecework.model.Process;
 import piecework.identity.IdentityHelper;
 import piecework.persistence.ProcessInstanceRepository;
+import piecework.persistence.TaskRepository;
 import piecework.process.ProcessInstanceSearchCriteria;
 import piecework.security.DataFilterService;
 import piecework.security.Sanitizer;
 import piecework.security.concrete.PassthroughSanitizer;
 import piecework.task.TaskFactory;
 import piecework.task.TaskFilter;
+import piecework.task.TaskIndexInitializer;
 import piecework.task.TaskPageHandler;
+import piecework.task.TaskQueryBuilder;
 import piecework.validation.Validation;
 
 import javax.ws.rs.core.MultivaluedMap;
@@ -85,6 +89,12 @@ public class TaskService {
     @Autowired
     Sanitizer sanitizer;
 
+    @Autowired
+    TaskRepository taskRepository;
+
+    @Autowired
+    TaskIndexInitializer taskIndexInitializer;
+
     @Autowired
     Versions versions;
 
@@ -205,6 +215,20 @@ public class TaskService {
                 return deploymentService.getDeploymentMap(deploymentIds);
             }
 
+            @Override
+            protected Map<String, ProcessInstance> getInstanceMap(Set<String> processInstanceIds) {
+                Map<String, ProcessInstance> instanceMap = new HashMap<String, ProcessInstance>();
+                if (!processInstanceIds.isEmpty()) {
+                    List<ProcessInstance> instances = processInstanceRepository.findByProcessInstanceIdIn(processInstanceIds);
+                    if (instances != null) {
+                        for (ProcessInstance instance : instances) {
+                            instanceMap.put(instance.getProcessInstanceId(), instance);
+                        }
+                    }
+                }
+                return instanceMap;
+            }
+
             @Override
             protected Map<String, User> getUserMap(Set<String> userIds) {
                 return identityService.findUsers(userIds);
@@ -214,6 +238,17 @@ public class TaskService {
 
         ProcessInstanceSearchCriteria executionCriteria = pageHandler.criteria(allowedProcesses);
 
+        // Most inbox queries can be answered entirely from the task collection, once it's been filled in
+        if (TaskQueryBuilder.isSupported(executionCriteria) && taskIndexInitializer.isTaskCollectionComplete()) {
+            Query query = new TaskQueryBuilder(executionCriteria, principal, overseerProcessDefinitionKeys).build();
+            SearchResults results = pageHandler.handleTasks(taskRepository.findByQuery(query));
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Retrieved tasks from task collection in " + (System.currentTimeMillis() - time) + " ms");
+
+            return results;
+        }
+
         int firstResult = executionCriteria.getFirstResult() != null ? executionCriteria.getFirstResult() : 0;
         int maxResult = executionCriteria.getMaxResults() != null ? executionCriteria.getMaxResults() : 1000;
 
@@ -39,6 +39,7 @@ import piecework.ui.*;
 import piecework.ui.streaming.HtmlCleanerStreamingOutput;
 import piecework.ui.visitor.*;
 
+import javax.annotation.PostConstruct;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -77,6 +78,43 @@ public class UserInterfaceService {
     @Autowired
     private UserInterfaceSettings settings;
 
+    @Autowired
+    private StaticBundleStore bundleStore;
+
+    /*
+     * Builds the script and stylesheet bundles for the standard templates on a background thread
+     * at startup, so the first user after a restart doesn't have to wait for minification
+     */
+    @PostConstruct
+    public void init() {
+        boolean prewarm = environment.getProperty("ui.bundle.prewarm", Boolean.class, Boolean.TRUE);
+        if (!prewarm || settings.isDisableResourceCaching())
+            return;
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.currentTimeMillis();
+                for (String templateId : formTemplateService.getTemplateIds()) {
+                    for (boolean isAnonymous : new boolean[] { false, true }) {
+                        try {
+                            String templateName = formTemplateService.getTemplateName(templateId, isAnonymous);
+                            getScriptResource(templateName, null, isAnonymous);
+                            getStylesheetResource(templateName, null, isAnonymous);
+                        } catch (NotFoundError nfe) {
+                            // Not every template has an anonymous version
+                        } catch (Exception e) {
+                            LOG.warn("Unable to build static bundles for template " + templateId, e);
+                        }
+                    }
+                }
+                LOG.info("Built static bundles in " + (System.currentTimeMillis() - start) + " ms");
+            }
+        }, "static-bundle-prewarm");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
 
     public boolean hasPage(Class<?> type) {
         if (type.equals(SearchResults.class))
@@ -145,7 +183,22 @@ public class UserInterfaceService {
                 Form form = Form.class.cast(t);
                 isAnonymous = form.isAnonymous();
             }
-            InlinePageModelSerializer modelSerializer = new InlinePageModelSerializer(settings, t, type, user, objectMapper);
+            String scriptVersion = null;
+            String stylesheetVersion = null;
+            // Anonymous pages link through the public url, which serves the bundle of a process, not of a template
+            if (!isAnonymous) {
+                String templateName = formTemplateService.getTemplateName(InlinePageModelSerializer.resourceId(type), false);
+                try {
+                    Resource linkedTemplate = templateName != null ? formTemplateService.getTemplateResource(templateName) : null;
+                    if (linkedTemplate != null) {
+                        scriptVersion = getScriptVersion(linkedTemplate, null, false);
+                        stylesheetVersion = getStylesheetVersion(linkedTemplate, null, false);
+                    }
+                } catch (NotFoundError nfe) {
+                    // The link will simply be served without a version
+                }
+            }
+            InlinePageModelSerializer modelSerializer = new InlinePageModelSerializer(settings, t, type, user, objectMapper, scriptVersion, stylesheetVersion);
             LinkOptimizingVisitor visitor =
                     new LinkOptimizingVisitor(settings, modelSerializer, isAnonymous);
 
@@ -171,17 +224,21 @@ public class UserInterfaceService {
 
         FormDisposition disposition = form.getDisposition();
         Content content = getContentFromDisposition(disposition);
+        // Holds on to the bytes, since the page is read once for its bundles and again to stream it
+        Resource page = new ContentResource(content);
 
         TagNodeVisitor visitor;
         switch (disposition.getStrategy()) {
             case DECORATE_HTML:
-                visitor = new DecoratingVisitor(settings, process, form);
+                String scriptVersion = getScriptVersion(page, disposition.getBase(), form.isAnonymous());
+                String stylesheetVersion = getStylesheetVersion(page, disposition.getBase(), form.isAnonymous());
+                visitor = new DecoratingVisitor(settings, process, form, scriptVersion, stylesheetVersion);
                 break;
             default:
                 visitor = new ScriptInjectingVisitor(form);
                 break;
         }
-        return new HtmlCleanerStreamingOutput(content.getInputStream(), visitor);
+        return new HtmlCleanerStreamingOutput(page.getInputStream(), visitor);
     }
 
     public StreamingOutput getExternalScriptAsStreaming(Class<?> type, Object t) throws IOException {
@@ -238,7 +295,7 @@ public class UserInterfaceService {
             CleanerProperties cleanerProperties = new CleanerProperties();
             cleanerProperties.setOmitXmlDeclaration(true);
             HtmlCleaner cleaner = new HtmlCleaner(cleanerProperties);
-            visitor = new StaticResourceAggregatingVisitor(base, settings, contentRepository, isAnonymous);
+            visitor = new StaticResourceAggregatingVisitor(base, settings, contentRepository, bundleStore, isAnonymous);
 
             inputStream = template.getInputStream();
             TagNode node = cleaner.clean(inputStream);
@@ -281,7 +338,7 @@ public class UserInterfaceService {
             CleanerProperties cleanerProperties = new CleanerProperties();
             cleanerProperties.setOmitXmlDeclaration(true);
             HtmlCleaner cleaner = new HtmlCleaner(cleanerProperties);
-            visitor = new StaticResourceAggregatingVisitor(base, settings, contentRepository, isAnonymous);
+            visitor = new StaticResourceAggregatingVisitor(base, settings, contentRepository, bundleStore, isAnonymous);
             TagNode node = cleaner.clean(template.getInputStream());
             node.traverse(visitor);
 
@@ -297,6 +354,33 @@ public class UserInterfaceService {
         return null;
     }
 
+    /*
+     * The hash of the script bundle for a page, to be added to its script link so the browser can cache
+     * the bundle for as long as its content is the same. Bundles are only versioned when they're cached,
+     * since otherwise each page would have to aggregate them from scratch.
+     */
+    public String getScriptVersion(Resource template, String base, boolean isAnonymous) {
+        if (settings.isDisableResourceCaching())
+            return null;
+        try {
+            return StaticBundle.hashOf(getScriptResource(template, base, isAnonymous));
+        } catch (StatusCodeError error) {
+            LOG.warn("Unable to build the script bundle for " + template.getDescription() + ", linking to it without a version");
+            return null;
+        }
+    }
+
+    public String getStylesheetVersion(Resource template, String base, boolean isAnonymous) {
+        if (settings.isDisableResourceCaching())
+            return null;
+        try {
+            return StaticBundle.hashOf(getStylesheetResource(template, base, isAnonymous));
+        } catch (StatusCodeError error) {
+            LOG.warn("Unable to build the stylesheet bundle for " + template.getDescription() + ", linking to it without a version");
+            return null;
+        }
+    }
+
     public boolean serveExternalScriptResource(Class<?> type, Object t, OutputStream out) throws IOException {
         StreamingOutput streamingOutput = getExternalScriptAsStreaming(type, t);
         if (streamingOutput != null) {
@@ -20,6 +20,7 @@ import piecework.Constants;
 import piecework.enumeration.FieldSubmissionType;
 import piecework.model.Button;
 import piecework.model.Field;
+import piecework.model.FormRequest;
 import piecework.model.Process;
 import piecework.model.ProcessDeployment;
 import piecework.util.ManyMap;
@@ -64,6 +65,31 @@ public class SubmissionTemplate {
         this.maxAttachmentSize = builder.maxAttachmentSize;
     }
 
+    /*
+     * Shares everything that depends only on the deployment with the original, which makes it
+     * cheap to hand a cached template to each request
+     */
+    private SubmissionTemplate(SubmissionTemplate template, Process process, String requestId, String taskId, String actAsUser) {
+        this.process = process;
+        this.deployment = template.deployment;
+        this.requestId = requestId;
+        this.taskId = taskId;
+        this.actAsUser = actAsUser;
+        this.buttonNames = template.buttonNames;
+        this.buttonValueMap = template.buttonValueMap;
+        this.fieldMap = template.fieldMap;
+        this.isAttachmentAllowed = template.isAttachmentAllowed;
+        this.anyFieldAllowed = template.anyFieldAllowed;
+        this.fieldRuleMap = template.fieldRuleMap;
+        this.maxAttachmentSize = template.maxAttachmentSize;
+    }
+
+    public SubmissionTemplate forRequest(Process process, FormRequest formRequest) {
+        if (formRequest == null)
+            return new SubmissionTemplate(this, process, null, null, null);
+        return new SubmissionTemplate(this, process, formRequest.getRequestId(), formRequest.getTaskId(), formRequest.getActAsUser());
+    }
+
     public Process getProcess() {
         return process;
     }
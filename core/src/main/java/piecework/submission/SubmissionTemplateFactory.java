@@ -18,22 +18,29 @@ package piecework.submission;
 import com.google.common.collect.Sets;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
 import org.springframework.stereotype.Service;
 import piecework.Constants;
 import piecework.Registry;
 import piecework.enumeration.ActionType;
+import piecework.enumeration.CacheName;
 import piecework.enumeration.FieldTag;
 import piecework.exception.InternalServerError;
 import piecework.exception.MisconfiguredProcessException;
 import piecework.exception.StatusCodeError;
 import piecework.model.*;
 import piecework.model.Process;
+import piecework.service.CacheService;
 import piecework.util.ActivityUtil;
+import piecework.util.CompiledConstraint;
+import piecework.util.ConstraintUtil;
 import piecework.util.OptionResolver;
 import piecework.util.ProcessUtility;
 import piecework.validation.ValidationRule;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 /**
@@ -44,6 +51,9 @@ public class SubmissionTemplateFactory {
 
     private static final Set<FieldTag> FREEFORM_INPUT_TYPES = Sets.newHashSet(FieldTag.FILE, FieldTag.EMAIL, FieldTag.NUMBER, FieldTag.TEXT, FieldTag.TEXTAREA);
 
+    @Autowired(required=false)
+    CacheService cacheService;
+
     @Autowired(required=false)
     Registry registry;
 
@@ -85,16 +95,57 @@ public class SubmissionTemplateFactory {
      * limiting to a specific section id
      */
     private SubmissionTemplate submissionTemplate(Process process, ProcessDeployment deployment, FormRequest formRequest, Activity activity, String validationId) throws MisconfiguredProcessException {
+        ActionType actionType = formRequest != null ? formRequest.getAction() : null;
+
+        // Templates only depend on the deployment, the activity, the action and the container being validated,
+        // so they're kept per deployment and evicted whenever the deployment is saved or published
+        ConcurrentMap<String, SubmissionTemplate> templateMap = null;
+        String templateKey = null;
+        if (cacheService != null && deployment.getDeploymentId() != null && activity != null && activity.getActivityId() != null) {
+            templateMap = templateMap(deployment.getDeploymentId());
+            templateKey = activity.getActivityId() + "|" + actionType + "|" + (validationId != null ? validationId : "");
+        }
+
+        SubmissionTemplate template = templateMap != null ? templateMap.get(templateKey) : null;
+        if (template == null) {
+            template = submissionTemplate(process, deployment, actionType, activity, validationId);
+            if (templateMap != null && !hasResolvedOptions(template))
+                templateMap.put(templateKey, template);
+        }
+
+        return template.forRequest(process, formRequest);
+    }
+
+    /*
+     * Options that come from an option resolver can change at any time, so templates with
+     * those fields are always rebuilt
+     */
+    private static boolean hasResolvedOptions(SubmissionTemplate template) {
+        for (Field field : template.getFieldMap().values()) {
+            if (ConstraintUtil.hasConstraint(Constants.ConstraintTypes.IS_LIMITED_TO, field.getConstraints()))
+                return true;
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentMap<String, SubmissionTemplate> templateMap(String deploymentId) {
+        Cache.ValueWrapper wrapper = cacheService.get(CacheName.SUBMISSION_TEMPLATE, deploymentId);
+        ConcurrentMap<String, SubmissionTemplate> templateMap = wrapper != null ? (ConcurrentMap<String, SubmissionTemplate>) wrapper.get() : null;
+        if (templateMap == null) {
+            // Two threads may race to create the map, which only costs one of them a template build
+            templateMap = new ConcurrentHashMap<String, SubmissionTemplate>();
+            cacheService.put(CacheName.SUBMISSION_TEMPLATE, deploymentId, templateMap);
+        }
+        return templateMap;
+    }
+
+    private SubmissionTemplate submissionTemplate(Process process, ProcessDeployment deployment, ActionType actionType, Activity activity, String validationId) throws MisconfiguredProcessException {
         Set<Field> fields = null;
 
         SubmissionTemplate.Builder builder = new SubmissionTemplate.Builder(process, deployment);
 
-        boolean includeFields = false;
-        if (formRequest != null) {
-            builder.requestId(formRequest.getRequestId()).taskId(formRequest.getTaskId()).actAsUser(formRequest.getActAsUser());
-            ActionType actionType = formRequest.getAction();
-            includeFields = actionType == ActionType.CREATE || actionType == ActionType.COMPLETE || actionType == ActionType.VALIDATE || actionType == ActionType.SAVE;
-        }
+        boolean includeFields = actionType == ActionType.CREATE || actionType == ActionType.COMPLETE || actionType == ActionType.VALIDATE || actionType == ActionType.SAVE;
 
         if (activity.isAllowAttachments()) {
             builder.allowAttachments();
@@ -241,7 +292,7 @@ public class SubmissionTemplateFactory {
         } else if (fieldTag == FieldTag.PERSON) {
             rules.add(new ValidationRule.Builder(ValidationRule.ValidationRuleType.VALID_USER).name(fieldName).build());
         } else {
-            Pattern pattern = field.getPattern() != null ? Pattern.compile(field.getPattern()) : null;
+            Pattern pattern = CompiledConstraint.pattern(field.getPattern());
             if (pattern != null)
                 rules.add(new ValidationRule.Builder(ValidationRule.ValidationRuleType.PATTERN).name(fieldName).pattern(pattern).build());
 
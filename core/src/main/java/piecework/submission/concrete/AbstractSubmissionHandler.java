@@ -15,6 +15,7 @@
  */
 package piecework.submission.concrete;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.cxf.jaxrs.ext.multipart.ContentDisposition;
 import org.apache.log4j.Logger;
@@ -34,6 +35,7 @@ import piecework.submission.SubmissionTemplate;
 
 import javax.ws.rs.core.MediaType;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Date;
 
 /**
@@ -90,12 +92,18 @@ public abstract class AbstractSubmissionHandler<T> implements SubmissionHandler<
             if (StringUtils.isNotEmpty(filename)) {
                 if (LOG.isDebugEnabled())
                     LOG.debug("Processing multipart with content type " + contentType + " content id " + attachment.getContentId() + " and filename " + filename);
+                InputStream inputStream = null;
                 try {
-                    if (!submissionStorageService.store(template, submissionBuilder, name, filename, userId, attachment.getDataHandler().getInputStream(), contentType)) {
+                    // The part is streamed straight through to storage, and closed before the next
+                    // part is read so that it doesn't have to be cached along the way
+                    inputStream = attachment.getDataHandler().getInputStream();
+                    if (!submissionStorageService.store(template, submissionBuilder, name, filename, userId, inputStream, contentType)) {
                         LOG.warn("Submission included field (" + name + ") that is not acceptable, and no attachments are allowed for this template");
                     }
                 } catch (IOException e) {
                     LOG.warn("Unable to store file with content type " + contentType + " and filename " + filename);
+                } finally {
+                    IOUtils.closeQuietly(inputStream);
                 }
             } else if (mediaType.equals(MediaType.TEXT_PLAIN_TYPE)) {
                 handlePlaintext(template, submissionBuilder, attachment, userId);
@@ -42,13 +42,14 @@ public class FormValueSubmissionHandler extends AbstractSubmissionHandler<Map<St
         Submission.Builder submissionBuilder = submissionBuilder(template, principal);
 
         if (data != null && !data.isEmpty()) {
-            for (Map.Entry<String, List<String>> entry : data.entrySet()) {
-                String name = sanitizer.sanitize(entry.getKey());
-                List<String> rawValues = entry.getValue();
+            // Sanitize the whole submission in one pass rather than one string at a time
+            Map<String, List<String>> sanitized = sanitizer.sanitize(data);
+            for (Map.Entry<String, List<String>> entry : sanitized.entrySet()) {
+                String name = entry.getKey();
+                List<String> values = entry.getValue();
 
-                if (rawValues != null) {
-                    for (String rawValue : rawValues) {
-                        String value = sanitizer.sanitize(rawValue);
+                if (values != null) {
+                    for (String value : values) {
                         if (!submissionStorageService.store(template, submissionBuilder, name, value, actingAsId)) {
                             LOG.warn("Submission included field (" + name + ") that is not acceptable, and no attachments are allowed for this template");
                         }
@@ -227,6 +227,34 @@ public class TaskCriteria {
             this.processes = new HashSet<Process>();
         }
 
+        public Builder(TaskCriteria criteria) {
+            this.processes = new HashSet<Process>(criteria.processes);
+            this.executionId = criteria.executionId;
+            this.businessKey = criteria.businessKey;
+            this.taskIds = criteria.taskIds;
+            this.processDefinitionLabel = criteria.processDefinitionLabel;
+            this.processInstanceLabel = criteria.processInstanceLabel;
+            this.processInstanceId = criteria.processInstanceId;
+            this.applicationStatus = criteria.applicationStatus;
+            this.applicationStatusExplanation = criteria.applicationStatusExplanation;
+            this.processStatus = criteria.processStatus;
+            this.keyword = criteria.keyword;
+            this.minPriority = criteria.minPriority;
+            this.maxPriority = criteria.maxPriority;
+            this.complete = criteria.complete;
+            this.active = criteria.active;
+            this.createdBefore = criteria.createdBefore;
+            this.createdAfter = criteria.createdAfter;
+            this.dueBefore = criteria.dueBefore;
+            this.dueAfter = criteria.dueAfter;
+            this.assigneeId = criteria.assigneeId;
+            this.candidateAssigneeId = criteria.candidateAssigneeId;
+            this.participantId = criteria.participantId;
+            this.firstResult = criteria.firstResult;
+            this.maxResults = criteria.maxResults;
+            this.orderBy = criteria.orderBy;
+        }
+
         public Builder(Set<Process> allowedProcesses, Map<String, List<String>> queryParameters, Sanitizer sanitizer) {
             // Selected processes must be a subset of allowed processes
             Map<String, Process> processDefinitionKeyMap = new HashMap<String, Process>();
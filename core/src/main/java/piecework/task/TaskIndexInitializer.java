@@ -0,0 +1,195 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.task;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.DocumentCallbackHandler;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import piecework.model.ProcessInstance;
+import piecework.persistence.MigrationLog;
+import piecework.persistence.TaskRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Populates the task collection from the tasks embedded in existing process instances,
+ * until one node has made it all the way through and recorded that in the migration log.
+ * After that the collection is kept up to date by the process instance repository whenever
+ * a task is written. Until then inbox searches keep reading from the instances, so tasks
+ * that haven't been copied yet never go missing. Can be turned off on a node with
+ * task.index.backfill = false, in which case that node only trusts the task collection once
+ * some other node has recorded the backfill as complete
+ *
+ * Also adds the key of every embedded task to the indexed taskIds array, which is where
+ * findByTaskId looks first. Every instance with tasks is visited, not just those without
+ * the array, since a node that already maintains the array may have added one id to an
+ * instance whose older tasks were never listed. The ids are added to the set rather than
+ * replacing it, so nothing a newer node adds concurrently gets lost. Once it has gone
+ * all the way through it is recorded in the migration log, so later startups don't scan
+ * the instances for it again; any task that still isn't listed after that is repaired by
+ * findByTaskId the first time it's looked up. Can be turned off with
+ * task.ids.backfill = false
+ *
+ * Both backfills run on a background thread, so a large collection doesn't hold up
+ * startup. Nothing relies on either one until its marker is in the migration log.
+ *
+ * @author James Renfro
+ */
+@Service
+public class TaskIndexInitializer {
+
+    public static final String TASK_COLLECTION_MIGRATION = "task.collection";
+    public static final String TASK_IDS_MIGRATION = "task.ids";
+
+    private static final Logger LOG = Logger.getLogger(TaskIndexInitializer.class);
+
+    @Autowired
+    Environment environment;
+
+    @Autowired
+    MongoTemplate mongoOperations;
+
+    @Autowired
+    TaskRepository taskRepository;
+
+    @Autowired
+    MigrationLog migrationLog;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "task-index-backfill");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    backfill();
+                } catch (RuntimeException e) {
+                    LOG.error("Unable to backfill tasks", e);
+                }
+            }
+        });
+        this.executor.shutdown();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    /*
+     * Whether every task has made it into the task collection, so it can answer inbox searches
+     */
+    public boolean isTaskCollectionComplete() {
+        return migrationLog.isComplete(TASK_COLLECTION_MIGRATION);
+    }
+
+    void backfill() {
+        Boolean backfillTaskIds = environment.getProperty("task.ids.backfill", Boolean.class, Boolean.TRUE);
+        if (backfillTaskIds.booleanValue() && !migrationLog.isComplete(TASK_IDS_MIGRATION))
+            backfillTaskIds();
+
+        Boolean backfillTaskCollection = environment.getProperty("task.index.backfill", Boolean.class, Boolean.TRUE);
+        if (backfillTaskCollection.booleanValue() && !migrationLog.isComplete(TASK_COLLECTION_MIGRATION))
+            backfillTaskCollection();
+    }
+
+    private void backfillTaskIds() {
+        try {
+            long start = System.currentTimeMillis();
+            Query query = new Query(where("tasks").exists(true));
+            query.fields().include("tasks");
+
+            final String collectionName = mongoOperations.getCollectionName(ProcessInstance.class);
+            final int[] count = new int[1];
+            mongoOperations.executeQuery(query, collectionName, new DocumentCallbackHandler() {
+                @Override
+                public void processDocument(DBObject dbObject) throws MongoException, DataAccessException {
+                    Object tasks = dbObject.get("tasks");
+                    List<String> taskIds = new ArrayList<String>();
+                    if (tasks instanceof DBObject)
+                        taskIds.addAll(DBObject.class.cast(tasks).keySet());
+
+                    if (taskIds.isEmpty())
+                        return;
+
+                    mongoOperations.updateFirst(new Query(where("_id").is(dbObject.get("_id"))),
+                            new Update().addToSet("taskIds", new BasicDBObject("$each", taskIds)), collectionName);
+                    count[0]++;
+                }
+            });
+
+            if (count[0] > 0)
+                LOG.info("Backfilled task ids for " + count[0] + " process instances in " + (System.currentTimeMillis() - start) + " ms");
+            migrationLog.complete(TASK_IDS_MIGRATION, count[0]);
+        } catch (DataAccessException e) {
+            LOG.error("Unable to backfill task ids", e);
+        }
+    }
+
+    private void backfillTaskCollection() {
+        try {
+            long start = System.currentTimeMillis();
+            Query query = new Query();
+            query.fields().include("processInstanceId").include("tasks");
+
+            final int[] count = new int[1];
+            mongoOperations.executeQuery(query, mongoOperations.getCollectionName(ProcessInstance.class), new DocumentCallbackHandler() {
+                @Override
+                public void processDocument(DBObject dbObject) throws MongoException, DataAccessException {
+                    ProcessInstance instance = mongoOperations.getConverter().read(ProcessInstance.class, dbObject);
+                    if (instance != null && instance.getTasks() != null) {
+                        taskRepository.index(instance.getProcessInstanceId(), instance.getTasks());
+                        count[0] += instance.getTasks().size();
+                    }
+                }
+            });
+
+            LOG.info("Backfilled " + count[0] + " tasks into task collection in " + (System.currentTimeMillis() - start) + " ms");
+            // Saving a task is an upsert, so a backfill that never got this far just runs again
+            migrationLog.complete(TASK_COLLECTION_MIGRATION, count[0]);
+        } catch (DataAccessException e) {
+            LOG.error("Unable to backfill task collection", e);
+        }
+    }
+
+}
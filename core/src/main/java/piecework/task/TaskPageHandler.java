@@ -21,6 +21,7 @@ import piecework.common.PageHandler;
 import piecework.common.ViewContext;
 import piecework.model.*;
 import piecework.model.Process;
+import piecework.process.ContinuationToken;
 import piecework.process.ProcessInstanceSearchCriteria;
 import piecework.security.Sanitizer;
 import piecework.security.concrete.PassthroughSanitizer;
@@ -126,12 +127,59 @@ public abstract class TaskPageHandler implements PageHandler<ProcessInstance> {
                 resultsBuilder.maxResults(count);
                 resultsBuilder.total(Long.valueOf(count));
             }
+
+            resultsBuilder.continuation(ContinuationToken.next(executionCriteria, page));
+        }
+        return resultsBuilder.build(version);
+    }
+
+    /*
+     * Handles a page of tasks that were already filtered, sorted and counted by the database, so
+     * the only work left is to look up the instances, deployments and users that go with them
+     */
+    public SearchResults handleTasks(Page<Task> page) {
+        if (page.hasContent()) {
+            List<Task> tasks = page.getContent();
+            Map<String, ProcessInstance> instanceMap = Collections.emptyMap();
+            Map<String, ProcessDeployment> deploymentMap = Collections.emptyMap();
+
+            // Instances and deployments are only needed when wrapping tasks with forms
+            if (taskFilter.isWrapWithForm()) {
+                Set<String> processInstanceIds = new HashSet<String>();
+                for (Task task : tasks) {
+                    if (task.getProcessInstanceId() != null)
+                        processInstanceIds.add(task.getProcessInstanceId());
+                }
+                instanceMap = getInstanceMap(processInstanceIds);
+                deploymentMap = getDeploymentMap(taskFilter.getDeploymentIds(instanceMap.values()));
+            }
+
+            List<TaskDeployment> rawTasks = new ArrayList<TaskDeployment>(tasks.size());
+            Set<String> userIds = new HashSet<String>();
+            for (Task task : tasks) {
+                ProcessInstance instance = instanceMap.get(task.getProcessInstanceId());
+                ProcessDeployment processDeployment = instance != null ? deploymentMap.get(instance.getDeploymentId()) : null;
+                rawTasks.add(new TaskDeployment(processDeployment, instance, task));
+                userIds.addAll(task.getAssigneeAndCandidateAssigneeIds());
+            }
+
+            Map<String, User> userMap = getUserMap(userIds);
+
+            for (TaskDeployment rawTask : rawTasks) {
+                resultsBuilder.item(taskFilter.result(rawTask, userMap, version));
+            }
+
+            resultsBuilder.firstResult(executionCriteria.getFirstResult() != null ? executionCriteria.getFirstResult() : 1);
+            resultsBuilder.maxResults(executionCriteria.getMaxResults() != null ? executionCriteria.getMaxResults() : tasks.size());
+            resultsBuilder.total(Long.valueOf(page.getTotalElements()));
         }
         return resultsBuilder.build(version);
     }
 
     protected abstract Map<String, ProcessDeployment> getDeploymentMap(Set<String> deploymentIds);
 
+    protected abstract Map<String, ProcessInstance> getInstanceMap(Set<String> processInstanceIds);
+
     protected abstract Map<String, User> getUserMap(Set<String> userIds);
 
     private void addDefinitions(ProcessInstanceSearchCriteria.Builder executionCriteriaBuilder, SearchResults.Builder resultsBuilder, Set<Process> allowedProcesses) {
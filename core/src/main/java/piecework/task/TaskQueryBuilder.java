@@ -0,0 +1,167 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.task;
+
+import org.apache.commons.lang.StringUtils;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import piecework.Constants;
+import piecework.authorization.AccessAuthority;
+import piecework.model.Entity;
+import piecework.process.ProcessInstanceSearchCriteria;
+
+import java.util.*;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Builds a query against the task collection that applies the same rules as
+ * TaskFilter.include, so that the database can do the filtering, sorting and
+ * counting. Only criteria that can be answered from the task documents themselves
+ * are supported -- anything that depends on instance data, like keywords or
+ * application status, has to go through the process instance query instead.
+ *
+ * @author James Renfro
+ */
+public class TaskQueryBuilder {
+
+    private static final int DEFAULT_MAX_RESULTS = 1000;
+    private static final String[] TASK_STATUSES = { Constants.TaskStatuses.OPEN, Constants.TaskStatuses.COMPLETE,
+            Constants.TaskStatuses.CANCELLED, Constants.TaskStatuses.REJECTED, Constants.TaskStatuses.SUSPENDED };
+
+    private final ProcessInstanceSearchCriteria searchCriteria;
+    private final Entity principal;
+    private final Set<String> overseerProcessDefinitionKeys;
+
+    public TaskQueryBuilder(ProcessInstanceSearchCriteria searchCriteria, Entity principal, Set<String> overseerProcessDefinitionKeys) {
+        this.searchCriteria = searchCriteria;
+        this.principal = principal;
+        this.overseerProcessDefinitionKeys = overseerProcessDefinitionKeys != null ? overseerProcessDefinitionKeys : Collections.<String>emptySet();
+    }
+
+    public static boolean isSupported(ProcessInstanceSearchCriteria searchCriteria) {
+        return searchCriteria.getKeywords().isEmpty()
+                && StringUtils.isBlank(searchCriteria.getApplicationStatus())
+                && StringUtils.isBlank(searchCriteria.getApplicationStatusExplanation())
+                && StringUtils.isEmpty(searchCriteria.getInitiatedBy())
+                && searchCriteria.getStartedBefore() == null
+                && searchCriteria.getStartedAfter() == null
+                && searchCriteria.getCompletedBefore() == null
+                && searchCriteria.getCompletedAfter() == null
+                && searchCriteria.getComplete() == null
+                && searchCriteria.getSuspended() == null
+                && searchCriteria.getCancelled() == null
+                && searchCriteria.getAll() == null
+                && searchCriteria.getContinuationToken() == null;
+    }
+
+    public Query build() {
+        Query query = new Query();
+
+        query.addCriteria(where("processDefinitionKey").in(searchCriteria.getProcessDefinitionKeys()));
+
+        if (!searchCriteria.getProcessInstanceIds().isEmpty())
+            query.addCriteria(where("processInstanceId").in(searchCriteria.getProcessInstanceIds()));
+        if (StringUtils.isNotEmpty(searchCriteria.getBusinessKey()))
+            query.addCriteria(where("processInstanceAlias").is(searchCriteria.getBusinessKey()));
+        if (StringUtils.isNotEmpty(searchCriteria.getProcessDefinitionLabel()))
+            query.addCriteria(where("processDefinitionLabel").regex(searchCriteria.getProcessDefinitionLabel(), "i"));
+        if (StringUtils.isNotEmpty(searchCriteria.getProcessInstanceLabel()))
+            query.addCriteria(where("processInstanceLabel").regex(searchCriteria.getProcessInstanceLabel(), "i"));
+
+        // Both the process status and the task status are compared with the task status, same as TaskFilter
+        String processStatus = searchCriteria.getProcessStatus() != null ? searchCriteria.getProcessStatus() : Constants.ProcessStatuses.OPEN;
+        String taskStatus = searchCriteria.getTaskStatus() != null ? searchCriteria.getTaskStatus() : Constants.TaskStatuses.ALL;
+        List<String> statuses = new ArrayList<String>();
+        if (!processStatus.equals(Constants.ProcessStatuses.ALL))
+            statuses.add(taskStatus(processStatus));
+        if (!taskStatus.equals(Constants.TaskStatuses.ALL)) {
+            if (statuses.isEmpty() || statuses.get(0).equalsIgnoreCase(taskStatus))
+                statuses = Collections.singletonList(taskStatus(taskStatus));
+            else
+                statuses = Collections.emptyList();
+        }
+        if (!processStatus.equals(Constants.ProcessStatuses.ALL) || !taskStatus.equals(Constants.TaskStatuses.ALL))
+            query.addCriteria(where("taskStatus").in(statuses));
+
+        query.addCriteria(access());
+
+        // Mongo treats a limit of zero as no limit at all, so anything less than one gets the default
+        Integer maxResults = searchCriteria.getMaxResults();
+        query.limit(maxResults != null && maxResults.intValue() > 0 ? maxResults.intValue() : DEFAULT_MAX_RESULTS);
+
+        Integer firstResult = searchCriteria.getFirstResult();
+        if (firstResult != null && firstResult.intValue() > 0)
+            query.skip(firstResult.intValue());
+
+        query.with(sort());
+
+        return query;
+    }
+
+    /*
+     * Overseers see every task for their processes, everyone else only sees tasks where they are the
+     * assignee or a candidate, either directly or through one of their groups
+     */
+    private Criteria access() {
+        List<Criteria> alternatives = new ArrayList<Criteria>();
+        if (!overseerProcessDefinitionKeys.isEmpty())
+            alternatives.add(where("processDefinitionKey").in(overseerProcessDefinitionKeys));
+
+        String entityId = principal != null ? principal.getEntityId() : null;
+        if (entityId != null) {
+            Set<String> candidateIds = new HashSet<String>();
+            candidateIds.add(entityId);
+            AccessAuthority accessAuthority = principal.getAccessAuthority();
+            if (accessAuthority != null)
+                candidateIds.addAll(accessAuthority.getGroupIds());
+
+            alternatives.add(where("assigneeId").is(entityId));
+            alternatives.add(where("candidateAssigneeIds").in(candidateIds));
+        }
+
+        // Nobody to match means nothing should match
+        if (alternatives.isEmpty())
+            return where("_id").in(Collections.emptyList());
+
+        return new Criteria().orOperator(alternatives.toArray(new Criteria[alternatives.size()]));
+    }
+
+    private Sort sort() {
+        ProcessInstanceSearchCriteria.OrderBy orderBy = searchCriteria.getOrderBy();
+        if (orderBy != null) {
+            switch (orderBy) {
+                case START_TIME_ASC:
+                    return new Sort(Sort.Direction.ASC, "startTime", "_id");
+                case END_TIME_ASC:
+                    return new Sort(Sort.Direction.ASC, "endTime", "_id");
+                case END_TIME_DESC:
+                    return new Sort(Sort.Direction.DESC, "endTime", "_id");
+            }
+        }
+        return new Sort(Sort.Direction.DESC, "startTime", "_id");
+    }
+
+    private static String taskStatus(String status) {
+        for (String taskStatus : TASK_STATUSES) {
+            if (taskStatus.equalsIgnoreCase(status))
+                return taskStatus;
+        }
+        return status;
+    }
+
+}
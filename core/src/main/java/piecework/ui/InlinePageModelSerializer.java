@@ -42,11 +42,19 @@ public class InlinePageModelSerializer {
     private final String pageContextAsJson;
     private final String modelAsJson;
     private final boolean isExplanation;
+    private final String scriptVersion;
+    private final String stylesheetVersion;
 
     public InlinePageModelSerializer(UserInterfaceSettings settings, Object t, Class<?> type, Entity user, ObjectMapper objectMapper) {
+        this(settings, t, type, user, objectMapper, null, null);
+    }
+
+    public InlinePageModelSerializer(UserInterfaceSettings settings, Object t, Class<?> type, Entity user, ObjectMapper objectMapper, String scriptVersion, String stylesheetVersion) {
         this.settings = settings;
         this.t = t;
         this.type = type;
+        this.scriptVersion = scriptVersion;
+        this.stylesheetVersion = stylesheetVersion;
         PageContext pageContext = new PageContext.Builder()
                 .applicationTitle(settings.getApplicationTitle())
                 .assetsUrl(settings.getAssetsUrl())
@@ -109,20 +117,9 @@ public class InlinePageModelSerializer {
         script.addAttribute("type", "text/javascript");
         script.addAttribute("rel", "script");
 
-        if (type.equals(Form.class)) {
-            Form form = Form.class.cast(t);
-            if (form.isAnonymous())
-                script.addAttribute("src", settings.getPublicUrl() + "/resource/script/Form.js");
-            else
-                script.addAttribute("src", settings.getApplicationUrl() + "/resource/script/Form.js");
-
-        } else if (type.equals(SearchResults.class)) {
-            script.addAttribute("src", settings.getApplicationUrl() + "/resource/script/SearchResults.form.js");
-        } else if (type.equals(IndexView.class)) {
-            script.addAttribute("src", settings.getApplicationUrl() + "/resource/script/IndexView.js");
-        } else if (type.equals(Explanation.class)) {
-            script.addAttribute("href", settings.getPublicUrl() + "/resource/script/Explanation.js");
-        }
+        String resourceId = resourceId(type);
+        if (resourceId != null)
+            script.addAttribute("src", StaticBundle.versioned(baseUrl() + "/resource/script/" + resourceId + ".js", scriptVersion));
         return script;
     }
 
@@ -145,21 +142,35 @@ public class InlinePageModelSerializer {
         link.addAttribute("type", "text/css");
         link.addAttribute("rel", "stylesheet");
 
-        if (type.equals(Form.class)) {
-            Form form = Form.class.cast(t);
-            if (form.isAnonymous())
-                link.addAttribute("href", settings.getPublicUrl() + "/resource/css/Form.css");
-            else
-                link.addAttribute("href", settings.getApplicationUrl() + "/resource/css/Form.css");
-
-        } else if (type.equals(SearchResults.class)) {
-            link.addAttribute("href", settings.getApplicationUrl() + "/resource/css/SearchResults.form.css");
-        } else if (type.equals(IndexView.class)) {
-            link.addAttribute("href", settings.getApplicationUrl() + "/resource/css/IndexView.css");
-        } else if (type.equals(Explanation.class)) {
-            link.addAttribute("href", settings.getPublicUrl() + "/resource/css/Explanation.css");
-        }
+        String resourceId = resourceId(type);
+        if (resourceId != null)
+            link.addAttribute("href", StaticBundle.versioned(baseUrl() + "/resource/css/" + resourceId + ".css", stylesheetVersion));
 
         return link;
     }
+
+    /*
+     * The id that the script and stylesheet resources use for the template of each type of page
+     */
+    public static String resourceId(Class<?> type) {
+        if (type == null)
+            return null;
+        if (type.equals(Form.class))
+            return "Form";
+        if (type.equals(SearchResults.class))
+            return "SearchResults.form";
+        if (type.equals(IndexView.class))
+            return "IndexView";
+        if (type.equals(Explanation.class))
+            return "Explanation";
+        return null;
+    }
+
+    private String baseUrl() {
+        if (type.equals(Explanation.class))
+            return settings.getPublicUrl();
+        if (type.equals(Form.class) && Form.class.cast(t).isAnonymous())
+            return settings.getPublicUrl();
+        return settings.getApplicationUrl();
+    }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.ui;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * An aggregated script or stylesheet, identified by a hash of its content and held both
+ * as is and gzip compressed, so it can be served to any client without any further work
+ * and revalidated with a strong entity tag.
+ *
+ * @author James Renfro
+ */
+public class StaticBundle extends DatedByteArrayResource {
+
+    private final String hash;
+    private final String extension;
+    private final byte[] gzipped;
+
+    public StaticBundle(byte[] raw, byte[] gzipped, String hash, String extension) {
+        super(raw);
+        this.hash = hash;
+        this.extension = extension;
+        this.gzipped = gzipped;
+    }
+
+    @Override
+    public String getFilename() {
+        return hash + "." + extension;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Static bundle [" + getFilename() + "]";
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public byte[] getGzipped() {
+        return gzipped;
+    }
+
+    /*
+     * The hash of the resource if it is a bundle, otherwise null
+     */
+    public static String hashOf(Resource resource) {
+        if (resource instanceof StaticBundle)
+            return StaticBundle.class.cast(resource).getHash();
+        return null;
+    }
+
+    /*
+     * Adds the bundle hash to a link as its v parameter, which is what allows the browser to keep
+     * the bundle for a year, since the link changes as soon as the content does
+     */
+    public static String versioned(String url, String hash) {
+        if (hash == null || hash.length() == 0)
+            return url;
+        return url + (url.indexOf('?') == -1 ? "?v=" : "&v=") + hash;
+    }
+
+}
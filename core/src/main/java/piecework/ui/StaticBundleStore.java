@@ -0,0 +1,188 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.ui;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps minified source files and aggregated bundles keyed by a hash of their content,
+ * in memory and in a directory on disk (ui.bundle.directory, by default under java.io.tmpdir).
+ *
+ * Since the keys are content hashes, an entry never goes stale -- changing a source file
+ * simply produces a new key. Keeping the minified files on disk means a restarted node
+ * doesn't have to run the YUI compressor again for files that haven't changed, which
+ * is where almost all of the time goes when building a bundle.
+ *
+ * @author James Renfro
+ */
+@Service
+public class StaticBundleStore {
+
+    private static final Logger LOG = Logger.getLogger(StaticBundleStore.class);
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Autowired
+    Environment environment;
+
+    private File directory;
+    private long maxAge;
+    private Cache<String, String> minified;
+    private Cache<String, StaticBundle> bundles;
+
+    @PostConstruct
+    public void init() {
+        String directoryPath = environment.getProperty("ui.bundle.directory");
+        long maxSize = environment.getProperty("ui.bundle.cache.max.size", Long.class, Long.valueOf(500l));
+        this.maxAge = environment.getProperty("ui.bundle.max.age", Long.class, Long.valueOf(86400l));
+
+        File directory = StringUtils.isNotEmpty(directoryPath) ? new File(directoryPath) : new File(System.getProperty("java.io.tmpdir"), "piecework-bundles");
+        if ((directory.exists() || directory.mkdirs()) && directory.isDirectory() && directory.canWrite())
+            this.directory = directory;
+        else
+            LOG.warn("Unable to write static bundles to " + directory.getAbsolutePath() + ", bundles will only be kept in memory");
+
+        this.minified = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+        this.bundles = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    }
+
+    /*
+     * Seconds that a browser may keep a bundle requested without its hash before revalidating it
+     */
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    public static String hash(String content) {
+        return Hashing.sha1().hashBytes(content.getBytes(UTF8)).toString();
+    }
+
+    /*
+     * Returns the minified version of some source content, if it has been minified before
+     */
+    public String getMinified(String sourceHash, String extension) {
+        String key = sourceHash + ".min." + extension;
+        String content = minified.getIfPresent(key);
+        if (content == null) {
+            byte[] bytes = read(key);
+            if (bytes != null) {
+                content = new String(bytes, UTF8);
+                minified.put(key, content);
+            }
+        }
+        return content;
+    }
+
+    public void putMinified(String sourceHash, String extension, String content) {
+        String key = sourceHash + ".min." + extension;
+        minified.put(key, content);
+        write(key, content.getBytes(UTF8));
+    }
+
+    /*
+     * Returns the bundle for this content, compressing and storing it only the first time
+     * any node that shares the bundle directory sees this content
+     */
+    public StaticBundle bundle(String content, String extension) {
+        byte[] raw = content.getBytes(UTF8);
+        String hash = Hashing.sha1().hashBytes(raw).toString();
+        String key = hash + "." + extension;
+
+        // Each call gets its own instance so its last modified date reflects when it was built
+        StaticBundle bundle = bundles.getIfPresent(key);
+        if (bundle != null)
+            return new StaticBundle(raw, bundle.getGzipped(), hash, extension);
+
+        byte[] gzipped = read(key + ".gz");
+        if (gzipped == null) {
+            gzipped = gzip(raw);
+            write(key, raw);
+            write(key + ".gz", gzipped);
+        }
+
+        bundle = new StaticBundle(raw, gzipped, hash, extension);
+        bundles.put(key, bundle);
+        return bundle;
+    }
+
+    private static byte[] gzip(byte[] raw) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(raw.length / 3 + 64);
+        GZIPOutputStream gzipOutput = null;
+        try {
+            gzipOutput = new GZIPOutputStream(output);
+            gzipOutput.write(raw);
+            gzipOutput.finish();
+        } catch (IOException ioe) {
+            // Not possible when writing to a byte array
+            throw new IllegalStateException(ioe);
+        } finally {
+            IOUtils.closeQuietly(gzipOutput);
+        }
+        return output.toByteArray();
+    }
+
+    private byte[] read(String name) {
+        if (directory == null)
+            return null;
+
+        File file = new File(directory, name);
+        if (!file.exists())
+            return null;
+
+        try {
+            return Files.toByteArray(file);
+        } catch (IOException ioe) {
+            LOG.warn("Unable to read static bundle file " + file.getAbsolutePath(), ioe);
+            return null;
+        }
+    }
+
+    private void write(String name, byte[] bytes) {
+        if (directory == null)
+            return;
+
+        File file = new File(directory, name);
+        if (file.exists())
+            return;
+
+        // Write to a temporary file first, so no other node ever reads a partial file
+        File temporary = new File(directory, name + "." + System.nanoTime() + ".tmp");
+        try {
+            Files.write(bytes, temporary);
+            if (!temporary.renameTo(file))
+                temporary.delete();
+        } catch (IOException ioe) {
+            LOG.warn("Unable to write static bundle file " + file.getAbsolutePath(), ioe);
+            temporary.delete();
+        }
+    }
+
+}
@@ -33,10 +33,12 @@ import java.nio.charset.Charset;
 
 /**
  * Takes paths from repeated calls to the handle() method and looks up the resources
- * at those paths, then appends their contents to an internal StringBuffer.
+ * at those paths, then appends their contents to an internal buffer.
  *
  * Calling getStaticResource() retrieves a Resource that includes the aggregated data
- * and can be used to stream or inline it elsewhere.
+ * and can be used to stream or inline it elsewhere. When a bundle store is available,
+ * minified files are looked up by the hash of their source before running the compressor,
+ * and the aggregated data is returned as a content-hashed, precompressed bundle.
  *
  * @author James Renfro
  */
@@ -46,18 +48,27 @@ public class StaticResourceAggregator {
     private static final Logger LOG = Logger.getLogger(StaticResourceAggregator.class);
 
     private final ContentRepository contentRepository;
-    private final StringBuffer buffer;
+    private final StaticBundleStore bundleStore;
+    private final StringBuilder buffer;
     private final UserInterfaceSettings settings;
     private final String base;
+    private String extension;
 
     public StaticResourceAggregator(ContentRepository contentRepository, UserInterfaceSettings settings, String base) {
+        this(contentRepository, null, settings, base);
+    }
+
+    public StaticResourceAggregator(ContentRepository contentRepository, StaticBundleStore bundleStore, UserInterfaceSettings settings, String base) {
         this.contentRepository = contentRepository;
-        this.buffer = new StringBuffer();
+        this.bundleStore = bundleStore;
+        this.buffer = new StringBuilder();
         this.settings = settings;
         this.base = base;
     }
 
     public Resource getStaticResource() {
+        if (bundleStore != null)
+            return bundleStore.bundle(this.buffer.toString(), extension != null ? extension : "txt");
         return new DatedByteArrayResource(this.buffer.toString().getBytes(Charset.forName("UTF-8")));
     }
 
@@ -79,23 +90,29 @@ public class StaticResourceAggregator {
                 else
                     cleanPath = path;
 
+                boolean isStylesheet = cleanPath.endsWith(".css");
+                boolean isScript = cleanPath.endsWith(".js");
+                if (extension == null && (isStylesheet || isScript))
+                    extension = isStylesheet ? "css" : "js";
+
+                StringBuilder builder = new StringBuilder();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    builder.append(line).append(NEWLINE);
+                }
+                String source = builder.toString();
+
                 if (!settings.isDoOptimization() || cleanPath.contains(".min.")) {
-                    StringBuilder builder = new StringBuilder();
                     // Don't bother to compress files that are already compressed
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        builder.append(line).append(NEWLINE);
-                    }
-
-                    if (cleanPath.endsWith(".css"))
-                        buffer.append(rebaseStylesheetUrls(builder.toString(), path));
+                    if (isStylesheet)
+                        buffer.append(rebaseStylesheetUrls(source, path));
                     else
-                        buffer.append(builder);
+                        buffer.append(source);
 
-                } else if (cleanPath.endsWith(".js")) {
-                    buffer.append(compressJavaScript(reader, new Options(), path)).append(NEWLINE);
-                } else if (cleanPath.endsWith(".css")) {
-                    buffer.append(rebaseStylesheetUrls(compressStylesheet(reader, new Options()), path)).append(NEWLINE);
+                } else if (isScript) {
+                    buffer.append(minify(source, "js")).append(NEWLINE);
+                } else if (isStylesheet) {
+                    buffer.append(rebaseStylesheetUrls(minify(source, "css"), path)).append(NEWLINE);
                 }
                 // If we successfully handled this path then return null to indicate that
                 // no new path needs to be included
@@ -113,22 +130,38 @@ public class StaticResourceAggregator {
     }
 
 
-    private static String compressStylesheet(Reader in, Options o) {
+    /*
+     * Minifying is by far the most expensive part of building a bundle, so the result is kept by
+     * the hash of the source, which lets it be reused across bundles, templates and restarts
+     */
+    private String minify(String source, String type) {
+        String sourceHash = bundleStore != null ? StaticBundleStore.hash(source) : null;
+        if (sourceHash != null) {
+            String cached = bundleStore.getMinified(sourceHash, type);
+            if (cached != null)
+                return cached;
+        }
+
+        String result;
+        if (type.equals("js"))
+            result = compressJavaScript(source, new Options());
+        else
+            result = compressStylesheet(source, new Options());
+
+        if (sourceHash != null && result != null)
+            bundleStore.putMinified(sourceHash, type, result);
+        return result;
+    }
+
+    private static String compressStylesheet(String source, Options o) {
         StringWriter out = new StringWriter();
         try {
-            CssCompressor compressor = new CssCompressor(in);
-            in.close();
-            in = null;
+            CssCompressor compressor = new CssCompressor(new StringReader(source));
             compressor.compress(out, o.lineBreakPos);
         } catch (Exception e) {
             LOG.error("Unable to compress css", e);
-            try {
-                return IOUtils.toString(in);
-            } catch (IOException ioe) {
-                LOG.error("Unable to output string", ioe);
-            }
+            return source;
         } finally {
-            IOUtils.closeQuietly(in);
             IOUtils.closeQuietly(out);
         }
 
@@ -143,23 +176,15 @@ public class StaticResourceAggregator {
         return content.replaceAll("url\\('\\.\\./", "url('" + PathUtility.recomputeStaticPath(rootPath, settings));
     }
 
-    private String compressJavaScript(Reader in, Options o, String path) {
+    private static String compressJavaScript(String source, Options o) {
         StringWriter out = new StringWriter();
         try {
-            JavaScriptCompressor compressor = new JavaScriptCompressor(in, new YuiCompressorErrorReporter());
-            in.close();
-            in = null;
+            JavaScriptCompressor compressor = new JavaScriptCompressor(new StringReader(source), new YuiCompressorErrorReporter());
             compressor.compress(out, o.lineBreakPos, o.munge, o.verbose, o.preserveAllSemiColons, o.disableOptimizations);
         } catch (Exception e) {
             LOG.error("Unable to compress javascript", e);
-            try {
-                in = reader(path);
-                return IOUtils.toString(in);
-            } catch (Exception ioe) {
-                LOG.error("Unable to output string", ioe);
-            }
+            return source;
         } finally {
-            IOUtils.closeQuietly(in);
             IOUtils.closeQuietly(out);
         }
 
@@ -17,41 +17,56 @@ package piecework.ui.streaming;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.util.List;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.log4j.Logger;
 import piecework.persistence.concrete.ExportInstanceProvider;
 
 /**
+ * Streams a CSV export to the response through a buffered writer, optionally gzip
+ * compressed, as rows are read off of the database cursor.
+ *
  * @author James Renfro
  */
 public class ExportStreamingOutput implements StreamingOutput {
 
     private static final Logger LOG = Logger.getLogger(ExportStreamingOutput.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     private final ExportInstanceProvider provider;
+    private final boolean gzip;
 
     public ExportStreamingOutput(ExportInstanceProvider provider) {
+        this(provider, false);
+    }
+
+    public ExportStreamingOutput(ExportInstanceProvider provider, boolean gzip) {
         this.provider = provider;
+        this.gzip = gzip;
     }
 
     @Override
     public void write(OutputStream output) throws IOException, WebApplicationException {
 
-        PrintWriter writer = null;
+        Writer writer = null;
+        GZIPOutputStream gzipOutput = null;
 
         try {
-            writer = new PrintWriter(output, true);
-            writer.println(provider.getHeader());
-            while (provider.hasNext()) {
-                List<String> rows = provider.next();
-                for (String row : rows) {
-                    writer.print(row);
-                }
+            OutputStream target = output;
+            if (gzip) {
+                gzipOutput = new GZIPOutputStream(output, BUFFER_SIZE);
+                target = gzipOutput;
             }
+            writer = new BufferedWriter(new OutputStreamWriter(target, "UTF-8"), BUFFER_SIZE);
+            provider.write(writer);
+            writer.flush();
+            if (gzipOutput != null)
+                gzipOutput.finish();
         } catch (Exception e) {
             LOG.error(e);
             throw new WebApplicationException(e);
@@ -26,6 +26,7 @@ import piecework.designer.model.view.IndexView;
 import piecework.enumeration.FieldTag;
 import piecework.model.*;
 import piecework.model.Process;
+import piecework.ui.StaticBundle;
 import piecework.ui.TagDecorator;
 import piecework.ui.UserInterfaceSettings;
 import piecework.util.ManyMap;
@@ -46,11 +47,19 @@ public class DecoratingVisitor implements TagNodeVisitor {
     private final Form form;
     private final ManyMap<String, TagDecorator> decoratorMap;
     private final UserInterfaceSettings settings;
+    private final String scriptVersion;
+    private final String stylesheetVersion;
 
     public DecoratingVisitor(UserInterfaceSettings settings, Process process, Form form) {
+        this(settings, process, form, null, null);
+    }
+
+    public DecoratingVisitor(UserInterfaceSettings settings, Process process, Form form, String scriptVersion, String stylesheetVersion) {
         this.settings = settings;
         this.process = process;
         this.form = form;
+        this.scriptVersion = scriptVersion;
+        this.stylesheetVersion = stylesheetVersion;
         this.decoratorMap = new ManyMap<String, TagDecorator>();
         initialize();
     }
@@ -153,9 +162,9 @@ public class DecoratingVisitor implements TagNodeVisitor {
 
             String processDefinitionKey = process.getProcessDefinitionKey();
             if (form.isAnonymous())
-                dependencies.addAttribute("src", settings.getPublicUrl() + "/resource/script/" + processDefinitionKey + ".js");
+                dependencies.addAttribute("src", StaticBundle.versioned(settings.getPublicUrl() + "/resource/script/" + processDefinitionKey + ".js", scriptVersion));
             else
-                dependencies.addAttribute("src", settings.getApplicationUrl() + "/resource/script/" + processDefinitionKey + ".js");
+                dependencies.addAttribute("src", StaticBundle.versioned(settings.getApplicationUrl() + "/resource/script/" + processDefinitionKey + ".js", scriptVersion));
 
             tag.addChild(dependencies);
         }
@@ -180,9 +189,9 @@ public class DecoratingVisitor implements TagNodeVisitor {
 
             String processDefinitionKey = process.getProcessDefinitionKey();
             if (form.isAnonymous())
-                dependencies.addAttribute("href", settings.getPublicUrl() + "/resource/css/" + processDefinitionKey + ".css");
+                dependencies.addAttribute("href", StaticBundle.versioned(settings.getPublicUrl() + "/resource/css/" + processDefinitionKey + ".css", stylesheetVersion));
             else
-                dependencies.addAttribute("href", settings.getApplicationUrl() + "/resource/css/" + processDefinitionKey + ".css");
+                dependencies.addAttribute("href", StaticBundle.versioned(settings.getApplicationUrl() + "/resource/css/" + processDefinitionKey + ".css", stylesheetVersion));
 
             tag.addChild(dependencies);
         }
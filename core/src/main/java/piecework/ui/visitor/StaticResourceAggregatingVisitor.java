@@ -20,6 +20,7 @@ import org.apache.log4j.Logger;
 import org.htmlcleaner.TagNode;
 import org.springframework.core.io.Resource;
 import piecework.persistence.ContentRepository;
+import piecework.ui.StaticBundleStore;
 import piecework.ui.StaticResourceAggregator;
 import piecework.ui.TagAttributeAction;
 import piecework.ui.UserInterfaceSettings;
@@ -42,9 +43,13 @@ public class StaticResourceAggregatingVisitor extends HtmlProviderVisitor {
     private final Map<String, TagAttributeAction> linkAttributeActionMap;
 
     public StaticResourceAggregatingVisitor(String base, UserInterfaceSettings settings, ContentRepository contentRepository, boolean isAnonymous) {
+        this(base, settings, contentRepository, null, isAnonymous);
+    }
+
+    public StaticResourceAggregatingVisitor(String base, UserInterfaceSettings settings, ContentRepository contentRepository, StaticBundleStore bundleStore, boolean isAnonymous) {
         super(settings, isAnonymous);
-        this.scriptAggregator = new StaticResourceAggregator(contentRepository, settings, base);
-        this.stylesheetAggregator = new StaticResourceAggregator(contentRepository, settings, base);
+        this.scriptAggregator = new StaticResourceAggregator(contentRepository, bundleStore, settings, base);
+        this.stylesheetAggregator = new StaticResourceAggregator(contentRepository, bundleStore, settings, base);
         this.scriptAttributeActionMap = new HashMap<String, TagAttributeAction>();
         this.linkAttributeActionMap = new HashMap<String, TagAttributeAction>();
     }
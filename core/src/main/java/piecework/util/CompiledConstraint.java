@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.util;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import piecework.model.Constraint;
+import piecework.model.Field;
+import piecework.model.Value;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable, pre-compiled form of a Constraint tree. Compiling once, when a submission
+ * template is built for a deployment, means the regular expressions and the and/or
+ * structure don't have to be rebuilt every time a form is saved or validated. Instances
+ * are safe to share between threads.
+ *
+ * Evaluation follows the same rules as ConstraintUtil.evaluate
+ *
+ * @author James Renfro
+ */
+public class CompiledConstraint {
+
+    private static final LoadingCache<String, Pattern> PATTERNS = CacheBuilder.newBuilder()
+            .maximumSize(2000)
+            .build(new CacheLoader<String, Pattern>() {
+                @Override
+                public Pattern load(String regex) {
+                    return Pattern.compile(regex);
+                }
+            });
+
+    private final String type;
+    private final String name;
+    private final Pattern pattern;
+    private final List<CompiledConstraint> and;
+    private final List<CompiledConstraint> or;
+
+    private CompiledConstraint(Constraint constraint) {
+        this.type = constraint.getType();
+        this.name = constraint.getName();
+        this.pattern = pattern(constraint.getValue());
+        this.and = compile(constraint.getAnd());
+        this.or = compile(constraint.getOr());
+    }
+
+    public static CompiledConstraint compile(Constraint constraint) {
+        return constraint != null ? new CompiledConstraint(constraint) : null;
+    }
+
+    public static List<CompiledConstraint> compile(List<Constraint> constraints) {
+        if (constraints == null || constraints.isEmpty())
+            return Collections.emptyList();
+
+        List<CompiledConstraint> compiled = new ArrayList<CompiledConstraint>(constraints.size());
+        for (Constraint constraint : constraints) {
+            if (constraint != null)
+                compiled.add(new CompiledConstraint(constraint));
+        }
+        return Collections.unmodifiableList(compiled);
+    }
+
+    /*
+     * Constraint values come from a small, fixed set of process designs, so compiled patterns
+     * are shared across every evaluation that uses the same expression
+     */
+    public static Pattern pattern(String regex) {
+        if (regex == null)
+            return null;
+        return PATTERNS.getUnchecked(regex);
+    }
+
+    public boolean evaluate(Map<String, Field> fieldMap, Map<String, List<Value>> submissionData) {
+        boolean isSatisfied = false;
+
+        Field constraintField = fieldMap != null ? fieldMap.get(name) : null;
+        List<? extends Value> values = submissionData != null ? submissionData.get(name) : null;
+
+        if (constraintField != null && (values == null || values.isEmpty())) {
+            String defaultFieldValue = constraintField.getDefaultValue();
+            isSatisfied = matches(defaultFieldValue);
+        } else if (values != null) {
+            for (Value value : values) {
+                isSatisfied = value != null && matches(value.getValue());
+                if (!isSatisfied)
+                    break;
+            }
+        }
+
+        if (isSatisfied)
+            return checkAll(null, fieldMap, submissionData, and);
+        if (!or.isEmpty())
+            return checkAny(null, fieldMap, submissionData, or);
+
+        return false;
+    }
+
+    public static boolean checkAll(String type, Map<String, Field> fieldMap, Map<String, List<Value>> submissionData, List<CompiledConstraint> constraints) {
+        for (CompiledConstraint constraint : constraints) {
+            if (type == null || constraint.type == null || constraint.type.equals(type)) {
+                if (!constraint.evaluate(fieldMap, submissionData))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean checkAny(String type, Map<String, Field> fieldMap, Map<String, List<Value>> submissionData, List<CompiledConstraint> constraints) {
+        if (constraints.isEmpty())
+            return true;
+
+        for (CompiledConstraint constraint : constraints) {
+            if (type == null || constraint.type == null || constraint.type.equals(type)) {
+                if (constraint.evaluate(fieldMap, submissionData))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private boolean matches(String value) {
+        return value != null && pattern != null && pattern.matcher(value).matches();
+    }
+
+}
@@ -50,7 +50,7 @@ public class ConstraintUtil {
 
         String constraintName = constraint.getName();
         String constraintValue = constraint.getValue();
-        Pattern pattern = Pattern.compile(constraintValue);
+        Pattern pattern = CompiledConstraint.pattern(constraintValue);
 
         boolean isSatisfied = false;
 
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes MD5 and SHA-256 digests and a byte count of everything read through it, so
+ * content can be checksummed in the same pass that streams it to storage instead of
+ * being buffered and read a second time. Like the streams it wraps, it is meant to be
+ * read by a single thread and does no locking.
+ *
+ * @author James Renfro
+ */
+public class DigestingInputStream extends FilterInputStream {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest md5;
+    private final MessageDigest sha256;
+    private long length;
+
+    public DigestingInputStream(InputStream inputStream) {
+        super(inputStream);
+        try {
+            this.md5 = MessageDigest.getInstance("MD5");
+            this.sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Both algorithms are required to be present on every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            md5.update((byte) b);
+            sha256.update((byte) b);
+            length++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int bytesRead = super.read(b, off, len);
+        if (bytesRead > 0) {
+            md5.update(b, off, bytesRead);
+            sha256.update(b, off, bytesRead);
+            length += bytesRead;
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes would be missing from the digests, so read through them instead
+        if (n <= 0)
+            return 0;
+
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int bytesRead = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (bytesRead == -1)
+                break;
+            skipped += bytesRead;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("Mark and reset are not supported");
+    }
+
+    /*
+     * Only meaningful once the stream has been read to the end -- calling either of the
+     * digest methods completes that digest
+     */
+    public String getMd5() {
+        return hex(md5.digest());
+    }
+
+    public String getSha256() {
+        return hex(sha256.digest());
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    private static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0x0f];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+
+}
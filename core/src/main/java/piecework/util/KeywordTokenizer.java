@@ -0,0 +1,118 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.util;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Breaks labels and form values down into the normalized terms that are stored in the
+ * keywords array of a process instance, and breaks search text down into the terms to
+ * look up there. Each word is lower-cased, stripped of accents, and stored along with
+ * each of its prefixes, so a search for "ren" finds "Renfro" with an exact match on an
+ * indexed array, instead of an unanchored regex that has to look at every document.
+ *
+ * Prefixes are only stored up to MAX_PREFIX_LENGTH characters, so a longer search term
+ * is cut down to that length before it's looked up -- which can only ever match more
+ * instances than the full term would, never fewer.
+ *
+ * @author James Renfro
+ */
+public class KeywordTokenizer {
+
+    // Bump this whenever the way keywords are tokenized changes, so stored instances get re-tokenized
+    public static final int VERSION = 1;
+
+    public static final int MIN_PREFIX_LENGTH = 2;
+    public static final int MAX_PREFIX_LENGTH = 15;
+    public static final int MAX_TERM_LENGTH = 64;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+
+    /*
+     * The terms and prefixes to store for a piece of text
+     */
+    public static Set<String> tokenize(String text) {
+        Set<String> tokens = new HashSet<String>();
+        tokenize(text, tokens);
+        return tokens;
+    }
+
+    public static void tokenize(String text, Collection<String> tokens) {
+        for (String term : words(text)) {
+            int maxPrefixLength = Math.min(term.length(), MAX_PREFIX_LENGTH);
+            for (int length = MIN_PREFIX_LENGTH; length <= maxPrefixLength; length++) {
+                tokens.add(term.substring(0, length));
+            }
+            // Whole words are kept too, which covers single characters and long words for the text index
+            tokens.add(term);
+        }
+    }
+
+    /*
+     * The terms to look up for a search, every one of which has to match
+     */
+    public static List<String> terms(String query) {
+        Set<String> terms = new LinkedHashSet<String>();
+        for (String term : words(query)) {
+            terms.add(term.length() > MAX_PREFIX_LENGTH ? term.substring(0, MAX_PREFIX_LENGTH) : term);
+        }
+        return new ArrayList<String>(terms);
+    }
+
+    public static List<String> terms(Collection<String> queries) {
+        Set<String> terms = new LinkedHashSet<String>();
+        if (queries != null) {
+            for (String query : queries) {
+                terms.addAll(terms(query));
+            }
+        }
+        return new ArrayList<String>(terms);
+    }
+
+    static List<String> words(String text) {
+        if (text == null || text.length() == 0)
+            return Collections.emptyList();
+
+        String normalized = normalize(text);
+        List<String> words = new ArrayList<String>();
+        int length = normalized.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean isWordCharacter = i < length && Character.isLetterOrDigit(normalized.charAt(i));
+            if (isWordCharacter && start == -1) {
+                start = i;
+            } else if (!isWordCharacter && start != -1) {
+                int end = Math.min(i, start + MAX_TERM_LENGTH);
+                words.add(normalized.substring(start, end));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static String normalize(String text) {
+        String lowerCase = text.toLowerCase();
+        // Plain ascii has nothing to decompose, which is by far the common case
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (lowerCase.charAt(i) > 0x7f)
+                return DIACRITICS.matcher(Normalizer.normalize(lowerCase, Normalizer.Form.NFD)).replaceAll("");
+        }
+        return lowerCase;
+    }
+
+}
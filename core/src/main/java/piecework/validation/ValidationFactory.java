@@ -84,8 +84,9 @@ public class ValidationFactory {
         Map<String, List<Value>> submissionData = submission.getData();
         Map<String, List<Value>> instanceData = instance != null ? instance.getData() : Collections.<String, List<Value>>emptyMap();
 
-        ManyMap<String, Value> decryptedSubmissionData = dataFilterService.decrypt(submissionData);
-        ManyMap<String, Value> decryptedInstanceData = dataFilterService.decrypt(instanceData);
+        // Values are only decrypted when a rule actually reads them
+        ManyMap<String, Value> decryptedSubmissionData = dataFilterService.lazyDecrypt(submissionData);
+        ManyMap<String, Value> decryptedInstanceData = dataFilterService.lazyDecrypt(instanceData);
 
         if (fieldRuleMap != null) {
             for (Map.Entry<Field, List<ValidationRule>> entry : fieldRuleMap.entrySet()) {
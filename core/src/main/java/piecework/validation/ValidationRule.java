@@ -18,7 +18,7 @@ package piecework.validation;
 import org.apache.commons.lang.StringUtils;
 import piecework.exception.ValidationRuleException;
 import piecework.model.*;
-import piecework.util.ConstraintUtil;
+import piecework.util.CompiledConstraint;
 import piecework.util.ManyMap;
 
 import java.util.*;
@@ -29,6 +29,8 @@ import java.util.regex.Pattern;
  */
 public class ValidationRule {
 
+    private static final Pattern NUMERIC_PATTERN = Pattern.compile("^[0-9]+$");
+
     public enum ValidationRuleType {
         CONSTRAINED,
         CONSTRAINED_REQUIRED,
@@ -47,7 +49,7 @@ public class ValidationRule {
 
     private final ValidationRuleType type;
     private final String name;
-    private final Constraint constraint;
+    private final CompiledConstraint constraint;
     private final Set<String> options;
     private final String mask;
     private final Pattern pattern;
@@ -64,7 +66,7 @@ public class ValidationRule {
     private ValidationRule(Builder builder) {
         this.type = builder.type;
         this.name = builder.name;
-        this.constraint = builder.constraint;
+        this.constraint = CompiledConstraint.compile(builder.constraint);
         this.options = builder.options;
         this.mask = builder.mask;
         this.pattern = builder.pattern;
@@ -130,12 +132,12 @@ public class ValidationRule {
     }
 
     private void evaluateConstraint(ManyMap<String, Value> submissionData) throws ValidationRuleException {
-        if (!ConstraintUtil.evaluate(null, submissionData, constraint))
+        if (!isConstraintSatisfied(submissionData))
             throw new ValidationRuleException(this, "Not a valid input for this field");
     }
 
     private void evaluateConstraintRequired(ManyMap<String, Value> submissionData) throws ValidationRuleException {
-        if (ConstraintUtil.evaluate(null, submissionData, constraint))
+        if (isConstraintSatisfied(submissionData))
             evaluateRequired(submissionData);
     }
 
@@ -155,7 +157,7 @@ public class ValidationRule {
     }
 
     private void evaluateNumberOfInputs(ManyMap<String, Value> submissionData) throws ValidationRuleException {
-        if (constraint != null && !ConstraintUtil.evaluate(null, submissionData, constraint))
+        if (!isConstraintSatisfied(submissionData))
             return;
 
         int numberOfInputs = 0;
@@ -181,7 +183,7 @@ public class ValidationRule {
     private void evaluateNumeric(ManyMap<String, Value> submissionData) throws ValidationRuleException {
         List<? extends Value> values = safeValues(name, submissionData);
         for (Value value : values) {
-            if (value != null && StringUtils.isNotEmpty(value.getValue()) && !value.getValue().matches("^[0-9]+$"))
+            if (value != null && StringUtils.isNotEmpty(value.getValue()) && !NUMERIC_PATTERN.matcher(value.getValue()).matches())
                 throw new ValidationRuleException(this, "Must be a number");
         }
     }
@@ -266,7 +268,7 @@ public class ValidationRule {
     }
 
     private void evaluateValuesMatch(ManyMap<String, Value> submissionData) throws ValidationRuleException {
-        if (constraint != null && !ConstraintUtil.evaluate(null, submissionData, constraint))
+        if (!isConstraintSatisfied(submissionData))
             return;
 
         List<? extends Value> values = safeValues(name, submissionData);
@@ -280,6 +282,10 @@ public class ValidationRule {
         }
     }
 
+    private boolean isConstraintSatisfied(ManyMap<String, Value> submissionData) {
+        return constraint == null || constraint.evaluate(null, submissionData);
+    }
+
     private List<? extends Value> safeValues(String name, ManyMap<String, Value> submissionData) {
         List<? extends Value> values = null;
 
@@ -131,4 +131,13 @@ public class AccessAuthorityTest {
         Assert.assertEquals(0, processDefinitionKeys.size());
     }
 
+    @Test
+    public void getProcessDefinitionKeysIsComputedOnce() {
+        Set<String> first = accessAuthority.getProcessDefinitionKeys(Sets.newHashSet(AuthorizationRole.USER, AuthorizationRole.OVERSEER));
+        Set<String> second = accessAuthority.getProcessDefinitionKeys(Sets.newHashSet(AuthorizationRole.OVERSEER, AuthorizationRole.USER));
+        Assert.assertSame(first, second);
+        Assert.assertSame(accessAuthority.getProcessDefinitionKeys(Sets.newHashSet(AuthorizationRole.USER)),
+                accessAuthority.getProcessDefinitionKeys(Sets.newHashSet(AuthorizationRole.USER)));
+    }
+
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.authorization;
+
+import com.mongodb.BasicDBObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+import piecework.model.Authorization;
+
+/**
+ * @author James Renfro
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class AuthorizationChangeListenerTest {
+
+    @InjectMocks
+    AuthorizationChangeListener listener;
+
+    @Mock
+    AuthorizationRoleMapper authorizationRoleMapper;
+
+    @Test
+    public void testSaveInvalidates() {
+        listener.onAfterSave(Mockito.mock(Authorization.class), new BasicDBObject());
+        Mockito.verify(authorizationRoleMapper).invalidate();
+    }
+
+    @Test
+    public void testDeleteInvalidates() {
+        listener.onAfterDelete(new BasicDBObject("_id", "group1"));
+        Mockito.verify(authorizationRoleMapper).invalidate();
+    }
+
+}
@@ -26,9 +26,13 @@ import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+import piecework.cache.GuavaCacheManager;
 import piecework.model.Authorization;
 import piecework.persistence.AuthorizationRepository;
+import piecework.service.CacheService;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
@@ -113,4 +117,36 @@ public class AuthorizationRoleMapperTest {
         Assert.assertTrue(processDefinitionKeys.contains("TESTPROCESS2"));
     }
 
+    @Test
+    public void mapAuthoritiesIsCachedByGroupSet() {
+        useCache();
+        GrantedAuthority group1 = new SimpleGrantedAuthority("ROLE_TESTGROUP1");
+        GrantedAuthority group2 = new SimpleGrantedAuthority("ROLE_TESTGROUP2");
+
+        GrantedAuthority first = authorizationRoleMapper.mapAuthorities(Arrays.asList(group1, group2)).iterator().next();
+        GrantedAuthority second = authorizationRoleMapper.mapAuthorities(Arrays.asList(group2, group1)).iterator().next();
+
+        Assert.assertSame(first, second);
+        Mockito.verify(authorizationRepository, Mockito.times(1)).findAll(Sets.newHashSet("ROLE_TESTGROUP1", "ROLE_TESTGROUP2"));
+    }
+
+    @Test
+    public void mapAuthoritiesReloadsAfterInvalidate() {
+        useCache();
+        GrantedAuthority grantedAuthority = new SimpleGrantedAuthority("ROLE_TESTGROUP1");
+
+        GrantedAuthority first = authorizationRoleMapper.mapAuthorities(Sets.newHashSet(grantedAuthority)).iterator().next();
+        authorizationRoleMapper.invalidate();
+        GrantedAuthority second = authorizationRoleMapper.mapAuthorities(Sets.newHashSet(grantedAuthority)).iterator().next();
+
+        Assert.assertNotSame(first, second);
+        Mockito.verify(authorizationRepository, Mockito.times(2)).findAll(Sets.newHashSet("ROLE_TESTGROUP1"));
+    }
+
+    private void useCache() {
+        CacheService cacheService = new CacheService();
+        ReflectionTestUtils.setField(cacheService, "cacheManager", new GuavaCacheManager(null));
+        ReflectionTestUtils.setField(authorizationRoleMapper, "cacheService", cacheService);
+    }
+
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.cache;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.springframework.cache.Cache;
+import org.springframework.core.env.Environment;
+import piecework.enumeration.CacheEvictionPolicy;
+import piecework.enumeration.CacheName;
+
+/**
+ * @author James Renfro
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class GuavaCacheManagerTest {
+
+    @Mock
+    private Environment environment;
+
+    private GuavaCacheManager cacheManager;
+
+    @Before
+    public void setup() {
+        Mockito.when(environment.getProperty(Mockito.anyString(), Mockito.eq(Long.class), Mockito.any(Long.class)))
+                .thenAnswer(new Answer<Long>() {
+                    @Override
+                    public Long answer(InvocationOnMock invocation) throws Throwable {
+                        return (Long) invocation.getArguments()[2];
+                    }
+                });
+        Mockito.when(environment.getProperty("cache.identity.max.size", Long.class, Long.valueOf(1000l)))
+                .thenReturn(Long.valueOf(2l));
+        cacheManager = new GuavaCacheManager(environment);
+    }
+
+    @Test
+    public void testPolicyFromEnvironment() {
+        CachePolicy policy = cacheManager.getPolicy(CacheName.IDENTITY.name());
+        Assert.assertEquals(2l, policy.getMaxSize());
+        Assert.assertEquals(3600l, policy.getExpireAfterWriteSeconds());
+        Assert.assertEquals(0l, policy.getExpireAfterAccessSeconds());
+        Assert.assertEquals(CacheEvictionPolicy.LRU, policy.getEvictionPolicy());
+    }
+
+    @Test
+    public void testUnknownEvictionPolicyFallsBackToLru() {
+        Mockito.when(environment.getProperty("cache.process.eviction", (String) null)).thenReturn("lfu");
+        Mockito.when(environment.getProperty("cache.identity.eviction", (String) null)).thenReturn(" soft ");
+
+        Assert.assertEquals(CacheEvictionPolicy.LRU, CachePolicy.fromEnvironment(CacheName.PROCESS.name(), environment).getEvictionPolicy());
+        Assert.assertEquals(CacheEvictionPolicy.SOFT, CachePolicy.fromEnvironment(CacheName.IDENTITY.name(), environment).getEvictionPolicy());
+    }
+
+    @Test
+    public void testGetPutEvict() {
+        Cache cache = cacheManager.getCache(CacheName.PROCESS.name());
+        Assert.assertSame(cache, cacheManager.getCache(CacheName.PROCESS.name()));
+        Assert.assertNull(cache.get("test"));
+        cache.put("test", "value");
+        Assert.assertEquals("value", cache.get("test").get());
+        cache.put("empty", null);
+        Assert.assertNotNull(cache.get("empty"));
+        Assert.assertNull(cache.get("empty").get());
+        cache.evict("test");
+        Assert.assertNull(cache.get("test"));
+    }
+
+    @Test
+    public void testBoundedSizeAndStatistics() {
+        GuavaCache cache = (GuavaCache) cacheManager.getCache(CacheName.IDENTITY.name());
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        cache.get("c");
+        cache.get("z");
+
+        com.google.common.cache.Cache<Object, Object> nativeCache = cache.getNativeCache();
+        CacheStatistics statistics = new CacheStatistics(CacheName.IDENTITY.name(), nativeCache.size(), nativeCache.stats());
+        Assert.assertTrue(statistics.getSize() <= 2);
+        Assert.assertEquals(1l, statistics.getHitCount());
+        Assert.assertEquals(1l, statistics.getMissCount());
+        Assert.assertEquals(1l, statistics.getEvictionCount());
+    }
+
+}
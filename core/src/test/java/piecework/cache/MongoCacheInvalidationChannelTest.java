@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.cache;
+
+import com.mongodb.BasicDBObject;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import piecework.enumeration.CacheName;
+import piecework.test.config.PersistenceTestConfiguration;
+
+import java.util.Date;
+
+/**
+ * Simulates two nodes sharing the same embedded Mongo instance
+ *
+ * @author James Renfro
+ */
+@Ignore
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes={PersistenceTestConfiguration.class})
+@ActiveProfiles(profiles={"test", "embedded-mongo"})
+public class MongoCacheInvalidationChannelTest {
+
+    @Autowired
+    MongoTemplate mongoOperations;
+
+    private GuavaCacheManager node1Caches;
+    private GuavaCacheManager node2Caches;
+    private MongoCacheInvalidationChannel node1;
+    private MongoCacheInvalidationChannel node2;
+
+    @Before
+    public void setup() {
+        node1Caches = new GuavaCacheManager(null);
+        node2Caches = new GuavaCacheManager(null);
+        node1 = channel(node1Caches);
+        node2 = channel(node2Caches);
+    }
+
+    @After
+    public void teardown() {
+        node1.destroy();
+        node2.destroy();
+    }
+
+    @Test
+    public void testEvictionIsBroadcastToOtherNodes() throws Exception {
+        node1Caches.getCache(CacheName.PROCESS.name()).put("TESTPROCESS", "node1");
+        node2Caches.getCache(CacheName.PROCESS.name()).put("TESTPROCESS", "node2");
+
+        node1.broadcast(CacheName.PROCESS, "TESTPROCESS");
+
+        Cache remote = node2Caches.getCache(CacheName.PROCESS.name());
+        for (int i = 0; i < 50 && remote.get("TESTPROCESS") != null; i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertNull(remote.get("TESTPROCESS"));
+
+        // The node that broadcast the event ignores it
+        Assert.assertNotNull(node1Caches.getCache(CacheName.PROCESS.name()).get("TESTPROCESS"));
+    }
+
+    @Test
+    public void testClearIsBroadcastToOtherNodes() throws Exception {
+        Cache remote = node2Caches.getCache(CacheName.PROCESS_DEPLOYMENT.name());
+        remote.put("1", "one");
+        remote.put("2", "two");
+
+        node1.broadcast(CacheName.PROCESS_DEPLOYMENT, null);
+
+        for (int i = 0; i < 50 && remote.get("2") != null; i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertNull(remote.get("1"));
+        Assert.assertNull(remote.get("2"));
+    }
+
+    @Test
+    public void testEventWithOlderIdFromSlowClockIsNotSkipped() throws Exception {
+        Cache remote = node2Caches.getCache(CacheName.PROCESS.name());
+        remote.put("TESTPROCESS", "node2");
+
+        // A node whose clock is an hour behind generates ids that sort before every id seen so far
+        ObjectId behind = new ObjectId(new Date(System.currentTimeMillis() - 3600000l));
+        mongoOperations.getCollection("cache.invalidation").insert(new BasicDBObject("_id", behind)
+                .append("node", "slow-node").append("cache", CacheName.PROCESS.name()).append("key", "TESTPROCESS"));
+
+        for (int i = 0; i < 50 && remote.get("TESTPROCESS") != null; i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertNull(remote.get("TESTPROCESS"));
+    }
+
+    private MongoCacheInvalidationChannel channel(GuavaCacheManager cacheManager) {
+        MongoCacheInvalidationChannel channel = new MongoCacheInvalidationChannel();
+        channel.cacheManager = cacheManager;
+        channel.environment = new MockEnvironment()
+                .withProperty("cache.invalidation.enabled", "true")
+                .withProperty("cache.invalidation.retry.interval", "100");
+        channel.mongoOperations = mongoOperations;
+        channel.init();
+        return channel;
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.ldap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.ldap.core.DirContextOperations;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.security.ldap.search.LdapUserSearch;
+import org.springframework.test.util.ReflectionTestUtils;
+import piecework.cache.GuavaCacheManager;
+import piecework.model.Group;
+import piecework.model.User;
+import piecework.service.CacheService;
+import piecework.service.IdentityService;
+
+import java.util.*;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+
+/**
+ * @author James Renfro
+ */
+public class LdapGroupServiceTest {
+
+    private IdentityService identityService;
+    private LdapUserSearch groupSearch;
+    private LdapGroupService groupService;
+
+    @Before
+    public void setup() {
+        CacheService cacheService = new CacheService();
+        ReflectionTestUtils.setField(cacheService, "cacheManager", new GuavaCacheManager(null));
+        LdapSettings ldapSettings = new LdapSettings(new MockEnvironment()
+                .withProperty("ldap.attribute.group.member", "member"));
+
+        DirContextOperations groupData = Mockito.mock(DirContextOperations.class);
+        Mockito.doReturn(new String[] { "a", "b", "c", "d", "deleted" }).when(groupData).getStringAttributes("member");
+
+        groupSearch = Mockito.mock(LdapUserSearch.class);
+        Mockito.doReturn(groupData).when(groupSearch).searchForUser("testgroup");
+
+        // The bulk lookup finds everyone but a member who no longer exists
+        identityService = Mockito.mock(IdentityService.class);
+        Mockito.doAnswer(new Answer<Map<String, User>>() {
+            @Override
+            public Map<String, User> answer(InvocationOnMock invocation) throws Throwable {
+                Map<String, User> users = new HashMap<String, User>();
+                for (Object id : Set.class.cast(invocation.getArguments()[0])) {
+                    if (!id.equals("deleted"))
+                        users.put(id.toString(), new User.Builder().userId(id.toString()).build());
+                }
+                return users;
+            }
+        }).when(identityService).findUsers(any(Set.class));
+
+        groupService = new LdapGroupService(cacheService, identityService, null, groupSearch, ldapSettings);
+    }
+
+    @Test
+    public void testMembersAreLookedUpInOneCall() {
+        Group group = groupService.getGroupById("testgroup");
+
+        Assert.assertEquals(4, group.getMembers().size());
+
+        ArgumentCaptor<Set> ids = ArgumentCaptor.forClass(Set.class);
+        Mockito.verify(identityService, Mockito.times(1)).findUsers(ids.capture());
+        Assert.assertEquals(new LinkedHashSet<String>(Arrays.asList("a", "b", "c", "d", "deleted")), ids.getValue());
+
+        // Members the bulk lookup doesn't find are left out, not looked up one at a time
+        Mockito.verify(identityService, Mockito.never()).getUser(anyString());
+    }
+
+    @Test
+    public void testGroupIsCachedWithoutMembers() {
+        groupService.getGroupById("testgroup");
+        Group group = groupService.getGroupById("testgroup");
+
+        Assert.assertEquals(4, group.getMembers().size());
+        Mockito.verify(groupSearch, Mockito.times(1)).searchForUser("testgroup");
+        // Member details still come from the identity service, which has caches of its own
+        Mockito.verify(identityService, Mockito.times(2)).findUsers(any(Set.class));
+    }
+
+}
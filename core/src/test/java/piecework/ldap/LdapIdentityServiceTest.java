@@ -0,0 +1,160 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.ldap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.ldap.core.support.LdapContextSource;
+import org.springframework.ldap.filter.Filter;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.ldap.search.LdapUserSearch;
+import org.springframework.security.ldap.userdetails.LdapAuthoritiesPopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import piecework.cache.GuavaCacheManager;
+import piecework.enumeration.CacheName;
+import piecework.identity.IdentityDetails;
+import piecework.model.User;
+import piecework.service.CacheService;
+
+import java.util.*;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+
+/**
+ * @author James Renfro
+ */
+public class LdapIdentityServiceTest {
+
+    private static final Set<String> DIRECTORY = new HashSet<String>(Arrays.asList("a", "b", "c", "d", "e", "f"));
+
+    private CacheService cacheService;
+    private LdapIdentityService identityService;
+    private List<String> queries;
+
+    @Before
+    public void setup() {
+        cacheService = new CacheService();
+        ReflectionTestUtils.setField(cacheService, "cacheManager", new GuavaCacheManager(null));
+        queries = Collections.synchronizedList(new ArrayList<String>());
+        identityService = identityService(1);
+    }
+
+    @After
+    public void teardown() {
+        identityService.shutdown();
+    }
+
+    @Test
+    public void testChunksAtBatchSize() {
+        Map<String, User> users = identityService.findUsers(ids("a", "b", "c", "d", "e"));
+
+        Assert.assertEquals(5, users.size());
+        Assert.assertEquals(3, queries.size());
+        Assert.assertEquals("(|(uid=a)(uid=b))", queries.get(0));
+        Assert.assertEquals("(|(uid=c)(uid=d))", queries.get(1));
+        Assert.assertTrue(queries.get(2).contains("(uid=e)"));
+        Assert.assertFalse(queries.get(2).contains("(uid=d)"));
+    }
+
+    @Test
+    public void testExactMultipleOfBatchSize() {
+        Map<String, User> users = identityService.findUsers(ids("a", "b", "c", "d"));
+
+        Assert.assertEquals(4, users.size());
+        Assert.assertEquals(2, queries.size());
+    }
+
+    @Test
+    public void testParallelChunks() {
+        identityService.shutdown();
+        identityService = identityService(3);
+
+        Map<String, User> users = identityService.findUsers(ids("a", "b", "c", "d", "e", "f"));
+
+        Assert.assertEquals(DIRECTORY, users.keySet());
+        Assert.assertEquals(3, queries.size());
+    }
+
+    @Test
+    public void testCachedUsersAreNotQueried() {
+        UserDetails details = Mockito.mock(UserDetails.class);
+        cacheService.put(CacheName.IDENTITY, "a", new IdentityDetails(details, "a", "a", "User A", "a@nowhere.com"));
+
+        Map<String, User> users = identityService.findUsers(ids("a", "b"));
+
+        Assert.assertEquals(2, users.size());
+        Assert.assertEquals("User A", users.get("a").getDisplayName());
+        Assert.assertEquals(1, queries.size());
+        Assert.assertTrue(queries.get(0).contains("(uid=b)"));
+        Assert.assertFalse(queries.get(0).contains("(uid=a)"));
+    }
+
+    @Test
+    public void testMissingUsersAreRemembered() {
+        Map<String, User> users = identityService.findUsers(ids("x", "a"));
+        Assert.assertEquals(Collections.singleton("a"), users.keySet());
+        Assert.assertEquals(1, queries.size());
+
+        users = identityService.findUsers(ids("x"));
+        Assert.assertTrue(users.isEmpty());
+        Assert.assertEquals(1, queries.size());
+
+        // Kept apart from the results of multi-user searches
+        Assert.assertNotNull(cacheService.get(CacheName.MISSING_IDENTITY, "x"));
+        Assert.assertNull(cacheService.get(CacheName.MULTI_USER, "(uid=x)"));
+    }
+
+    private LdapIdentityService identityService(int parallelism) {
+        LdapSettings ldapSettings = new LdapSettings(new MockEnvironment()
+                .withProperty("ldap.attribute.id.internal", "uid")
+                .withProperty("ldap.batch.size", "2")
+                .withProperty("ldap.batch.parallelism", String.valueOf(parallelism)));
+
+        LdapIdentityService service = Mockito.spy(new LdapIdentityService(Mockito.mock(UserDetailsService.class), cacheService,
+                Mockito.mock(LdapContextSource.class), Mockito.mock(LdapUserSearch.class), Mockito.mock(LdapAuthoritiesPopulator.class),
+                Mockito.mock(CustomLdapUserDetailsMapper.class), ldapSettings));
+
+        // Stands in for the ldap server, returning whichever users in the directory the filter asks for
+        Mockito.doAnswer(new Answer<List<User>>() {
+            @Override
+            public List<User> answer(InvocationOnMock invocation) throws Throwable {
+                String encoded = Filter.class.cast(invocation.getArguments()[0]).encode();
+                queries.add(encoded);
+                List<User> users = new ArrayList<User>();
+                for (String id : DIRECTORY) {
+                    if (encoded.contains("(uid=" + id + ")"))
+                        users.add(new User.Builder().userId(id).displayName(id).build());
+                }
+                return users;
+            }
+        }).when(service).search(any(Filter.class), anyLong());
+
+        return service;
+    }
+
+    private static Set<String> ids(String ... ids) {
+        return new LinkedHashSet<String>(Arrays.asList(ids));
+    }
+
+}
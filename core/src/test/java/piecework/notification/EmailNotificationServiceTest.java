@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.notification;
+
+import com.github.mustachejava.DefaultMustacheFactory;
+import com.github.mustachejava.Mustache;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import piecework.cache.CacheStatistics;
+import piecework.cache.GuavaCacheManager;
+import piecework.enumeration.CacheName;
+import piecework.service.CacheService;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author James Renfro
+ */
+public class EmailNotificationServiceTest {
+
+    private CacheService cacheService;
+    private EmailNotificationService notificationService;
+    private List<String> templates;
+    private Map<String, Object> scope;
+
+    @Before
+    public void setup() {
+        cacheService = new CacheService();
+        ReflectionTestUtils.setField(cacheService, "cacheManager", new GuavaCacheManager(null));
+        notificationService = new EmailNotificationService();
+        ReflectionTestUtils.setField(notificationService, "cacheService", cacheService);
+
+        templates = new ArrayList<String>();
+        for (int i=0;i<5;i++) {
+            templates.add("Notification " + i + ": {{TASK_LABEL}} for {{PROCESS_INSTANCE_LABEL}} is assigned to {{ASSIGNEE}}. " +
+                    "{{#TASK_URL}}Open it at {{TASK_URL}}{{/TASK_URL}}");
+        }
+
+        scope = new HashMap<String, Object>();
+        scope.put("TASK_LABEL", "Review");
+        scope.put("PROCESS_INSTANCE_LABEL", "Request 1234");
+        scope.put("ASSIGNEE", "testuser");
+        scope.put("TASK_URL", "https://localhost/piecework/ui/form/demo?taskId=1234");
+    }
+
+    @Test
+    public void testCachedMatchesUncached() {
+        for (String template : templates) {
+            Assert.assertEquals(compile(template), notificationService.render(template, "text", scope));
+            Assert.assertEquals(compile(template), notificationService.render(template, "text", scope));
+        }
+    }
+
+    @Test
+    public void testTemplatesAreCompiledOnce() {
+        for (int i=0;i<3;i++) {
+            for (String template : templates) {
+                notificationService.render(template, "text", scope);
+            }
+        }
+
+        CacheStatistics statistics = cacheService.getStatistics(CacheName.NOTIFICATION_TEMPLATE);
+        Assert.assertEquals(templates.size(), statistics.getSize());
+        Assert.assertEquals(templates.size(), statistics.getMissCount());
+        Assert.assertEquals(2 * templates.size(), statistics.getHitCount());
+    }
+
+    @Test
+    public void testNoTemplate() {
+        Assert.assertNull(notificationService.render(null, "text", scope));
+    }
+
+    private String compile(String template) {
+        Mustache mustache = new DefaultMustacheFactory().compile(new StringReader(template), "text");
+        StringWriter writer = new StringWriter();
+        mustache.execute(writer, scope);
+        return writer.toString();
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.notification;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import piecework.enumeration.StateChangeType;
+import piecework.model.Notification;
+import piecework.model.ProcessInstance;
+import piecework.model.QueuedNotification;
+import piecework.model.Task;
+import piecework.persistence.QueuedNotificationRepository;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * @author James Renfro
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationOutboxTest {
+
+    @InjectMocks
+    NotificationOutbox notificationOutbox;
+
+    @Mock
+    EmailNotificationService notificationService;
+
+    @Mock
+    NotificationScopeFactory scopeFactory;
+
+    @Mock
+    QueuedNotificationRepository queuedNotificationRepository;
+
+    @Mock
+    ScheduledExecutorService executor;
+
+    @Mock
+    MimeMessage message;
+
+    @Mock
+    Transport transport;
+
+    @Before
+    public void setup() throws Exception {
+        ReflectionTestUtils.setField(notificationOutbox, "enabled", Boolean.TRUE);
+        ReflectionTestUtils.setField(notificationOutbox, "executor", executor);
+        ReflectionTestUtils.setField(notificationOutbox, "batchSize", 10);
+        ReflectionTestUtils.setField(notificationOutbox, "maxAttempts", 3);
+        ReflectionTestUtils.setField(notificationOutbox, "retryInterval", 1000l);
+        ReflectionTestUtils.setField(notificationOutbox, "leaseInterval", 60000l);
+        ReflectionTestUtils.setField(notificationOutbox, "failedRetention", 3600000l);
+        doReturn(Collections.<String, Object>singletonMap("ASSIGNEE", "testuser")).when(scopeFactory).scope(any(String.class), any(String.class), any(String.class));
+    }
+
+    @Test
+    public void testEnqueueOnlyMatchingEvents() {
+        Notification matching = new Notification.Builder().notificationId("1").put(Notification.Constants.EVENT, StateChangeType.CREATE_TASK.name()).build();
+        Notification other = new Notification.Builder().notificationId("2").put(Notification.Constants.EVENT, StateChangeType.COMPLETE_TASK.name()).build();
+
+        ProcessInstance instance = new ProcessInstance.Builder().processDefinitionKey("TEST").processInstanceId("123").build();
+        Task task = new Task.Builder().taskInstanceId("1001").assigneeId("testuser").build();
+        notificationOutbox.enqueue(Arrays.asList(matching, other), instance, task, StateChangeType.CREATE_TASK);
+
+        Mockito.verify(queuedNotificationRepository).save(Matchers.argThat(new org.hamcrest.BaseMatcher<Iterable<QueuedNotification>>() {
+            @Override
+            public boolean matches(Object item) {
+                List<?> list = List.class.cast(item);
+                if (list.size() != 1)
+                    return false;
+                QueuedNotification queued = QueuedNotification.class.cast(list.get(0));
+                return queued.getNotification().getNotificationId().equals("1")
+                        && queued.getProcessDefinitionKey().equals("TEST")
+                        && queued.getProcessInstanceId().equals("123")
+                        && queued.getTaskId().equals("1001");
+            }
+
+            @Override
+            public void describeTo(org.hamcrest.Description description) {
+                description.appendText("only the notification for this event");
+            }
+        }));
+        Mockito.verify(executor).execute(any(Runnable.class));
+        Mockito.verify(notificationService, Mockito.never()).send(any(Collection.class), any(Map.class), any(StateChangeType.class));
+    }
+
+    @Test
+    public void testDispatchSendsBatchOverOneConnection() throws Exception {
+        List<QueuedNotification> batch = Arrays.asList(queued("1", 0), queued("2", 0));
+        doReturn(batch).when(queuedNotificationRepository).claim(eq(10), any(Date.class));
+        doReturn(message).when(notificationService).prepare(any(Notification.class), any(Map.class), any(StateChangeType.class));
+        doReturn(transport).when(notificationService).connect();
+        doReturn(Boolean.TRUE).when(transport).isConnected();
+
+        Assert.assertEquals(2, notificationOutbox.dispatch());
+
+        Mockito.verify(notificationService, Mockito.times(1)).connect();
+        Mockito.verify(transport, Mockito.times(2)).sendMessage(eq(message), any(Address[].class));
+        Mockito.verify(transport).close();
+        Mockito.verify(queuedNotificationRepository).delete("1");
+        Mockito.verify(queuedNotificationRepository).delete("2");
+        // Both notifications are about the same task, so the instance is only read once
+        Mockito.verify(scopeFactory, Mockito.times(1)).scope("TEST", "123", "1001");
+    }
+
+    @Test
+    public void testDispatchDropsNotificationWhenTaskIsGone() throws Exception {
+        List<QueuedNotification> batch = Arrays.asList(queued("1", 0));
+        doReturn(batch).when(queuedNotificationRepository).claim(eq(10), any(Date.class));
+        doReturn(null).when(scopeFactory).scope("TEST", "123", "1001");
+
+        notificationOutbox.dispatch();
+
+        Mockito.verify(notificationService, Mockito.never()).prepare(any(Notification.class), any(Map.class), any(StateChangeType.class));
+        Mockito.verify(notificationService, Mockito.never()).connect();
+        Mockito.verify(queuedNotificationRepository).delete("1");
+    }
+
+    @Test
+    public void testPurgeRemovesFailedAfterRetention() {
+        long before = System.currentTimeMillis();
+        notificationOutbox.purge();
+
+        ArgumentCaptor<Date> createdBefore = ArgumentCaptor.forClass(Date.class);
+        Mockito.verify(queuedNotificationRepository).purge(eq(QueuedNotification.Constants.FAILED), createdBefore.capture());
+        Assert.assertTrue(createdBefore.getValue().getTime() <= System.currentTimeMillis() - 3600000l);
+        Assert.assertTrue(createdBefore.getValue().getTime() >= before - 3600000l);
+    }
+
+    @Test
+    public void testDispatchRetriesWhenMailServerIsDown() throws Exception {
+        List<QueuedNotification> batch = Arrays.asList(queued("1", 0), queued("2", 2));
+        doReturn(batch).when(queuedNotificationRepository).claim(eq(10), any(Date.class));
+        doReturn(message).when(notificationService).prepare(any(Notification.class), any(Map.class), any(StateChangeType.class));
+        doThrow(new MessagingException("Connection refused")).when(notificationService).connect();
+
+        notificationOutbox.dispatch();
+
+        Mockito.verify(notificationService, Mockito.times(1)).connect();
+        Mockito.verify(queuedNotificationRepository).release(eq("1"), eq(QueuedNotification.Constants.PENDING), eq(1), any(Date.class), eq("Connection refused"));
+        Mockito.verify(queuedNotificationRepository).release(eq("2"), eq(QueuedNotification.Constants.FAILED), eq(3), (Date)Matchers.isNull(), eq("Connection refused"));
+        Mockito.verify(queuedNotificationRepository, Mockito.never()).delete(any(String.class));
+    }
+
+    @Test
+    public void testBackoff() {
+        Assert.assertEquals(1000l, notificationOutbox.backoff(1));
+        Assert.assertEquals(2000l, notificationOutbox.backoff(2));
+        Assert.assertEquals(8000l, notificationOutbox.backoff(4));
+        Assert.assertEquals(60l * 60l * 1000l, notificationOutbox.backoff(30));
+    }
+
+    private static QueuedNotification queued(String id, int attempts) {
+        return new QueuedNotification.Builder()
+                .queuedNotificationId(id)
+                .notification(new Notification.Builder().notificationId(id).build())
+                .processDefinitionKey("TEST")
+                .processInstanceId("123")
+                .taskId("1001")
+                .type(StateChangeType.CREATE_TASK)
+                .attempts(attempts)
+                .build();
+    }
+
+}
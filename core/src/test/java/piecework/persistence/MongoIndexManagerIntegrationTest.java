@@ -0,0 +1,180 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.persistence;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import piecework.Constants;
+import piecework.model.ProcessInstance;
+import piecework.model.Task;
+import piecework.process.ProcessInstanceQueryBuilder;
+import piecework.process.ProcessInstanceSearchCriteria;
+import piecework.test.config.PersistenceTestConfiguration;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Checks with explain() that the query shapes the repositories use are served by the
+ * indexes the index manager creates, rather than by a collection scan or an in-memory
+ * sort. Like the other tests that need embedded Mongo it doesn't run in the normal build;
+ * run it with
+ *
+ * mvn -pl core test -Dtest=MongoIndexManagerIntegrationTest -Dembedded.mongo=true
+ *
+ * @author James Renfro
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes={PersistenceTestConfiguration.class})
+@ActiveProfiles(profiles={"test", "embedded-mongo"})
+public class MongoIndexManagerIntegrationTest {
+
+    private static final int INSTANCES = 500;
+
+    @Autowired
+    MongoTemplate mongoOperations;
+
+    private DBCollection collection;
+
+    @BeforeClass
+    public static void requireEmbeddedMongo() {
+        Assume.assumeTrue(Boolean.getBoolean("embedded.mongo"));
+    }
+
+    @Before
+    public void setup() {
+        mongoOperations.dropCollection(ProcessInstance.class);
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < INSTANCES; i++) {
+            mongoOperations.save(new ProcessInstance.Builder()
+                    .processInstanceId("instance" + i)
+                    .engineProcessInstanceId("engine" + i)
+                    .processDefinitionKey("TESTPROCESS" + (i % 5))
+                    .processInstanceLabel("Test instance " + i)
+                    .alias("alias" + i)
+                    .initiatorId("user" + (i % 20))
+                    .processStatus(i % 3 == 0 ? Constants.ProcessStatuses.COMPLETE : Constants.ProcessStatuses.OPEN)
+                    .startTime(new Date(now - i * 60000l))
+                    .task(new Task.Builder()
+                            .taskInstanceId("task" + i)
+                            .processInstanceId("instance" + i)
+                            .processDefinitionKey("TESTPROCESS" + (i % 5))
+                            .build())
+                    .build());
+        }
+
+        MongoIndexManager indexManager = new MongoIndexManager();
+        indexManager.environment = new MockEnvironment();
+        indexManager.mongoOperations = mongoOperations;
+        indexManager.ensureIndexes();
+
+        collection = mongoOperations.getCollection(mongoOperations.getCollectionName(ProcessInstance.class));
+    }
+
+    @Test
+    public void defaultSearchUsesSearchIndex() {
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .processDefinitionKey("TESTPROCESS1")
+                .maxResults(20)
+                .build();
+        Query query = new ProcessInstanceQueryBuilder(criteria).build();
+
+        DBObject explain = collection.find(query.getQueryObject()).sort(query.getSortObject()).limit(20).explain();
+        assertIndexed("instance_search", explain);
+        Assert.assertFalse(Boolean.TRUE.equals(explain.get("scanAndOrder")));
+    }
+
+    /*
+     * What the instance search actually sends -- every process the user oversees, newest first
+     */
+    @Test
+    public void searchAcrossProcessesIsNotSortedInMemory() {
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .processDefinitionKey("TESTPROCESS1")
+                .processDefinitionKey("TESTPROCESS2")
+                .processDefinitionKey("TESTPROCESS3")
+                .maxResults(20)
+                .build();
+        Query query = new ProcessInstanceQueryBuilder(criteria).build();
+
+        DBObject explain = collection.find(query.getQueryObject()).sort(query.getSortObject()).limit(20).explain();
+        assertIndexed(null, explain);
+        Assert.assertFalse("Sorted in memory: " + explain, Boolean.TRUE.equals(explain.get("scanAndOrder")));
+    }
+
+    @Test
+    public void initiatorSearchUsesIndex() {
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .processDefinitionKey("TESTPROCESS1")
+                .initiatedBy("user1")
+                .build();
+        Query query = new ProcessInstanceQueryBuilder(criteria).build();
+
+        assertIndexed(null, collection.find(query.getQueryObject()).explain());
+    }
+
+    @Test
+    public void engineLookupUsesEngineIndex() {
+        DBObject query = new BasicDBObject("processDefinitionKey", "TESTPROCESS2").append("engineProcessInstanceId", "engine7");
+        assertIndexed("instance_engine", collection.find(query).explain());
+    }
+
+    @Test
+    public void aliasLookupUsesAliasIndex() {
+        DBObject query = new BasicDBObject("processDefinitionKey", "TESTPROCESS2").append("alias", "alias7");
+        assertIndexed("instance_alias", collection.find(query).explain());
+    }
+
+    @Test
+    public void taskLookupUsesTaskIndex() {
+        DBObject query = new BasicDBObject("taskIds", "task1").append("processDefinitionKey", "TESTPROCESS1");
+        DBObject explain = collection.find(query).explain();
+        assertIndexed("instance_task", explain);
+        Assert.assertEquals(1, ((Number)explain.get("nscanned")).intValue());
+    }
+
+    @Test
+    public void keywordSearchUsesKeywordIndex() {
+        DBObject query = new BasicDBObject("keywords", new BasicDBObject("$all", Arrays.asList("te", "instance")));
+        assertIndexed("instance_keywords", collection.find(query).explain());
+    }
+
+    /*
+     * A null index name only checks that some index was used
+     */
+    private static void assertIndexed(String indexName, DBObject explain) {
+        String cursor = String.valueOf(explain.get("cursor"));
+        Assert.assertTrue("Expected an index but got " + cursor, cursor.startsWith("BtreeCursor"));
+        if (indexName != null)
+            Assert.assertTrue("Expected " + indexName + " but got " + cursor, cursor.startsWith("BtreeCursor " + indexName));
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.persistence;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author James Renfro
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class MongoIndexManagerTest {
+
+    @InjectMocks
+    MongoIndexManager indexManager;
+
+    @Mock
+    MongoTemplate mongoOperations;
+
+    @Mock
+    DBCollection collection;
+
+    @Before
+    public void setup() {
+        ReflectionTestUtils.setField(indexManager, "environment", new MockEnvironment());
+        Mockito.when(mongoOperations.getCollection(Mockito.anyString())).thenReturn(collection);
+    }
+
+    @Test
+    public void ensuresEveryDefinitionInTheBackground() {
+        indexManager.init();
+
+        for (IndexDefinition definition : indexManager.getDefinitions()) {
+            Mockito.verify(collection).ensureIndex(definition.getKeysObject(), definition.getOptionsObject());
+            Assert.assertEquals(Boolean.TRUE, definition.getOptionsObject().get("background"));
+        }
+        Mockito.verify(mongoOperations, Mockito.never()).getDb();
+    }
+
+    @Test
+    public void skipsIndexesWhenTurnedOff() {
+        ReflectionTestUtils.setField(indexManager, "environment", new MockEnvironment().withProperty("mongo.indexes.ensure", "false"));
+        indexManager.init();
+        Mockito.verifyZeroInteractions(collection);
+    }
+
+    @Test
+    public void definitionNamesAreUnique() {
+        Set<String> names = new HashSet<String>();
+        for (IndexDefinition definition : indexManager.getDefinitions()) {
+            Assert.assertTrue(definition.getName(), names.add(definition.getCollectionName() + "." + definition.getName()));
+        }
+    }
+
+    @Test
+    public void searchIndexKeysAreInQueryOrder() {
+        IndexDefinition search = indexManager.getDefinitions().get(0);
+        Iterator<String> keys = search.getKeysObject().keySet().iterator();
+        Assert.assertEquals("processDefinitionKey", keys.next());
+        Assert.assertEquals("processStatus", keys.next());
+        Assert.assertEquals("startTime", keys.next());
+        Assert.assertEquals("_id", keys.next());
+        Assert.assertEquals(Integer.valueOf(-1), search.getKeysObject().get("startTime"));
+    }
+
+    @Test
+    public void textIndexOnlyInTextMode() {
+        for (IndexDefinition definition : indexManager.getDefinitions()) {
+            Assert.assertFalse(definition.getName().equals("instance_text"));
+        }
+
+        ReflectionTestUtils.setField(indexManager, "environment", new MockEnvironment().withProperty("search.keyword.mode", "text"));
+        List<IndexDefinition> definitions = indexManager.getDefinitions();
+        IndexDefinition text = definitions.get(definitions.size() - 1);
+        Assert.assertEquals("instance_text", text.getName());
+        Assert.assertEquals("text", text.getKeysObject().get("keywords"));
+        DBObject weights = (DBObject) text.getOptionsObject().get("weights");
+        Assert.assertEquals(Integer.valueOf(10), weights.get("processInstanceLabel"));
+        Assert.assertEquals(Integer.valueOf(1), weights.get("keywords"));
+    }
+
+    @Test
+    public void suspicionFlagsCollectionScans() {
+        Assert.assertEquals("Unindexed query", indexManager.suspicion(profiled("demo.instance", 5, 5000, 10, false)));
+        Assert.assertEquals("In-memory sort", indexManager.suspicion(profiled("demo.instance", 5, 20, 20, true)));
+        Assert.assertEquals("Slow query", indexManager.suspicion(profiled("demo.instance", 250, 20, 20, false)));
+        Assert.assertNull(indexManager.suspicion(profiled("demo.instance", 5, 20, 20, false)));
+        Assert.assertNull(indexManager.suspicion(profiled("demo.system.profile", 500, 5000, 1, true)));
+        Assert.assertNull(indexManager.suspicion(profiled("demo.cache.invalidation", 500, 5000, 1, false)));
+    }
+
+    private static DBObject profiled(String ns, int millis, int scanned, int returned, boolean scanAndOrder) {
+        BasicDBObject entry = new BasicDBObject("op", "query").append("ns", ns).append("millis", millis)
+                .append("nscanned", scanned).append("nreturned", returned);
+        if (scanAndOrder)
+            entry.append("scanAndOrder", Boolean.TRUE);
+        return entry;
+    }
+
+}
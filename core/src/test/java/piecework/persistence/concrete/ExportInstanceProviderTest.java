@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.persistence.concrete;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author James Renfro
+ */
+public class ExportInstanceProviderTest {
+
+    @Test
+    public void testEscape() {
+        Assert.assertEquals("\"\"", escape(null));
+        Assert.assertEquals("\"simple\"", escape("simple"));
+        Assert.assertEquals("\"one, two\"", escape("one, two"));
+        Assert.assertEquals("\"say \"\"hello\"\"\"", escape("say \"hello\""));
+        Assert.assertEquals("\"line\nbreak\"", escape("line\nbreak"));
+    }
+
+    private static String escape(String text) {
+        StringBuilder builder = new StringBuilder();
+        ExportInstanceProvider.escape(builder, text);
+        return builder.toString();
+    }
+
+}
@@ -48,8 +48,11 @@ public class GridFSContentRepositoryTest {
 
         Content content = contentRepository.save(expected);
         Assert.assertNotNull(content.getContentId());
+        Assert.assertEquals(14, content.getLength().longValue());
+        Assert.assertNotNull(content.getMd5());
 
         Content stored = contentRepository.findByLocation(expected.getLocation());
+        Assert.assertEquals(content.getSha256(), stored.getSha256());
 
         Assert.assertEquals(content.getContentId(), stored.getContentId());
         Assert.assertEquals(14, stored.getLength().longValue());
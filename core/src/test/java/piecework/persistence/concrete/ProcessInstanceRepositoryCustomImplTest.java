@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.persistence.concrete;
+
+import com.mongodb.DBObject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import piecework.model.ProcessInstance;
+import piecework.model.Task;
+import piecework.persistence.TaskRepository;
+
+import java.util.List;
+
+/**
+ * @author James Renfro
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ProcessInstanceRepositoryCustomImplTest {
+
+    @InjectMocks
+    ProcessInstanceRepositoryCustomImpl repository;
+
+    @Mock
+    MongoTemplate mongoOperations;
+
+    @Mock
+    TaskRepository taskRepository;
+
+    @Test
+    public void findByTaskIdUsesTaskIds() {
+        ProcessInstance instance = new ProcessInstance.Builder().processInstanceId("1").processDefinitionKey("TEST").build();
+        Mockito.when(mongoOperations.findOne(Mockito.any(Query.class), Mockito.eq(ProcessInstance.class))).thenReturn(instance);
+
+        Assert.assertSame(instance, repository.findByTaskId("TEST", "1001"));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoOperations).findOne(query.capture(), Mockito.eq(ProcessInstance.class));
+        Assert.assertEquals("1001", query.getValue().getQueryObject().get("taskIds"));
+        Mockito.verify(mongoOperations, Mockito.never()).updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(ProcessInstance.class));
+    }
+
+    @Test
+    public void findByTaskIdFallsBackToTaskMapAndRepairsTaskIds() {
+        ProcessInstance instance = new ProcessInstance.Builder()
+                .processInstanceId("1")
+                .processDefinitionKey("TEST")
+                .task(new Task.Builder().taskInstanceId("1001").build())
+                .task(new Task.Builder().taskInstanceId("1002").build())
+                .build();
+        Mockito.when(mongoOperations.findOne(Mockito.any(Query.class), Mockito.eq(ProcessInstance.class))).thenReturn(null, instance);
+
+        Assert.assertSame(instance, repository.findByTaskId("TEST", "1001"));
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoOperations, Mockito.times(2)).findOne(queries.capture(), Mockito.eq(ProcessInstance.class));
+        Assert.assertNotNull(queries.getAllValues().get(1).getQueryObject().get("tasks.1001"));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(mongoOperations).updateFirst(Mockito.any(Query.class), update.capture(), Mockito.eq(ProcessInstance.class));
+        DBObject addToSet = (DBObject) ((DBObject) update.getValue().getUpdateObject().get("$addToSet")).get("taskIds");
+        List<?> taskIds = (List<?>) addToSet.get("$each");
+        Assert.assertEquals(2, taskIds.size());
+        Assert.assertTrue(taskIds.contains("1001"));
+        Assert.assertTrue(taskIds.contains("1002"));
+    }
+
+    @Test
+    public void findByTaskIdReturnsNullWhenNeitherMatches() {
+        Assert.assertNull(repository.findByTaskId("TEST", "1001"));
+        Mockito.verify(mongoOperations, Mockito.never()).updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(ProcessInstance.class));
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.process;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Date;
+
+/**
+ * @author James Renfro
+ */
+public class ContinuationTokenTest {
+
+    @Test
+    public void testEncodeDecode() {
+        Date startTime = new Date(1381430000000l);
+        ContinuationToken token = new ContinuationToken(startTime, "52570a2de4b0bd3b0d4ab4e5", 200);
+        String encoded = token.encode();
+
+        Assert.assertTrue(encoded.matches("[A-Za-z0-9\\-_,]+"));
+
+        ContinuationToken decoded = ContinuationToken.decode(encoded);
+        Assert.assertEquals(startTime, decoded.getStartTime());
+        Assert.assertEquals("52570a2de4b0bd3b0d4ab4e5", decoded.getProcessInstanceId());
+        Assert.assertEquals(200, decoded.getPosition());
+    }
+
+    @Test
+    public void testDecodeInvalid() {
+        Assert.assertNull(ContinuationToken.decode(null));
+        Assert.assertNull(ContinuationToken.decode("not-a-token"));
+        Assert.assertNull(ContinuationToken.decode(new ContinuationToken(new Date(), "", 1).encode()));
+    }
+
+    @Test
+    public void testQuerySeeksInsteadOfSkipping() {
+        ContinuationToken token = new ContinuationToken(new Date(), "52570a2de4b0bd3b0d4ab4e5", 1000);
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .processDefinitionKey("TEST")
+                .firstResult(1000)
+                .maxResults(100)
+                .continuationToken(token)
+                .build();
+
+        Query query = new ProcessInstanceQueryBuilder(criteria).build();
+        Assert.assertEquals(0, query.getSkip());
+        Assert.assertEquals(100, query.getLimit());
+        Assert.assertNotNull(query.getQueryObject().get("$or"));
+        Assert.assertEquals(ProcessInstanceSearchCriteria.CountMode.ESTIMATE, criteria.getCountMode());
+    }
+
+    @Test
+    public void testContinuationIgnoredForEndTimeOrdering() {
+        ContinuationToken token = new ContinuationToken(new Date(), "52570a2de4b0bd3b0d4ab4e5", 1000);
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .processDefinitionKey("TEST")
+                .orderBy(ProcessInstanceSearchCriteria.OrderBy.END_TIME_DESC)
+                .firstResult(1000)
+                .continuationToken(token)
+                .build();
+
+        Query query = new ProcessInstanceQueryBuilder(criteria).build();
+        Assert.assertNull(criteria.getContinuationToken());
+        Assert.assertEquals(1000, query.getSkip());
+        Assert.assertEquals(ProcessInstanceSearchCriteria.CountMode.EXACT, criteria.getCountMode());
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.process;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.data.mongodb.core.DocumentCallbackHandler;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import piecework.model.ProcessInstance;
+import piecework.persistence.MigrationLog;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author James Renfro
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class KeywordIndexInitializerTest {
+
+    @InjectMocks
+    KeywordIndexInitializer initializer;
+
+    @Mock
+    MongoTemplate mongoOperations;
+
+    @Mock
+    MigrationLog migrationLog;
+
+    @Before
+    public void setup() {
+        ReflectionTestUtils.setField(initializer, "environment", new MockEnvironment());
+        Mockito.when(mongoOperations.getCollectionName(ProcessInstance.class)).thenReturn("instance");
+    }
+
+    @Test
+    public void retokenizesUntilMarkedComplete() {
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                DocumentCallbackHandler handler = (DocumentCallbackHandler) invocation.getArguments()[2];
+                handler.processDocument(new BasicDBObject("_id", "1").append("keywords", Arrays.asList("renfro")));
+                return null;
+            }
+        }).when(mongoOperations).executeQuery(Mockito.any(Query.class), Mockito.eq("instance"), Mockito.any(DocumentCallbackHandler.class));
+
+        initializer.backfill();
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(mongoOperations).updateFirst(Mockito.any(Query.class), update.capture(), Mockito.eq("instance"));
+        List<?> keywords = (List<?>) ((DBObject) update.getValue().getUpdateObject().get("$set")).get("keywords");
+        Assert.assertTrue(keywords.contains("re"));
+        Assert.assertTrue(keywords.contains("renfro"));
+        Mockito.verify(migrationLog).complete(KeywordIndexInitializer.KEYWORDS_MIGRATION, 1l);
+    }
+
+    @Test
+    public void skipsOnceComplete() {
+        Mockito.when(migrationLog.isComplete(KeywordIndexInitializer.KEYWORDS_MIGRATION)).thenReturn(Boolean.TRUE);
+
+        initializer.backfill();
+
+        Mockito.verify(mongoOperations, Mockito.never()).executeQuery(Mockito.any(Query.class), Mockito.anyString(), Mockito.any(DocumentCallbackHandler.class));
+    }
+
+    @Test
+    public void interruptedRetokenizingIsNotComplete() {
+        Mockito.doThrow(new DataRetrievalFailureException("Connection lost")).when(mongoOperations)
+                .executeQuery(Mockito.any(Query.class), Mockito.eq("instance"), Mockito.any(DocumentCallbackHandler.class));
+
+        initializer.backfill();
+
+        Mockito.verify(migrationLog, Mockito.never()).complete(Mockito.anyString(), Mockito.anyLong());
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.process;
+
+import com.mongodb.DBObject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.query.Query;
+import piecework.enumeration.KeywordSearchMode;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * @author James Renfro
+ */
+public class ProcessInstanceQueryBuilderTest {
+
+    @Test
+    public void testKeywordsAreIndexedLookups() {
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .processDefinitionKey("TEST")
+                .keyword("Renfro")
+                .keyword("lab equip")
+                .build();
+
+        Query query = new ProcessInstanceQueryBuilder(criteria).build();
+        DBObject keywords = (DBObject) query.getQueryObject().get("keywords");
+        Assert.assertEquals(Arrays.asList("renfro", "lab", "equip"), keywords.get("$all"));
+    }
+
+    @Test
+    public void testTextSearchIsRankedByRelevance() {
+        ContinuationToken token = new ContinuationToken(new Date(), "52570a2de4b0bd3b0d4ab4e5", 100);
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .processDefinitionKey("TEST")
+                .keyword("lab equipment")
+                .orderBy(ProcessInstanceSearchCriteria.OrderBy.RELEVANCE)
+                .firstResult(100)
+                .continuationToken(token)
+                .build();
+
+        Query query = new ProcessInstanceQueryBuilder(criteria, KeywordSearchMode.TEXT).build();
+        Assert.assertTrue(query instanceof RelevanceQuery);
+
+        DBObject text = (DBObject) query.getQueryObject().get("$text");
+        Assert.assertEquals("\"lab equipment\"", text.get("$search"));
+        Assert.assertNull(query.getQueryObject().get("keywords"));
+        // No seeking by start time, just skipping
+        Assert.assertNull(query.getQueryObject().get("$or"));
+        Assert.assertEquals(100, query.getSkip());
+        Assert.assertTrue(query.getSortObject().containsField(RelevanceQuery.SCORE));
+        Assert.assertTrue(query.getFieldsObject().containsField(RelevanceQuery.SCORE));
+    }
+
+    @Test
+    public void testTextSearchKeepsExplicitOrdering() {
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .processDefinitionKey("TEST")
+                .keyword("lab")
+                .orderBy(ProcessInstanceSearchCriteria.OrderBy.START_TIME_ASC)
+                .build();
+
+        Query query = new ProcessInstanceQueryBuilder(criteria, KeywordSearchMode.TEXT).build();
+        Assert.assertFalse(query instanceof RelevanceQuery);
+        Assert.assertNotNull(query.getQueryObject().get("$text"));
+        Assert.assertEquals(Integer.valueOf(1), query.getSortObject().get("startTime"));
+    }
+
+    @Test
+    public void testRelevanceWithoutTextSearchSortsByStartTime() {
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .processDefinitionKey("TEST")
+                .keyword("lab")
+                .orderBy(ProcessInstanceSearchCriteria.OrderBy.RELEVANCE)
+                .build();
+
+        Query query = new ProcessInstanceQueryBuilder(criteria, KeywordSearchMode.PREFIX).build();
+        Assert.assertFalse(query instanceof RelevanceQuery);
+        Assert.assertNull(query.getQueryObject().get("$text"));
+        Assert.assertEquals(Integer.valueOf(-1), query.getSortObject().get("startTime"));
+    }
+
+    @Test
+    public void testTextModeWithoutKeywordsIsUnchanged() {
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .processDefinitionKey("TEST")
+                .orderBy(ProcessInstanceSearchCriteria.OrderBy.RELEVANCE)
+                .build();
+
+        Query query = new ProcessInstanceQueryBuilder(criteria, KeywordSearchMode.TEXT).build();
+        Assert.assertFalse(query instanceof RelevanceQuery);
+        Assert.assertNull(query.getQueryObject().get("$text"));
+        List<String> sortKeys = Arrays.asList(query.getSortObject().keySet().toArray(new String[0]));
+        Assert.assertEquals(Arrays.asList("startTime", "_id"), sortKeys);
+    }
+
+    @Test
+    public void testPunctuationOnlyKeywordDoesNotFilter() {
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .processDefinitionKey("TEST")
+                .keyword("-- ?!")
+                .build();
+
+        Query query = new ProcessInstanceQueryBuilder(criteria).build();
+        Assert.assertNull(query.getQueryObject().get("keywords"));
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.process;
+
+import org.junit.Assert;
+import org.junit.Test;
+import piecework.security.concrete.PassthroughSanitizer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author James Renfro
+ */
+public class ProcessInstanceSearchCriteriaTest {
+
+    @Test
+    public void testCountModeIsCaseInsensitive() {
+        ProcessInstanceSearchCriteria criteria = criteria("count", "estimate");
+        Assert.assertEquals(ProcessInstanceSearchCriteria.CountMode.ESTIMATE, criteria.getCountMode());
+    }
+
+    @Test
+    public void testUnknownCountModeFallsBackToDefault() {
+        ProcessInstanceSearchCriteria criteria = criteria("count", "exactish");
+        Assert.assertEquals(ProcessInstanceSearchCriteria.CountMode.EXACT, criteria.getCountMode());
+    }
+
+    private static ProcessInstanceSearchCriteria criteria(String key, String value) {
+        Map<String, List<String>> queryParameters = new HashMap<String, List<String>>();
+        queryParameters.put(key, Collections.singletonList(value));
+        return new ProcessInstanceSearchCriteria.Builder(queryParameters, new PassthroughSanitizer()).build();
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.security;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+import piecework.model.Secret;
+import piecework.model.Value;
+import piecework.util.ManyMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author James Renfro
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class DecryptingManyMapTest {
+
+    @Mock
+    EncryptionService encryptionService;
+
+    private Secret first;
+    private Secret second;
+    private ManyMap<String, Value> original;
+
+    @Before
+    public void setup() throws Exception {
+        first = new Secret.Builder().id("1").length(5).build();
+        second = new Secret.Builder().id("2").length(6).build();
+        Mockito.when(encryptionService.decrypt(Collections.singletonList(first))).thenReturn(Collections.singletonList("first"));
+        Mockito.when(encryptionService.decrypt(Collections.singletonList(second))).thenReturn(Collections.singletonList("second"));
+
+        original = new ManyMap<String, Value>();
+        original.putOne("firstSecret", first);
+        original.putOne("secondSecret", second);
+        original.putOne("plain", new Value("visible"));
+    }
+
+    @Test
+    public void testOnlyReadFieldsAreDecrypted() throws Exception {
+        DecryptingManyMap map = new DecryptingManyMap(original, encryptionService);
+
+        Assert.assertFalse(map.isEmpty());
+        Assert.assertEquals("first", map.getOne("firstSecret").getValue());
+        Assert.assertEquals("first", map.get("firstSecret").get(0).getValue());
+        Assert.assertEquals(1, map.getResolvedCount());
+
+        Mockito.verify(encryptionService, Mockito.times(1)).decrypt(Collections.singletonList(first));
+        Mockito.verify(encryptionService, Mockito.never()).decrypt(Collections.singletonList(second));
+    }
+
+    @Test
+    public void testIterationDecryptsEverything() throws Exception {
+        DecryptingManyMap map = new DecryptingManyMap(original, encryptionService);
+
+        Assert.assertEquals(3, map.size());
+        for (Map.Entry<String, List<Value>> entry : map.entrySet()) {
+            Assert.assertFalse(entry.getValue().get(0) instanceof Secret);
+        }
+        Assert.assertEquals("visible", map.getOne("plain").getValue());
+        Mockito.verify(encryptionService, Mockito.times(1)).decrypt(Collections.singletonList(first));
+        Mockito.verify(encryptionService, Mockito.times(1)).decrypt(Collections.singletonList(second));
+    }
+
+    @Test
+    public void testMissingAndFailedKeys() throws Exception {
+        Mockito.when(encryptionService.decrypt(Collections.singletonList(second))).thenThrow(new IllegalStateException("bad key"));
+        DecryptingManyMap map = new DecryptingManyMap(original, encryptionService);
+
+        Assert.assertNull(map.get("unknown"));
+        Assert.assertNull(map.get("secondSecret"));
+        Assert.assertNull(map.get("secondSecret"));
+        Mockito.verify(encryptionService, Mockito.times(1)).decrypt(Collections.singletonList(second));
+    }
+
+    @Test
+    public void testEmpty() {
+        DecryptingManyMap map = new DecryptingManyMap(Collections.<String, List<Value>>emptyMap(), encryptionService);
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testEmptyOnceEveryKeyIsRemoved() throws Exception {
+        DecryptingManyMap map = new DecryptingManyMap(original, encryptionService);
+        map.remove("firstSecret");
+        map.remove("secondSecret");
+        Assert.assertFalse(map.isEmpty());
+
+        map.remove("plain");
+        Assert.assertTrue(map.isEmpty());
+        Mockito.verify(encryptionService, Mockito.never()).decrypt(Mockito.anyList());
+
+        DecryptingManyMap cleared = new DecryptingManyMap(original, encryptionService);
+        cleared.clear();
+        Assert.assertTrue(cleared.isEmpty());
+        Assert.assertEquals(0, cleared.size());
+    }
+
+    @Test
+    public void testSecretsForKeyAreDecryptedInOneBatch() throws Exception {
+        Secret third = new Secret.Builder().id("3").length(5).build();
+        original.putOne("firstSecret", third);
+        Mockito.when(encryptionService.decrypt(Arrays.asList(first, third))).thenReturn(Arrays.asList("first", "third"));
+        DecryptingManyMap map = new DecryptingManyMap(original, encryptionService);
+
+        Assert.assertEquals("first", map.get("firstSecret").get(0).getValue());
+        Assert.assertEquals("third", map.get("firstSecret").get(1).getValue());
+        Mockito.verify(encryptionService, Mockito.never()).decrypt(Mockito.any(Secret.class));
+    }
+
+    @Test
+    public void testEmptyValuesCanBeAddedTo() {
+        original.put("empty", new ArrayList<Value>());
+        DecryptingManyMap map = new DecryptingManyMap(original, encryptionService);
+
+        Assert.assertTrue(map.get("empty").isEmpty());
+        map.putOne("empty", new Value("added"));
+        Assert.assertEquals("added", map.getOne("empty").getValue());
+    }
+
+    @Test
+    public void testWholeMapOperationsDecryptEverything() {
+        DecryptingManyMap map = new DecryptingManyMap(original, encryptionService);
+        Assert.assertTrue(map.toString().contains("second"));
+        Assert.assertEquals(3, map.getResolvedCount());
+
+        map = new DecryptingManyMap(original, encryptionService);
+        Assert.assertTrue(map.containsValue(original.get("plain")));
+        Assert.assertEquals(3, map.getResolvedCount());
+
+        map = new DecryptingManyMap(original, encryptionService);
+        int hashCode = map.hashCode();
+        Assert.assertEquals(3, map.getResolvedCount());
+
+        Object copy = map.clone();
+        Assert.assertFalse(copy instanceof DecryptingManyMap);
+        Assert.assertEquals(hashCode, copy.hashCode());
+        Assert.assertEquals(copy, map);
+        Assert.assertEquals(map, copy);
+        Assert.assertEquals(3, ((Map<?, ?>) copy).size());
+    }
+
+}
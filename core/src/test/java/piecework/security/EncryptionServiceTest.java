@@ -27,6 +27,13 @@ import piecework.model.Secret;
 import piecework.security.EncryptionService;
 import piecework.security.concrete.config.EncryptionTestConfiguration;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 /**
  * @author James Renfro
  */
@@ -48,6 +55,43 @@ public class EncryptionServiceTest {
         String cleartext = encryptionService.decrypt(secret);
 
         Assert.assertEquals("This is a simple test", cleartext);
+        Assert.assertEquals(Integer.valueOf(cleartext.length()), secret.getLength());
+    }
+
+    @Test
+    public void testBatchMatchesSingle() throws Exception {
+        List<String> plaintexts = new ArrayList<String>();
+        for (int i = 0; i < 50; i++) {
+            plaintexts.add("Restricted value number " + i);
+        }
+
+        List<Secret> secrets = encryptionService.encrypt(plaintexts);
+        Assert.assertEquals(plaintexts, encryptionService.decrypt(secrets));
+        for (int i = 0; i < plaintexts.size(); i++) {
+            Assert.assertEquals(plaintexts.get(i), encryptionService.decrypt(secrets.get(i)));
+        }
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < 200; i++) {
+                final String plaintext = "Concurrent value " + i;
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return encryptionService.decrypt(encryptionService.encrypt(plaintext));
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                Assert.assertEquals("Concurrent value " + i, futures.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.security;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import piecework.exception.MaxSizeExceededException;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * @author James Renfro
+ */
+public class MaxSizeInputStreamTest {
+
+    @Test
+    public void testEndOfStreamIsNotCounted() throws Exception {
+        MaxSizeInputStream inputStream = new MaxSizeInputStream(new ByteArrayInputStream(new byte[10]), 10);
+        byte[] buffer = new byte[4];
+        while (inputStream.read(buffer, 0, buffer.length) != -1);
+
+        // Repeated reads at the end of the stream used to subtract from the total
+        Assert.assertEquals(-1, inputStream.read());
+        Assert.assertEquals(-1, inputStream.read(buffer, 0, buffer.length));
+        Assert.assertEquals(10, inputStream.getSize());
+    }
+
+    @Test(expected = MaxSizeExceededException.class)
+    public void testMaxSizeExceeded() throws Exception {
+        MaxSizeInputStream inputStream = new MaxSizeInputStream(new ByteArrayInputStream(new byte[11]), 10);
+        IOUtils.toByteArray(inputStream);
+    }
+
+    @Test(expected = MaxSizeExceededException.class)
+    public void testMaxSizeExceededOneByteAtATime() throws Exception {
+        MaxSizeInputStream inputStream = new MaxSizeInputStream(new ByteArrayInputStream(new byte[11]), 10);
+        while (inputStream.read() != -1);
+    }
+
+}
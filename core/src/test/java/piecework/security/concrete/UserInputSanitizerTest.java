@@ -22,6 +22,11 @@ import org.owasp.validator.html.Policy;
 import org.springframework.core.io.ClassPathResource;
 
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author James Renfro
@@ -67,4 +72,57 @@ public class UserInputSanitizerTest {
         Assert.assertEquals(text, sanitized);
     }
 
+    @Test
+    public void testSanitizePlainTextSkipsScan() throws Exception {
+        String text = "Joe's \"favorite\" answer is 42, naturally.\n\tSecond line";
+        Assert.assertTrue(userInputSanitizer.isMarkupFree(text));
+        Assert.assertSame(text, userInputSanitizer.sanitize(text));
+    }
+
+    @Test
+    public void testIsMarkupFree() throws Exception {
+        Assert.assertTrue(userInputSanitizer.isMarkupFree(""));
+        Assert.assertTrue(userInputSanitizer.isMarkupFree("joe@nowhere.com"));
+        Assert.assertFalse(userInputSanitizer.isMarkupFree("<script>alert('hi')</script>"));
+        Assert.assertFalse(userInputSanitizer.isMarkupFree("a > b"));
+        Assert.assertFalse(userInputSanitizer.isMarkupFree("&lt;script&gt;"));
+        Assert.assertFalse(userInputSanitizer.isMarkupFree("null\u0000byte"));
+    }
+
+    @Test
+    public void testSanitizeStripsScript() throws Exception {
+        String sanitized = userInputSanitizer.sanitize("Hello<script>alert('hi')</script>");
+        Assert.assertEquals("Hello", sanitized);
+    }
+
+    @Test
+    public void testSanitizeMap() throws Exception {
+        Map<String, List<String>> tainted = new LinkedHashMap<String, List<String>>();
+        tainted.put("employeeName", Collections.singletonList("Joe Nowhere"));
+        tainted.put("comment", Arrays.asList("Looks good", "Hello<script>alert('hi')</script>", null));
+        tainted.put("<script>alert('hi')</script>budget", Collections.singletonList("100"));
+
+        Map<String, List<String>> clean = userInputSanitizer.sanitize(tainted);
+
+        Assert.assertEquals(3, clean.size());
+        Assert.assertEquals(Collections.singletonList("Joe Nowhere"), clean.get("employeeName"));
+        Assert.assertEquals(Arrays.asList("Looks good", "Hello"), clean.get("comment"));
+        Assert.assertEquals(Collections.singletonList("100"), clean.get("budget"));
+        Assert.assertEquals(Arrays.asList("employeeName", "comment", "budget"), Arrays.asList(clean.keySet().toArray()));
+    }
+
+    @Test
+    public void testSanitizeMapMergesCollidingKeys() throws Exception {
+        Map<String, List<String>> tainted = new LinkedHashMap<String, List<String>>();
+        tainted.put("budget", Collections.singletonList("100"));
+        tainted.put("<script>alert('hi')</script>budget", Arrays.asList("200", "300"));
+        tainted.put("employeeName", Collections.singletonList("Joe Nowhere"));
+
+        Map<String, List<String>> clean = userInputSanitizer.sanitize(tainted);
+
+        Assert.assertEquals(2, clean.size());
+        Assert.assertEquals(Arrays.asList("100", "200", "300"), clean.get("budget"));
+        Assert.assertEquals(Arrays.asList("budget", "employeeName"), Arrays.asList(clean.keySet().toArray()));
+    }
+
 }
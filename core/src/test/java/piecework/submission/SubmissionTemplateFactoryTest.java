@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.submission;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import piecework.cache.GuavaCacheManager;
+import piecework.enumeration.ActionType;
+import piecework.enumeration.CacheName;
+import piecework.model.*;
+import piecework.model.Process;
+import piecework.service.CacheService;
+import piecework.test.ExampleFactory;
+
+/**
+ * @author James Renfro
+ */
+public class SubmissionTemplateFactoryTest {
+
+    private SubmissionTemplateFactory submissionTemplateFactory;
+    private CacheService cacheService;
+    private Process process;
+    private ProcessDeployment deployment;
+    private Activity activity;
+
+    @Before
+    public void setup() {
+        cacheService = new CacheService();
+        ReflectionTestUtils.setField(cacheService, "cacheManager", new GuavaCacheManager(null));
+        submissionTemplateFactory = new SubmissionTemplateFactory();
+        ReflectionTestUtils.setField(submissionTemplateFactory, "cacheService", cacheService);
+
+        process = ExampleFactory.exampleProcess();
+        deployment = new ProcessDeployment.Builder().deploymentId("d1").build();
+        activity = new Activity.Builder()
+                .fields(ExampleFactory.employeeNameField(), ExampleFactory.budgetNumberField())
+                .build();
+        ReflectionTestUtils.setField(activity, "activityId", "a1");
+    }
+
+    @Test
+    public void testTemplateIsSharedAcrossRequests() throws Exception {
+        SubmissionTemplate first = submissionTemplateFactory.submissionTemplate(process, deployment, request("r1"));
+        SubmissionTemplate second = submissionTemplateFactory.submissionTemplate(process, deployment, request("r2"));
+
+        Assert.assertEquals("r1", first.getRequestId());
+        Assert.assertEquals("r2", second.getRequestId());
+        Assert.assertEquals(2, first.getFieldMap().size());
+        Assert.assertSame(first.getFieldRuleMap(), second.getFieldRuleMap());
+    }
+
+    @Test
+    public void testTemplateIsRebuiltAfterEviction() throws Exception {
+        SubmissionTemplate first = submissionTemplateFactory.submissionTemplate(process, deployment, request("r1"));
+        cacheService.evict(CacheName.SUBMISSION_TEMPLATE, deployment.getDeploymentId());
+        SubmissionTemplate second = submissionTemplateFactory.submissionTemplate(process, deployment, request("r1"));
+
+        Assert.assertNotSame(first.getFieldRuleMap(), second.getFieldRuleMap());
+        Assert.assertEquals(first.getFieldMap().keySet(), second.getFieldMap().keySet());
+    }
+
+    @Test
+    public void testValidationIdIsPartOfKey() throws Exception {
+        SubmissionTemplate all = submissionTemplateFactory.submissionTemplate(process, deployment, request("r1"));
+        SubmissionTemplate one = submissionTemplateFactory.submissionTemplate(process, deployment, request("r1"), "c1");
+
+        Assert.assertNotSame(all.getFieldRuleMap(), one.getFieldRuleMap());
+    }
+
+    private FormRequest request(String requestId) {
+        return new FormRequest.Builder()
+                .requestId(requestId)
+                .activity(activity)
+                .action(ActionType.VIEW)
+                .build();
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.task;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.data.mongodb.core.DocumentCallbackHandler;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import piecework.model.ProcessInstance;
+import piecework.persistence.MigrationLog;
+import piecework.persistence.TaskRepository;
+
+import java.util.List;
+
+/**
+ * @author James Renfro
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class TaskIndexInitializerTest {
+
+    @InjectMocks
+    TaskIndexInitializer initializer;
+
+    @Mock
+    MongoTemplate mongoOperations;
+
+    @Mock
+    TaskRepository taskRepository;
+
+    @Mock
+    MigrationLog migrationLog;
+
+    @Before
+    public void setup() {
+        ReflectionTestUtils.setField(initializer, "environment", new MockEnvironment().withProperty("task.index.backfill", "false"));
+        Mockito.when(mongoOperations.getCollectionName(ProcessInstance.class)).thenReturn("instance");
+    }
+
+    @Test
+    public void backfillsTaskIdsFromTaskMapKeys() {
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                DocumentCallbackHandler handler = (DocumentCallbackHandler) invocation.getArguments()[2];
+                handler.processDocument(new BasicDBObject("_id", "1")
+                        .append("tasks", new BasicDBObject("1001", new BasicDBObject()).append("1002", new BasicDBObject())));
+                handler.processDocument(new BasicDBObject("_id", "2").append("tasks", new BasicDBObject()));
+                return null;
+            }
+        }).when(mongoOperations).executeQuery(Mockito.any(Query.class), Mockito.eq("instance"), Mockito.any(DocumentCallbackHandler.class));
+
+        initializer.backfill();
+
+        // Instances that already list some of their tasks are visited too
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoOperations).executeQuery(query.capture(), Mockito.eq("instance"), Mockito.any(DocumentCallbackHandler.class));
+        Assert.assertNull(query.getValue().getQueryObject().get("taskIds"));
+
+        // The ids are added to whatever is listed already, and instances without tasks are left alone
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(mongoOperations, Mockito.times(1)).updateFirst(Mockito.any(Query.class), update.capture(), Mockito.eq("instance"));
+
+        DBObject addToSet = (DBObject) ((DBObject) update.getValue().getUpdateObject().get("$addToSet")).get("taskIds");
+        List<?> taskIds = (List<?>) addToSet.get("$each");
+        Assert.assertEquals(2, taskIds.size());
+        Assert.assertTrue(taskIds.contains("1001"));
+        Assert.assertTrue(taskIds.contains("1002"));
+        Assert.assertNull(update.getValue().getUpdateObject().get("$set"));
+        Mockito.verify(migrationLog).complete(TaskIndexInitializer.TASK_IDS_MIGRATION, 1l);
+    }
+
+    @Test
+    public void skipsTaskIdsOnceComplete() {
+        Mockito.when(migrationLog.isComplete(TaskIndexInitializer.TASK_IDS_MIGRATION)).thenReturn(Boolean.TRUE);
+
+        initializer.backfill();
+
+        Mockito.verify(mongoOperations, Mockito.never()).executeQuery(Mockito.any(Query.class), Mockito.anyString(), Mockito.any(DocumentCallbackHandler.class));
+        Mockito.verify(migrationLog, Mockito.never()).complete(Mockito.anyString(), Mockito.anyLong());
+    }
+
+    @Test
+    public void skipsTaskIdsWhenTurnedOff() {
+        ReflectionTestUtils.setField(initializer, "environment", new MockEnvironment()
+                .withProperty("task.index.backfill", "false")
+                .withProperty("task.ids.backfill", "false"));
+
+        initializer.backfill();
+
+        Mockito.verify(mongoOperations, Mockito.never()).executeQuery(Mockito.any(Query.class), Mockito.anyString(), Mockito.any(DocumentCallbackHandler.class));
+    }
+
+    @Test
+    public void backfillsTaskCollectionUntilMarkedComplete() {
+        ReflectionTestUtils.setField(initializer, "environment", new MockEnvironment().withProperty("task.ids.backfill", "false"));
+        Mockito.when(migrationLog.isComplete(TaskIndexInitializer.TASK_COLLECTION_MIGRATION)).thenReturn(Boolean.FALSE);
+
+        initializer.backfill();
+
+        Mockito.verify(mongoOperations).executeQuery(Mockito.any(Query.class), Mockito.eq("instance"), Mockito.any(DocumentCallbackHandler.class));
+        Mockito.verify(migrationLog).complete(TaskIndexInitializer.TASK_COLLECTION_MIGRATION, 0l);
+    }
+
+    @Test
+    public void skipsTaskCollectionOnceComplete() {
+        ReflectionTestUtils.setField(initializer, "environment", new MockEnvironment().withProperty("task.ids.backfill", "false"));
+        Mockito.when(migrationLog.isComplete(TaskIndexInitializer.TASK_COLLECTION_MIGRATION)).thenReturn(Boolean.TRUE);
+
+        initializer.backfill();
+
+        Assert.assertTrue(initializer.isTaskCollectionComplete());
+        Mockito.verify(mongoOperations, Mockito.never()).executeQuery(Mockito.any(Query.class), Mockito.anyString(), Mockito.any(DocumentCallbackHandler.class));
+        Mockito.verify(migrationLog, Mockito.never()).complete(Mockito.anyString(), Mockito.anyLong());
+    }
+
+    @Test
+    public void taskCollectionIsNotTrustedWhenTurnedOffUntilMarkedComplete() {
+        ReflectionTestUtils.setField(initializer, "environment", new MockEnvironment()
+                .withProperty("task.index.backfill", "false")
+                .withProperty("task.ids.backfill", "false"));
+
+        initializer.backfill();
+
+        Assert.assertFalse(initializer.isTaskCollectionComplete());
+        Mockito.when(migrationLog.isComplete(TaskIndexInitializer.TASK_COLLECTION_MIGRATION)).thenReturn(Boolean.TRUE);
+        Assert.assertTrue(initializer.isTaskCollectionComplete());
+    }
+
+    @Test
+    public void interruptedBackfillIsNotComplete() {
+        ReflectionTestUtils.setField(initializer, "environment", new MockEnvironment().withProperty("task.ids.backfill", "false"));
+        Mockito.when(migrationLog.isComplete(TaskIndexInitializer.TASK_COLLECTION_MIGRATION)).thenReturn(Boolean.FALSE);
+        Mockito.doThrow(new DataRetrievalFailureException("Connection lost")).when(mongoOperations)
+                .executeQuery(Mockito.any(Query.class), Mockito.eq("instance"), Mockito.any(DocumentCallbackHandler.class));
+
+        initializer.backfill();
+
+        Assert.assertFalse(initializer.isTaskCollectionComplete());
+        Mockito.verify(migrationLog, Mockito.never()).complete(Mockito.anyString(), Mockito.anyLong());
+    }
+
+}
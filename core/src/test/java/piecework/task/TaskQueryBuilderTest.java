@@ -0,0 +1,103 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.task;
+
+import com.mongodb.DBObject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.query.Query;
+import piecework.Constants;
+import piecework.model.Entity;
+import piecework.process.ProcessInstanceSearchCriteria;
+
+import java.util.Collections;
+
+/**
+ * @author James Renfro
+ */
+public class TaskQueryBuilderTest {
+
+    @Test
+    public void testIsSupported() {
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .processDefinitionKey("TEST")
+                .taskStatus(Constants.TaskStatuses.OPEN)
+                .build();
+        Assert.assertTrue(TaskQueryBuilder.isSupported(criteria));
+
+        ProcessInstanceSearchCriteria keywordCriteria = new ProcessInstanceSearchCriteria.Builder()
+                .processDefinitionKey("TEST")
+                .keyword("something")
+                .build();
+        Assert.assertFalse(TaskQueryBuilder.isSupported(keywordCriteria));
+    }
+
+    @Test
+    public void testBuild() {
+        Entity principal = Mockito.mock(Entity.class);
+        Mockito.doReturn("testuser").when(principal).getEntityId();
+
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .processDefinitionKey("TEST")
+                .firstResult(20)
+                .maxResults(10)
+                .build();
+
+        Query query = new TaskQueryBuilder(criteria, principal, Collections.<String>emptySet()).build();
+        DBObject queryObject = query.getQueryObject();
+
+        Assert.assertEquals(20, query.getSkip());
+        Assert.assertEquals(10, query.getLimit());
+        Assert.assertTrue(queryObject.containsField("processDefinitionKey"));
+        Assert.assertTrue(queryObject.containsField("taskStatus"));
+        Assert.assertTrue(queryObject.containsField("$or"));
+        Assert.assertTrue(query.getSortObject().containsField("startTime"));
+    }
+
+    @Test
+    public void testSkipIsNotRoundedToPage() {
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .processDefinitionKey("TEST")
+                .firstResult(5)
+                .maxResults(10)
+                .build();
+
+        Query query = new TaskQueryBuilder(criteria, principal(), Collections.<String>emptySet()).build();
+        Assert.assertEquals(5, query.getSkip());
+        Assert.assertEquals(10, query.getLimit());
+    }
+
+    @Test
+    public void testNonPositiveMaxResultsGetsDefaultLimit() {
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .processDefinitionKey("TEST")
+                .firstResult(-1)
+                .maxResults(0)
+                .build();
+
+        Query query = new TaskQueryBuilder(criteria, principal(), Collections.<String>emptySet()).build();
+        Assert.assertEquals(0, query.getSkip());
+        Assert.assertEquals(1000, query.getLimit());
+    }
+
+    private static Entity principal() {
+        Entity principal = Mockito.mock(Entity.class);
+        Mockito.doReturn("testuser").when(principal).getEntityId();
+        return principal;
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.ui;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.htmlcleaner.TagNode;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import piecework.designer.model.view.IndexView;
+import piecework.model.Form;
+
+/**
+ * @author James Renfro
+ */
+public class InlinePageModelSerializerTest {
+
+    private static final String SCRIPT = "(function() { alert('hello'); })();";
+    private static final String STYLESHEET = "body { margin: 0; }";
+
+    private UserInterfaceSettings settings;
+    private StaticBundle scriptBundle;
+    private StaticBundle stylesheetBundle;
+
+    @Before
+    public void setup() {
+        settings = Mockito.mock(UserInterfaceSettings.class);
+        Mockito.doReturn("https://localhost/workflow/ui").when(settings).getApplicationUrl();
+        Mockito.doReturn("https://localhost/workflow/public").when(settings).getPublicUrl();
+
+        scriptBundle = new StaticBundle(SCRIPT.getBytes(), new byte[0], StaticBundleStore.hash(SCRIPT), "js");
+        stylesheetBundle = new StaticBundle(STYLESHEET.getBytes(), new byte[0], StaticBundleStore.hash(STYLESHEET), "css");
+    }
+
+    @Test
+    public void testLinksIncludeBundleHash() {
+        InlinePageModelSerializer serializer = new InlinePageModelSerializer(settings, new IndexView(), IndexView.class, null, new ObjectMapper(),
+                StaticBundle.hashOf(scriptBundle), StaticBundle.hashOf(stylesheetBundle));
+
+        TagNode script = serializer.getScriptLink();
+        TagNode link = serializer.getStylesheetLink();
+
+        Assert.assertEquals("https://localhost/workflow/ui/resource/script/IndexView.js?v=" + scriptBundle.getHash(), script.getAttributeByName("src"));
+        Assert.assertEquals("https://localhost/workflow/ui/resource/css/IndexView.css?v=" + stylesheetBundle.getHash(), link.getAttributeByName("href"));
+    }
+
+    @Test
+    public void testFormLinksIncludeBundleHash() {
+        Form form = new Form.Builder().build();
+        InlinePageModelSerializer serializer = new InlinePageModelSerializer(settings, form, Form.class, null, new ObjectMapper(),
+                scriptBundle.getHash(), stylesheetBundle.getHash());
+
+        Assert.assertEquals("https://localhost/workflow/ui/resource/script/Form.js?v=" + scriptBundle.getHash(), serializer.getScriptLink().getAttributeByName("src"));
+        Assert.assertEquals("https://localhost/workflow/ui/resource/css/Form.css?v=" + stylesheetBundle.getHash(), serializer.getStylesheetLink().getAttributeByName("href"));
+    }
+
+    @Test
+    public void testLinksWithoutVersion() {
+        Form form = new Form.Builder().anonymous(true).build();
+        InlinePageModelSerializer serializer = new InlinePageModelSerializer(settings, form, Form.class, null, new ObjectMapper());
+
+        Assert.assertEquals("https://localhost/workflow/public/resource/script/Form.js", serializer.getScriptLink().getAttributeByName("src"));
+        Assert.assertEquals("https://localhost/workflow/public/resource/css/Form.css", serializer.getStylesheetLink().getAttributeByName("href"));
+    }
+
+    @Test
+    public void testVersionedKeepsExistingQuery() {
+        Assert.assertEquals("/resource/script/Form.js?v=abc", StaticBundle.versioned("/resource/script/Form.js", "abc"));
+        Assert.assertEquals("/resource/script/Form.js?x=1&v=abc", StaticBundle.versioned("/resource/script/Form.js?x=1", "abc"));
+        Assert.assertEquals("/resource/script/Form.js", StaticBundle.versioned("/resource/script/Form.js", null));
+        Assert.assertNull(StaticBundle.hashOf(null));
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.ui;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * @author James Renfro
+ */
+public class StaticBundleStoreTest {
+
+    private static final String SCRIPT = "(function() { var message = 'hello'; alert(message); })();";
+
+    private File directory;
+
+    @Before
+    public void setup() {
+        directory = Files.createTempDir();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testBundleIsKeyedByContentAndCompressed() throws Exception {
+        StaticBundleStore store = store();
+        StaticBundle bundle = store.bundle(SCRIPT, "js");
+
+        Assert.assertEquals(StaticBundleStore.hash(SCRIPT), bundle.getHash());
+        Assert.assertEquals(bundle.getHash() + ".js", bundle.getFilename());
+        Assert.assertTrue(new File(directory, bundle.getFilename()).exists());
+        Assert.assertTrue(new File(directory, bundle.getFilename() + ".gz").exists());
+
+        byte[] uncompressed = IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(bundle.getGzipped())));
+        Assert.assertEquals(SCRIPT, new String(uncompressed, "UTF-8"));
+    }
+
+    @Test
+    public void testChangedContentProducesNewBundle() throws Exception {
+        StaticBundleStore store = store();
+        StaticBundle first = store.bundle(SCRIPT, "js");
+        StaticBundle second = store.bundle(SCRIPT + " ", "js");
+
+        Assert.assertFalse(first.getHash().equals(second.getHash()));
+        Assert.assertEquals(first.getHash(), store.bundle(SCRIPT, "js").getHash());
+    }
+
+    @Test
+    public void testMinifiedSurvivesRestart() throws Exception {
+        String sourceHash = StaticBundleStore.hash(SCRIPT);
+        store().putMinified(sourceHash, "js", "minified");
+
+        // A new store shares nothing in memory with the first, so this has to come from disk
+        Assert.assertEquals("minified", store().getMinified(sourceHash, "js"));
+        Assert.assertNull(store().getMinified(StaticBundleStore.hash("other"), "js"));
+    }
+
+    private StaticBundleStore store() {
+        MockEnvironment environment = new MockEnvironment();
+        environment.setProperty("ui.bundle.directory", directory.getAbsolutePath());
+        StaticBundleStore store = new StaticBundleStore();
+        ReflectionTestUtils.setField(store, "environment", environment);
+        store.init();
+        return store;
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import piecework.Constants;
+import piecework.model.Constraint;
+import piecework.model.Field;
+import piecework.model.Value;
+import piecework.test.ExampleFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author James Renfro
+ */
+public class CompiledConstraintTest {
+
+    @Test
+    public void testSameResultAsConstraintUtil() throws Exception {
+        Map<String, Field> fieldMap = new HashMap<String, Field>();
+        Field budgetNumber = ExampleFactory.budgetNumberField();
+        Field actionType = ExampleFactory.actionTypeField();
+        fieldMap.put(budgetNumber.getName(), budgetNumber);
+        fieldMap.put(actionType.getName(), actionType);
+
+        List<Constraint> constraints = ExampleFactory.supervisorIdField().getConstraints();
+        List<CompiledConstraint> compiled = CompiledConstraint.compile(constraints);
+
+        String[][] submissions = { { "100000", "bonus" }, { "100001", "demote" }, { "200000", "promote" }, { "200000", "reprimand" } };
+        for (String[] submission : submissions) {
+            ManyMap<String, Value> data = new ManyMap<String, Value>();
+            data.putOne(budgetNumber.getName(), new Value(submission[0]));
+            data.putOne(actionType.getName(), new Value(submission[1]));
+
+            for (int i = 0; i < constraints.size(); i++) {
+                Assert.assertEquals(ConstraintUtil.evaluate(fieldMap, data, constraints.get(i)), compiled.get(i).evaluate(fieldMap, data));
+            }
+            Assert.assertEquals(ConstraintUtil.checkAll(Constants.ConstraintTypes.IS_ONLY_VISIBLE_WHEN, fieldMap, data, constraints),
+                    CompiledConstraint.checkAll(Constants.ConstraintTypes.IS_ONLY_VISIBLE_WHEN, fieldMap, data, compiled));
+        }
+    }
+
+    @Test
+    public void testOrConstraintUsesDefaultValue() throws Exception {
+        Map<String, Field> fieldMap = new HashMap<String, Field>();
+        Field actionType = ExampleFactory.actionTypeField();
+        fieldMap.put(actionType.getName(), actionType);
+
+        CompiledConstraint constraint = CompiledConstraint.compile(new Constraint.Builder()
+                .type(Constants.ConstraintTypes.IS_ONLY_VISIBLE_WHEN)
+                .name("budgetNumber")
+                .value("^100001$")
+                .or(new Constraint.Builder()
+                        .type(Constants.ConstraintTypes.IS_ONLY_VISIBLE_WHEN)
+                        .name(actionType.getName())
+                        .value("^(bonus|promote)$")
+                        .build())
+                .build());
+
+        // The action field defaults to bonus
+        Assert.assertTrue(constraint.evaluate(fieldMap, new ManyMap<String, Value>()));
+    }
+
+    @Test
+    public void testPatternsAreShared() {
+        Assert.assertSame(CompiledConstraint.pattern("^[a-z]+$"), CompiledConstraint.pattern("^[a-z]+$"));
+        Assert.assertNull(CompiledConstraint.pattern(null));
+    }
+
+}
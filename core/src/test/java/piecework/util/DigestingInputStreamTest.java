@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.util;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * @author James Renfro
+ */
+public class DigestingInputStreamTest {
+
+    @Test
+    public void testDigests() throws Exception {
+        DigestingInputStream inputStream = new DigestingInputStream(new ByteArrayInputStream("This is a test".getBytes("UTF-8")));
+        byte[] bytes = IOUtils.toByteArray(inputStream);
+
+        Assert.assertEquals(14, bytes.length);
+        Assert.assertEquals(14l, inputStream.getLength());
+        Assert.assertEquals("ce114e4501d2f4e2dcea3e17b546f339", inputStream.getMd5());
+        Assert.assertEquals("c7be1ed902fb8dd4d48997c6452f5d7e509fbcdbe2808b16bcf4edce4c07d14e", inputStream.getSha256());
+    }
+
+    @Test
+    public void testSkipIsDigested() throws Exception {
+        DigestingInputStream inputStream = new DigestingInputStream(new ByteArrayInputStream("This is a test".getBytes("UTF-8")));
+        Assert.assertEquals(5l, inputStream.skip(5));
+        IOUtils.toByteArray(inputStream);
+
+        Assert.assertEquals(14l, inputStream.getLength());
+        Assert.assertEquals("ce114e4501d2f4e2dcea3e17b546f339", inputStream.getMd5());
+    }
+
+}
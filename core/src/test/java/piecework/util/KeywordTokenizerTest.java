@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * @author James Renfro
+ */
+public class KeywordTokenizerTest {
+
+    @Test
+    public void testTokenizeStoresWordsAndPrefixes() {
+        Set<String> tokens = KeywordTokenizer.tokenize("Renfro, James");
+        Assert.assertTrue(tokens.contains("re"));
+        Assert.assertTrue(tokens.contains("ren"));
+        Assert.assertTrue(tokens.contains("renfr"));
+        Assert.assertTrue(tokens.contains("renfro"));
+        Assert.assertTrue(tokens.contains("ja"));
+        Assert.assertTrue(tokens.contains("james"));
+        Assert.assertFalse(tokens.contains("r"));
+        Assert.assertFalse(tokens.contains("renfro, james"));
+        Assert.assertEquals(9, tokens.size());
+    }
+
+    @Test
+    public void testTokenizeSplitsOnPunctuation() {
+        Set<String> tokens = KeywordTokenizer.tokenize("joe@nowhere.com");
+        Assert.assertTrue(tokens.contains("joe"));
+        Assert.assertTrue(tokens.contains("nowhere"));
+        Assert.assertTrue(tokens.contains("com"));
+    }
+
+    @Test
+    public void testTokenizeKeepsSingleCharacterWords() {
+        Set<String> tokens = KeywordTokenizer.tokenize("Test instance 5");
+        Assert.assertTrue(tokens.contains("5"));
+        Assert.assertTrue(tokens.contains("instance"));
+    }
+
+    @Test
+    public void testTokenizeStripsAccents() {
+        Set<String> tokens = KeywordTokenizer.tokenize("José Müller");
+        Assert.assertTrue(tokens.contains("jose"));
+        Assert.assertTrue(tokens.contains("muller"));
+    }
+
+    @Test
+    public void testTokenizeLimitsPrefixLength() {
+        String word = "supercalifragilisticexpialidocious";
+        Set<String> tokens = KeywordTokenizer.tokenize(word);
+        Assert.assertTrue(tokens.contains(word));
+        Assert.assertTrue(tokens.contains(word.substring(0, KeywordTokenizer.MAX_PREFIX_LENGTH)));
+        Assert.assertFalse(tokens.contains(word.substring(0, KeywordTokenizer.MAX_PREFIX_LENGTH + 1)));
+    }
+
+    @Test
+    public void testTokenizeIsIdempotent() {
+        Set<String> tokens = KeywordTokenizer.tokenize("Purchase request for lab equipment");
+        Set<String> again = KeywordTokenizer.tokenize("");
+        for (String token : tokens) {
+            again.addAll(KeywordTokenizer.tokenize(token));
+        }
+        Assert.assertEquals(tokens, again);
+    }
+
+    @Test
+    public void testTermsMatchStoredTokens() {
+        Assert.assertEquals(Arrays.asList("ren", "james"), KeywordTokenizer.terms("  Ren JAMES ren "));
+        Assert.assertEquals(Collections.singletonList("supercalifragil"), KeywordTokenizer.terms("supercalifragilistic"));
+        Assert.assertTrue(KeywordTokenizer.tokenize("supercalifragilisticexpialidocious").contains("supercalifragil"));
+        Assert.assertTrue(KeywordTokenizer.terms("!!").isEmpty());
+        Assert.assertTrue(KeywordTokenizer.terms((String)null).isEmpty());
+    }
+
+}
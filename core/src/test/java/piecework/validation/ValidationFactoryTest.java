@@ -0,0 +1,107 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.validation;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+import piecework.model.*;
+import piecework.model.Process;
+import piecework.security.DataFilterService;
+import piecework.service.TaskService;
+import piecework.submission.SubmissionTemplate;
+import piecework.submission.SubmissionTemplateFactory;
+import piecework.test.ExampleFactory;
+import piecework.util.ManyMap;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author James Renfro
+ */
+public class ValidationFactoryTest {
+
+    private ValidationFactory validationFactory;
+    private Process process;
+    private SubmissionTemplate template;
+
+    @Before
+    public void setup() throws Exception {
+        DataFilterService dataFilterService = Mockito.mock(DataFilterService.class);
+        Mockito.when(dataFilterService.lazyDecrypt(Mockito.any(Map.class))).then(new Answer<ManyMap<String, Value>>() {
+            @Override
+            public ManyMap<String, Value> answer(InvocationOnMock invocation) throws Throwable {
+                Map<String, List<Value>> map = (Map<String, List<Value>>) invocation.getArguments()[0];
+                return new ManyMap<String, Value>(map);
+            }
+        });
+
+        validationFactory = new ValidationFactory();
+        ReflectionTestUtils.setField(validationFactory, "dataFilterService", dataFilterService);
+        ReflectionTestUtils.setField(validationFactory, "taskService", Mockito.mock(TaskService.class));
+
+        process = ExampleFactory.exampleProcess();
+        SubmissionTemplateFactory submissionTemplateFactory = new SubmissionTemplateFactory();
+        SubmissionTemplate.Builder builder = new SubmissionTemplate.Builder(process, process.getDeployment());
+        List<Field> fields = Arrays.asList(ExampleFactory.employeeNameField(), ExampleFactory.budgetNumberField(),
+                ExampleFactory.supervisorIdField(), ExampleFactory.actionTypeField(), ExampleFactory.locationField(),
+                ExampleFactory.descriptionField(), ExampleFactory.allowedField(), ExampleFactory.applicableField());
+        for (Field field : fields) {
+            SubmissionTemplate fieldTemplate = submissionTemplateFactory.submissionTemplate(process, field, null);
+            for (Map.Entry<Field, List<ValidationRule>> entry : fieldTemplate.getFieldRuleMap().entrySet()) {
+                builder.rules(entry.getKey(), entry.getValue());
+                builder.field(entry.getKey());
+            }
+        }
+        template = builder.build();
+    }
+
+    @Test
+    public void testValidSubmission() throws Exception {
+        Submission valid = new Submission.Builder()
+                .formValue("employeeName", "John Test")
+                .formValue("budgetNumber", "100000")
+                .formValue("supervisorId", "abc12")
+                .formValue("action", "bonus")
+                .formValue("location", "in state")
+                .build();
+
+        Validation validation = validationFactory.validation(process, null, null, template, valid, false);
+        Assert.assertTrue(validation.getResults() == null || validation.getResults().isEmpty());
+    }
+
+    @Test
+    public void testInvalidSubmission() throws Exception {
+        Submission invalid = new Submission.Builder()
+                .formValue("employeeName", "John Test")
+                .formValue("budgetNumber", "10000a")
+                .formValue("supervisorId", "ABC123")
+                .formValue("action", "fire")
+                .build();
+
+        Validation validation = validationFactory.validation(process, null, null, template, invalid, false);
+        Assert.assertFalse(validation.getResults().isEmpty());
+        Assert.assertTrue(validation.getResults().containsKey("budgetNumber"));
+        Assert.assertTrue(validation.getResults().containsKey("supervisorId"));
+    }
+
+}
@@ -73,6 +73,13 @@ public class ValidationServiceTest {
                 return new ManyMap<String, String>(map);
             }
         });
+        Mockito.when(dataFilterService.lazyDecrypt(Mockito.any(Map.class))).then(new Answer<Map<String, List<String>>>() {
+            @Override
+            public Map<String, List<String>> answer(InvocationOnMock invocation) throws Throwable {
+                Map<String, List<String>> map = (Map<String, List<String>>) invocation.getArguments()[0];
+                return new ManyMap<String, String>(map);
+            }
+        });
 	}
 
 //	@Test
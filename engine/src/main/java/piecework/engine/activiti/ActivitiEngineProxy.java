@@ -23,11 +23,19 @@ import org.activiti.bpmn.model.FlowElement;
 import org.activiti.engine.*;
 import org.activiti.engine.delegate.DelegateTask;
 import org.activiti.engine.history.*;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.HistoricProcessInstanceEntity;
+import org.activiti.engine.impl.persistence.entity.HistoricVariableInstanceEntity;
+import org.activiti.engine.impl.persistence.entity.ExecutionEntity;
+import org.activiti.engine.impl.persistence.entity.IdentityLinkEntity;
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
 import org.activiti.engine.query.Query;
 import org.activiti.engine.repository.Deployment;
 import org.activiti.engine.repository.ProcessDefinition;
 import org.activiti.engine.task.IdentityLink;
 import org.activiti.engine.task.IdentityLinkType;
+import org.activiti.engine.task.NativeTaskQuery;
 import org.activiti.engine.task.TaskQuery;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
@@ -58,6 +66,7 @@ import piecework.validation.Validation;
 public class ActivitiEngineProxy implements ProcessEngineProxy {
 
     private static final Logger LOG = Logger.getLogger(ActivitiEngineProxy.class);
+    private static final int VARIABLE_BATCH_SIZE = 500;
 
     @Autowired
     IdentityHelper helper;
@@ -307,42 +316,71 @@ public class ActivitiEngineProxy implements ProcessEngineProxy {
         if (! criteria.getEngines().contains(getKey()))
             return null;
 
-        HistoricProcessInstanceQuery query = instanceQuery(criteria);
-
-        ProcessExecutionResults.Builder resultsBuilder = new ProcessExecutionResults.Builder();
+        // Activiti's own query api only filters by a single process definition key, so the search is run
+        // as native sql that filters on process definition ids and pages in the database. As before, criteria
+        // without any process definition keys don't match any executions, rather than every one in the engine.
+        Set<String> processDefinitionIds = Collections.emptySet();
+        if (criteria.getEngineProcessDefinitionKeys() != null && !criteria.getEngineProcessDefinitionKeys().isEmpty()) {
+            SortedSet<String> engineProcessDefinitionKeys = new TreeSet<String>(criteria.getEngineProcessDefinitionKeys());
+            processDefinitionIds = proxyHelper.getProcessDefinitionIds(engineProcessDefinitionKeys.toArray(new String[engineProcessDefinitionKeys.size()]));
+        }
 
-        List<HistoricProcessInstance> instances;
+        ManagementService managementService = processEngine.getManagementService();
+        HistoricInstanceSqlBuilder sqlBuilder = new HistoricInstanceSqlBuilder(managementService.getTableName(HistoricProcessInstanceEntity.class))
+                .criteria(criteria, processDefinitionIds);
+
+        NativeHistoricProcessInstanceQuery query = processEngine.getHistoryService().createNativeHistoricProcessInstanceQuery()
+                .sql(sqlBuilder.selectSql());
+        NativeHistoricProcessInstanceQuery countQuery = processEngine.getHistoryService().createNativeHistoricProcessInstanceQuery()
+                .sql(sqlBuilder.countSql());
+        for (Map.Entry<String, Object> parameter : sqlBuilder.getParameters().entrySet()) {
+            query.parameter(parameter.getKey(), parameter.getValue());
+            countQuery.parameter(parameter.getKey(), parameter.getValue());
+        }
 
-        // Can't use paging since we're going to filter after the fact
-        instances = query.list();
-        int size = instances.size();
+        int firstResult = criteria.getFirstResult() != null ? criteria.getFirstResult().intValue() : 0;
+        int maxResults = criteria.getMaxResults() != null ? criteria.getMaxResults().intValue() : -1;
 
-        resultsBuilder.firstResult(0);
-        resultsBuilder.maxResults(size);
-        resultsBuilder.total(size);
+        List<HistoricProcessInstance> instances;
+        long total;
+        if (maxResults > 0) {
+            instances = query.listPage(firstResult, maxResults);
+            total = countQuery.count();
+        } else {
+            // Without a page size the caller gets everything, as before
+            instances = query.list();
+            firstResult = 0;
+            maxResults = instances.size();
+            total = maxResults;
+        }
 
-        // Only need to worry about filtering if there are more than 1 key, since with 1 key
-        // it's part of the search that Activiti performs --- see the instanceQuery() method
-        SortedSet<String> engineProcessDefinitionKeys = new TreeSet<String>(criteria.getEngineProcessDefinitionKeys());
-        Set<String> processDefinitionIds = proxyHelper.getProcessDefinitionIds(engineProcessDefinitionKeys.toArray(new String[engineProcessDefinitionKeys.size()]));
+        ProcessExecutionResults.Builder resultsBuilder = new ProcessExecutionResults.Builder()
+                .firstResult(firstResult)
+                .maxResults(maxResults)
+                .total(total);
 
         List<ProcessExecution> executions;
         if (instances != null && !instances.isEmpty()) {
-            executions = new ArrayList<ProcessExecution>(instances.size());
+            Map<String, Map<String, Object>> variableMap = null;
+            if (criteria.isIncludeVariables()) {
+                List<String> instanceIds = new ArrayList<String>(instances.size());
+                for (HistoricProcessInstance instance : instances) {
+                    instanceIds.add(instance.getId());
+                }
+                variableMap = historicVariables(instanceIds);
+            }
 
+            executions = new ArrayList<ProcessExecution>(instances.size());
             for (HistoricProcessInstance instance : instances) {
-                if (!processDefinitionIds.contains(instance.getProcessDefinitionId()))
-                    continue;
-
                 ProcessExecution.Builder executionBuilder = new ProcessExecution.Builder()
                         .executionId(instance.getId())
                         .businessKey(instance.getBusinessKey())
                         .initiatorId(instance.getStartUserId())
                         .deleteReason(instance.getDeleteReason());
 
-                if (criteria.isIncludeVariables()) {
-                    Map<String, Object> variables = processEngine.getRuntimeService().getVariables(instance.getId());
-                    executionBuilder.data(variables);
+                if (variableMap != null) {
+                    Map<String, Object> variables = variableMap.get(instance.getId());
+                    executionBuilder.data(variables != null ? variables : new HashMap<String, Object>());
                 }
 
                 executions.add(executionBuilder.build());
@@ -412,8 +450,38 @@ public class ActivitiEngineProxy implements ProcessEngineProxy {
 //    }
 
     public TaskResults findTasks(TaskCriteria ... criterias) throws ProcessEngineException {
-        TaskCriteria criteria = criterias[0];
+        if (criterias == null || criterias.length == 0)
+            return new TaskResults.Builder().build();
+
+        boolean isBatchable = true;
+        for (TaskCriteria criteria : criterias) {
+            if (!TaskSqlBuilder.isSupported(criteria))
+                isBatchable = false;
+        }
+
+        if (isBatchable)
+            return findTasksInBatch(criterias);
+
+        if (criterias.length == 1)
+            return findTasks(criterias[0]);
+
+        TaskResults.Builder resultsBuilder = null;
+        for (TaskCriteria criteria : criterias) {
+            TaskResults localResults = findTasks(criteria);
+            if (resultsBuilder == null) {
+                resultsBuilder = new TaskResults.Builder(localResults);
+            } else {
+                resultsBuilder.tasks(localResults.getTasks());
+                resultsBuilder.addToTotal(localResults.getTotal());
+                for (String engineProcessInstanceId : localResults.getEngineProcessInstanceIds()) {
+                    resultsBuilder.engineProcessInstanceId(engineProcessInstanceId);
+                }
+            }
+        }
+        return resultsBuilder.build();
+    }
 
+    private TaskResults findTasks(TaskCriteria criteria) throws ProcessEngineException {
         TaskResults.Builder resultsBuilder = new TaskResults.Builder();
 
         if (criteria.getProcesses() == null || criteria.getProcesses().isEmpty())
@@ -477,6 +545,116 @@ public class ActivitiEngineProxy implements ProcessEngineProxy {
         return resultsBuilder.build();
     }
 
+    /*
+     * Runs every criteria as one native query, paged by the first criteria, and then loads
+     * the identity links and users for all of the returned tasks at once instead of one task at a time
+     */
+    private TaskResults findTasksInBatch(TaskCriteria ... criterias) throws ProcessEngineException {
+        TaskResults.Builder resultsBuilder = new TaskResults.Builder();
+
+        ManagementService managementService = processEngine.getManagementService();
+        TaskSqlBuilder sqlBuilder = new TaskSqlBuilder(managementService.getTableName(TaskEntity.class),
+                managementService.getTableName(IdentityLinkEntity.class), managementService.getTableName(ExecutionEntity.class));
+
+        ManyMap<String, Process> processMap = new ManyMap<String, Process>();
+        boolean hasProcesses = false;
+        for (TaskCriteria criteria : criterias) {
+            if (criteria.getProcesses() == null || criteria.getProcesses().isEmpty())
+                continue;
+
+            for (Process process : criteria.getProcesses()) {
+                if (process.getDeployment() == null && criteria.getProcesses().size() == 1)
+                    throw new ProcessEngineException("No process has been published for " + process.getProcessDefinitionKey());
+            }
+
+            ManyMap<String, Process> criteriaProcessMap = proxyHelper.getProcessDefinitionIdMap(criteria.getProcesses());
+            for (Map.Entry<String, List<Process>> entry : criteriaProcessMap.entrySet()) {
+                for (Process process : entry.getValue()) {
+                    List<Process> existing = processMap.get(entry.getKey());
+                    if (existing == null || !existing.contains(process))
+                        processMap.putOne(entry.getKey(), process);
+                }
+            }
+
+            String engineProcessInstanceId = null;
+            if (StringUtils.isNotEmpty(criteria.getProcessInstanceId())) {
+                ProcessInstance instance = processInstanceRepository.findOne(criteria.getProcessInstanceId());
+                if (instance == null)
+                    continue;
+                engineProcessInstanceId = instance.getEngineProcessInstanceId();
+            }
+
+            sqlBuilder.criteria(criteria, criteriaProcessMap.keySet(), engineProcessInstanceId);
+            hasProcesses = true;
+        }
+
+        if (!hasProcesses)
+            return resultsBuilder.build();
+
+        long time = 0;
+        if (LOG.isDebugEnabled())
+            time = System.currentTimeMillis();
+
+        NativeTaskQuery query = processEngine.getTaskService().createNativeTaskQuery().sql(sqlBuilder.selectSql());
+        NativeTaskQuery countQuery = processEngine.getTaskService().createNativeTaskQuery().sql(sqlBuilder.countSql());
+        for (Map.Entry<String, Object> parameter : sqlBuilder.getParameters().entrySet()) {
+            query.parameter(parameter.getKey(), parameter.getValue());
+            countQuery.parameter(parameter.getKey(), parameter.getValue());
+        }
+
+        TaskCriteria first = criterias[0];
+        int firstResult = first.getFirstResult() != null ? first.getFirstResult().intValue() : 0;
+        int maxResults = first.getMaxResults() != null ? first.getMaxResults().intValue() : -1;
+
+        List<org.activiti.engine.task.Task> activitiTasks;
+        long total;
+        if (maxResults > 0) {
+            activitiTasks = query.listPage(firstResult, maxResults);
+            total = countQuery.count();
+        } else {
+            activitiTasks = query.list();
+            firstResult = 0;
+            maxResults = activitiTasks.size();
+            total = maxResults;
+        }
+
+        List<String> taskIds = new ArrayList<String>(activitiTasks.size());
+        for (org.activiti.engine.task.Task activitiTask : activitiTasks) {
+            taskIds.add(activitiTask.getId());
+        }
+        ManyMap<String, IdentityLink> identityLinkMap = proxyHelper.getIdentityLinksForTasks(taskIds);
+
+        Set<String> userIds = new HashSet<String>();
+        for (List<IdentityLink> identityLinks : identityLinkMap.values()) {
+            for (IdentityLink identityLink : identityLinks) {
+                if (identityLink.getUserId() != null)
+                    userIds.add(identityLink.getUserId());
+            }
+        }
+        Map<String, User> userMap = userIds.isEmpty() ? Collections.<String, User>emptyMap() : userDetailsService.findUsers(userIds);
+
+        for (org.activiti.engine.task.Task activitiTask : activitiTasks) {
+            List<Process> processes = processMap.get(activitiTask.getProcessDefinitionId());
+            if (processes != null) {
+                List<IdentityLink> identityLinks = identityLinkMap.get(activitiTask.getId());
+                for (Process process : processes) {
+                    resultsBuilder.task(convert(activitiTask, process, true, identityLinks, userMap));
+                }
+            }
+            resultsBuilder.engineProcessInstanceId(activitiTask.getProcessInstanceId());
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Searching for " + activitiTasks.size() + " tasks across " + criterias.length + " criteria took " + (System.currentTimeMillis() - time) + " ms");
+        }
+
+        resultsBuilder.firstResult(firstResult);
+        resultsBuilder.maxResults(maxResults);
+        resultsBuilder.total(total);
+
+        return resultsBuilder.build();
+    }
+
     @Override
     public ProcessDeploymentResource resource(Process process, ProcessDeployment deployment, String contentType) throws ProcessEngineException {
         InputStream inputStream = processEngine.getRepositoryService().getProcessDiagram(deployment.getEngineProcessDefinitionId());
@@ -487,6 +665,11 @@ public class ActivitiEngineProxy implements ProcessEngineProxy {
     }
 
     private Task convert(org.activiti.engine.task.Task instance, Process process, boolean includeDetails) {
+        List<IdentityLink> identityLinks = includeDetails ? processEngine.getTaskService().getIdentityLinksForTask(instance.getId()) : null;
+        return convert(instance, process, includeDetails, identityLinks, null);
+    }
+
+    private Task convert(org.activiti.engine.task.Task instance, Process process, boolean includeDetails, List<IdentityLink> identityLinks, Map<String, User> userMap) {
         Task.Builder taskBuilder = new Task.Builder()
                 .taskInstanceId(instance.getId())
                 .taskDefinitionKey(instance.getTaskDefinitionKey())
@@ -514,8 +697,6 @@ public class ActivitiEngineProxy implements ProcessEngineProxy {
             taskBuilder.active();
 
         if (includeDetails) {
-            List<IdentityLink> identityLinks = processEngine.getTaskService().getIdentityLinksForTask(instance.getId());
-
             if (identityLinks != null && !identityLinks.isEmpty()) {
                 for (IdentityLink identityLink : identityLinks) {
                     String type = identityLink.getType();
@@ -524,9 +705,9 @@ public class ActivitiEngineProxy implements ProcessEngineProxy {
                         continue;
 
                     if (type.equals(IdentityLinkType.ASSIGNEE) && identityLink.getUserId() != null)
-                        taskBuilder.assignee(userDetailsService.getUser(identityLink.getUserId()));
+                        taskBuilder.assignee(user(identityLink.getUserId(), userMap));
                     else if (type.equals(IdentityLinkType.CANDIDATE) && identityLink.getUserId() != null)
-                        taskBuilder.candidateAssignee(userDetailsService.getUser(identityLink.getUserId()));
+                        taskBuilder.candidateAssignee(user(identityLink.getUserId(), userMap));
                 }
             }
         } else if (StringUtils.isNotEmpty(instance.getAssignee())) {
@@ -536,6 +717,12 @@ public class ActivitiEngineProxy implements ProcessEngineProxy {
         return taskBuilder.build();
     }
 
+    private User user(String userId, Map<String, User> userMap) {
+        if (userMap != null && userMap.containsKey(userId))
+            return userMap.get(userId);
+        return userDetailsService.getUser(userId);
+    }
+
     private Task convert(HistoricTaskInstance instance, Process process, boolean includeDetails) {
         Task.Builder taskBuilder = new Task.Builder()
                 .taskInstanceId(instance.getId())
@@ -868,6 +1055,48 @@ public class ActivitiEngineProxy implements ProcessEngineProxy {
         return query;
     }
 
+    /*
+     * Loads the process-level variables for a whole page of instances with one query per
+     * chunk of ids, rather than one call to the runtime service for each instance. Serialized
+     * values are only read from the byte array table when getValue() is called, which needs
+     * a command context, so the whole load runs as a single command.
+     */
+    private Map<String, Map<String, Object>> historicVariables(final List<String> processInstanceIds) {
+        final HistoryService historyService = processEngine.getHistoryService();
+        final String tableName = processEngine.getManagementService().getTableName(HistoricVariableInstanceEntity.class);
+
+        return processEngine.getManagementService().executeCommand(new Command<Map<String, Map<String, Object>>>() {
+            @Override
+            public Map<String, Map<String, Object>> execute(CommandContext commandContext) {
+                Map<String, Map<String, Object>> variableMap = new HashMap<String, Map<String, Object>>();
+                for (int start = 0; start < processInstanceIds.size(); start += VARIABLE_BATCH_SIZE) {
+                    List<String> chunk = processInstanceIds.subList(start, Math.min(start + VARIABLE_BATCH_SIZE, processInstanceIds.size()));
+                    StringBuilder sql = new StringBuilder("select RES.* from ").append(tableName)
+                            .append(" RES where RES.TASK_ID_ is null and RES.EXECUTION_ID_ = RES.PROC_INST_ID_ and RES.PROC_INST_ID_ in (");
+                    NativeHistoricVariableInstanceQuery query = historyService.createNativeHistoricVariableInstanceQuery();
+                    for (int i = 0; i < chunk.size(); i++) {
+                        if (i > 0)
+                            sql.append(", ");
+                        sql.append("#{processInstanceId").append(i).append("}");
+                        query.parameter("processInstanceId" + i, chunk.get(i));
+                    }
+                    sql.append(")");
+
+                    List<HistoricVariableInstance> variableInstances = query.sql(sql.toString()).list();
+                    for (HistoricVariableInstance variableInstance : variableInstances) {
+                        Map<String, Object> variables = variableMap.get(variableInstance.getProcessInstanceId());
+                        if (variables == null) {
+                            variables = new HashMap<String, Object>();
+                            variableMap.put(variableInstance.getProcessInstanceId(), variables);
+                        }
+                        variables.put(variableInstance.getVariableName(), variableInstance.getValue());
+                    }
+                }
+                return variableMap;
+            }
+        });
+    }
+
     private static void variables(Map<String, Object> variables, Map<String, List<Value>> data) {
         if (data != null && !data.isEmpty()) {
             for (Map.Entry<String, List<Value>> entry : data.entrySet()) {
@@ -18,14 +18,22 @@ package piecework.engine.activiti;
 import com.google.common.collect.Sets;
 import org.activiti.engine.ProcessEngine;
 import org.activiti.engine.RepositoryService;
+import org.activiti.engine.impl.ProcessEngineImpl;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.persistence.entity.IdentityLinkEntity;
 import org.activiti.engine.repository.ProcessDefinition;
+import org.activiti.engine.task.IdentityLink;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 import piecework.model.*;
 import piecework.model.Process;
 import piecework.util.ManyMap;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -37,6 +45,8 @@ import java.util.Set;
 @Service
 public class ActivitiEngineProxyHelper {
 
+    private static final int IDENTITY_LINK_BATCH_SIZE = 500;
+
     @Autowired
     ProcessEngine processEngine;
 
@@ -71,6 +81,45 @@ public class ActivitiEngineProxyHelper {
         return map;
     }
 
+    /*
+     * Loads the runtime identity links for many tasks in one statement per chunk of ids, since Activiti
+     * itself only offers a lookup by a single task id
+     */
+    public ManyMap<String, IdentityLink> getIdentityLinksForTasks(List<String> taskIds) {
+        ManyMap<String, IdentityLink> map = new ManyMap<String, IdentityLink>();
+        if (taskIds == null || taskIds.isEmpty())
+            return map;
+
+        ProcessEngineConfigurationImpl configuration = ((ProcessEngineImpl) processEngine).getProcessEngineConfiguration();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(configuration.getDataSource());
+        String tableName = processEngine.getManagementService().getTableName(IdentityLinkEntity.class);
+
+        for (int start = 0; start < taskIds.size(); start += IDENTITY_LINK_BATCH_SIZE) {
+            List<String> chunk = taskIds.subList(start, Math.min(start + IDENTITY_LINK_BATCH_SIZE, taskIds.size()));
+            StringBuilder sql = new StringBuilder("select TASK_ID_, TYPE_, USER_ID_, GROUP_ID_ from ").append(tableName).append(" where TASK_ID_ in (");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i > 0 ? ", ?" : "?");
+            }
+            sql.append(")");
+            List<IdentityLinkEntity> identityLinks = jdbcTemplate.query(sql.toString(), chunk.toArray(), new RowMapper<IdentityLinkEntity>() {
+                @Override
+                public IdentityLinkEntity mapRow(ResultSet resultSet, int rowNum) throws SQLException {
+                    IdentityLinkEntity identityLink = new IdentityLinkEntity();
+                    identityLink.setTaskId(resultSet.getString("TASK_ID_"));
+                    identityLink.setType(resultSet.getString("TYPE_"));
+                    identityLink.setUserId(resultSet.getString("USER_ID_"));
+                    identityLink.setGroupId(resultSet.getString("GROUP_ID_"));
+                    return identityLink;
+                }
+            });
+            for (IdentityLinkEntity identityLink : identityLinks) {
+                map.putOne(identityLink.getTaskId(), identityLink);
+            }
+        }
+
+        return map;
+    }
+
     public ProcessEngine getProcessEngine() {
         return processEngine;
     }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.engine.activiti;
+
+import piecework.process.ProcessInstanceSearchCriteria;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the native SQL for a historic process instance search, so that the filter by
+ * process definition id, which Activiti's query api can only do for a single key, and
+ * the paging both happen in the database instead of over the entire history table.
+ *
+ * @author James Renfro
+ */
+public class HistoricInstanceSqlBuilder {
+
+    private final String tableName;
+    private final StringBuilder where;
+    private final Map<String, Object> parameters;
+    private String orderBy;
+
+    public HistoricInstanceSqlBuilder(String tableName) {
+        this.tableName = tableName;
+        this.where = new StringBuilder();
+        this.parameters = new HashMap<String, Object>();
+        this.orderBy = "RES.END_TIME_ desc";
+    }
+
+    public HistoricInstanceSqlBuilder criteria(ProcessInstanceSearchCriteria criteria, Collection<String> processDefinitionIds) {
+        if (processDefinitionIds != null)
+            in("RES.PROC_DEF_ID_", "processDefinitionId", processDefinitionIds);
+        if (criteria.getExecutionIds() != null && !criteria.getExecutionIds().isEmpty())
+            in("RES.PROC_INST_ID_", "executionId", criteria.getExecutionIds());
+        if (criteria.getBusinessKey() != null)
+            condition("RES.BUSINESS_KEY_ = #{businessKey}", "businessKey", criteria.getBusinessKey());
+        if (criteria.getStartedAfter() != null)
+            condition("RES.START_TIME_ >= #{startedAfter}", "startedAfter", criteria.getStartedAfter());
+        if (criteria.getStartedBefore() != null)
+            condition("RES.START_TIME_ <= #{startedBefore}", "startedBefore", criteria.getStartedBefore());
+        if (criteria.getCompletedAfter() != null)
+            condition("RES.END_TIME_ >= #{completedAfter}", "completedAfter", criteria.getCompletedAfter());
+        if (criteria.getCompletedBefore() != null)
+            condition("RES.END_TIME_ <= #{completedBefore}", "completedBefore", criteria.getCompletedBefore());
+        if (criteria.getInitiatedBy() != null)
+            condition("RES.START_USER_ID_ = #{initiatedBy}", "initiatedBy", criteria.getInitiatedBy());
+        if (criteria.getComplete() != null)
+            condition(criteria.getComplete().booleanValue() ? "RES.END_TIME_ is not null" : "RES.END_TIME_ is null", null, null);
+
+        ProcessInstanceSearchCriteria.OrderBy order = criteria.getOrderBy();
+        if (order != null) {
+            switch (order) {
+                case START_TIME_ASC:
+                    orderBy = "RES.START_TIME_ asc";
+                    break;
+                case START_TIME_DESC:
+                    orderBy = "RES.START_TIME_ desc";
+                    break;
+                case END_TIME_ASC:
+                    orderBy = "RES.END_TIME_ asc";
+                    break;
+                case END_TIME_DESC:
+                    orderBy = "RES.END_TIME_ desc";
+                    break;
+            }
+        }
+        return this;
+    }
+
+    public String selectSql() {
+        return "select RES.* from " + tableName + " RES" + where + " order by " + orderBy + ", RES.ID_ asc";
+    }
+
+    public String countSql() {
+        return "select count(RES.ID_) from " + tableName + " RES" + where;
+    }
+
+    public Map<String, Object> getParameters() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    /*
+     * Native queries bind each parameter by name, so a list turns into one named parameter per
+     * value. An empty list can't match anything, which is expressed directly rather than as
+     * the invalid "in ()".
+     */
+    private void in(String column, String name, Collection<String> values) {
+        if (values.isEmpty()) {
+            condition("1 = 0", null, null);
+            return;
+        }
+        StringBuilder clause = new StringBuilder(column).append(" in (");
+        int index = 0;
+        for (String value : values) {
+            String parameterName = name + index;
+            if (index > 0)
+                clause.append(", ");
+            clause.append("#{").append(parameterName).append("}");
+            parameters.put(parameterName, value);
+            index++;
+        }
+        clause.append(")");
+        condition(clause.toString(), null, null);
+    }
+
+    private void condition(String clause, String name, Object value) {
+        where.append(where.length() == 0 ? " where " : " and ").append(clause);
+        if (name != null)
+            parameters.put(name, value);
+    }
+
+}
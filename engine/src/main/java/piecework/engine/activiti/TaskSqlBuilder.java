@@ -0,0 +1,180 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.engine.activiti;
+
+import org.apache.commons.lang.StringUtils;
+import piecework.Constants;
+import piecework.task.TaskCriteria;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Merges any number of task criteria into one native SQL query over the runtime task table,
+ * so a user who can see tasks for many processes gets them in a single round trip, paged
+ * in the database. Each criteria becomes one parenthesized clause, and a task is returned
+ * if it matches any of them.
+ *
+ * Only criteria that can be expressed directly against the task tables are supported -- see
+ * isSupported() -- the rest still have to go through Activiti's query api.
+ *
+ * @author James Renfro
+ */
+public class TaskSqlBuilder {
+
+    private final String taskTableName;
+    private final String identityLinkTableName;
+    private final String executionTableName;
+    private final StringBuilder where;
+    private final Map<String, Object> parameters;
+    private String orderBy;
+    private int criteriaCount;
+
+    public TaskSqlBuilder(String taskTableName, String identityLinkTableName, String executionTableName) {
+        this.taskTableName = taskTableName;
+        this.identityLinkTableName = identityLinkTableName;
+        this.executionTableName = executionTableName;
+        this.where = new StringBuilder();
+        this.parameters = new HashMap<String, Object>();
+        this.orderBy = "RES.CREATE_TIME_ desc";
+    }
+
+    /*
+     * Candidate assignees have to be expanded to their groups by the identity service, and
+     * historic tasks live in different tables with different filters, so neither can be merged
+     */
+    public static boolean isSupported(TaskCriteria criteria) {
+        if (StringUtils.isNotEmpty(criteria.getCandidateAssigneeId()))
+            return false;
+        String processStatus = criteria.getProcessStatus();
+        return StringUtils.isEmpty(processStatus) || processStatus.equals(Constants.ProcessStatuses.OPEN)
+                || processStatus.equals(Constants.ProcessStatuses.SUSPENDED);
+    }
+
+    /*
+     * Adds a clause for one criteria, limited to the given process definition ids and, if it
+     * has already been resolved from the criteria's process instance id, to one engine process instance
+     */
+    public TaskSqlBuilder criteria(TaskCriteria criteria, Collection<String> processDefinitionIds, String engineProcessInstanceId) {
+        String prefix = "c" + criteriaCount + "_";
+        StringBuilder clause = new StringBuilder();
+
+        in(clause, prefix, "RES.PROC_DEF_ID_", "processDefinitionId", processDefinitionIds);
+
+        if (criteria.getTaskIds() != null && !criteria.getTaskIds().isEmpty())
+            in(clause, prefix, "RES.ID_", "taskId", criteria.getTaskIds());
+
+        boolean suspended = StringUtils.isNotEmpty(criteria.getProcessStatus()) && criteria.getProcessStatus().equals(Constants.ProcessStatuses.SUSPENDED);
+        if (criteria.getActive() != null)
+            suspended = !criteria.getActive().booleanValue();
+        condition(clause, prefix, "RES.SUSPENSION_STATE_ = #{" + prefix + "suspensionState}", "suspensionState", Integer.valueOf(suspended ? 2 : 1));
+
+        if (StringUtils.isNotEmpty(criteria.getExecutionId()))
+            condition(clause, prefix, "RES.PROC_INST_ID_ = #{" + prefix + "executionId}", "executionId", criteria.getExecutionId());
+        if (StringUtils.isNotEmpty(engineProcessInstanceId))
+            condition(clause, prefix, "RES.PROC_INST_ID_ = #{" + prefix + "processInstanceId}", "processInstanceId", engineProcessInstanceId);
+        if (StringUtils.isNotEmpty(criteria.getBusinessKey()))
+            condition(clause, prefix, "RES.PROC_INST_ID_ in (select E.ID_ from " + executionTableName + " E where E.BUSINESS_KEY_ = #{" + prefix + "businessKey})", "businessKey", criteria.getBusinessKey());
+        if (StringUtils.isNotEmpty(criteria.getAssigneeId()))
+            condition(clause, prefix, "RES.ASSIGNEE_ = #{" + prefix + "assigneeId}", "assigneeId", criteria.getAssigneeId());
+        if (StringUtils.isNotEmpty(criteria.getParticipantId()))
+            condition(clause, prefix, "(RES.ASSIGNEE_ = #{" + prefix + "participantId} or RES.OWNER_ = #{" + prefix + "participantId} or exists (select L.ID_ from "
+                    + identityLinkTableName + " L where L.TASK_ID_ = RES.ID_ and L.USER_ID_ = #{" + prefix + "participantId}))", "participantId", criteria.getParticipantId());
+        if (criteria.getCreatedAfter() != null)
+            condition(clause, prefix, "RES.CREATE_TIME_ > #{" + prefix + "createdAfter}", "createdAfter", criteria.getCreatedAfter());
+        if (criteria.getCreatedBefore() != null)
+            condition(clause, prefix, "RES.CREATE_TIME_ < #{" + prefix + "createdBefore}", "createdBefore", criteria.getCreatedBefore());
+        if (criteria.getDueAfter() != null)
+            condition(clause, prefix, "RES.DUE_DATE_ > #{" + prefix + "dueAfter}", "dueAfter", criteria.getDueAfter());
+        if (criteria.getDueBefore() != null)
+            condition(clause, prefix, "RES.DUE_DATE_ < #{" + prefix + "dueBefore}", "dueBefore", criteria.getDueBefore());
+        if (criteria.getMinPriority() != null)
+            condition(clause, prefix, "RES.PRIORITY_ >= #{" + prefix + "minPriority}", "minPriority", criteria.getMinPriority());
+        if (criteria.getMaxPriority() != null)
+            condition(clause, prefix, "RES.PRIORITY_ <= #{" + prefix + "maxPriority}", "maxPriority", criteria.getMaxPriority());
+
+        where.append(criteriaCount == 0 ? " where (" : " or (").append(clause).append(")");
+
+        // The first criteria decides the order, the same way it decides the page
+        if (criteriaCount == 0 && criteria.getOrderBy() != null) {
+            switch (criteria.getOrderBy()) {
+                case CREATED_TIME_ASC:
+                    orderBy = "RES.CREATE_TIME_ asc";
+                    break;
+                case CREATED_TIME_DESC:
+                    orderBy = "RES.CREATE_TIME_ desc";
+                    break;
+                case DUE_TIME_ASC:
+                    orderBy = "RES.DUE_DATE_ asc";
+                    break;
+                case DUE_TIME_DESC:
+                    orderBy = "RES.DUE_DATE_ desc";
+                    break;
+                case PRIORITY_ASC:
+                    orderBy = "RES.PRIORITY_ asc";
+                    break;
+                case PRIORITY_DESC:
+                    orderBy = "RES.PRIORITY_ desc";
+                    break;
+            }
+        }
+
+        criteriaCount++;
+        return this;
+    }
+
+    public String selectSql() {
+        return "select RES.* from " + taskTableName + " RES" + where + " order by " + orderBy + ", RES.ID_ asc";
+    }
+
+    public String countSql() {
+        return "select count(RES.ID_) from " + taskTableName + " RES" + where;
+    }
+
+    public Map<String, Object> getParameters() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    private void in(StringBuilder clause, String prefix, String column, String name, Collection<String> values) {
+        if (values == null || values.isEmpty()) {
+            condition(clause, prefix, "1 = 0", null, null);
+            return;
+        }
+        StringBuilder in = new StringBuilder(column).append(" in (");
+        int index = 0;
+        for (String value : values) {
+            String parameterName = prefix + name + index;
+            if (index > 0)
+                in.append(", ");
+            in.append("#{").append(parameterName).append("}");
+            parameters.put(parameterName, value);
+            index++;
+        }
+        in.append(")");
+        condition(clause, prefix, in.toString(), null, null);
+    }
+
+    private void condition(StringBuilder clause, String prefix, String condition, String name, Object value) {
+        if (clause.length() > 0)
+            clause.append(" and ");
+        clause.append(condition);
+        if (name != null)
+            parameters.put(prefix + name, value);
+    }
+
+}
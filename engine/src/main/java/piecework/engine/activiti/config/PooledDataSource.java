@@ -0,0 +1,78 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.engine.activiti.config;
+
+import org.apache.tomcat.jdbc.pool.DataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection pool for the Activiti engine that also keeps track of how long callers
+ * have to wait to borrow a connection, so an undersized pool shows up as wait time
+ * rather than simply as slow task completions.
+ *
+ * @author James Renfro
+ */
+public class PooledDataSource extends DataSource {
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return super.getConnection();
+        } finally {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return super.getConnection(username, password);
+        } finally {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    public PooledDataSourceStatistics getStatistics() {
+        boolean initialized = getPool() != null;
+        return new PooledDataSourceStatistics(
+                initialized ? getActive() : 0,
+                initialized ? getIdle() : 0,
+                initialized ? getWaitCount() : 0,
+                getMaxActive(),
+                borrowCount.get(),
+                totalWaitNanos.get() / 1000000l,
+                maxWaitNanos.get() / 1000000l);
+    }
+
+    private void record(long waitNanos) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+
+        long max = maxWaitNanos.get();
+        while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos))
+            max = maxWaitNanos.get();
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.engine.activiti.config;
+
+/**
+ * Snapshot of the engine connection pool -- how many connections are in use and idle,
+ * how many callers are currently blocked waiting for one, and how long borrowing
+ * a connection has taken
+ *
+ * @author James Renfro
+ */
+public class PooledDataSourceStatistics {
+
+    private final int activeCount;
+    private final int idleCount;
+    private final int waitingCount;
+    private final int maxActive;
+    private final long borrowCount;
+    private final long totalWaitMillis;
+    private final long maxWaitMillis;
+
+    public PooledDataSourceStatistics(int activeCount, int idleCount, int waitingCount, int maxActive, long borrowCount, long totalWaitMillis, long maxWaitMillis) {
+        this.activeCount = activeCount;
+        this.idleCount = idleCount;
+        this.waitingCount = waitingCount;
+        this.maxActive = maxActive;
+        this.borrowCount = borrowCount;
+        this.totalWaitMillis = totalWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    public int getIdleCount() {
+        return idleCount;
+    }
+
+    public int getWaitingCount() {
+        return waitingCount;
+    }
+
+    public int getMaxActive() {
+        return maxActive;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    public long getTotalWaitMillis() {
+        return totalWaitMillis;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public double getAverageWaitMillis() {
+        return borrowCount == 0 ? 0.0 : (double) totalWaitMillis / borrowCount;
+    }
+
+    @Override
+    public String toString() {
+        return "engine pool [active=" + activeCount + "/" + maxActive + ", idle=" + idleCount + ", waiting=" + waitingCount
+                + ", borrowed=" + borrowCount + ", average wait=" + getAverageWaitMillis() + "ms, max wait=" + maxWaitMillis + "ms]";
+    }
+
+}
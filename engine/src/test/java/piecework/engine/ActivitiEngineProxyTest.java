@@ -33,6 +33,8 @@ import piecework.model.*;
 import piecework.model.Process;
 import piecework.process.ProcessInstanceSearchCriteria;
 import piecework.security.concrete.PassthroughSanitizer;
+import piecework.task.TaskCriteria;
+import piecework.task.TaskResults;
 import piecework.util.ManyMap;
 
 import java.io.IOException;
@@ -151,4 +153,81 @@ public class ActivitiEngineProxyTest {
         Assert.assertEquals("testuser", employeeID);
 	}
 	
+
+    @Test
+    public void testFindExecutionsPagesAndIncludesVariables() throws ProcessEngineException {
+        for (int i = 0; i < 3; i++) {
+            ProcessInstance instance = Mockito.mock(ProcessInstance.class);
+            Map<String, List<Value>> data = new ManyMap<String, Value>();
+            ((ManyMap<String, Value>)data).putOne("EmployeeID", new Value("testuser" + i));
+            Mockito.when(instance.getData()).thenReturn(data);
+            Mockito.when(instance.getProcessInstanceId()).thenReturn("paged" + i);
+            engineProxy.start(process, deployment, instance);
+        }
+
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .engine(deployment.getEngine())
+                .engineProcessDefinitionKey(deployment.getEngineProcessDefinitionKey())
+                .engineProcessDefinitionKey("some-other-process")
+                .firstResult(0)
+                .maxResults(2)
+                .includeVariables()
+                .build();
+
+        ProcessExecutionResults results = engineProxy.findExecutions(criteria);
+
+        Assert.assertEquals(2, results.getExecutions().size());
+        Assert.assertTrue(results.getTotal() >= 3);
+        for (ProcessExecution execution : results.getExecutions()) {
+            Assert.assertNotNull(execution.getData());
+            Assert.assertTrue(((String)execution.getData().get("EmployeeID")).startsWith("testuser"));
+        }
+    }
+
+    @Test
+    public void testFindTasksMergesCriteria() throws ProcessEngineException {
+        ProcessInstance first = Mockito.mock(ProcessInstance.class);
+        Mockito.when(first.getProcessInstanceId()).thenReturn("merged1");
+        String firstInstanceId = engineProxy.start(process, deployment, first);
+        ProcessInstance second = Mockito.mock(ProcessInstance.class);
+        Mockito.when(second.getProcessInstanceId()).thenReturn("merged2");
+        String secondInstanceId = engineProxy.start(process, deployment, second);
+
+        TaskCriteria firstCriteria = new TaskCriteria.Builder()
+                .process(process)
+                .executionId(firstInstanceId)
+                .build();
+        TaskCriteria secondCriteria = new TaskCriteria.Builder()
+                .process(process)
+                .executionId(secondInstanceId)
+                .build();
+
+        TaskResults results = engineProxy.findTasks(firstCriteria, secondCriteria);
+
+        Assert.assertFalse(results.getTasks().isEmpty());
+        Assert.assertTrue(results.getEngineProcessInstanceIds().contains(firstInstanceId));
+        Assert.assertTrue(results.getEngineProcessInstanceIds().contains(secondInstanceId));
+        Assert.assertEquals(2, results.getEngineProcessInstanceIds().size());
+    }
+
+    @Test
+    public void testFindExecutionsWithoutProcessDefinitionKeysMatchesNothing() throws ProcessEngineException {
+        ProcessInstance instance = Mockito.mock(ProcessInstance.class);
+        Map<String, List<Value>> data = new ManyMap<String, Value>();
+        ((ManyMap<String, Value>)data).putOne("EmployeeID", new Value("testuser"));
+        Mockito.when(instance.getData()).thenReturn(data);
+        Mockito.when(instance.getProcessInstanceId()).thenReturn("unkeyed");
+        engineProxy.start(process, deployment, instance);
+
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .engine(deployment.getEngine())
+                .maxResults(10)
+                .build();
+
+        ProcessExecutionResults results = engineProxy.findExecutions(criteria);
+
+        Assert.assertTrue(results.getExecutions() == null || results.getExecutions().isEmpty());
+        Assert.assertEquals(0, results.getTotal());
+    }
+
 }
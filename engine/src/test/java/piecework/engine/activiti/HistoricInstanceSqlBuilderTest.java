@@ -0,0 +1,58 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.engine.activiti;
+
+import org.junit.Assert;
+import org.junit.Test;
+import piecework.process.ProcessInstanceSearchCriteria;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+/**
+ * @author James Renfro
+ */
+public class HistoricInstanceSqlBuilderTest {
+
+    @Test
+    public void testProcessDefinitionIdsAndPagingColumns() {
+        ProcessInstanceSearchCriteria criteria = new ProcessInstanceSearchCriteria.Builder()
+                .businessKey("1234")
+                .complete(Boolean.FALSE)
+                .build();
+
+        HistoricInstanceSqlBuilder builder = new HistoricInstanceSqlBuilder("ACT_HI_PROCINST")
+                .criteria(criteria, new LinkedHashSet<String>(Arrays.asList("def:1", "def:2")));
+
+        Assert.assertEquals("select RES.* from ACT_HI_PROCINST RES where RES.PROC_DEF_ID_ in (#{processDefinitionId0}, #{processDefinitionId1}) "
+                + "and RES.BUSINESS_KEY_ = #{businessKey} and RES.END_TIME_ is null order by RES.END_TIME_ desc, RES.ID_ asc", builder.selectSql());
+        Assert.assertEquals("select count(RES.ID_) from ACT_HI_PROCINST RES where RES.PROC_DEF_ID_ in (#{processDefinitionId0}, #{processDefinitionId1}) "
+                + "and RES.BUSINESS_KEY_ = #{businessKey} and RES.END_TIME_ is null", builder.countSql());
+        Assert.assertEquals("def:1", builder.getParameters().get("processDefinitionId0"));
+        Assert.assertEquals("def:2", builder.getParameters().get("processDefinitionId1"));
+        Assert.assertEquals("1234", builder.getParameters().get("businessKey"));
+    }
+
+    @Test
+    public void testNoMatchingProcessDefinitions() {
+        HistoricInstanceSqlBuilder builder = new HistoricInstanceSqlBuilder("ACT_HI_PROCINST")
+                .criteria(new ProcessInstanceSearchCriteria.Builder().build(), Collections.<String>emptySet());
+
+        Assert.assertTrue(builder.selectSql().contains("where 1 = 0"));
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.engine.activiti;
+
+import org.junit.Assert;
+import org.junit.Test;
+import piecework.Constants;
+import piecework.task.TaskCriteria;
+
+import java.util.Collections;
+
+/**
+ * @author James Renfro
+ */
+public class TaskSqlBuilderTest {
+
+    @Test
+    public void testCriteriaAreMergedWithDistinctParameters() {
+        TaskCriteria first = new TaskCriteria.Builder()
+                .assigneeId("rod")
+                .build();
+        TaskCriteria second = new TaskCriteria.Builder()
+                .participantId("jane")
+                .processStatus(Constants.ProcessStatuses.SUSPENDED)
+                .build();
+
+        TaskSqlBuilder builder = new TaskSqlBuilder("ACT_RU_TASK", "ACT_RU_IDENTITYLINK", "ACT_RU_EXECUTION")
+                .criteria(first, Collections.singleton("def:1"), null)
+                .criteria(second, Collections.singleton("def:2"), null);
+
+        String sql = builder.selectSql();
+        Assert.assertTrue(sql.startsWith("select RES.* from ACT_RU_TASK RES where (RES.PROC_DEF_ID_ in (#{c0_processDefinitionId0})"));
+        Assert.assertTrue(sql.contains("RES.ASSIGNEE_ = #{c0_assigneeId}) or (RES.PROC_DEF_ID_ in (#{c1_processDefinitionId0})"));
+        Assert.assertTrue(sql.contains("exists (select L.ID_ from ACT_RU_IDENTITYLINK L where L.TASK_ID_ = RES.ID_ and L.USER_ID_ = #{c1_participantId})"));
+        Assert.assertEquals("rod", builder.getParameters().get("c0_assigneeId"));
+        Assert.assertEquals("jane", builder.getParameters().get("c1_participantId"));
+        Assert.assertEquals(Integer.valueOf(1), builder.getParameters().get("c0_suspensionState"));
+        Assert.assertEquals(Integer.valueOf(2), builder.getParameters().get("c1_suspensionState"));
+    }
+
+    @Test
+    public void testDefaultOrderIsNewestFirstWithStableTies() {
+        TaskSqlBuilder builder = new TaskSqlBuilder("ACT_RU_TASK", "ACT_RU_IDENTITYLINK", "ACT_RU_EXECUTION")
+                .criteria(new TaskCriteria.Builder().assigneeId("rod").build(), Collections.singleton("def:1"), null);
+
+        Assert.assertTrue(builder.selectSql().endsWith(" order by RES.CREATE_TIME_ desc, RES.ID_ asc"));
+    }
+
+    @Test
+    public void testCandidateAndHistoricCriteriaAreNotSupported() {
+        Assert.assertTrue(TaskSqlBuilder.isSupported(new TaskCriteria.Builder().build()));
+        Assert.assertFalse(TaskSqlBuilder.isSupported(new TaskCriteria.Builder().candidateAssigneeId("rod").build()));
+        Assert.assertFalse(TaskSqlBuilder.isSupported(new TaskCriteria.Builder().processStatus(Constants.ProcessStatuses.COMPLETE).build()));
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2013 University of Washington
+ *
+ * Licensed under the Educational Community License, Version 1.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.opensource.org/licenses/ecl1.php
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package piecework.engine.activiti.config;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a concurrent mix of short queries against an embedded H2 database through the
+ * pooled engine datasource, and checks that the pool stays within its bounds. How it
+ * compares with opening a new connection every time is measured by
+ * PooledDataSourceBenchmark in the benchmark module.
+ *
+ * @author James Renfro
+ */
+public class PooledDataSourceLoadTest {
+
+    private static final Logger LOG = Logger.getLogger(PooledDataSourceLoadTest.class);
+
+    private static final String URL = "jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1";
+    private static final int THREADS = 16;
+    private static final int QUERIES_PER_THREAD = 500;
+    private static final int MAX_ACTIVE = 8;
+
+    private PooledDataSource pooledDataSource;
+
+    @Before
+    public void setup() throws Exception {
+        pooledDataSource = new PooledDataSource();
+        pooledDataSource.setDriverClassName("org.h2.Driver");
+        pooledDataSource.setUrl(URL);
+        pooledDataSource.setUsername("sa");
+        pooledDataSource.setPassword("");
+        pooledDataSource.setInitialSize(2);
+        pooledDataSource.setMinIdle(2);
+        pooledDataSource.setMaxIdle(MAX_ACTIVE);
+        pooledDataSource.setMaxActive(MAX_ACTIVE);
+        pooledDataSource.setMaxWait(10000);
+        pooledDataSource.setValidationQuery("SELECT 1");
+        pooledDataSource.setTestOnBorrow(true);
+        pooledDataSource.setJdbcInterceptors("ConnectionState;StatementFinalizer;StatementCache(prepared=true,callable=false,max=50)");
+
+        Connection connection = pooledDataSource.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            statement.execute("CREATE TABLE IF NOT EXISTS ACT_TEST (ID_ VARCHAR(64) PRIMARY KEY, VALUE_ VARCHAR(255))");
+            statement.execute("MERGE INTO ACT_TEST VALUES ('1', 'one')");
+            statement.close();
+        } finally {
+            connection.close();
+        }
+    }
+
+    @After
+    public void teardown() {
+        pooledDataSource.close();
+    }
+
+    @Test
+    public void testPoolStaysWithinBounds() throws Exception {
+        long pooledMillis = run(pooledDataSource);
+
+        PooledDataSourceStatistics statistics = pooledDataSource.getStatistics();
+        LOG.info("Pooled datasource ran " + THREADS * QUERIES_PER_THREAD + " queries in " + pooledMillis + "ms, " + statistics);
+
+        Assert.assertEquals(THREADS * QUERIES_PER_THREAD + 1, statistics.getBorrowCount());
+        Assert.assertEquals(0, statistics.getActiveCount());
+        Assert.assertTrue(statistics.getIdleCount() <= MAX_ACTIVE);
+        Assert.assertTrue(pooledDataSource.getPool().getSize() <= MAX_ACTIVE);
+    }
+
+    private static long run(final DataSource dataSource) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>(THREADS);
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executorService.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        int found = 0;
+                        for (int j = 0; j < QUERIES_PER_THREAD; j++) {
+                            Connection connection = dataSource.getConnection();
+                            try {
+                                PreparedStatement statement = connection.prepareStatement("SELECT VALUE_ FROM ACT_TEST WHERE ID_ = ?");
+                                statement.setString(1, "1");
+                                ResultSet resultSet = statement.executeQuery();
+                                if (resultSet.next())
+                                    found++;
+                                resultSet.close();
+                                statement.close();
+                            } finally {
+                                connection.close();
+                            }
+                        }
+                        return Integer.valueOf(found);
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                Assert.assertEquals(QUERIES_PER_THREAD, future.get().intValue());
+            }
+            return System.currentTimeMillis() - start;
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+}